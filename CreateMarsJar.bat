@@ -1 +1,3 @@
-jar cmf mainclass.txt Mars.jar PseudoOps.txt Config.properties Syscall.properties Settings.properties MARSlicense.txt mainclass.txt MipsXRayOpcode.xml registerDatapath.xml controlDatapath.xml ALUcontrolDatapath.xml CreateMarsJar.bat Mars.java Mars.class docs help images mars 
\ No newline at end of file
+jar cmf mainclass.txt Mars.jar PseudoOps.txt Config.properties Syscall.properties Settings.properties MARSlicense.txt mainclass.txt MipsXRayOpcode.xml registerDatapath.xml controlDatapath.xml ALUcontrolDatapath.xml CreateMarsJar.bat Mars.java Mars.class StartupBenchmark.java StartupBenchmark.class mars.bat mars.sh "DemoDay(LCA).asm" "EnergyExtract(LCA).asm" QliphothOrdeal.asm marioKart.asm docs help images mars 
+rem Class data sharing archive for faster startup, used by mars.bat and mars.sh.  It is tied to this location of Mars.jar.
+java -XX:ArchiveClassesAtExit="%~dp0Mars.jsa" -cp "%~dp0Mars.jar" StartupBenchmark train > nul
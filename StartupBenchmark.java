@@ -0,0 +1,182 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import mars.Globals;
+import mars.MarsLaunch;
+import mars.mips.instructions.CustomAssembly;
+import mars.mips.instructions.LanguageLoader;
+import mars.mips.instructions.MipsAssembly;
+
+/**
+ * Measures how long command mode MARS takes to start, and prepares the class data sharing
+ * (AppCDS) archive that makes it start faster.  Both modes run from Mars.jar, which
+ * CreateMarsJar.bat builds together with the archive:
+ * <pre>
+ *   java -XX:ArchiveClassesAtExit=Mars.jsa -cp Mars.jar StartupBenchmark train
+ *   java -cp Mars.jar StartupBenchmark [runs] [program.asm]
+ * </pre>
+ * Training loads every class in the jars on the class path except the custom languages,
+ * builds the instruction set with all languages enabled, then assembles and runs a small
+ * program, so that the JVM writes all of them to the archive when it exits.  The custom
+ * language classes are loaded by class loaders of their own (see LanguageDiscovery), so
+ * they are not archived.
+ * <p>
+ * The benchmark starts "java -jar Mars.jar nc st program" the given number of times (default
+ * 10), without and then with the archive if one exists next to Mars.jar, and prints the
+ * median time from JVM start to the first simulated instruction (reported by the "st"
+ * option) and the median wall time of the whole launch, tab separated.
+ */
+public class StartupBenchmark{
+    private final static String ARCHIVE_NAME = "Mars.jsa";
+    private final static String CUSTOM_LANG_DIRECTORY = "mars/mips/instructions/customlangs";
+    private final static String PROGRAM =
+        ".data\n" +
+        "msg: .asciiz \"sum \"\n" +
+        ".text\n" +
+        "main:  li $t0, 0\n" +
+        "       li $t1, 1\n" +
+        "loop:  add $t0, $t0, $t1\n" +
+        "       addi $t1, $t1, 1\n" +
+        "       ble $t1, 1000, loop\n" +
+        "       la $a0, msg\n" +
+        "       li $v0, 4\n" +
+        "       syscall\n" +
+        "       move $a0, $t0\n" +
+        "       li $v0, 1\n" +
+        "       syscall\n" +
+        "       li $v0, 10\n" +
+        "       syscall\n";
+
+    public static void main(String[] args) throws Exception{
+        if (args.length > 0 && args[0].equals("train")){
+            train(args.length > 1 ? args[1] : writeProgram());
+            return;
+        }
+        int runs = 10;
+        String program = null;
+        for (String arg : args){
+            try{
+                runs = Integer.parseInt(arg);
+            } catch (NumberFormatException e){
+                program = arg;
+            }
+        }
+        if (program == null){
+            program = writeProgram();
+        }
+        File jar = new File(StartupBenchmark.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        if (!jar.isFile()){
+            System.out.println("StartupBenchmark must be run from Mars.jar, e.g. \"java -cp Mars.jar StartupBenchmark\".");
+            System.exit(-1);
+        }
+        File archive = new File(jar.getParentFile(), ARCHIVE_NAME);
+        System.out.println("configuration\truns\tfirst instruction ms\twall ms");
+        measure("no archive", null, jar, program, runs);
+        if (archive.isFile()){
+            measure(ARCHIVE_NAME, "-XX:SharedArchiveFile=" + archive.getAbsolutePath(), jar, program, runs);
+        }
+    }
+
+    // Launch MARS the given number of times and print the medians.
+    private static void measure(String name, String jvmOption, File jar, String program, int runs) throws IOException, InterruptedException{
+        long[] firstInstruction = new long[runs];
+        long[] wall = new long[runs];
+        for (int i = 0; i < runs; i++){
+            List<String> command = new ArrayList<String>();
+            command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+            if (jvmOption != null){
+                command.add(jvmOption);
+            }
+            command.addAll(Arrays.asList("-Djava.awt.headless=true", "-jar", jar.getAbsolutePath(), "nc", "st", program));
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.directory(jar.getParentFile());
+            builder.redirectErrorStream(true);
+            long start = System.nanoTime();
+            Process process = builder.start();
+            String output = readAll(process.getInputStream());
+            process.waitFor();
+            wall[i] = (System.nanoTime() - start) / 1000000;
+            String[] lines = output.trim().split("\\s*\n");
+            try{
+                firstInstruction[i] = Long.parseLong(lines[lines.length - 1].trim());
+            } catch (NumberFormatException e){
+                System.out.println("Unexpected output from MARS:\n" + output);
+                System.exit(-1);
+            }
+        }
+        System.out.println(name + "\t" + runs + "\t" + median(firstInstruction) + "\t" + median(wall));
+    }
+
+    // Load the classes of the class path jars other than the custom languages, enable every language
+    // once, then run the program through command mode MARS.
+    // MarsLaunch calls System.exit(), at which point the JVM writes the archive.
+    private static void train(String program) throws IOException{
+        ClassLoader loader = StartupBenchmark.class.getClassLoader();
+        for (String entry : System.getProperty("java.class.path").split(File.pathSeparator)){
+            if (entry.endsWith(".jar")){
+                loadClasses(new File(entry), loader);
+            }
+        }
+        Globals.initialize(false);
+        for (CustomAssembly c : LanguageLoader.assemblyList){
+            c.enabled = true;
+        }
+        Globals.instructionSet.populate();
+        for (CustomAssembly c : LanguageLoader.assemblyList){
+            c.enabled = (c instanceof MipsAssembly);
+        }
+        Globals.instructionSet.populate();
+        new MarsLaunch(new String[] {"nc", program});
+    }
+
+    private static void loadClasses(File jar, ClassLoader loader) throws IOException{
+        ZipFile zip = new ZipFile(jar);
+        try{
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()){
+                String name = entries.nextElement().getName();
+                if (name.endsWith(".class") && !name.startsWith(CUSTOM_LANG_DIRECTORY)){
+                    try{
+                        Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, loader);
+                    } catch (Throwable e){
+                        // e.g. a class of a tool whose libraries are missing; not needed for startup
+                    }
+                }
+            }
+        } finally{
+            zip.close();
+        }
+    }
+
+    private static String writeProgram() throws IOException{
+        File file = File.createTempFile("startup", ".asm");
+        file.deleteOnExit();
+        PrintWriter writer = new PrintWriter(file);
+        writer.print(PROGRAM);
+        writer.close();
+        return file.getAbsolutePath();
+    }
+
+    private static String readAll(InputStream in) throws IOException{
+        StringBuilder text = new StringBuilder();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = in.read(buffer)) != -1){
+            text.append(new String(buffer, 0, length));
+        }
+        return text.toString();
+    }
+
+    private static long median(long[] values){
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,485 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import mars.Globals;
+import mars.MIPSprogram;
+import mars.ProgramStatement;
+import mars.assembler.Assembler;
+import mars.assembler.Tokenizer;
+import mars.mips.hardware.Memory;
+import mars.mips.hardware.RegisterFile;
+
+/**
+ * Micro benchmarks for the hot paths of the MARS engine: simulation throughput on a set of
+ * kernels, memory and register file access, instruction decoding, tokenizing and assembling.
+ * It is a separate module: it is not part of Mars.jar and is compiled and run against it
+ * (or against the compiled classes) from the MARS directory, so that the configuration files
+ * are found:
+ * <pre>
+ *   javac -cp Mars.jar -d benchmarks benchmarks/EngineBenchmark.java
+ *   java -cp Mars.jar:benchmarks EngineBenchmark [options] [regex]
+ * </pre>
+ * Only benchmarks whose names match the regular expression are run.  The options follow those
+ * of JMH: "-wi n" warmup iterations (default 3), "-i n" measurement iterations (default 5),
+ * "-r ms" time per iteration (default 1000), "-rf json|csv" result format and "-rff file"
+ * result file (default jmh-result.json or jmh-result.csv), "-l" to list the benchmarks.
+ * Every benchmark measures throughput, in operations per second, where an operation is a
+ * simulated instruction, a memory or register access, a decoded word or a source line.
+ * The JSON result has the layout of JMH's, so the usual tools can compare two result files;
+ * it reports 0 forks, as JMH does for a run in the same JVM.
+ */
+public class EngineBenchmark{
+    private final static int SIMULATE_STEPS = 1000000;
+    private final static int MEMORY_ACCESSES = 4096;
+    private final static int GENERATED_BLOCKS = 2000;
+
+    /** Keeps the results of benchmarked calls alive. */
+    static volatile int sink;
+
+    private abstract static class Benchmark{
+        final String name;
+
+        Benchmark(String name){
+            this.name = name;
+        }
+
+        /** Called once before the warmup iterations. */
+        void setup() throws Exception{
+        }
+
+        /** Performs the benchmarked work once and returns the number of operations it did. */
+        abstract long run() throws Exception;
+    }
+
+    /*  Simulation kernels.  Each loops forever and is stopped by the step limit, so every
+     *  invocation simulates exactly SIMULATE_STEPS instructions from where the last one stopped.
+     */
+    private final static String[][] KERNELS = {
+        {"alu",
+            "main:  li $t0, 1\n" +
+            "loop:  addu $t1, $t1, $t0\n" +
+            "       xor $t2, $t1, $t0\n" +
+            "       sll $t3, $t2, 3\n" +
+            "       subu $t4, $t3, $t1\n" +
+            "       and $t5, $t4, $t2\n" +
+            "       or $t6, $t5, $t3\n" +
+            "       addiu $t0, $t0, 1\n" +
+            "       j loop\n"},
+        {"memory",
+            ".data\n" +
+            "array: .space 4096\n" +
+            ".text\n" +
+            "main:  la $t0, array\n" +
+            "       addiu $t1, $t0, 4096\n" +
+            "loop:  lw $t2, 0($t0)\n" +
+            "       addiu $t2, $t2, 1\n" +
+            "       sw $t2, 0($t0)\n" +
+            "       lb $t3, 1($t0)\n" +
+            "       sb $t3, 2($t0)\n" +
+            "       addiu $t0, $t0, 4\n" +
+            "       bne $t0, $t1, loop\n" +
+            "       j main\n"},
+        {"branch",
+            "main:  li $t0, 0\n" +
+            "loop:  andi $t1, $t0, 1\n" +
+            "       beq $t1, $zero, even\n" +
+            "       andi $t2, $t0, 6\n" +
+            "       bne $t2, $zero, skip\n" +
+            "       addiu $s0, $s0, 1\n" +
+            "       j skip\n" +
+            "even:  slti $t3, $t0, 1000\n" +
+            "       blez $t3, skip\n" +
+            "       addiu $s1, $s1, 1\n" +
+            "skip:  addiu $t0, $t0, 1\n" +
+            "       j loop\n"},
+        {"call",
+            "main:  li $a0, 15\n" +
+            "       jal fib\n" +
+            "       j main\n" +
+            "fib:   slti $t0, $a0, 2\n" +
+            "       beq $t0, $zero, rec\n" +
+            "       move $v0, $a0\n" +
+            "       jr $ra\n" +
+            "rec:   addiu $sp, $sp, -12\n" +
+            "       sw $ra, 8($sp)\n" +
+            "       sw $a0, 4($sp)\n" +
+            "       addiu $a0, $a0, -1\n" +
+            "       jal fib\n" +
+            "       sw $v0, 0($sp)\n" +
+            "       lw $a0, 4($sp)\n" +
+            "       addiu $a0, $a0, -2\n" +
+            "       jal fib\n" +
+            "       lw $t0, 0($sp)\n" +
+            "       addu $v0, $v0, $t0\n" +
+            "       lw $ra, 8($sp)\n" +
+            "       addiu $sp, $sp, 12\n" +
+            "       jr $ra\n"},
+        {"float",
+            "main:  li $t0, 3\n" +
+            "       mtc1 $t0, $f2\n" +
+            "       cvt.d.w $f2, $f2\n" +
+            "       mov.d $f0, $f2\n" +
+            "loop:  mul.d $f4, $f0, $f2\n" +
+            "       add.d $f0, $f4, $f2\n" +
+            "       div.d $f0, $f0, $f2\n" +
+            "       c.lt.d $f0, $f2\n" +
+            "       bc1t main\n" +
+            "       j loop\n"},
+    };
+
+    public static void main(String[] args) throws Exception{
+        int warmupIterations = 3;
+        int iterations = 5;
+        long iterationMillis = 1000;
+        String format = null;
+        String resultFile = null;
+        boolean list = false;
+        Pattern filter = Pattern.compile(".*");
+        for (int i = 0; i < args.length; i++){
+            if (args[i].equals("-wi")){
+                warmupIterations = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-i")){
+                iterations = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-r")){
+                iterationMillis = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-rf")){
+                format = args[++i].toLowerCase();
+            } else if (args[i].equals("-rff")){
+                resultFile = args[++i];
+            } else if (args[i].equals("-l")){
+                list = true;
+            } else{
+                filter = Pattern.compile(args[i]);
+            }
+        }
+        if (iterations < 1 || (format != null && !format.equals("json") && !format.equals("csv"))){
+            System.out.println("Usage: EngineBenchmark [-wi n] [-i n] [-r ms] [-rf json|csv] [-rff file] [-l] [regex]");
+            System.exit(-1);
+        }
+        if (format == null && resultFile != null){
+            format = resultFile.endsWith(".csv") ? "csv" : "json";
+        }
+
+        Globals.initialize(false);
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        for (Benchmark b : createBenchmarks()){
+            if (filter.matcher(b.name).find()){
+                benchmarks.add(b);
+            }
+        }
+        if (list){
+            for (Benchmark b : benchmarks){
+                System.out.println(b.name);
+            }
+            return;
+        }
+
+        List<double[]> scores = new ArrayList<double[]>();
+        for (Benchmark b : benchmarks){
+            System.out.println("# " + b.name);
+            b.setup();
+            for (int i = 0; i < warmupIterations; i++){
+                System.out.println("Warmup iteration " + (i + 1) + ": " + format(measure(b, iterationMillis)) + " ops/s");
+            }
+            double[] score = new double[iterations];
+            for (int i = 0; i < iterations; i++){
+                score[i] = measure(b, iterationMillis);
+                System.out.println("Iteration " + (i + 1) + ": " + format(score[i]) + " ops/s");
+            }
+            scores.add(score);
+        }
+
+        System.out.println();
+        System.out.println(String.format("%-32s %8s %16s %14s  %s", "Benchmark", "Cnt", "Score", "Error", "Units"));
+        for (int i = 0; i < benchmarks.size(); i++){
+            double[] score = scores.get(i);
+            System.out.println(String.format("%-32s %8d %16s %14s  %s", benchmarks.get(i).name, score.length,
+                format(mean(score)), "+- " + format(stdev(score)), "ops/s"));
+        }
+        if (format != null){
+            if (resultFile == null){
+                resultFile = "jmh-result." + format;
+            }
+            PrintWriter out = new PrintWriter(resultFile);
+            if (format.equals("json")){
+                writeJson(out, benchmarks, scores, warmupIterations, iterationMillis);
+            } else{
+                writeCsv(out, benchmarks, scores);
+            }
+            out.close();
+            System.out.println("\nResults written to " + resultFile);
+        }
+    }
+
+    // Run the benchmark repeatedly for the iteration time and return its operations per second.
+    private static double measure(Benchmark b, long iterationMillis) throws Exception{
+        long operations = 0;
+        long start = System.nanoTime();
+        long end = start + iterationMillis * 1000000;
+        long now;
+        do{
+            operations += b.run();
+            now = System.nanoTime();
+        } while (now < end);
+        return operations * 1e9 / (now - start);
+    }
+
+    private static List<Benchmark> createBenchmarks() throws IOException{
+        List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+        for (final String[] kernel : KERNELS){
+            benchmarks.add(new Benchmark("simulate." + kernel[0]){
+                MIPSprogram program;
+
+                void setup() throws Exception{
+                    program = assemble(writeSource(kernel[1]));
+                    RegisterFile.initializeProgramCounter(true);
+                }
+
+                long run() throws Exception{
+                    program.simulate(SIMULATE_STEPS);
+                    return SIMULATE_STEPS;
+                }
+            });
+        }
+
+        // Word addresses spread over the data, heap and stack segments.
+        final int[] addresses = new int[MEMORY_ACCESSES];
+        for (int i = 0; i < MEMORY_ACCESSES; i++){
+            int offset = (i * 1031 * Memory.WORD_LENGTH_BYTES) & 0xFFFF;
+            switch (i % 3){
+                case 0:
+                    addresses[i] = Memory.dataBaseAddress + offset;
+                    break;
+                case 1:
+                    addresses[i] = Memory.heapBaseAddress + offset;
+                    break;
+                default:
+                    addresses[i] = Memory.stackPointer - offset;
+                    break;
+            }
+        }
+        benchmarks.add(new Benchmark("memory.setWord"){
+            long run() throws Exception{
+                for (int i = 0; i < addresses.length; i++){
+                    Globals.memory.setWord(addresses[i], i);
+                }
+                return addresses.length;
+            }
+        });
+        benchmarks.add(new Benchmark("memory.getWord"){
+            long run() throws Exception{
+                int sum = 0;
+                for (int i = 0; i < addresses.length; i++){
+                    sum += Globals.memory.getWord(addresses[i]);
+                }
+                sink = sum;
+                return addresses.length;
+            }
+        });
+        benchmarks.add(new Benchmark("memory.setByte"){
+            long run() throws Exception{
+                for (int i = 0; i < addresses.length; i++){
+                    Globals.memory.setByte(addresses[i] + (i & 3), i);
+                }
+                return addresses.length;
+            }
+        });
+        benchmarks.add(new Benchmark("memory.getByte"){
+            long run() throws Exception{
+                int sum = 0;
+                for (int i = 0; i < addresses.length; i++){
+                    sum += Globals.memory.getByte(addresses[i] + (i & 3));
+                }
+                sink = sum;
+                return addresses.length;
+            }
+        });
+        benchmarks.add(new Benchmark("registerFile.updateRegister"){
+            long run(){
+                int sum = 0;
+                for (int i = 0; i < 1024; i++){
+                    sum += RegisterFile.updateRegister(1 + (i % 31), i);
+                }
+                sink = sum;
+                return 1024;
+            }
+        });
+
+        final File generated = writeSource(generateSource(GENERATED_BLOCKS));
+        benchmarks.add(new Benchmark("instructionSet.findByBinaryCode"){
+            int[] words;
+
+            void setup() throws Exception{
+                ArrayList statements = assemble(generated).getMachineList();
+                words = new int[statements.size()];
+                for (int i = 0; i < words.length; i++){
+                    words[i] = ((ProgramStatement) statements.get(i)).getBinaryStatement();
+                }
+            }
+
+            long run(){
+                int found = 0;
+                for (int i = 0; i < words.length; i++){
+                    if (Globals.instructionSet.findByBinaryCode(words[i]) != null){
+                        found++;
+                    }
+                }
+                sink = found;
+                return words.length;
+            }
+        });
+        benchmarks.add(new Benchmark("tokenizer.tokenize"){
+            MIPSprogram program;
+
+            void setup() throws Exception{
+                program = new MIPSprogram();
+                program.readSource(generated.getPath());
+            }
+
+            long run() throws Exception{
+                sink = new Tokenizer().tokenize(program).size();
+                return program.getSourceList().size();
+            }
+        });
+        benchmarks.add(new Benchmark("assembler.assemble"){
+            MIPSprogram program;
+
+            void setup() throws Exception{
+                program = new MIPSprogram();
+                program.readSource(generated.getPath());
+                program.tokenize();
+            }
+
+            long run() throws Exception{
+                ArrayList programs = new ArrayList();
+                programs.add(program);
+                sink = new Assembler().assemble(programs, true).size();
+                return program.getSourceList().size();
+            }
+        });
+        return benchmarks;
+    }
+
+    // Source with the given number of blocks, each with labels, branches, pseudo-instructions
+    // and data, for the decoding, tokenizing and assembling benchmarks.
+    private static String generateSource(int blocks){
+        StringBuilder source = new StringBuilder();
+        source.append(".data\n");
+        for (int i = 0; i < blocks; i++){
+            source.append("value").append(i).append(": .word ").append(i).append(", ").append(i * 7).append("\n");
+            if (i % 10 == 0){
+                source.append("text").append(i).append(": .asciiz \"block ").append(i).append("\\n\"\n");
+            }
+        }
+        source.append(".text\n");
+        source.append("main:\n");
+        for (int i = 0; i < blocks; i++){
+            source.append("block").append(i).append(":   # block ").append(i).append("\n");
+            source.append("    lw $t0, value").append(i).append("\n");
+            source.append("    li $t1, ").append(i * 1000).append("\n");
+            source.append("    addu $t2, $t0, $t1\n");
+            source.append("    sll $t3, $t2, ").append(i % 32).append("\n");
+            source.append("    andi $t4, $t3, 0xff\n");
+            source.append("    beq $t4, $zero, block").append((i + 1) % blocks).append("\n");
+            source.append("    sw $t3, value").append(i).append("\n");
+            source.append("    mult $t2, $t3\n");
+            source.append("    mflo $t5\n");
+            source.append("    bgt $t5, $t0, block").append(i / 2).append("\n");
+        }
+        source.append("    li $v0, 10\n");
+        source.append("    syscall\n");
+        return source.toString();
+    }
+
+    private static File writeSource(String source) throws IOException{
+        File file = File.createTempFile("benchmark", ".asm");
+        file.deleteOnExit();
+        PrintWriter writer = new PrintWriter(file);
+        writer.print(source);
+        writer.close();
+        return file;
+    }
+
+    private static MIPSprogram assemble(File file) throws Exception{
+        MIPSprogram program = new MIPSprogram();
+        ArrayList files = new ArrayList();
+        files.add(file.getPath());
+        program.assemble(program.prepareFilesForAssembly(files, file.getPath(), null), true);
+        // As in command mode: execution is never undone, so back-steps are not recorded.
+        program.getBackStepper().setEnabled(false);
+        return program;
+    }
+
+    private static void writeJson(PrintWriter out, List<Benchmark> benchmarks, List<double[]> scores, int warmupIterations, long iterationMillis){
+        out.println("[");
+        for (int i = 0; i < benchmarks.size(); i++){
+            double[] score = scores.get(i);
+            out.println("    {");
+            out.println("        \"benchmark\" : \"" + benchmarks.get(i).name + "\",");
+            out.println("        \"mode\" : \"thrpt\",");
+            out.println("        \"threads\" : 1,");
+            out.println("        \"forks\" : 0,");
+            out.println("        \"jvm\" : \"" + jsonString(System.getProperty("java.home")) + "\",");
+            out.println("        \"jdkVersion\" : \"" + jsonString(System.getProperty("java.version")) + "\",");
+            out.println("        \"marsVersion\" : \"" + jsonString(Globals.version) + "\",");
+            out.println("        \"warmupIterations\" : " + warmupIterations + ",");
+            out.println("        \"warmupTime\" : \"" + iterationMillis + " ms\",");
+            out.println("        \"measurementIterations\" : " + score.length + ",");
+            out.println("        \"measurementTime\" : \"" + iterationMillis + " ms\",");
+            out.println("        \"primaryMetric\" : {");
+            out.println("            \"score\" : " + mean(score) + ",");
+            double error = stdev(score);
+            out.println("            \"scoreError\" : " + (Double.isNaN(error) ? "\"NaN\"" : String.valueOf(error)) + ",");
+            out.println("            \"scoreUnit\" : \"ops/s\",");
+            StringBuilder raw = new StringBuilder();
+            for (int j = 0; j < score.length; j++){
+                raw.append((j == 0) ? "" : ", ").append(score[j]);
+            }
+            out.println("            \"rawData\" : [ [ " + raw + " ] ]");
+            out.println("        },");
+            out.println("        \"secondaryMetrics\" : {");
+            out.println("        }");
+            out.println((i == benchmarks.size() - 1) ? "    }" : "    },");
+        }
+        out.println("]");
+    }
+
+    private static void writeCsv(PrintWriter out, List<Benchmark> benchmarks, List<double[]> scores){
+        out.println("\"Benchmark\",\"Mode\",\"Threads\",\"Samples\",\"Score\",\"Score Error (stdev)\",\"Unit\"");
+        for (int i = 0; i < benchmarks.size(); i++){
+            double[] score = scores.get(i);
+            out.println("\"" + benchmarks.get(i).name + "\",\"thrpt\",1," + score.length + "," + mean(score) + "," + stdev(score) + ",\"ops/s\"");
+        }
+    }
+
+    private static String jsonString(String s){
+        return s.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private static String format(double value){
+        return String.format("%.3f", value);
+    }
+
+    private static double mean(double[] values){
+        double sum = 0;
+        for (double v : values){
+            sum += v;
+        }
+        return sum / values.length;
+    }
+
+    private static double stdev(double[] values){
+        if (values.length < 2){
+            return Double.NaN;
+        }
+        double mean = mean(values);
+        double sum = 0;
+        for (double v : values){
+            sum += (v - mean) * (v - mean);
+        }
+        return Math.sqrt(sum / (values.length - 1));
+    }
+}
@@ -0,0 +1,8 @@
+@echo off
+rem Runs MARS from Mars.jar, using the class data sharing archive Mars.jsa built by
+rem CreateMarsJar.bat when it is present.  Arguments are passed to MARS, e.g. "mars nc prog.asm".
+if exist "%~dp0Mars.jsa" (
+   java -XX:SharedArchiveFile="%~dp0Mars.jsa" -Xshare:auto -jar "%~dp0Mars.jar" %*
+) else (
+   java -jar "%~dp0Mars.jar" %*
+)
@@ -0,0 +1,10 @@
+#!/bin/sh
+# Runs MARS from Mars.jar, using the class data sharing archive Mars.jsa built by
+# CreateMarsJar.bat (or "java -XX:ArchiveClassesAtExit=$dir/Mars.jsa -cp $dir/Mars.jar StartupBenchmark train")
+# when it is present.  Arguments are passed to MARS, e.g. "./mars.sh nc prog.asm".
+dir=$(cd "$(dirname "$0")" && pwd)
+if [ -f "$dir/Mars.jsa" ]; then
+   exec java -XX:SharedArchiveFile="$dir/Mars.jsa" -Xshare:auto -jar "$dir/Mars.jar" "$@"
+else
+   exec java -jar "$dir/Mars.jar" "$@"
+fi
@@ -73,6 +73,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private static boolean initialized = false;
     /* The GUI being used (if any) with this simulator. */
       static VenusUI gui = null;
+      private static boolean guiRunning = false;
     /** The current MARS version number. Can't wait for "initialize()" call to get it. */
       public static final String version = "4.5";
     /** List of accepted file extensions for MIPS assembly source files. */
@@ -105,10 +106,21 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     
        public static void setGui(VenusUI g) {
          gui = g;
+         guiRunning = (g != null);
       }
        public static VenusUI getGui() {
          return gui;
       }
+   
+    /**
+     * Determine whether the graphical IDE is running.  Same as getGui() != null, but
+     * meant for code that also runs in command mode: once the JVM compiles such code,
+     * testing the VenusUI reference may load VenusUI and with it Swing, which this does not.
+     * @return true if the IDE is running, false in command mode.
+     */
+       public static boolean hasGui() {
+         return guiRunning;
+      }
     
        public static Settings getSettings() {
          return settings;
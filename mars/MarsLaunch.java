@@ -3,6 +3,10 @@
    import mars.util.*;
    import mars.mips.dump.*;
    import mars.mips.hardware.*;
+   import mars.mips.instructions.CustomAssembly;
+   import mars.mips.instructions.LanguageLoader;
+   import mars.mips.instructions.LanguageReloader;
+   import mars.mips.instructions.syscalls.RandomStreams;
    import mars.simulator.*;
    import java.io.*;
    import java.util.*;
@@ -108,6 +112,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private boolean startAtMain; // Whether to start execution at statement labeled 'main' 
       private boolean countInstructions; // Whether to count and report number of instructions executed 
       private boolean selfModifyingCode; // Whether to allow self-modifying code (e.g. write to text segment)
+      private boolean showStartupTime; // Whether to report time from JVM start to first instruction executed
+      private long firstInstructionTime; // System.currentTimeMillis() when simulation started
       private static final String rangeSeparator = "-";
       private static final int splashDuration = 2000; // time in MS to show splash screen
       private static final int memoryWordsPerLine = 4; // display 4 memory words, tab separated, per line
@@ -125,6 +131,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private ArrayList programArgumentList; // optional program args for MIPS program (becomes argc, argv)
       private int assembleErrorExitCode;  // MARS command exit code to return if assemble error occurs
       private int simulateErrorExitCode;// MARS command exit code to return if simulation error occurs
+      private RunCache runCache = null; // cache of run results, if "rc" option is used
+      private String runCacheKey = null; // key of the run being recorded into runCache
+      private ArrayList cacheSpecifications = null; // cache configurations to evaluate, if "cache" option is used
+      private CacheSweep cacheSweep = null; // evaluates them during the run
+      private ArrayList predictorSpecifications = null; // branch predictors to evaluate, if "bp" option is used
+      private BranchPredictorSweep predictorSweep = null; // evaluates them during the run
+      private File traceFile = null; // file to record memory accesses to, if "trace" option is used
+      private AccessTraceWriter traceWriter = null; // records them during the run
+      private InputProvider programInput = null; // program input given by "in" and "input" options, if any
    		
       public MarsLaunch(String[] args) {
          boolean gui = (args.length == 0);
@@ -144,6 +159,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             warningsAreErrors = false;
             startAtMain = false;
             countInstructions = false;
+            showStartupTime = false;
 				selfModifyingCode = false;
             instructionCount = 0;
             assembleErrorExitCode = 0;
@@ -156,12 +172,19 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             code = new MIPSprogram();  
             maxSteps = -1;
             out = System.out;  
-            if (parseCommandArgs(args)) {
+            if (args[0].equalsIgnoreCase("bench")) {
+               Globals.exitCode = new WorkloadBenchmark(out).run(Arrays.copyOfRange(args, 1, args.length));
+            } 
+            else if (args[0].equalsIgnoreCase("replay")) {
+               Globals.exitCode = replayTrace(Arrays.copyOfRange(args, 1, args.length));
+            } 
+            else if (parseCommandArgs(args)) {
                if (runCommand()) {
                   displayMiscellaneousPostMortem();
                   displayRegistersPostMortem();
                   displayMemoryPostMortem();
                }
+               storeRunResult();
                dumpSegments();
             }
             System.exit(Globals.exitCode);
@@ -244,6 +267,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                      //Turn off metal's use of bold fonts
                      //UIManager.put("swing.boldMetal", Boolean.FALSE);
                      new VenusUI("MARS "+Globals.version);
+                     // Pick up custom language JARs rebuilt while MARS is running
+                     LanguageReloader.start();
                   }
                }); 
          return;					
@@ -311,6 +336,94 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                }
                continue;
             } 
+            if (args[i].toLowerCase().equals("rc")) {
+               if (args.length <= (i+1)) {
+                  out.println("Run cache command line argument requires a directory name.");
+                  argsOK = false;
+               } 
+               else {
+                  runCache = new RunCache(new File(args[++i]));
+               }
+               continue;
+            }
+            if (args[i].toLowerCase().equals("cache")) {
+               if (args.length <= (i+1)) {
+                  out.println("Cache command line argument requires a cache configuration.");
+                  argsOK = false;
+               } 
+               else {
+                  try {
+                     new CacheHierarchy(args[++i]); // check it now rather than after assembly
+                     if (cacheSpecifications == null) 
+                        cacheSpecifications = new ArrayList();
+                     cacheSpecifications.add(args[i]);
+                  } 
+                      catch (IllegalArgumentException e) {
+                        out.println("Invalid cache configuration: "+e.getMessage());
+                        argsOK = false;
+                     }
+               }
+               continue;
+            }
+            if (args[i].toLowerCase().equals("bp")) {
+               if (args.length <= (i+1)) {
+                  out.println("Branch predictor command line argument requires a list of predictors.");
+                  argsOK = false;
+               } 
+               else {
+                  try {
+                     new BranchPredictorSweep(new ArrayList(Arrays.asList(new String[] {args[++i]}))); // check it now
+                     if (predictorSpecifications == null) 
+                        predictorSpecifications = new ArrayList();
+                     predictorSpecifications.add(args[i]);
+                  } 
+                      catch (IllegalArgumentException e) {
+                        out.println("Invalid branch predictor: "+e.getMessage());
+                        argsOK = false;
+                     }
+               }
+               continue;
+            }
+            if (args[i].toLowerCase().equals("trace")) {
+               if (args.length <= (i+1)) {
+                  out.println("Trace command line argument requires a file name.");
+                  argsOK = false;
+               } 
+               else {
+                  traceFile = new File(args[++i]);
+               }
+               continue;
+            }
+            if (args[i].toLowerCase().equals("in")) {
+               if (args.length <= (i+1)) {
+                  out.println("Input command line argument requires a file name.");
+                  argsOK = false;
+               } 
+               else {
+                  if (programInput == null) 
+                     programInput = new InputProvider();
+                  try {
+                     programInput.appendFile(new File(args[++i]));
+                  } 
+                      catch (IOException e) {
+                        out.println("Cannot read input file "+args[i]+": "+e.getMessage());
+                        argsOK = false;
+                     }
+               }
+               continue;
+            }
+            if (args[i].toLowerCase().equals("input")) {
+               if (args.length <= (i+1)) {
+                  out.println("Input command line argument requires a line of input.");
+                  argsOK = false;
+               } 
+               else {
+                  if (programInput == null) 
+                     programInput = new InputProvider();
+                  programInput.append(args[++i]+"\n");
+               }
+               continue;
+            }
             if (args[i].toLowerCase().equals("mc")) {
                String configName = args[++i];
                MemoryConfiguration config = MemoryConfigurations.getConfigurationByName(configName);
@@ -344,6 +457,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   catch (NumberFormatException nfe) {
                    // Let it fall thru and get handled by catch-all
                   }
+            }
+         	// Seed all pseudorandom number streams, for reproducible runs
+            if (args[i].toLowerCase().indexOf("rs")==0) {
+               String s = args[i].substring(2);					   
+               try {
+                  RandomStreams.setSeed(Long.decode(s));
+                  continue;
+               }              
+                  catch (NumberFormatException nfe) {
+                   // Let it fall thru and get handled by catch-all
+                  }
             }
             if (args[i].toLowerCase().equals("d")) { 
                Globals.debug = true;
@@ -403,6 +527,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                countInstructions = true;
                continue;
             }
+            if (args[i].toLowerCase().equals("st")) {
+               showStartupTime = true;
+               continue;
+            }
          
          
             if (args[i].indexOf("$") == 0) {
@@ -509,11 +637,46 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             if (simulate) {
                // store program args (if any) in MIPS memory
                new ProgramArgumentList(programArgumentList).storeProgramArguments();
+               Simulator.getInstance().getEventScheduler().clear();
+               // input given in advance replaces standard input
+               if (programInput != null) {
+                  SystemIO.setInputProvider(programInput);
+               }
             	// establish observer if specified  
                establishObserver();
                if (Globals.debug) {
                   out.println("--------  SIMULATION BEGINS  -----------");
                }
+               // Execution cannot be undone from the command line, so back-steps need not be recorded.
+               // This also lets the simulator use compiled blocks (see mars.simulator.BlockCompiler).
+               if (code.getBackStepper() != null) {
+                  code.getBackStepper().setEnabled(false);
+               }
+               // Replay the result of an identical earlier run if one is cached.  Dumps need
+               // the final memory contents, traces every access and startup times are measured
+               // anew, so such runs are always simulated.
+               if (runCache != null && dumpTriples == null && traceFile == null && !showStartupTime) {
+                  byte[] input;
+                  if (programInput != null) {
+                     input = programInput.getQueuedInput();
+                  } 
+                  else {
+                     input = runCache.captureStandardInput();
+                     SystemIO.setInputProvider(new InputProvider(input));
+                  }
+                  runCacheKey = runCache.computeKey(describeRun(), input);
+                  RunCache.Result result = runCache.lookup(runCacheKey);
+                  if (result != null) {
+                     runCacheKey = null;
+                     result.replay();
+                     Globals.exitCode = result.getExitCode();
+                     instructionCount = result.getInstructionCount();
+                     return programRan;
+                  }
+                  boolean messagesToErr = (out == System.err);
+                  runCache.startRecording();
+                  out = (messagesToErr) ? System.err : System.out;
+               }
                programRan = true;
                boolean done = code.simulate(maxSteps);
                if (!done) {
@@ -526,6 +689,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
             catch (ProcessingException e) {
                Globals.exitCode = (programRan) ? simulateErrorExitCode : assembleErrorExitCode;
+               if (runCacheKey != null) { // the report names source files and lines, which are not in the key
+                  runCache.markUnrepeatable();
+               }
                out.println(e.errors().generateErrorAndWarningReport());
                out.println("Processing terminated due to errors.");
             } 
@@ -559,9 +725,82 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    
       /////////////////////////////////////////////////////////////////
-   	// Required for counting instructions executed, if that option is specified.
-   	// DPS 19 July 2012
+   	// Describe the options that affect the outcome of a run or what is displayed
+   	// afterwards, for the run cache key.  See "rc" option.
+      private String describeRun() {
+         StringBuffer description = new StringBuffer();
+         ArrayList languages = LanguageLoader.getEnabledAssemblies();
+         for (int i=0; i<languages.size(); i++) {
+            CustomAssembly language = (CustomAssembly) languages.get(i);
+            description.append(language.getName());
+            File languageFile = LanguageLoader.getLanguageFile(language);
+            if (languageFile != null) { // so that a rebuilt language JAR is not taken for the old one
+               description.append('@').append(RunCache.describeFile(languageFile));
+            }
+            description.append(',');
+         }
+         description.append(";build=").append(RunCache.getBuildIdentifier())
+                    .append(";db=").append(delayedBranching)
+                    .append(";smc=").append(selfModifyingCode)
+                    .append(";mc=").append(MemoryConfigurations.getCurrentConfiguration().getConfigurationIdentifier())
+                    .append(";steps=").append(maxSteps)
+                    .append(";se=").append(simulateErrorExitCode)
+                    .append(";ic=").append(countInstructions)
+                    .append(";format=").append(displayFormat)
+                    .append(";verbose=").append(verbose)
+                    .append(";registers=").append(registerDisplayList)
+                    .append(";memory=").append(memoryDisplayList)
+                    .append(";cache=").append(cacheSpecifications)
+                    .append(";bp=").append(predictorSpecifications)
+                    .append(";me=").append(out == System.err);
+         return description.toString();
+      }
+   
+      /////////////////////////////////////////////////////////////////
+   	// Stop recording the output of a run and store its result in the run cache.
+      private void storeRunResult() {
+         if (runCacheKey == null) 
+            return;
+         boolean messagesToErr = (out == System.err);
+         runCache.stopRecording(runCacheKey, Globals.exitCode, instructionCount);
+         out = (messagesToErr) ? System.err : System.out;
+         runCacheKey = null;
+      }
+   
+      /////////////////////////////////////////////////////////////////
+   	// Required for counting instructions executed, timing startup, tracing or evaluating caches
+   	// or branch predictors,
+   	// if those options are specified.  DPS 19 July 2012
       private void establishObserver() { 
+         if (traceFile != null) {
+            try {
+               traceWriter = new AccessTraceWriter(traceFile, delayedBranching);
+               Globals.memory.setTraceWriter(traceWriter);
+            } 
+                catch (IOException e) {
+                  out.println("Cannot create trace file "+traceFile+": "+e.getMessage());
+               }
+         }
+         if (cacheSpecifications != null) {
+            cacheSweep = new CacheSweep(cacheSpecifications);
+            cacheSweep.attach();
+         }
+         if (predictorSpecifications != null) {
+            predictorSweep = new BranchPredictorSweep(predictorSpecifications);
+            predictorSweep.attach();
+         }
+         if (showStartupTime) {
+            firstInstructionTime = 0;
+            Simulator.getInstance().addObserver(
+               new Observer() {
+                  public void update(Observable o, Object obj) {
+                     if (firstInstructionTime == 0 && obj instanceof SimulatorNotice &&
+                         ((SimulatorNotice) obj).getAction() == SimulatorNotice.SIMULATOR_START) {
+                        firstInstructionTime = System.currentTimeMillis();
+                     }
+                  }
+               });
+         }
          if (countInstructions) {
             Observer instructionCounter = 
                new Observer() {
@@ -591,13 +830,102 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }		
       }
    	     		   	
+   	//////////////////////////////////////////////////////////////////////
+   	// The "replay" command:  read a trace recorded with the "trace" option and display
+   	// its access counts and, for each "cache" and "bp" option, the counts of the caches
+   	// and branch predictors, without simulating.  Returns the exit code.
+      private int replayTrace(String[] args) {
+         if (args.length == 0) {
+            out.println("Replay command requires a trace file name.");
+            return 1;
+         }
+         ArrayList specifications = new ArrayList();
+         ArrayList predictors = new ArrayList();
+         for (int i = 1; i < args.length; i++) {
+            boolean cache = args[i].equalsIgnoreCase("cache");
+            if (!(cache || args[i].equalsIgnoreCase("bp")) || i + 1 >= args.length) {
+               out.println("Unexpected replay argument "+args[i]+"; expected cache <config> or bp <predictors>.");
+               return 1;
+            }
+            ((cache) ? specifications : predictors).add(args[++i]);
+         }
+         CacheSweep sweep;
+         BranchPredictorSweep predictorSweep;
+         try {
+            sweep = new CacheSweep(specifications);
+            predictorSweep = new BranchPredictorSweep(predictors);
+         } 
+             catch (IllegalArgumentException e) {
+               out.println("Invalid cache configuration or branch predictor: "+e.getMessage());
+               return 1;
+            }
+         long[] counts = new long[3];
+         AccessTraceReader trace = null;
+         try {
+            trace = new AccessTraceReader(new File(args[0]));
+            predictorSweep.setDelayedBranching(trace.isDelayedBranching());
+            while (trace.next()) {
+               counts[trace.getType()]++;
+               sweep.access(trace.getType(), trace.getAddress());
+               if (trace.getType() == AccessTrace.FETCH) {
+                  predictorSweep.fetch(trace.getAddress(), trace.getValue());
+               }
+            }
+         } 
+             catch (IOException e) {
+               out.println("Error replaying trace: "+e.getMessage());
+               return 1;
+            }
+         finally {
+            if (trace != null) {
+               try {
+                  trace.close();
+               } 
+                   catch (IOException e) { }
+            }
+         }
+         out.println((counts[0]+counts[1]+counts[2])+" accesses: "+counts[AccessTrace.FETCH]+" fetches, "+
+                     counts[AccessTrace.LOAD]+" loads, "+counts[AccessTrace.STORE]+" stores");
+         if (!specifications.isEmpty()) {
+            out.println();
+            sweep.report(out);
+         }
+         if (!predictors.isEmpty()) {
+            out.println();
+            predictorSweep.report(out);
+         }
+         return 0;
+      }
+   
    	//////////////////////////////////////////////////////////////////////
    	// Displays any specified runtime properties. Initially just instruction count 
    	// DPS 19 July 2012  	
       private void displayMiscellaneousPostMortem() {
+         if (traceWriter != null) {
+            Globals.memory.setTraceWriter(null);
+            try {
+               traceWriter.close();
+            } 
+                catch (IOException e) {
+                  out.println("\nError writing trace file "+traceFile+": "+e.getMessage());
+               }
+            traceWriter = null;
+         }
          if (countInstructions) {
             out.println("\n"+instructionCount);
          }
+         if (showStartupTime && firstInstructionTime != 0) {
+            long jvmStartTime = java.lang.management.ManagementFactory.getRuntimeMXBean().getStartTime();
+            out.println("\n"+(firstInstructionTime - jvmStartTime));
+         }
+         if (cacheSweep != null) {
+            out.println();
+            cacheSweep.report(out);
+         }
+         if (predictorSweep != null) {
+            out.println();
+            predictorSweep.report(out);
+         }
       }
    
    	     		   	
@@ -792,6 +1120,19 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          out.println("  ae<n>  -- terminate MARS with integer exit code <n> if an assemble error occurs.");
          out.println("  ascii  -- display memory or register contents interpreted as ASCII codes.");
          out.println("      b  -- brief - do not display register/memory address along with contents");
+         out.println("  bench [<n>] [<workload> ...]  -- run the built-in benchmark workloads (or those named)");
+         out.println("            <n> times each (default 5) and display assembly lines per second, simulated");
+         out.println("            instructions per second and peak heap use for each.  Must be the first option.");
+         out.println("  bp <predictors>  -- simulate the comma separated list of branch predictors during the");
+         out.println("            run and display how often each predicted right.  Predictors are 1bit=<entries>,");
+         out.println("            2bit=<entries>, gshare=<entries>x<history bits>, tournament=<entries>x<history");
+         out.println("            bits> and btb=<entries> (branch target buffer), e.g. 2bit=1024,gshare=4096x12");
+         out.println("  cache <config>  -- simulate the caches of configuration <config> during the run and");
+         out.println("            display their hit and miss counts at the end.  Option may be repeated to");
+         out.println("            evaluate several configurations in one run.  <config> is a comma separated");
+         out.println("            list of levels L1I, L1D, L1 (unified) and L2, each <name>=<blocks>x<words>x<ways>");
+         out.println("            optionally followed by :lru or :random, :wb or :wt (write-back or -through) and");
+         out.println("            :wa or :nwa (write-allocate or not), e.g. L1I=64x4x1,L1D=64x4x2:wt,L2=512x8x4");
          out.println("      d  -- display MARS debugging statements");
          out.println("     db  -- MIPS delayed branching is enabled");
          out.println("    dec  -- display memory or register contents in decimal.");
@@ -804,6 +1145,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          out.println("      h  -- display this help.  Use by itself with no filename.");
          out.println("    hex  -- display memory or register contents in hexadecimal (default)");
          out.println("     ic  -- display count of MIPS basic instructions 'executed'");
+         out.println("     in <file>  -- the program reads the contents of <file> instead of standard input.");
+         out.println("  input <line>  -- the program reads <line>, ending with a newline, instead of standard");
+         out.println("            input.  Use quotes for a line with spaces.  Options in and input may be");
+         out.println("            repeated and combined; the program reads their input in order.");
          out.println("     mc <config>  -- set memory configuration.  Argument <config> is");
          out.println("            case-sensitive and possible values are: Default for the default");
          out.println("            32-bit address space, CompactDataAtZero for a 32KB memory with");
@@ -814,9 +1159,22 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          out.println("     nc  -- do not display copyright notice (for cleaner redirected/piped output).");
          out.println("     np  -- use of pseudo instructions and formats not permitted");
          out.println("      p  -- Project mode - assemble all files in the same directory as given file.");
+         out.println("     rc <dir>  -- cache run results in directory <dir> and reuse them for later runs of");
+         out.println("            the same assembled program with the same options and standard input.");
+         out.println("            Standard input is read to its end before the run.  Runs that open files");
+         out.println("            or use unseeded random numbers (see rs<n>) are not cached.");
+         out.println("  replay <file> [cache <config> | bp <predictors> ...]  -- instead of running a program,");
+         out.println("            read trace <file> and display its access counts and those of the caches and");
+         out.println("            branch predictors given (see cache and bp).  Must be the first option.");
+         out.println("            Tools can replay traces too.");
+         out.println("  rs<n>  -- seed all pseudorandom number generators (random syscalls, custom language");
+         out.println("            instructions, cache replacement) with integer <n>, making runs reproducible.");
          out.println("  se<n>  -- terminate MARS with integer exit code <n> if a simulation (run) error occurs.");
          out.println("     sm  -- start execution at statement with global label main, if defined");
          out.println("    smc  -- Self Modifying Code - Program can write and branch to either text or data segment");
+         out.println("     st  -- display startup time: milliseconds from JVM start to the first instruction executed");
+         out.println("  trace <file>  -- record every instruction fetch, load and store of the run to binary");
+         out.println("            trace file <file>, compressed if its name ends in .gz, for later replay.");
          out.println("    <n>  -- where <n> is an integer maximum count of steps to simulate.");
          out.println("            If 0, negative or not specified, there is no maximum.");
          out.println(" $<reg>  -- where <reg> is number or name (e.g. 5, t3, f10) of register whose ");
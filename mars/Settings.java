@@ -344,6 +344,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
    
        public void setEditorSyntaxStyleByPosition( int index, SyntaxStyle syntaxStyle ) {
+         loadEditorSyntaxStyles();
          syntaxStyleColorSettingsValues[index] = syntaxStyle.getColorAsHexString();
          syntaxStyleItalicSettingsValues[index] = syntaxStyle.isItalic();		 
          syntaxStyleBoldSettingsValues[index] = syntaxStyle.isBold();
@@ -351,12 +352,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    	
        public SyntaxStyle getEditorSyntaxStyleByPosition( int index ) {
+         loadEditorSyntaxStyles();
          return new SyntaxStyle(getColorValueByPosition(index, syntaxStyleColorSettingsValues),
                                 syntaxStyleItalicSettingsValues[index],
                                 syntaxStyleBoldSettingsValues[index]);
       }
    
        public SyntaxStyle getDefaultEditorSyntaxStyleByPosition( int index ) {
+         loadEditorSyntaxStyles();
          return new SyntaxStyle(getColorValueByPosition(index, defaultSyntaxStyleColorSettingsValues),
                                 defaultSyntaxStyleItalicSettingsValues[index],
                                 defaultSyntaxStyleBoldSettingsValues[index]);
@@ -377,6 +380,16 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             } 
       }
    	
+      	// Syntax styles are loaded on first use rather than by initialize(), because their
+      	// defaults come from SyntaxUtilities, which creates Color objects.  Command mode
+      	// never uses them and so never loads AWT.
+       private void loadEditorSyntaxStyles() {
+         if (syntaxStyleColorSettingsValues == null) {
+            initializeEditorSyntaxStyles();
+            getEditorSyntaxStyleSettingsFromPreferences();
+         }
+      }
+   	
       	// For syntax styles, need to initialize from SyntaxUtilities defaults.
       	// Taking care not to explicitly create a Color object, since it may trigger
       	// Swing initialization (that caused problems for UC Berkeley when we
@@ -1173,7 +1186,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          for (int i=0; i<colorSettingsValues.length; i++) {
             colorSettingsValues[i] = defaultColorSettingsValues[i];
          }
-         initializeEditorSyntaxStyles();
+         syntaxStyleColorSettingsValues = null; // defaults are loaded on first use
       }
    		
       // Used by all the boolean setting "setter" methods.
@@ -1314,7 +1327,6 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          for (int i=0; i<colorSettingsKeys.length; i++) {
             colorSettingsValues[i] = preferences.get(colorSettingsKeys[i], colorSettingsValues[i]);
          }
-         getEditorSyntaxStyleSettingsFromPreferences();
       }
    	
    	
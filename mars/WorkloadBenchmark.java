@@ -0,0 +1,225 @@
+   package mars;
+   import mars.mips.hardware.*;
+   import mars.mips.instructions.CustomAssembly;
+   import mars.mips.instructions.LanguageLoader;
+   import mars.mips.instructions.MipsAssembly;
+   import mars.simulator.Simulator;
+   import mars.util.SystemIO;
+   import java.io.*;
+   import java.lang.management.*;
+   import java.util.*;
+
+/**
+ * The "bench" command: runs a built-in corpus of workloads and reports, for each, how fast
+ * it is assembled and simulated.  The corpus holds sorting, recursion, matrix, string and
+ * dispatch kernels (in mars/bench) and the custom language programs shipped with MARS, each run
+ * with its language enabled.  Every workload is tokenized, assembled and simulated the
+ * given number of times (default 5) and the best rates are reported:  assembly lines per
+ * second, simulated MIPS basic instructions per second and the peak heap use, tab separated
+ * so that results from different MARS versions, JVM options or machines are easy to compare.
+ * Program output is discarded.  Programs that do not terminate are stopped after
+ * MAX_STEPS instructions.
+ *
+ * @version October 2026
+ */
+
+    public class WorkloadBenchmark {
+      private static final int DEFAULT_RUNS = 5;
+      private static final int MAX_STEPS = 2000000;
+      private static final String MIPS = "MIPS";
+      // Each workload is its name, program resource and language (null for MIPS alone).
+      private static final String[][] WORKLOADS = {
+         {"sort", "/mars/bench/sort.asm", null},
+         {"recursion", "/mars/bench/recursion.asm", null},
+         {"matrix", "/mars/bench/matrix.asm", null},
+         {"string", "/mars/bench/string.asm", null},
+         {"dispatch", "/mars/bench/dispatch.asm", null},
+         {"DemoDay(LCA)", "/DemoDay(LCA).asm", "Lobotomy Corporation Assembly"},
+         {"EnergyExtract(LCA)", "/EnergyExtract(LCA).asm", "Lobotomy Corporation Assembly"},
+         {"QliphothOrdeal", "/QliphothOrdeal.asm", "Lobotomy Corporation Assembly"},
+         {"marioKart", "/marioKart.asm", "Mario Kart"},
+         };
+
+      private PrintStream out;
+
+      /**
+       * Create the command, which writes its report to the given stream.
+       * @param out stream for the report
+       */
+       public WorkloadBenchmark(PrintStream out) {
+         this.out = out;
+      }
+
+      /**
+       * Run the workloads.
+       * @param args command arguments following "bench":  an optional number of runs and the
+       * names of the workloads to run (all of them if none are given)
+       * @return MARS exit code, 0 if every workload ran
+       */
+       public int run(String[] args) {
+         int runs = DEFAULT_RUNS;
+         ArrayList selected = new ArrayList();
+         for (int i = 0; i < args.length; i++) {
+            try {
+               runs = Integer.parseInt(args[i]);
+               continue;
+            }
+                catch (NumberFormatException e) { }
+            String[] workload = findWorkload(args[i]);
+            if (workload == null) {
+               out.println("Unknown workload " + args[i] + ".  Workloads are:" + listWorkloads());
+               return 1;
+            }
+            selected.add(workload);
+         }
+         if (runs < 1) {
+            out.println("The number of runs must be positive.");
+            return 1;
+         }
+         if (selected.isEmpty()) {
+            selected.addAll(Arrays.asList(WORKLOADS));
+         }
+         RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+         out.println("MARS " + Globals.version + " workload benchmark, " + runs + " runs, Java "
+            + System.getProperty("java.version") + " (" + runtime.getVmName() + "), JVM options: "
+            + runtime.getInputArguments());
+         out.println("workload\tlanguage\tlines\tassembly lines/s\tinstructions\tMIPS\tpeak heap MB");
+         int exitCode = 0;
+         for (int i = 0; i < selected.size(); i++) {
+            String[] workload = (String[]) selected.get(i);
+            String result;
+            try {
+               result = measure(workload, runs);
+            }
+                catch (ProcessingException e) {
+                  result = "error: " + e.errors().generateErrorReport().trim().replace('\n', ' ');
+               }
+                catch (IOException e) {
+                  result = "error: " + e.getMessage();
+               }
+            if (result.startsWith("error")) {
+               exitCode = 1;
+            }
+            out.println(workload[0] + "\t" + ((workload[2] == null) ? MIPS : workload[2]) + "\t" + result);
+         }
+         enableLanguage(null);
+         return exitCode;
+      }
+
+      // Run one workload the given number of times and return its results, tab separated.
+       private String measure(String[] workload, int runs) throws ProcessingException, IOException {
+         if (!enableLanguage(workload[2])) {
+            return "error: language not available";
+         }
+         File source = extract(workload[1]);
+         PrintStream originalOut = System.out;
+         System.gc();
+         List pools = ManagementFactory.getMemoryPoolMXBeans();
+         for (int i = 0; i < pools.size(); i++) {
+            ((MemoryPoolMXBean) pools.get(i)).resetPeakUsage();
+         }
+         long bestAssembleNanos = Long.MAX_VALUE;
+         long bestSimulateNanos = Long.MAX_VALUE;
+         int lines = 0;
+         int instructions = 0;
+         System.setOut(new PrintStream(new OutputStream() {
+                public void write(int b) { }
+                public void write(byte[] b, int off, int len) { }
+            }));
+         SystemIO.resetFiles(); // so that syscalls writing to file descriptors 1 and 2 are discarded too
+         try {
+            for (int run = 0; run < runs; run++) {
+               long start = System.nanoTime();
+               MIPSprogram program = new MIPSprogram();
+               ArrayList files = new ArrayList();
+               files.add(source.getPath());
+               ArrayList programs = program.prepareFilesForAssembly(files, source.getPath(), null);
+               program.assemble(programs, true);
+               bestAssembleNanos = Math.min(bestAssembleNanos, System.nanoTime() - start);
+               lines = program.getSourceList().size();
+               program.getBackStepper().setEnabled(false);
+               RegisterFile.resetRegisters();
+               Coprocessor1.resetRegisters();
+               Coprocessor0.resetRegisters();
+               RegisterFile.initializeProgramCounter(false);
+               start = System.nanoTime();
+               program.simulate(MAX_STEPS);
+               bestSimulateNanos = Math.min(bestSimulateNanos, System.nanoTime() - start);
+               instructions = Simulator.getInstance().getInstructionsExecuted();
+            }
+         }
+         finally {
+            System.setOut(originalOut);
+            SystemIO.resetFiles();
+            source.delete();
+         }
+         long peakHeap = 0;
+         for (int i = 0; i < pools.size(); i++) {
+            MemoryPoolMXBean pool = (MemoryPoolMXBean) pools.get(i);
+            if (pool.getType() == MemoryType.HEAP) {
+               peakHeap += pool.getPeakUsage().getUsed();
+            }
+         }
+         return lines + "\t" + Math.round(lines * 1e9 / bestAssembleNanos) + "\t" + instructions + "\t"
+            + String.format("%.2f", instructions * 1e3 / bestSimulateNanos) + "\t"
+            + String.format("%.1f", peakHeap / (1024.0 * 1024.0));
+      }
+
+      // Enable the named language, or MIPS alone if the name is null, as the language switcher
+      // does.  Returns false if there is no such language.
+       private static boolean enableLanguage(String name) {
+         CustomAssembly language = null;
+         for (CustomAssembly c : LanguageLoader.assemblyList) {
+            if ((name == null) ? (c instanceof MipsAssembly) : c.getName().equals(name)) {
+               language = c;
+            }
+         }
+         if (language == null) {
+            return false;
+         }
+         for (CustomAssembly c : LanguageLoader.assemblyList) {
+            c.enabled = (c == language);
+         }
+         Globals.instructionSet.populate();
+         return true;
+      }
+
+      // Copy a program resource to a temporary file, which the assembler reads.
+       private static File extract(String resource) throws IOException {
+         InputStream in = WorkloadBenchmark.class.getResourceAsStream(resource);
+         if (in == null) {
+            throw new IOException("program " + resource + " not found");
+         }
+         File file = File.createTempFile("workload", ".asm");
+         OutputStream fileOut = new FileOutputStream(file);
+         try {
+            byte[] buffer = new byte[8192];
+            int length;
+            while ((length = in.read(buffer)) != -1) {
+               fileOut.write(buffer, 0, length);
+            }
+         }
+         finally {
+            in.close();
+            fileOut.close();
+         }
+         return file;
+      }
+
+       private static String[] findWorkload(String name) {
+         for (int i = 0; i < WORKLOADS.length; i++) {
+            if (WORKLOADS[i][0].equalsIgnoreCase(name)) {
+               return WORKLOADS[i];
+            }
+         }
+         return null;
+      }
+
+       private static String listWorkloads() {
+         String names = "";
+         for (int i = 0; i < WORKLOADS.length; i++) {
+            names += " " + WORKLOADS[i][0];
+         }
+         return names;
+      }
+   }
@@ -0,0 +1,32 @@
+# Dispatch workload: calls two small functions 20,000 times through a table of
+# function addresses, with jalr naming a link register other than $ra as well
+# as the default, and prints the sum of their results (60000).  The loop runs
+# long enough for its blocks to be compiled, so it also checks that compiled
+# jalr writes the link register; a wrong sum ends the run with a trap.
+
+        .data
+table:  .word  add1, add2
+
+        .text
+main:   li    $s0, 0
+        li    $s1, 20000
+        la    $s2, table
+loop:   lw    $t0, 0($s2)
+        jalr  $t1, $t0          # link in $t1
+        lw    $t0, 4($s2)
+        jalr  $t0               # link in $ra
+        addiu $s1, $s1, -1
+        bgtz  $s1, loop
+        li    $t2, 60000
+        tne   $s0, $t2          # wrong sum
+        move  $a0, $s0
+        li    $v0, 1
+        syscall
+        li    $v0, 10
+        syscall
+
+add1:   addiu $s0, $s0, 1
+        jr    $t1
+
+add2:   addiu $s0, $s0, 2
+        jr    $ra
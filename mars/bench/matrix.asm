@@ -0,0 +1,145 @@
+# Matrix workload: multiplies two 40x40 integer matrices, C = A * B, with
+# A[i][j] = i + j and B[i][j] = i * j, then multiplies two 16x16
+# double precision matrices the same way, and prints the trace of each
+# product.
+
+        .data
+n:      .word 40
+a:      .space 6400
+b:      .space 6400
+c:      .space 6400
+m:      .word 16
+fa:     .space 2048
+fb:     .space 2048
+fc:     .space 2048
+space:  .asciiz " "
+
+        .text
+main:   lw    $s0, n
+        la    $s1, a
+        la    $s2, b
+        la    $s3, c
+        li    $t0, 0                # fill A and B
+init_i: li    $t1, 0
+init_j: mul   $t2, $t0, $s0
+        addu  $t2, $t2, $t1
+        sll   $t2, $t2, 2
+        addu  $t3, $t0, $t1
+        addu  $t4, $s1, $t2
+        sw    $t3, 0($t4)
+        mul   $t3, $t0, $t1
+        addu  $t4, $s2, $t2
+        sw    $t3, 0($t4)
+        addiu $t1, $t1, 1
+        blt   $t1, $s0, init_j
+        addiu $t0, $t0, 1
+        blt   $t0, $s0, init_i
+
+        sll   $s4, $s0, 2           # row length in bytes
+        li    $t0, 0                # C = A * B
+mul_i:  li    $t1, 0
+mul_j:  li    $t5, 0                # sum
+        mul   $t6, $t0, $s4
+        addu  $t6, $s1, $t6         # &A[i][0]
+        sll   $t7, $t1, 2
+        addu  $t7, $s2, $t7         # &B[0][j]
+        li    $t2, 0
+mul_k:  lw    $t8, 0($t6)
+        lw    $t9, 0($t7)
+        mul   $t8, $t8, $t9
+        addu  $t5, $t5, $t8
+        addiu $t6, $t6, 4
+        addu  $t7, $t7, $s4
+        addiu $t2, $t2, 1
+        blt   $t2, $s0, mul_k
+        mul   $t3, $t0, $s4
+        sll   $t4, $t1, 2
+        addu  $t3, $t3, $t4
+        addu  $t3, $s3, $t3
+        sw    $t5, 0($t3)
+        addiu $t1, $t1, 1
+        blt   $t1, $s0, mul_j
+        addiu $t0, $t0, 1
+        blt   $t0, $s0, mul_i
+
+        li    $a0, 0                # trace of C
+        li    $t0, 0
+        addiu $t1, $s4, 4
+        move  $t2, $s3
+trace:  lw    $t3, 0($t2)
+        addu  $a0, $a0, $t3
+        addu  $t2, $t2, $t1
+        addiu $t0, $t0, 1
+        blt   $t0, $s0, trace
+        li    $v0, 1
+        syscall
+        la    $a0, space
+        li    $v0, 4
+        syscall
+
+        lw    $s0, m                # floating point: fill FA and FB
+        la    $s1, fa
+        la    $s2, fb
+        la    $s3, fc
+        li    $t0, 0
+finit_i: li   $t1, 0
+finit_j: mul  $t2, $t0, $s0
+        addu  $t2, $t2, $t1
+        sll   $t2, $t2, 3
+        addu  $t3, $t0, $t1
+        mtc1  $t3, $f0
+        cvt.d.w $f0, $f0
+        addu  $t4, $s1, $t2
+        s.d   $f0, 0($t4)
+        mul   $t3, $t0, $t1
+        mtc1  $t3, $f0
+        cvt.d.w $f0, $f0
+        addu  $t4, $s2, $t2
+        s.d   $f0, 0($t4)
+        addiu $t1, $t1, 1
+        blt   $t1, $s0, finit_j
+        addiu $t0, $t0, 1
+        blt   $t0, $s0, finit_i
+
+        sll   $s4, $s0, 3
+        li    $t0, 0                # FC = FA * FB
+fmul_i: li    $t1, 0
+fmul_j: mtc1  $zero, $f2
+        cvt.d.w $f2, $f2            # sum
+        mul   $t6, $t0, $s4
+        addu  $t6, $s1, $t6
+        sll   $t7, $t1, 3
+        addu  $t7, $s2, $t7
+        li    $t2, 0
+fmul_k: l.d   $f4, 0($t6)
+        l.d   $f6, 0($t7)
+        mul.d $f4, $f4, $f6
+        add.d $f2, $f2, $f4
+        addiu $t6, $t6, 8
+        addu  $t7, $t7, $s4
+        addiu $t2, $t2, 1
+        blt   $t2, $s0, fmul_k
+        mul   $t3, $t0, $s4
+        sll   $t4, $t1, 3
+        addu  $t3, $t3, $t4
+        addu  $t3, $s3, $t3
+        s.d   $f2, 0($t3)
+        addiu $t1, $t1, 1
+        blt   $t1, $s0, fmul_j
+        addiu $t0, $t0, 1
+        blt   $t0, $s0, fmul_i
+
+        mtc1  $zero, $f12           # trace of FC
+        cvt.d.w $f12, $f12
+        li    $t0, 0
+        addiu $t1, $s4, 8
+        move  $t2, $s3
+ftrace: l.d   $f4, 0($t2)
+        add.d $f12, $f12, $f4
+        addu  $t2, $t2, $t1
+        addiu $t0, $t0, 1
+        blt   $t0, $s0, ftrace
+        li    $v0, 3
+        syscall
+        li    $v0, 10
+        syscall
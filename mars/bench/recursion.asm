@@ -0,0 +1,32 @@
+# Recursion workload: computes fib(24) with the doubly recursive definition,
+# which makes about 75,000 calls, each saving its frame on the stack, and
+# prints the result (46368).
+
+        .text
+main:   li    $a0, 24
+        jal   fib
+        move  $a0, $v0
+        li    $v0, 1
+        syscall
+        li    $v0, 10
+        syscall
+
+fib:    slti  $t0, $a0, 2
+        beq   $t0, $zero, recurse
+        move  $v0, $a0
+        jr    $ra
+recurse:
+        addiu $sp, $sp, -12
+        sw    $ra, 8($sp)
+        sw    $a0, 4($sp)
+        addiu $a0, $a0, -1
+        jal   fib
+        sw    $v0, 0($sp)
+        lw    $a0, 4($sp)
+        addiu $a0, $a0, -2
+        jal   fib
+        lw    $t0, 0($sp)
+        addu  $v0, $v0, $t0
+        lw    $ra, 8($sp)
+        addiu $sp, $sp, 12
+        jr    $ra
@@ -0,0 +1,53 @@
+# Sorting workload: fills an array with 1000 pseudo-random integers (linear
+# congruential generator), sorts it with insertion sort, then verifies the
+# order and prints the number of elements out of place (0 when sorted).
+
+        .data
+count:  .word 1000
+array:  .space 4000
+
+        .text
+main:   la    $s0, array
+        lw    $s1, count
+        li    $t0, 12345            # generator state
+        li    $t1, 0
+fill:   mul   $t0, $t0, 1103515245
+        addiu $t0, $t0, 12345
+        srl   $t2, $t0, 8
+        sll   $t3, $t1, 2
+        addu  $t3, $s0, $t3
+        sw    $t2, 0($t3)
+        addiu $t1, $t1, 1
+        blt   $t1, $s1, fill
+
+        li    $t1, 1                # insertion sort
+outer:  bge   $t1, $s1, check
+        sll   $t3, $t1, 2
+        addu  $t3, $s0, $t3
+        lw    $t4, 0($t3)           # key
+        move  $t5, $t3
+inner:  beq   $t5, $s0, place
+        lw    $t6, -4($t5)
+        bleu  $t6, $t4, place
+        sw    $t6, 0($t5)
+        addiu $t5, $t5, -4
+        j     inner
+place:  sw    $t4, 0($t5)
+        addiu $t1, $t1, 1
+        j     outer
+
+check:  li    $a0, 0
+        li    $t1, 1
+next:   bge   $t1, $s1, done
+        sll   $t3, $t1, 2
+        addu  $t3, $s0, $t3
+        lw    $t4, -4($t3)
+        lw    $t5, 0($t3)
+        bleu  $t4, $t5, ok
+        addiu $a0, $a0, 1
+ok:     addiu $t1, $t1, 1
+        j     next
+done:   li    $v0, 1
+        syscall
+        li    $v0, 10
+        syscall
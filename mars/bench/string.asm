@@ -0,0 +1,97 @@
+# String workload: 150 times, builds a 200 character string, measures its
+# length, reverses it in place, counts the vowels and compares it with the
+# unreversed copy byte by byte.  Prints the total vowel count and the total
+# number of differing positions.
+
+        .data
+source: .asciiz "the quick brown fox jumps over the lazy dog while five boxing wizards jump quickly "
+buffer: .space 256
+copy:   .space 256
+vowels: .asciiz "aeiou"
+space:  .asciiz " "
+
+        .text
+main:   li    $s0, 150              # rounds
+        li    $s1, 0                # vowel total
+        li    $s2, 0                # difference total
+round:  la    $t0, source           # build: repeat source into buffer and copy
+        la    $t1, buffer
+        la    $t2, copy
+        li    $t3, 200
+build:  lbu   $t4, 0($t0)
+        bne   $t4, $zero, store
+        la    $t0, source
+        lbu   $t4, 0($t0)
+store:  sb    $t4, 0($t1)
+        sb    $t4, 0($t2)
+        addiu $t0, $t0, 1
+        addiu $t1, $t1, 1
+        addiu $t2, $t2, 1
+        addiu $t3, $t3, -1
+        bgtz  $t3, build
+        sb    $zero, 0($t1)
+        sb    $zero, 0($t2)
+
+        la    $a0, buffer           # strlen
+        jal   strlen
+        move  $t9, $v0
+
+        la    $t0, buffer           # reverse in place
+        addu  $t1, $t0, $t9
+        addiu $t1, $t1, -1
+reverse: bge  $t0, $t1, count
+        lbu   $t2, 0($t0)
+        lbu   $t3, 0($t1)
+        sb    $t3, 0($t0)
+        sb    $t2, 0($t1)
+        addiu $t0, $t0, 1
+        addiu $t1, $t1, -1
+        j     reverse
+
+count:  la    $t0, buffer           # count vowels
+cnext:  lbu   $t2, 0($t0)
+        beq   $t2, $zero, compare
+        la    $t3, vowels
+vnext:  lbu   $t4, 0($t3)
+        beq   $t4, $zero, cskip
+        bne   $t4, $t2, vstep
+        addiu $s1, $s1, 1
+        j     cskip
+vstep:  addiu $t3, $t3, 1
+        j     vnext
+cskip:  addiu $t0, $t0, 1
+        j     cnext
+
+compare: la   $t0, buffer           # compare with the copy
+        la    $t1, copy
+dnext:  lbu   $t2, 0($t0)
+        beq   $t2, $zero, rdone
+        lbu   $t3, 0($t1)
+        beq   $t2, $t3, dsame
+        addiu $s2, $s2, 1
+dsame:  addiu $t0, $t0, 1
+        addiu $t1, $t1, 1
+        j     dnext
+
+rdone:  addiu $s0, $s0, -1
+        bgtz  $s0, round
+
+        move  $a0, $s1
+        li    $v0, 1
+        syscall
+        la    $a0, space
+        li    $v0, 4
+        syscall
+        move  $a0, $s2
+        li    $v0, 1
+        syscall
+        li    $v0, 10
+        syscall
+
+strlen: move  $v0, $zero
+slnext: addu  $t0, $a0, $v0
+        lbu   $t0, 0($t0)
+        beq   $t0, $zero, sldone
+        addiu $v0, $v0, 1
+        j     slnext
+sldone: jr    $ra
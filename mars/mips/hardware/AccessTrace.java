@@ -0,0 +1,79 @@
+   package mars.mips.hardware;
+
+/**
+ * Constants and shared state of the binary memory access trace format, written by
+ * AccessTraceWriter.  A trace is the magic bytes "MARSTRC", a version byte, a flags byte
+ * (DELAYED_BRANCHING if the program ran with delayed branching, which decides where the
+ * outcome of a branch is seen) and then one record per instruction fetch, load or store,
+ * in the order of the accesses, ending with an END record.  A whole trace may be compressed with GZIP.
+ * <p>
+ * A record starts with a header byte:  bits 0-1 hold the access type (FETCH, LOAD, STORE
+ * or END), bits 2-3 the base 2 logarithm of the access length in bytes, bit 4 (SEQUENTIAL)
+ * is set for a fetch from the word after the previous fetch, and bit 5 (VALUE_REPEATED) is
+ * set if the value is the one most recently recorded for the same word.  Next, unless
+ * SEQUENTIAL, comes the address as the difference from the previous fetch address (for a
+ * fetch) or data address (for a load or store), and then, unless VALUE_REPEATED, the
+ * value.  Both are zigzag encoded variable length integers, 7 bits per byte with the
+ * high bit set on all but the last byte.  The pc of a load or store is that of the most
+ * recent fetch, the instruction which made it.
+ * <p>
+ * Whether a value is repeated is decided with a table of the last value of each word,
+ * indexed by word address modulo VALUE_TABLE_SIZE, which writer and reader keep alike.
+ *
+ * @version October 2026
+ */
+
+    public class AccessTrace {
+      /** Access type: instruction fetch */
+      public static final int FETCH = 0;
+      /** Access type: data load */
+      public static final int LOAD = 1;
+      /** Access type: data store */
+      public static final int STORE = 2;
+      /** Record type marking the end of the trace */
+      public static final int END = 3;
+
+      static final byte[] MAGIC = {'M', 'A', 'R', 'S', 'T', 'R', 'C'};
+      static final int VERSION = 2;
+      static final int DELAYED_BRANCHING = 0x01;
+      static final int TYPE_MASK = 0x03;
+      static final int LENGTH_SHIFT = 2;
+      static final int SEQUENTIAL = 0x10;
+      static final int VALUE_REPEATED = 0x20;
+      static final int VALUE_TABLE_SIZE = 4096;
+
+      private int[] tableAddresses = new int[VALUE_TABLE_SIZE];
+      private int[] tableValues = new int[VALUE_TABLE_SIZE];
+      private boolean[] tableValid = new boolean[VALUE_TABLE_SIZE];
+      int lastFetchAddress, lastDataAddress;
+
+      AccessTrace() {
+      }
+
+      // Whether the value is the last one recorded for the word of this address, and
+      // record it as the last one.
+       boolean repeatValue(int address, int value) {
+         int index = (address >>> 2) & (VALUE_TABLE_SIZE - 1);
+         int word = address & ~3;
+         boolean repeated = tableValid[index] && tableAddresses[index] == word && tableValues[index] == value;
+         tableValid[index] = true;
+         tableAddresses[index] = word;
+         tableValues[index] = value;
+         return repeated;
+      }
+
+      // The last value recorded for the word of this address.  Only valid after
+      // repeatValue() has been called for that word.
+       int lastValue(int address) {
+         return tableValues[(address >>> 2) & (VALUE_TABLE_SIZE - 1)];
+      }
+
+      /**
+       * Name of an access type, for reports.
+       * @param type FETCH, LOAD or STORE
+       * @return "fetch", "load" or "store"
+       */
+       public static String typeName(int type) {
+         return (type == FETCH) ? "fetch" : (type == LOAD) ? "load" : (type == STORE) ? "store" : "end";
+      }
+   }
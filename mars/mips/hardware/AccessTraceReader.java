@@ -0,0 +1,163 @@
+   package mars.mips.hardware;
+   import java.io.*;
+   import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads a memory access trace written by AccessTraceWriter, compressed or not, one access
+ * at a time.  next() advances to the next access, whose details are then available from
+ * the getters or as the MemoryAccessNotice an observer would have received.
+ *
+ * @version October 2026
+ */
+
+    public class AccessTraceReader extends AccessTrace {
+      private static final int BUFFER_SIZE = 1 << 16;
+
+      private InputStream in;
+      private byte[] bytes = new byte[BUFFER_SIZE];
+      private int position, limit;
+      private int type, address, length, value, pc;
+      private long recordCount;
+      private boolean ended;
+      private boolean delayedBranching;
+
+      /**
+       * Open a trace file and check its header.
+       * @param file the trace file
+       * @throws IOException if the file cannot be read or is not a MARS trace
+       */
+       public AccessTraceReader(File file) throws IOException {
+         in = new FileInputStream(file);
+         int first = in.read();
+         int second = in.read();
+         in.close();
+         in = new FileInputStream(file);
+         if (first == 0x1f && second == 0x8b) {
+            in = new GZIPInputStream(in, BUFFER_SIZE);
+         }
+         try {
+            for (int i = 0; i < MAGIC.length; i++) {
+               if (readByte() != MAGIC[i]) {
+                  throw new IOException(file + " is not a MARS memory access trace");
+               }
+            }
+            int version = readByte();
+            if (version != VERSION) {
+               throw new IOException(file + " is a version " + version + " trace, this MARS reads version " + VERSION);
+            }
+            delayedBranching = (readByte() & DELAYED_BRANCHING) != 0;
+         }
+             catch (IOException e) {
+               in.close();
+               throw e;
+            }
+      }
+
+      /**
+       * Advance to the next access.
+       * @return false if the trace has ended
+       * @throws IOException if the trace cannot be read or is cut short
+       */
+       public boolean next() throws IOException {
+         if (ended) {
+            return false;
+         }
+         int header = readByte();
+         type = header & TYPE_MASK;
+         if (type == END) {
+            ended = true;
+            return false;
+         }
+         length = 1 << ((header >>> LENGTH_SHIFT) & 3);
+         if (type == FETCH) {
+            address = ((header & SEQUENTIAL) != 0) ? lastFetchAddress + 4 : lastFetchAddress + readVarint();
+            lastFetchAddress = pc = address;
+         }
+         else {
+            address = lastDataAddress + readVarint();
+            lastDataAddress = address;
+         }
+         value = ((header & VALUE_REPEATED) != 0) ? lastValue(address) : readVarint();
+         repeatValue(address, value);
+         recordCount++;
+         return true;
+      }
+
+      /** @return type of the current access:  AccessTrace.FETCH, LOAD or STORE */
+       public int getType() {
+         return type;
+      }
+
+      /** @return address of the current access */
+       public int getAddress() {
+         return address;
+      }
+
+      /** @return length in bytes of the current access:  1, 2 or 4 */
+       public int getLength() {
+         return length;
+      }
+
+      /** @return value read or written by the current access, or the instruction fetched */
+       public int getValue() {
+         return value;
+      }
+
+      /** @return address of the instruction that made the current access */
+       public int getPc() {
+         return pc;
+      }
+
+      /** @return true if the traced program ran with delayed branching */
+       public boolean isDelayedBranching() {
+         return delayedBranching;
+      }
+
+      /** @return number of accesses read so far */
+       public long getRecordCount() {
+         return recordCount;
+      }
+
+      /**
+       * The current access as the notice memory observers received for it.  The notice
+       * belongs to the calling thread, so tools accept it as coming from MIPS only if that
+       * thread's name starts with "MIPS" (see AccessNotice.accessIsFromMIPS()).
+       * @return notice of the current access
+       */
+       public MemoryAccessNotice getNotice() {
+         return new MemoryAccessNotice((type == STORE) ? AccessNotice.WRITE : AccessNotice.READ, address, length, value);
+      }
+
+      /**
+       * Close the trace file.
+       * @throws IOException if closing fails
+       */
+       public void close() throws IOException {
+         in.close();
+      }
+
+       private int readByte() throws IOException {
+         if (position == limit) {
+            limit = in.read(bytes, 0, BUFFER_SIZE);
+            position = 0;
+            if (limit <= 0) {
+               limit = 0;
+               throw new EOFException("memory access trace ends unexpectedly");
+            }
+         }
+         return bytes[position++] & 0xFF;
+      }
+
+      // Read a zigzag encoded variable length integer.
+       private int readVarint() throws IOException {
+         int zigzag = 0;
+         int shift = 0;
+         int b;
+         do {
+            b = readByte();
+            zigzag |= (b & 0x7F) << shift;
+            shift += 7;
+         } while ((b & 0x80) != 0 && shift < 35);
+         return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+   }
@@ -0,0 +1,239 @@
+   package mars.mips.hardware;
+   import mars.mips.instructions.Instruction;
+   import java.io.*;
+   import java.nio.ByteBuffer;
+   import java.nio.channels.Channels;
+   import java.nio.channels.FileChannel;
+   import java.util.concurrent.ArrayBlockingQueue;
+   import java.util.concurrent.BlockingQueue;
+   import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records memory accesses to a binary trace file in the format described by AccessTrace.
+ * Memory calls record() directly for every instruction fetch, load and store once the
+ * writer is installed with Memory.setTraceWriter(), without creating notices or going
+ * through observers.  Records are encoded into buffers on the simulation thread, and full
+ * buffers are written to the file's channel by a separate thread, so the simulation only
+ * waits if it gets a whole set of buffers ahead of the disk.  A file whose name ends in
+ * ".gz" is compressed with GZIP, also on the writing thread.
+ *
+ * @version October 2026
+ */
+
+    public class AccessTraceWriter extends AccessTrace {
+      private static final int BUFFER_SIZE = 1 << 16;
+      private static final int BUFFERS = 4;
+      private static final int MAX_RECORD_LENGTH = 11; // header and two 5 byte integers
+      private static final ByteBuffer END_OF_BUFFERS = ByteBuffer.allocate(0);
+
+      private BlockingQueue fullBuffers = new ArrayBlockingQueue(BUFFERS + 1);
+      private BlockingQueue freeBuffers = new ArrayBlockingQueue(BUFFERS);
+      private ByteBuffer buffer;
+      private byte[] bytes;
+      private int position;
+      private long recordCount;
+      private Thread writerThread;
+      private volatile IOException writeError;
+      private boolean closed;
+
+      /**
+       * Create the trace file and start the thread that writes to it.
+       * @param file the trace file, compressed if its name ends in ".gz"
+       * @param delayedBranching true if the program runs with delayed branching
+       * @throws IOException if the file cannot be created
+       */
+       public AccessTraceWriter(File file, boolean delayedBranching) throws IOException {
+         final FileChannel channel = new FileOutputStream(file).getChannel();
+         final boolean compress = file.getName().toLowerCase().endsWith(".gz");
+         for (int i = 0; i < BUFFERS; i++) {
+            freeBuffers.add(ByteBuffer.allocate(BUFFER_SIZE));
+         }
+         takeBuffer();
+         System.arraycopy(MAGIC, 0, bytes, 0, MAGIC.length);
+         bytes[MAGIC.length] = (byte) VERSION;
+         bytes[MAGIC.length + 1] = (byte) ((delayedBranching) ? DELAYED_BRANCHING : 0);
+         position = MAGIC.length + 2;
+         writerThread =
+            new Thread("MARS trace writer") {
+                public void run() {
+                  writeBuffers(channel, compress);
+               }
+            };
+         writerThread.setDaemon(true);
+         writerThread.start();
+      }
+
+      /**
+       * Record one memory access.
+       * @param type AccessTrace.FETCH, LOAD or STORE
+       * @param address the address accessed
+       * @param length length of the access in bytes:  1, 2 or 4
+       * @param value the value read or written, or the binary instruction fetched
+       */
+       public void record(int type, int address, int length, int value) {
+         if (closed) {
+            return;
+         }
+         if (position > BUFFER_SIZE - MAX_RECORD_LENGTH) {
+            passBuffer();
+         }
+         int header = type | (((length == 4) ? 2 : (length == 2) ? 1 : 0) << LENGTH_SHIFT);
+         int delta;
+         if (type == FETCH) {
+            delta = address - lastFetchAddress;
+            lastFetchAddress = address;
+            if (delta == Instruction.INSTRUCTION_LENGTH) {
+               header |= SEQUENTIAL;
+            }
+         }
+         else {
+            delta = address - lastDataAddress;
+            lastDataAddress = address;
+         }
+         if (repeatValue(address, value)) {
+            header |= VALUE_REPEATED;
+         }
+         bytes[position++] = (byte) header;
+         if ((header & SEQUENTIAL) == 0) {
+            writeVarint(delta);
+         }
+         if ((header & VALUE_REPEATED) == 0) {
+            writeVarint(value);
+         }
+         recordCount++;
+      }
+
+      // Append a zigzag encoded variable length integer.
+       private void writeVarint(int n) {
+         int zigzag = (n << 1) ^ (n >> 31);
+         while ((zigzag & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+         }
+         bytes[position++] = (byte) zigzag;
+      }
+
+      /** @return number of accesses recorded */
+       public long getRecordCount() {
+         return recordCount;
+      }
+
+      /**
+       * End the trace, wait until it has all been written and close the file.  Later
+       * records are ignored.
+       * @throws IOException if writing the trace failed
+       */
+       public void close() throws IOException {
+         if (closed) {
+            return;
+         }
+         if (position == BUFFER_SIZE) { // the last record filled the buffer
+            passBuffer();
+         }
+         bytes[position++] = (byte) END;
+         closed = true;
+         passBuffer();
+         putBuffer(fullBuffers, END_OF_BUFFERS);
+         boolean interrupted = false;
+         while (writerThread.isAlive()) {
+            try {
+               writerThread.join();
+            }
+                catch (InterruptedException e) {
+                  interrupted = true;
+               }
+         }
+         if (interrupted) {
+            Thread.currentThread().interrupt();
+         }
+         if (writeError != null) {
+            throw writeError;
+         }
+      }
+
+      // Hand the current buffer to the writing thread and continue in a free one.
+       private void passBuffer() {
+         buffer.position(0);
+         buffer.limit(position);
+         putBuffer(fullBuffers, buffer);
+         if (!closed) {
+            takeBuffer();
+         }
+      }
+
+       private void takeBuffer() {
+         while (true) {
+            try {
+               buffer = (ByteBuffer) freeBuffers.take();
+               break;
+            }
+                catch (InterruptedException e) { } // the simulation is stopped by its own flag, not interrupts
+         }
+         buffer.clear();
+         bytes = buffer.array();
+         position = 0;
+      }
+
+       private static void putBuffer(BlockingQueue queue, ByteBuffer b) {
+         while (true) {
+            try {
+               queue.put(b);
+               return;
+            }
+                catch (InterruptedException e) { }
+         }
+      }
+
+      // Body of the writing thread:  write each full buffer to the channel and return it
+      // to the free ones, until the end.  After an error buffers are only returned.
+       private void writeBuffers(FileChannel channel, boolean compress) {
+         OutputStream compressed = null;
+         try {
+            if (compress) {
+               compressed = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            }
+         }
+             catch (IOException e) {
+               writeError = e;
+            }
+         while (true) {
+            ByteBuffer b;
+            try {
+               b = (ByteBuffer) fullBuffers.take();
+            }
+                catch (InterruptedException e) {
+                  continue;
+               }
+            if (b == END_OF_BUFFERS) {
+               break;
+            }
+            if (writeError == null) {
+               try {
+                  if (compressed != null) {
+                     compressed.write(b.array(), 0, b.limit());
+                  }
+                  else {
+                     while (b.hasRemaining()) {
+                        channel.write(b);
+                     }
+                  }
+               }
+                   catch (IOException e) {
+                     writeError = e;
+                  }
+            }
+            freeBuffers.offer(b);
+         }
+         try {
+            if (compressed != null) {
+               compressed.close();
+            }
+            channel.close();
+         }
+             catch (IOException e) {
+               if (writeError == null) {
+                  writeError = e;
+               }
+            }
+      }
+   }
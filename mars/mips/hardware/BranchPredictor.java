@@ -0,0 +1,235 @@
+   package mars.mips.hardware;
+   import java.util.Arrays;
+
+/**
+ * Model of a branch predictor, for comparing prediction schemes.  The kinds are
+ * <ul>
+ * <li><tt>1bit</tt>:  a table of 1-bit entries indexed by branch address, each predicting
+ * the last outcome of the branches that map to it;
+ * <li><tt>2bit</tt>:  a table of 2-bit saturating counters indexed by branch address,
+ * predicting taken when 2 or 3.  (The BHT Simulator tool's 2-bit history instead changes
+ * its prediction after two mispredictions in a row.);
+ * <li><tt>gshare</tt>:  2-bit counters indexed by branch address exclusive-or the global
+ * history of recent branch outcomes;
+ * <li><tt>tournament</tt>:  a 2bit and a gshare predictor of the same size, and a table of
+ * 2-bit counters indexed by branch address choosing which of them to follow;
+ * <li><tt>btb</tt>:  a direct mapped branch target buffer whose entries hold the branch
+ * address, its last target and a 2-bit counter, predicting the target when present and
+ * the counter is 2 or 3, and the next instruction otherwise.
+ * </ul>
+ * The direction predictors are given conditional branches only and count a prediction
+ * correct if the direction is right.  The branch target buffer is given jumps as well and
+ * counts a prediction correct if the predicted next instruction is the one executed.
+ * <p>
+ * A predictor is described by a specification <tt>kind=entries</tt>, or
+ * <tt>kind=entries</tt><b>x</b><tt>bits</tt> for gshare and tournament, whose global
+ * history has <tt>bits</tt> outcomes.  Entries must be a power of 2.  For example
+ * <tt>2bit=1024</tt> or <tt>gshare=4096x12</tt>.  The state is kept in primitive arrays.
+ *
+ * @version October 2026
+ * @see BranchPredictorSweep
+ */
+
+    public class BranchPredictor {
+      /** Kind:  1-bit entries indexed by branch address */
+      public static final int ONE_BIT = 0;
+      /** Kind:  2-bit saturating counters indexed by branch address */
+      public static final int TWO_BIT = 1;
+      /** Kind:  2-bit counters indexed by branch address and global history */
+      public static final int GSHARE = 2;
+      /** Kind:  2bit and gshare predictors with a chooser */
+      public static final int TOURNAMENT = 3;
+      /** Kind:  branch target buffer */
+      public static final int BTB = 4;
+
+      private static final String[] KIND_NAMES = {"1bit", "2bit", "gshare", "tournament", "btb"};
+      private static final int MAX_HISTORY_BITS = 30;
+
+      private String specification;
+      private int kind, entries, mask, historyBits, historyMask;
+      private byte[] counters, globalCounters, choosers;
+      private int[] tags, targets;
+      private int history;
+      private long branchCount, correctCount;
+
+      /**
+       * Create the predictor described by a specification.
+       * @param specification the specification, e.g. "2bit=1024" or "gshare=4096x12"
+       * @throws IllegalArgumentException if the specification is not valid
+       */
+       public BranchPredictor(String specification) {
+         this.specification = specification;
+         int equals = specification.indexOf('=');
+         if (equals < 0) {
+            throw new IllegalArgumentException("branch predictor \"" + specification + "\" must be <kind>=<entries>, e.g. 2bit=1024");
+         }
+         String name = specification.substring(0, equals).trim().toLowerCase();
+         kind = Arrays.asList(KIND_NAMES).indexOf(name);
+         if (kind < 0) {
+            throw new IllegalArgumentException("unknown branch predictor kind \"" + name + "\", expected 1bit, 2bit, gshare, tournament or btb");
+         }
+         String[] sizes = specification.substring(equals + 1).toLowerCase().split("x");
+         boolean global = (kind == GSHARE || kind == TOURNAMENT);
+         if (sizes.length != ((global) ? 2 : 1)) {
+            throw new IllegalArgumentException("branch predictor " + name + " must give " +
+               ((global) ? "entries x history bits, e.g. " + name + "=4096x12" : "its entries, e.g. " + name + "=1024"));
+         }
+         entries = parseNumber(name, sizes[0]);
+         if (entries <= 0 || (entries & (entries - 1)) != 0) {
+            throw new IllegalArgumentException("branch predictor " + name + ": entries must be a power of 2");
+         }
+         mask = entries - 1;
+         if (global) {
+            historyBits = parseNumber(name, sizes[1]);
+            if (historyBits < 1 || historyBits > MAX_HISTORY_BITS) {
+               throw new IllegalArgumentException("branch predictor " + name + ": history bits must be 1 to " + MAX_HISTORY_BITS);
+            }
+            historyMask = (1 << historyBits) - 1;
+         }
+         counters = new byte[entries];
+         if (kind == TOURNAMENT) {
+            globalCounters = new byte[entries];
+            choosers = new byte[entries];
+         }
+         if (kind == BTB) {
+            tags = new int[entries];
+            targets = new int[entries];
+         }
+         reset();
+      }
+
+       private static int parseNumber(String name, String number) {
+         try {
+            return Integer.parseInt(number.trim());
+         }
+             catch (NumberFormatException e) {
+               throw new IllegalArgumentException("branch predictor " + name + ": \"" + number + "\" is not a number");
+            }
+      }
+
+      /**
+       * Predict a branch or jump, count whether the prediction was right and learn its outcome.
+       * @param address address of the branch or jump
+       * @param conditional true for a conditional branch, false for a jump
+       * @param taken true if control went to the target rather than the next instruction
+       * @param target address control went to if taken
+       */
+       public void branch(int address, boolean conditional, boolean taken, int target) {
+         int index = (address >>> 2) & mask;
+         boolean correct;
+         switch (kind) {
+            case ONE_BIT:
+               if (!conditional) {
+                  return;
+               }
+               correct = (counters[index] != 0) == taken;
+               counters[index] = (byte) ((taken) ? 1 : 0);
+               break;
+            case TWO_BIT:
+               if (!conditional) {
+                  return;
+               }
+               correct = (counters[index] >= 2) == taken;
+               counters[index] = count(counters[index], taken);
+               break;
+            case GSHARE:
+               if (!conditional) {
+                  return;
+               }
+               int shared = ((address >>> 2) ^ history) & mask;
+               correct = (counters[shared] >= 2) == taken;
+               counters[shared] = count(counters[shared], taken);
+               history = ((history << 1) | ((taken) ? 1 : 0)) & historyMask;
+               break;
+            case TOURNAMENT:
+               if (!conditional) {
+                  return;
+               }
+               int global = ((address >>> 2) ^ history) & mask;
+               boolean localRight = (counters[index] >= 2) == taken;
+               boolean globalRight = (globalCounters[global] >= 2) == taken;
+               correct = (choosers[index] >= 2) ? globalRight : localRight;
+               if (localRight != globalRight) {
+                  choosers[index] = count(choosers[index], globalRight);
+               }
+               counters[index] = count(counters[index], taken);
+               globalCounters[global] = count(globalCounters[global], taken);
+               history = ((history << 1) | ((taken) ? 1 : 0)) & historyMask;
+               break;
+            default: // BTB
+               boolean present = (counters[index] != 0 && tags[index] == address);
+               boolean predictTaken = present && counters[index] >= 2;
+               correct = (predictTaken == taken) && (!taken || targets[index] == target);
+               if (present) {
+                  counters[index] = (byte) Math.max(1, count(counters[index], taken));
+                  if (taken) {
+                     targets[index] = target;
+                  }
+               }
+               else if (taken) {
+                  tags[index] = address;
+                  targets[index] = target;
+                  counters[index] = 2;
+               }
+               break;
+         }
+         branchCount++;
+         if (correct) {
+            correctCount++;
+         }
+      }
+
+      // Count a 2-bit saturating counter up if taken, down if not.
+       private static byte count(byte counter, boolean taken) {
+         return (byte) ((taken) ? Math.min(counter + 1, 3) : Math.max(counter - 1, 0));
+      }
+
+      /**
+       * Forget all outcomes and zero the counts.  Counters start weakly not taken, and the
+       * branch target buffer empty.
+       */
+       public void reset() {
+         Arrays.fill(counters, (byte) ((kind == ONE_BIT || kind == BTB) ? 0 : 1));
+         if (kind == TOURNAMENT) {
+            Arrays.fill(globalCounters, (byte) 1);
+            Arrays.fill(choosers, (byte) 1);
+         }
+         history = 0;
+         branchCount = correctCount = 0;
+      }
+
+      /** @return the specification this predictor was created from */
+       public String getSpecification() {
+         return specification;
+      }
+
+      /** @return kind of predictor, ONE_BIT, TWO_BIT, GSHARE, TOURNAMENT or BTB */
+       public int getKind() {
+         return kind;
+      }
+
+      /** @return number of predictions made */
+       public long getBranchCount() {
+         return branchCount;
+      }
+
+      /** @return number of correct predictions */
+       public long getCorrectCount() {
+         return correctCount;
+      }
+
+      /** @return number of mispredictions */
+       public long getMispredictionCount() {
+         return branchCount - correctCount;
+      }
+
+      /** @return fraction of predictions that were correct, 0 if there were none */
+       public double getAccuracy() {
+         return (branchCount == 0) ? 0.0 : correctCount / (double) branchCount;
+      }
+
+      /** @return the specification */
+       public String toString() {
+         return specification;
+      }
+   }
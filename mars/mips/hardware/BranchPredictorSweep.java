@@ -0,0 +1,138 @@
+   package mars.mips.hardware;
+   import mars.Globals;
+   import java.io.PrintStream;
+   import java.util.ArrayList;
+   import java.util.Observable;
+   import java.util.Observer;
+
+/**
+ * Evaluates any number of branch predictors in one pass over the instructions executed by
+ * a program, for the "bp" command option and the BHT Simulator tool.  Branches and jumps
+ * are found by decoding each instruction fetched, and their outcome by the address of the
+ * next instruction fetched (after the delay slot if delayed branching is enabled), so
+ * the fetches can come from a running program, by adding this as an observer of memory
+ * (see attach()), or from a recorded trace through fetch().
+ *
+ * @version October 2026
+ * @see BranchPredictor
+ */
+
+    public class BranchPredictorSweep implements Observer {
+      private BranchPredictor[] predictors;
+      private boolean delayedBranching;
+      private int pendingAddress;     // address of the branch or jump awaiting its outcome
+      private boolean pendingConditional;
+      private int fetchesToOutcome;   // fetches until the one that shows the outcome, 0 if none pending
+
+      /**
+       * Create the predictors to evaluate.
+       * @param specifications list of String, each a comma separated list of BranchPredictor
+       * specifications
+       * @throws IllegalArgumentException if a specification is not valid
+       */
+       public BranchPredictorSweep(ArrayList specifications) {
+         ArrayList list = new ArrayList();
+         for (int i = 0; i < specifications.size(); i++) {
+            String[] parts = ((String) specifications.get(i)).split(",");
+            for (int j = 0; j < parts.length; j++) {
+               list.add(new BranchPredictor(parts[j].trim()));
+            }
+         }
+         predictors = (BranchPredictor[]) list.toArray(new BranchPredictor[list.size()]);
+         delayedBranching = Globals.getSettings().getDelayedBranchingEnabled();
+      }
+
+      /**
+       * Observe the text segments, so that every instruction fetched by the program being
+       * simulated is applied.
+       */
+       public void attach() {
+         try {
+            Globals.memory.addObserver(this, Memory.textBaseAddress, Memory.textLimitAddress);
+            Globals.memory.addObserver(this, Memory.kernelTextBaseAddress, Memory.kernelTextLimitAddress);
+         }
+             catch (AddressErrorException e) { } // cannot occur, the ranges are the segments
+      }
+
+      /**
+       * Apply one instruction fetch:  resolve the outcome of a pending branch or jump, and
+       * if this instruction is one, wait for its outcome.
+       * @param address address of the instruction
+       * @param instruction the binary instruction
+       */
+       public void fetch(int address, int instruction) {
+         if (fetchesToOutcome > 0 && --fetchesToOutcome == 0) {
+            int next = pendingAddress + ((delayedBranching) ? 8 : 4);
+            for (int i = 0; i < predictors.length; i++) {
+               predictors[i].branch(pendingAddress, pendingConditional, address != next, address);
+            }
+         }
+         int opcode = instruction >>> 26;
+         int rs = (instruction >>> 21) & 0x1F;
+         int rt = (instruction >>> 16) & 0x1F;
+         int funct = instruction & 0x3F;
+         boolean conditional = (opcode >= 0x04 && opcode <= 0x07) || (opcode >= 0x14 && opcode <= 0x17) // beq bne blez bgtz and likely
+            || (opcode == 0x01 && (rt <= 0x03 || (rt >= 0x10 && rt <= 0x13))) // bltz bgez and likely, and link
+            || (opcode == 0x11 && rs == 0x08); // bc1f bc1t
+         boolean jump = opcode == 0x02 || opcode == 0x03 || (opcode == 0 && (funct == 0x08 || funct == 0x09)); // j jal jr jalr
+         if (conditional || jump) {
+            pendingAddress = address;
+            pendingConditional = conditional;
+            fetchesToOutcome = (delayedBranching) ? 2 : 1;
+         }
+      }
+
+      /**
+       * Apply a memory access notice from the running MIPS program.
+       * @param memory the memory, not used
+       * @param notice the notice; only reads in the text segments by MIPS are fetches
+       */
+       public void update(Observable memory, Object notice) {
+         if (!(notice instanceof MemoryAccessNotice) || !((MemoryAccessNotice) notice).accessIsFromMIPS()) {
+            return;
+         }
+         MemoryAccessNotice m = (MemoryAccessNotice) notice;
+         if (m.getAccessType() == AccessNotice.READ &&
+             (Memory.inTextSegment(m.getAddress()) || Memory.inKernelTextSegment(m.getAddress()))) {
+            fetch(m.getAddress(), m.getValue());
+         }
+      }
+
+      /**
+       * Set whether outcomes are seen after the delay slot, for fetches that come from a
+       * trace rather than from the current settings.  Call before the first fetch.
+       * @param delayedBranching true if the fetches were made with delayed branching
+       */
+       public void setDelayedBranching(boolean delayedBranching) {
+         this.delayedBranching = delayedBranching;
+      }
+
+      /**
+       * Forget all outcomes and zero the counts of every predictor.
+       */
+       public void reset() {
+         for (int i = 0; i < predictors.length; i++) {
+            predictors[i].reset();
+         }
+         fetchesToOutcome = 0;
+         delayedBranching = Globals.getSettings().getDelayedBranchingEnabled();
+      }
+
+      /** @return the predictors, in the order of their specifications */
+       public BranchPredictor[] getPredictors() {
+         return predictors;
+      }
+
+      /**
+       * Write the counts of every predictor, one line each, tab separated.
+       * @param out the stream written to
+       */
+       public void report(PrintStream out) {
+         out.println("branch predictor\tpredictions\tcorrect\tmispredictions\taccuracy");
+         for (int i = 0; i < predictors.length; i++) {
+            BranchPredictor p = predictors[i];
+            out.println(p.getSpecification() + "\t" + p.getBranchCount() + "\t" + p.getCorrectCount() +
+               "\t" + p.getMispredictionCount() + "\t" + String.format("%.4f", p.getAccuracy()));
+         }
+      }
+   }
@@ -0,0 +1,286 @@
+   package mars.mips.hardware;
+   import mars.mips.instructions.syscalls.RandomStreams;
+   import java.util.Arrays;
+   import java.util.Random;
+
+/**
+ * Model of one level of cache, for simulating cache performance.  Only tags are kept, not
+ * memory contents.  The organization is given by the number of blocks, the block size and
+ * the set size (1 for direct mapping, the number of blocks for full associativity), each a
+ * power of 2, so the set and tag are found by shifting and masking the address.  Tags, LRU
+ * times and valid/dirty state are kept in primitive arrays indexed by block number, with
+ * the blocks of a set next to each other, and accesses allocate no objects.
+ * <p>
+ * Writes are handled by the write policy (write-back, or write-through to the next level)
+ * and allocation policy (write-allocate, or write misses go to the next level only).
+ * If a next level is set, misses read the block from it and write-backs and
+ * write-throughs are passed to it, so caches can be chained into a hierarchy (see
+ * CacheHierarchy).
+ *
+ * @version October 2026
+ */
+
+    public class Cache {
+      /** Replacement policy: replace the least recently used block of the set. */
+      public static final int LRU = 0;
+      /** Replacement policy: replace a randomly chosen block of the set. */
+      public static final int RANDOM = 1;
+
+      private static final byte VALID = 1, DIRTY = 2;
+
+      private String name, randomStreamName;
+      private int numberOfBlocks, blockSizeInWords, setSizeInBlocks, numberOfSets;
+      private int replacementPolicy;
+      private boolean writeBack, writeAllocate;
+      private int offsetBits, setBits, setMask;
+      private int[] tags;
+      private long[] lastAccessTimes;
+      private byte[] states;
+      private long time;
+      private Random random;
+      private Cache nextLevel;
+      private int lastBlock;
+      private long accessCount, hitCount, readMissCount, writeMissCount, writeBackCount;
+
+      /**
+       * Create an empty cache.
+       * @param name name of the cache, e.g. "L1D".  It also names the random number stream
+       * used for random replacement (see RandomStreams) unless another name is set.
+       * @param numberOfBlocks number of blocks, a power of 2
+       * @param blockSizeInWords block size in words, a power of 2
+       * @param setSizeInBlocks blocks per set, a power of 2 no larger than numberOfBlocks
+       * @param replacementPolicy LRU or RANDOM
+       * @param writeBack true for write-back, false for write-through
+       * @param writeAllocate true if a write miss brings the block into the cache
+       * @throws IllegalArgumentException if a size is not a power of 2 or the set is larger
+       * than the cache
+       */
+       public Cache(String name, int numberOfBlocks, int blockSizeInWords, int setSizeInBlocks,
+                    int replacementPolicy, boolean writeBack, boolean writeAllocate) {
+         if (!isPowerOfTwo(numberOfBlocks) || !isPowerOfTwo(blockSizeInWords) ||
+             !isPowerOfTwo(setSizeInBlocks) || setSizeInBlocks > numberOfBlocks) {
+            throw new IllegalArgumentException("cache " + name + ": block count, block size and set size must be powers of 2, set size at most block count");
+         }
+         this.name = name;
+         this.randomStreamName = name;
+         this.numberOfBlocks = numberOfBlocks;
+         this.blockSizeInWords = blockSizeInWords;
+         this.setSizeInBlocks = setSizeInBlocks;
+         this.numberOfSets = numberOfBlocks / setSizeInBlocks;
+         this.replacementPolicy = replacementPolicy;
+         this.writeBack = writeBack;
+         this.writeAllocate = writeAllocate;
+         this.offsetBits = log2(blockSizeInWords * Memory.WORD_LENGTH_BYTES);
+         this.setBits = log2(numberOfSets);
+         this.setMask = numberOfSets - 1;
+         this.tags = new int[numberOfBlocks];
+         this.lastAccessTimes = new long[numberOfBlocks];
+         this.states = new byte[numberOfBlocks];
+         this.lastBlock = -1;
+      }
+
+      /**
+       * Set the next level of the hierarchy, which supplies missed blocks and receives
+       * write-backs and write-throughs.
+       * @param nextLevel the next level, or null if it is memory
+       */
+       public void setNextLevel(Cache nextLevel) {
+         this.nextLevel = nextLevel;
+      }
+
+      /**
+       * Set the name of the random number stream used for random replacement, so that caches
+       * of the same name in different hierarchies use different streams.
+       * @param randomStreamName name of the stream (see RandomStreams)
+       */
+       public void setRandomStreamName(String randomStreamName) {
+         this.randomStreamName = randomStreamName;
+         this.random = null;
+      }
+
+      /**
+       * Access the cache, applying its placement, replacement, write and allocation policies.
+       * @param address the memory address accessed
+       * @param write true for a write (store), false for a read (load or fetch)
+       * @return true if the access hit
+       */
+       public boolean access(int address, boolean write) {
+         accessCount++;
+         time++;
+         int blockAddress = address >>> offsetBits;
+         int set = blockAddress & setMask;
+         int tag = blockAddress >>> setBits;
+         int first = set * setSizeInBlocks;
+         int last = first + setSizeInBlocks;
+         for (int block = first; block < last; block++) {
+            if (tags[block] == tag && (states[block] & VALID) != 0) {
+               hitCount++;
+               lastAccessTimes[block] = time;
+               lastBlock = block;
+               if (write) {
+                  write(block, address);
+               }
+               return true;
+            }
+         }
+         if (write) {
+            writeMissCount++;
+            if (!writeAllocate) {
+               if (nextLevel != null) {
+                  nextLevel.access(address, true);
+               }
+               lastBlock = -1;
+               return false;
+            }
+         }
+         else {
+            readMissCount++;
+         }
+         int block = selectBlockToReplace(first, last);
+         if (states[block] == (VALID | DIRTY)) {
+            writeBackCount++;
+            if (nextLevel != null) {
+               nextLevel.access(((tags[block] << setBits) | set) << offsetBits, true);
+            }
+         }
+         if (nextLevel != null) {
+            nextLevel.access(address, false);
+         }
+         tags[block] = tag;
+         states[block] = VALID;
+         lastAccessTimes[block] = time;
+         lastBlock = block;
+         if (write) {
+            write(block, address);
+         }
+         return false;
+      }
+
+      // A write to a block in the cache.
+       private void write(int block, int address) {
+         if (writeBack) {
+            states[block] |= DIRTY;
+         }
+         else if (nextLevel != null) {
+            nextLevel.access(address, true);
+         }
+      }
+
+      // An empty block of the set if there is one, otherwise one chosen by the replacement policy.
+       private int selectBlockToReplace(int first, int last) {
+         for (int block = first; block < last; block++) {
+            if (states[block] == 0) {
+               return block;
+            }
+         }
+         if (replacementPolicy == RANDOM) {
+            if (random == null) { // stream seeded with 0 unless a machine seed is set, for reproducible runs
+               random = RandomStreams.getStream(randomStreamName, new Long(0));
+            }
+            return first + random.nextInt(last - first);
+         }
+         int replace = first;
+         for (int block = first + 1; block < last; block++) {
+            if (lastAccessTimes[block] < lastAccessTimes[replace]) {
+               replace = block;
+            }
+         }
+         return replace;
+      }
+
+      /**
+       * Empty the cache and zero its counts.
+       */
+       public void reset() {
+         Arrays.fill(states, (byte) 0);
+         Arrays.fill(lastAccessTimes, 0);
+         time = 0;
+         lastBlock = -1;
+         accessCount = hitCount = readMissCount = writeMissCount = writeBackCount = 0;
+      }
+
+      /** @return name of the cache */
+       public String getName() {
+         return name;
+      }
+
+      /** @return number of blocks */
+       public int getNumberOfBlocks() {
+         return numberOfBlocks;
+      }
+
+      /** @return block size in words */
+       public int getBlockSizeInWords() {
+         return blockSizeInWords;
+      }
+
+      /** @return number of blocks in a set */
+       public int getSetSizeInBlocks() {
+         return setSizeInBlocks;
+      }
+
+      /** @return cache size in bytes */
+       public int getCacheSizeInBytes() {
+         return numberOfBlocks * blockSizeInWords * Memory.WORD_LENGTH_BYTES;
+      }
+
+      /** @return the block accessed by the last access, or -1 if it was a write miss that did not allocate */
+       public int getLastBlock() {
+         return lastBlock;
+      }
+
+      /** @return number of accesses */
+       public long getAccessCount() {
+         return accessCount;
+      }
+
+      /** @return number of hits */
+       public long getHitCount() {
+         return hitCount;
+      }
+
+      /** @return number of misses */
+       public long getMissCount() {
+         return readMissCount + writeMissCount;
+      }
+
+      /** @return number of read misses */
+       public long getReadMissCount() {
+         return readMissCount;
+      }
+
+      /** @return number of write misses */
+       public long getWriteMissCount() {
+         return writeMissCount;
+      }
+
+      /** @return number of dirty blocks written back when replaced */
+       public long getWriteBackCount() {
+         return writeBackCount;
+      }
+
+      /** @return fraction of accesses that hit, 0 if there were none */
+       public double getHitRate() {
+         return (accessCount == 0) ? 0.0 : hitCount / (double) accessCount;
+      }
+
+      /**
+       * @return description of the organization and policies, e.g.
+       * "L1D 128 blocks x 4 words, 2-way, LRU, write-back, write-allocate"
+       */
+       public String toString() {
+         return name + " " + numberOfBlocks + " blocks x " + blockSizeInWords + " words, " +
+            ((setSizeInBlocks == 1) ? "direct mapped" : (numberOfSets == 1) ? "fully associative" : setSizeInBlocks + "-way") +
+            ", " + ((replacementPolicy == RANDOM) ? "random" : "LRU") +
+            ", " + ((writeBack) ? "write-back" : "write-through") +
+            ", " + ((writeAllocate) ? "write-allocate" : "no-write-allocate");
+      }
+
+       private static boolean isPowerOfTwo(int n) {
+         return n > 0 && (n & (n - 1)) == 0;
+      }
+
+       private static int log2(int n) {
+         return 31 - Integer.numberOfLeadingZeros(n);
+      }
+   }
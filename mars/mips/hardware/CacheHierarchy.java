@@ -0,0 +1,181 @@
+   package mars.mips.hardware;
+   import java.util.ArrayList;
+
+/**
+ * A cache configuration: first level instruction and data caches (or one unified first
+ * level cache) and an optional second level cache shared by both.  Instruction fetches go
+ * to the instruction cache, loads and stores to the data cache, and their misses,
+ * write-backs and write-throughs to the second level.
+ * <p>
+ * A configuration is described by a specification, a comma separated list of levels
+ * <tt>name=blocks</tt><b>x</b><tt>words</tt><b>x</b><tt>ways</tt> followed by optional
+ * policies, each preceded by a colon:  <tt>lru</tt> or <tt>random</tt> replacement (default
+ * lru), <tt>wb</tt> write-back or <tt>wt</tt> write-through (default wb), <tt>wa</tt>
+ * write-allocate or <tt>nwa</tt> no-write-allocate (default wa).  The level names are L1I,
+ * L1D, L1 (unified) and L2.  For example
+ * <tt>L1I=64x4x1,L1D=64x4x2:wt:nwa,L2=512x8x4:random</tt>.
+ *
+ * @version October 2026
+ * @see Cache
+ */
+
+    public class CacheHierarchy {
+      /** Access type: instruction fetch */
+      public static final int FETCH = AccessTrace.FETCH;
+      /** Access type: data load */
+      public static final int LOAD = AccessTrace.LOAD;
+      /** Access type: data store */
+      public static final int STORE = AccessTrace.STORE;
+
+      private String specification;
+      private Cache instructionCache, dataCache, secondLevelCache;
+      private Cache[] levels;
+
+      /**
+       * Create the caches of the configuration described by a specification.
+       * @param specification the specification, e.g. "L1D=128x4x2,L2=1024x8x4"
+       * @throws IllegalArgumentException if the specification is not valid
+       */
+       public CacheHierarchy(String specification) {
+         this.specification = specification;
+         Cache unified = null;
+         String[] parts = specification.split(",");
+         for (int i = 0; i < parts.length; i++) {
+            int equals = parts[i].indexOf('=');
+            if (equals < 0) {
+               throw new IllegalArgumentException("cache level \"" + parts[i] + "\" needs a name, e.g. L1D=" + parts[i]);
+            }
+            String level = parts[i].substring(0, equals).trim().toUpperCase();
+            Cache cache = parseLevel(level, parts[i].substring(equals + 1).trim());
+            cache.setRandomStreamName("Cache " + specification + " " + level);
+            if (level.equals("L1I") && instructionCache == null) {
+               instructionCache = cache;
+            }
+            else if (level.equals("L1D") && dataCache == null) {
+               dataCache = cache;
+            }
+            else if (level.equals("L1") && unified == null) {
+               unified = cache;
+            }
+            else if (level.equals("L2") && secondLevelCache == null) {
+               secondLevelCache = cache;
+            }
+            else {
+               throw new IllegalArgumentException("cache level " + level + " is repeated or is not L1I, L1D, L1 or L2");
+            }
+         }
+         if (unified != null) {
+            if (instructionCache != null || dataCache != null) {
+               throw new IllegalArgumentException("a unified L1 cache cannot be combined with L1I or L1D");
+            }
+            instructionCache = dataCache = unified;
+         }
+         if (instructionCache == null && dataCache == null) {
+            throw new IllegalArgumentException("cache configuration " + specification + " has no first level (L1I, L1D or L1)");
+         }
+         ArrayList list = new ArrayList();
+         if (unified != null) {
+            list.add(unified);
+         }
+         else {
+            if (instructionCache != null) {
+               list.add(instructionCache);
+            }
+            if (dataCache != null) {
+               list.add(dataCache);
+            }
+         }
+         if (secondLevelCache != null) {
+            if (instructionCache != null) {
+               instructionCache.setNextLevel(secondLevelCache);
+            }
+            if (dataCache != null) {
+               dataCache.setNextLevel(secondLevelCache);
+            }
+            list.add(secondLevelCache);
+         }
+         levels = (Cache[]) list.toArray(new Cache[list.size()]);
+      }
+
+      // Parse "blocks x words x ways[:policy...]" for the named level.
+       private static Cache parseLevel(String level, String description) {
+         String[] fields = description.split(":");
+         String[] sizes = fields[0].toLowerCase().split("x");
+         if (sizes.length != 3) {
+            throw new IllegalArgumentException("cache level " + level + " must give blocks x words per block x blocks per set, e.g. 128x4x2");
+         }
+         int[] values = new int[3];
+         for (int i = 0; i < 3; i++) {
+            try {
+               values[i] = Integer.parseInt(sizes[i].trim());
+            }
+                catch (NumberFormatException e) {
+                  throw new IllegalArgumentException("cache level " + level + ": \"" + sizes[i] + "\" is not a number");
+               }
+         }
+         int replacement = Cache.LRU;
+         boolean writeBack = true;
+         boolean writeAllocate = true;
+         for (int i = 1; i < fields.length; i++) {
+            String policy = fields[i].trim().toLowerCase();
+            if (policy.equals("lru")) {
+               replacement = Cache.LRU;
+            }
+            else if (policy.equals("random")) {
+               replacement = Cache.RANDOM;
+            }
+            else if (policy.equals("wb")) {
+               writeBack = true;
+            }
+            else if (policy.equals("wt")) {
+               writeBack = false;
+            }
+            else if (policy.equals("wa")) {
+               writeAllocate = true;
+            }
+            else if (policy.equals("nwa")) {
+               writeAllocate = false;
+            }
+            else {
+               throw new IllegalArgumentException("cache level " + level + ": unknown policy \"" + policy + "\", expected lru, random, wb, wt, wa or nwa");
+            }
+         }
+         return new Cache(level, values[0], values[1], values[2], replacement, writeBack, writeAllocate);
+      }
+
+      /**
+       * Apply a memory access to the caches.  Fetches are ignored if there is no instruction
+       * cache, and loads and stores if there is no data cache.
+       * @param type FETCH, LOAD or STORE
+       * @param address the memory address accessed
+       */
+       public void access(int type, int address) {
+         if (type == FETCH) {
+            if (instructionCache != null) {
+               instructionCache.access(address, false);
+            }
+         }
+         else if (dataCache != null) {
+            dataCache.access(address, type == STORE);
+         }
+      }
+
+      /**
+       * Empty the caches and zero their counts.
+       */
+       public void reset() {
+         for (int i = 0; i < levels.length; i++) {
+            levels[i].reset();
+         }
+      }
+
+      /** @return the specification this configuration was created from */
+       public String getSpecification() {
+         return specification;
+      }
+
+      /** @return the caches, first level first */
+       public Cache[] getLevels() {
+         return levels;
+      }
+   }
@@ -0,0 +1,95 @@
+   package mars.mips.hardware;
+   import mars.Globals;
+   import java.io.PrintStream;
+   import java.util.ArrayList;
+   import java.util.Observable;
+   import java.util.Observer;
+
+/**
+ * Evaluates any number of cache configurations in one pass over the memory accesses of a
+ * program, for the "cache" command option.  Each access is applied to every configuration.
+ * The accesses come either from a running program, by adding this as an observer of
+ * memory (see attach()), or from a recorded trace through access().
+ * Reads in the text segments are taken to be instruction fetches.
+ *
+ * @version October 2026
+ * @see CacheHierarchy
+ */
+
+    public class CacheSweep implements Observer {
+      private CacheHierarchy[] hierarchies;
+
+      /**
+       * Create the configurations to evaluate.
+       * @param specifications list of String, each a CacheHierarchy specification
+       * @throws IllegalArgumentException if a specification is not valid
+       */
+       public CacheSweep(ArrayList specifications) {
+         hierarchies = new CacheHierarchy[specifications.size()];
+         for (int i = 0; i < hierarchies.length; i++) {
+            hierarchies[i] = new CacheHierarchy((String) specifications.get(i));
+         }
+      }
+
+      /**
+       * Observe all of memory, so that every access of the program being simulated is applied.
+       */
+       public void attach() {
+         Globals.memory.addObserver(this);
+      }
+
+      /**
+       * Apply one memory access to every configuration.
+       * @param type CacheHierarchy.FETCH, LOAD or STORE
+       * @param address the memory address accessed
+       */
+       public void access(int type, int address) {
+         for (int i = 0; i < hierarchies.length; i++) {
+            hierarchies[i].access(type, address);
+         }
+      }
+
+      /**
+       * Apply a memory access notice from the running MIPS program.
+       * @param memory the memory, not used
+       * @param notice the notice; other than MemoryAccessNotices from MIPS are ignored
+       */
+       public void update(Observable memory, Object notice) {
+         if (!(notice instanceof MemoryAccessNotice) || !((MemoryAccessNotice) notice).accessIsFromMIPS()) {
+            return;
+         }
+         MemoryAccessNotice m = (MemoryAccessNotice) notice;
+         int address = m.getAddress();
+         if (m.getAccessType() == AccessNotice.WRITE) {
+            access(CacheHierarchy.STORE, address);
+         }
+         else if (Memory.inTextSegment(address) || Memory.inKernelTextSegment(address)) {
+            access(CacheHierarchy.FETCH, address);
+         }
+         else {
+            access(CacheHierarchy.LOAD, address);
+         }
+      }
+
+      /** @return the configurations, in the order of their specifications */
+       public CacheHierarchy[] getHierarchies() {
+         return hierarchies;
+      }
+
+      /**
+       * Write the counts of every cache of every configuration, one line per cache, tab separated.
+       * @param out the stream written to
+       */
+       public void report(PrintStream out) {
+         out.println("cache configuration\tlevel\taccesses\thits\tmisses\thit rate\twrite-backs");
+         for (int i = 0; i < hierarchies.length; i++) {
+            Cache[] levels = hierarchies[i].getLevels();
+            for (int j = 0; j < levels.length; j++) {
+               Cache c = levels[j];
+               out.println(hierarchies[i].getSpecification() + "\t" + c.getName() + "\t" + c.getAccessCount() +
+                  "\t" + c.getHitCount() + "\t" + c.getMissCount() + "\t" +
+                  String.format("%.4f", c.getHitRate()) + "\t" + c.getWriteBackCount());
+            }
+         }
+      }
+   }
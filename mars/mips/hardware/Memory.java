@@ -102,8 +102,19 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     // key for insertion into the tree would be based on Comparable using both low 
     // and high end of address range, but retrieval from the tree has to be based
     // on target address being ANYWHERE IN THE RANGE (not an exact key match).
+    //
+    // Instead, observables whose range covers at most OBSERVER_INDEX_PAGES pages of 4096 bytes
+    // are also indexed by page, so that an access only has to look at the observables of its
+    // own page.  This makes a few watched words (e.g. debugger watchpoints) nearly free.  Only
+    // while some observable has a wider range is the whole collection searched.  Page entries
+    // are arrays that are replaced, never modified, so the simulator thread can use them while
+    // observers are added or removed from another thread.
       
       Collection observables = getNewMemoryObserversCollection();
+      private static final int OBSERVER_INDEX_PAGES = 16;
+      private Hashtable observablesByPage = new Hashtable(); // Integer page -> MemoryObservable[]
+      private volatile int wideObservables = 0;
+      private AccessTraceWriter traceWriter = null; // records every access if set, see setTraceWriter()
    
     // The data segment is allocated in blocks of 1024 ints (4096 bytes).  Each block is
     // referenced by a "block table" entry, and the table has 1024 entries.  The capacity
@@ -163,6 +174,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
       private static final int MMIO_TABLE_LENGTH = 16; // Each entry of table points to a 4K block.
       private int[][] memoryMapBlockTable;
+   
+    // Devices registered for ranges of the memory map (see addDevice()) are indexed by page of
+    // the memory map, so that a load or store there finds its device without any search.  As
+    // for observers, page entries are arrays that are replaced, never modified.  The table is
+    // rebuilt when memory is cleared, since the memory map may have moved.
+      private ArrayList devices = new ArrayList(); // DeviceRange, in order of registration
+      private DeviceRange[][] devicesByPage = new DeviceRange[MMIO_TABLE_LENGTH][];
+      private boolean inDevice = false; // true while a device is being called
    	    
     // I use a similar scheme for storing instructions.  MIPS text segment ranges from
     // 0x00400000 all the way to data segment (0x10000000) a range of about 250 MB!  So
@@ -174,6 +193,18 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private static final int TEXT_BLOCK_TABLE_LENGTH = 1024; // Each entry of table points to a block.
       private ProgramStatement[][] textBlockTable;
       private ProgramStatement[][] kernelTextBlockTable;
+    // Incremented whenever a statement is stored in a text segment, so that simulator caches
+    // derived from the text segment (see mars.simulator.BasicBlockCache) know to discard themselves.
+      private int textGeneration = 0;
+    // Write generations: a counter incremented by every store, and for each 4K page the value
+    // of the counter at the last store into it.  The page table has two levels, indexed by
+    // address bits 31-22 and 21-12, whose second level is allocated on first store.  Displays
+    // and tools that poll memory compare these with the generations they last saw to skip
+    // memory that has not been written since.
+      private static final int WRITE_PAGE_SHIFT = 12;
+      private int writeGeneration = 0;
+      private int clearGeneration = 0;
+      private int[][] pageWriteGenerations = new int[1 << (32 - 10 - WRITE_PAGE_SHIFT)][];
     
     // Set "top" address boundary to go with each "base" address.  This determines permissable
     // address range for user program.  Currently limit is 4MB, or 1024 * 1024 * 4 bytes based
@@ -292,6 +323,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          kernelDataBlockTable  = new int[BLOCK_TABLE_LENGTH][];      
          stackBlockTable = new int[BLOCK_TABLE_LENGTH][];
          memoryMapBlockTable = new int[MMIO_TABLE_LENGTH][];
+         indexDevices();
+         textGeneration++;
+         pageWriteGenerations = new int[pageWriteGenerations.length][];
+         clearGeneration = ++writeGeneration;
          System.gc(); // call garbage collector on any Table memory just deallocated. 	  
       }  
      
@@ -391,6 +426,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
            // memory mapped I/O.
             relativeByteAddress = address - memoryMapBaseAddress;
             oldValue = storeBytesInTable(memoryMapBlockTable, relativeByteAddress, length, value);
+            writeDevice(relativeByteAddress, address, length, value);
          }
          else if (inKernelDataSegment(address)) {
            // in kernel data segment.  Will write one byte at a time, w/o regard to boundaries.
@@ -408,6 +444,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             throw new AddressErrorException("address out of range ",
                Exceptions.ADDRESS_EXCEPTION_STORE, address);
          }
+         markWritten(address);
          notifyAnyObservers(AccessNotice.WRITE, address, length, value);
          return oldValue;
       }
@@ -460,6 +497,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
            // memory mapped I/O.
             relative = (address - memoryMapBaseAddress) >> 2; // convert byte address to word
             oldValue = storeWordInTable(memoryMapBlockTable, relative, value);
+            writeDevice(address - memoryMapBaseAddress, address, WORD_LENGTH_BYTES, value);
          }
          else if (inKernelDataSegment(address)) {
            // in data segment
@@ -477,6 +515,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             throw new AddressErrorException("store address out of range ",
                Exceptions.ADDRESS_EXCEPTION_STORE,	address);
          }
+         markWritten(address);
          notifyAnyObservers(AccessNotice.WRITE, address, WORD_LENGTH_BYTES, value);
          if (Globals.getSettings().getBackSteppingEnabled()) {
             Globals.program.getBackStepper().addMemoryRestoreRawWord(address,oldValue);
@@ -577,6 +616,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                Exceptions.ADDRESS_EXCEPTION_STORE, address);
          }
          if (Globals.debug) System.out.println("memory["+address+"] set to "+statement.getBinaryStatement());
+         textGeneration++;
+         markWritten(address);
          if (inTextSegment(address)) {
             storeProgramStatement(address, statement, textBaseAddress, textBlockTable);
          } 
@@ -587,6 +628,91 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
    
    
+   ////////////////////////////////////////////////////////////////////////////////
+   /**
+    * Returns a counter that changes every time a statement is stored in the text or kernel
+    * text segment, including when memory is cleared.  Used to detect self-modifying code.
+    * @return the current text segment generation.
+    **/
+   
+       public int getTextGeneration() {
+         return textGeneration;
+      }
+   
+   ////////////////////////////////////////////////////////////////////////////////
+   /**
+    * Returns a counter that changes every time memory is written, including statements
+    * stored in the text segments and clearing memory.  Compare with a previously returned
+    * value for equality only.
+    * @return the current write generation.
+    **/
+   
+       public int getWriteGeneration() {
+         return writeGeneration;
+      }
+   
+   ////////////////////////////////////////////////////////////////////////////////
+   /**
+    * Returns the write generation (see getWriteGeneration()) of the last write into the
+    * 4096-byte page containing the given address, or of the last clearing of memory if the
+    * page has not been written since.  A display that remembers this value for the pages it
+    * shows can tell whether any of their words may have changed.
+    * @param address any address in the page.
+    * @return the write generation of the page.
+    **/
+   
+       public int getWriteGeneration(int address) {
+         int[] pages = pageWriteGenerations[address >>> 22];
+         int generation = (pages == null) ? 0 : pages[(address >>> WRITE_PAGE_SHIFT) & 1023];
+         return (generation == 0) ? clearGeneration : generation;
+      }
+
+   ////////////////////////////////////////////////////////////////////////////////
+   /**
+    * Returns the base addresses of the 4096-byte pages written since memory was last
+    * cleared, in increasing (unsigned) order.  All other words of memory hold zero, so
+    * together with getRawWordOrNull() this gives the complete contents of memory, e.g. to
+    * fingerprint an assembled program.
+    * @return array of page base addresses.
+    **/
+
+       public int[] getWrittenPages() {
+         int count = 0;
+         int[] written = new int[64];
+         for (int i = 0; i < pageWriteGenerations.length; i++) {
+            int[] pages = pageWriteGenerations[i];
+            if (pages == null) {
+               continue;
+            }
+            for (int j = 0; j < pages.length; j++) {
+               if (pages[j] != 0) {
+                  if (count == written.length) {
+                     int[] larger = new int[2 * count];
+                     System.arraycopy(written, 0, larger, 0, count);
+                     written = larger;
+                  }
+                  written[count++] = (i << 22) | (j << WRITE_PAGE_SHIFT);
+               }
+            }
+         }
+         int[] result = new int[count];
+         System.arraycopy(written, 0, result, 0, count);
+         return result;
+      }
+
+    // Record a store into the page containing the given address.
+       private void markWritten(int address) {
+         int[] pages = pageWriteGenerations[address >>> 22];
+         if (pages == null) {
+            pages = new int[1024];
+            pageWriteGenerations[address >>> 22] = pages;
+         }
+         if (++writeGeneration == 0) {
+            writeGeneration = 1; // 0 marks a page not written since memory was cleared
+         }
+         pages[(address >>> WRITE_PAGE_SHIFT) & 1023] = writeGeneration;
+      }
+   
    /********************************  THE GETTER METHODS  ******************************/
    
    //////////////////////////////////////////////////////////////////////////////////////////
@@ -622,6 +748,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
            // memory mapped I/O.
             relativeByteAddress = address - memoryMapBaseAddress;
             value = fetchBytesFromTable(memoryMapBlockTable, relativeByteAddress, length);
+            if (notify) {
+               value = readDevice(relativeByteAddress, address, length, value);
+            }
          }
          else if (inTextSegment(address)) {
            // Burch Mod (Jan 2013): replace throw with calls to getStatementNoNotify & getBinaryStatement 
@@ -694,6 +823,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
            // memory mapped I/O.
             relative = (address - memoryMapBaseAddress) >> 2;
             value = fetchWordFromTable(memoryMapBlockTable, relative);
+            value = readDevice(address - memoryMapBaseAddress, address, WORD_LENGTH_BYTES, value);
          }
          else if (inTextSegment(address)) {
            // Burch Mod (Jan 2013): replace throw with calls to getStatementNoNotify & getBinaryStatement 
@@ -876,6 +1006,35 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return get(address, 1);
       }
    
+    ///////////////////////////////////////////////////////////////////////////////////////
+    /** 
+     *  Starting at the given halfword address, read a 2 byte word into lower 16 bits of int.  
+     *  Observers and memory mapped devices are NOT notified.
+     * 
+     * @param address Starting address of word to be read.
+     * @return  Halfword (2-byte value) stored starting at that address, stored in lower 16 bits.
+     * @throws AddressErrorException If address is not on halfword boundary.
+    **/   
+       public int getHalfNoNotify(int address) throws AddressErrorException {
+         if (address % 2 != 0) {
+            throw new AddressErrorException("fetch address not aligned on halfword boundary ",
+               Exceptions.ADDRESS_EXCEPTION_LOAD, address);
+         }
+         return get(address, 2, false);
+      }
+   
+    ///////////////////////////////////////////////////////////////////////////////////////
+    /** 
+     *  Reads specified Memory byte into low order 8 bits of int.  Observers and memory
+     *  mapped devices are NOT notified.
+     * 
+     * @param address Address of Memory byte to be read.
+     * @return Value stored at that address.  Only low order 8 bits used.
+     **/
+       public int getByteNoNotify(int address) throws AddressErrorException {
+         return get(address, 1, false);
+      }
+   
    ////////////////////////////////////////////////////////////////////////////////
    /**
     * Gets ProgramStatement from Text Segment.  
@@ -1118,7 +1277,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             throw new AddressErrorException("end address of range < start address of range ",
                Exceptions.ADDRESS_EXCEPTION_LOAD, startAddr);
          }
-         observables.add(new MemoryObservable(obs, startAddr, endAddr));
+         MemoryObservable mo = new MemoryObservable(obs, startAddr, endAddr);
+         synchronized (observablesByPage) {
+            observables.add(mo);
+            indexObservable(mo, true);
+         }
       }
    
       /**
@@ -1128,14 +1291,79 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return observables.size();
       }
    
+      /**
+       *  Record every instruction fetch, load and store to a trace until the writer is removed.
+       *  Unlike observers, the writer is called directly with each access.
+       *  @param writer the trace writer, or null to stop recording
+       */
+       public void setTraceWriter(AccessTraceWriter writer) {
+         traceWriter = writer;
+      }
+   
+      /**
+       *  @return the trace writer recording accesses, or null if there is none
+       */
+       public AccessTraceWriter getTraceWriter() {
+         return traceWriter;
+      }
+   
+      /**
+       *  Register a memory mapped device for an address range in the memory map.  The device is
+       *  called directly with each load from or store to the range by the MIPS program, before
+       *  any observers are notified.  A device may be registered for several ranges, and ranges
+       *  of different devices may overlap, in which case each is called in order of registration.
+       *  @param device the device
+       *  @param startAddr the low end of the address range
+       *  @param endAddr the high end of the address range; its word is included
+       *  @throws AddressErrorException if the range is not within the memory map
+       *  @see MemoryMappedDevice
+       */
+       public void addDevice(MemoryMappedDevice device, int startAddr, int endAddr) throws AddressErrorException {
+         if (startAddr < memoryMapBaseAddress || startAddr >= memoryMapLimitAddress) {
+            throw new AddressErrorException("device address not in memory map ",
+               Exceptions.ADDRESS_EXCEPTION_STORE, startAddr);
+         }
+         if (endAddr < startAddr || endAddr >= memoryMapLimitAddress) {
+            throw new AddressErrorException("device address range not in memory map ",
+               Exceptions.ADDRESS_EXCEPTION_STORE, endAddr);
+         }
+         synchronized (devices) {
+            devices.add(new DeviceRange(device, startAddr, endAddr | (WORD_LENGTH_BYTES - 1)));
+            indexDevices();
+         }
+      }
+   
+      /**
+       *  Remove a memory mapped device from all the address ranges it is registered for.
+       *  @param device the device
+       */
+       public void deleteDevice(MemoryMappedDevice device) {
+         synchronized (devices) {
+            Iterator it = devices.iterator();
+            while (it.hasNext()) {
+               if (((DeviceRange) it.next()).device == device) {
+                  it.remove();
+               }
+            }
+            indexDevices();
+         }
+      }
+   
    	/**
    	 *  Remove specified memory observers
    	 *  @param obs  Observer to be removed
    	 */   		
        public void deleteObserver(Observer obs) {
-         Iterator it = observables.iterator();
-         while (it.hasNext()) {
-            ((MemoryObservable)it.next()).deleteObserver(obs);
+         synchronized (observablesByPage) {
+            Iterator it = observables.iterator();
+            while (it.hasNext()) {
+               MemoryObservable mo = (MemoryObservable)it.next();
+               mo.deleteObserver(obs);
+               if (mo.countObservers() == 0) { // no longer needed
+                  it.remove();
+                  indexObservable(mo, false);
+               }
+            }
          }	
       }
    	
@@ -1144,7 +1372,41 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 */
        public void deleteObservers() {
          // just drop the collection
-         observables = getNewMemoryObserversCollection();
+         synchronized (observablesByPage) {
+            observables = getNewMemoryObserversCollection();
+            observablesByPage = new Hashtable();
+            wideObservables = 0;
+         }
+      }
+   
+    // Add the observable to, or remove it from, the page index.  Wide observables are only counted.
+       private void indexObservable(MemoryObservable mo, boolean add) {
+         int firstPage = mo.lowAddress >>> 12;
+         int lastPage = mo.highAddress >>> 12;
+         if (lastPage - firstPage >= OBSERVER_INDEX_PAGES) {
+            wideObservables += add ? 1 : -1;
+            return;
+         }
+         for (int page = firstPage; page <= lastPage; page++) {
+            Integer key = new Integer(page);
+            MemoryObservable[] old = (MemoryObservable[]) observablesByPage.get(key);
+            ArrayList list = new ArrayList();
+            if (old != null) {
+               list.addAll(Arrays.asList(old));
+            }
+            if (add) {
+               list.add(mo);
+            } 
+            else {
+               list.remove(mo);
+            }
+            if (list.isEmpty()) {
+               observablesByPage.remove(key);
+            } 
+            else {
+               observablesByPage.put(key, list.toArray(new MemoryObservable[list.size()]));
+            }
+         }
       }
    	
    	/**
@@ -1211,6 +1473,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
       
    
+       /////////////////////////////////////////////////////////////////////////
+       // A memory mapped device and one address range it is registered for.
+       private static class DeviceRange {
+         private MemoryMappedDevice device;
+         private int lowAddress, highAddress; // highAddress is the last byte of the range
+      
+          public DeviceRange(MemoryMappedDevice device, int lowAddress, int highAddress) {
+            this.device = device;
+            this.lowAddress = lowAddress;
+            this.highAddress = highAddress;
+         }
+      }
+      
+   
    /*********************************  THE HELPERS  *************************************/
      
    
@@ -1218,10 +1494,36 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    //
    // Method to notify any observers of memory operation that has just occurred.
    //
-   // The "|| Globals.getGui()==null" is a hack added 19 July 2012 DPS.  IF MIPS simulation
+   // The "|| !Globals.hasGui()" is a hack added 19 July 2012 DPS.  IF MIPS simulation
    // is from command mode, Globals.program is null but still want ability to observe.
        private void notifyAnyObservers(int type, int address, int length, int value) {
-         if ((Globals.program != null || Globals.getGui()==null) && this.observables.size() > 0) {
+         if (traceWriter != null) {
+            traceWriter.record((type == AccessNotice.WRITE) ? AccessTrace.STORE : AccessTrace.LOAD, address, length, value);
+         }
+         notifyObservables(type, address, length, value);
+      }
+   
+   // Instruction fetches are told apart from loads only in the trace.
+       private void notifyOfFetch(int address, int value) {
+         if (traceWriter != null) {
+            traceWriter.record(AccessTrace.FETCH, address, Instruction.INSTRUCTION_LENGTH, value);
+         }
+         notifyObservables(AccessNotice.READ, address, Instruction.INSTRUCTION_LENGTH, value);
+      }
+   
+       private void notifyObservables(int type, int address, int length, int value) {
+         if ((Globals.program != null || !Globals.hasGui()) && this.observables.size() > 0) {
+            if (wideObservables == 0) {
+               MemoryObservable[] page = (MemoryObservable[]) observablesByPage.get(new Integer(address >>> 12));
+               if (page != null) {
+                  for (int i = 0; i < page.length; i++) {
+                     if (page[i].match(address)) {
+                        page[i].notifyObserver(new MemoryAccessNotice(type, address, length, value));
+                     }
+                  }
+               }
+               return;
+            }
             Iterator it = this.observables.iterator();
             MemoryObservable mo;
             while (it.hasNext()) {
@@ -1233,6 +1535,73 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          } 		
       }
    
+   ////////////////////////////////////////////////////////////////////////////////
+   //
+   // Rebuild the page table of devices from the registered ranges, for the current memory map.
+       private void indexDevices() {
+         synchronized (devices) {
+            ArrayList[] pages = new ArrayList[MMIO_TABLE_LENGTH];
+            for (int i = 0; i < devices.size(); i++) {
+               DeviceRange range = (DeviceRange) devices.get(i);
+               int first = Math.max(range.lowAddress - memoryMapBaseAddress, 0) >>> WRITE_PAGE_SHIFT;
+               int last = Math.min((range.highAddress - memoryMapBaseAddress) >>> WRITE_PAGE_SHIFT, MMIO_TABLE_LENGTH - 1);
+               for (int page = first; page <= last; page++) {
+                  if (pages[page] == null) {
+                     pages[page] = new ArrayList();
+                  }
+                  pages[page].add(range);
+               }
+            }
+            DeviceRange[][] table = new DeviceRange[MMIO_TABLE_LENGTH][];
+            for (int page = 0; page < MMIO_TABLE_LENGTH; page++) {
+               if (pages[page] != null) {
+                  table[page] = (DeviceRange[]) pages[page].toArray(new DeviceRange[pages[page].size()]);
+               }
+            }
+            devicesByPage = table;
+         }
+      }
+   
+   // Pass a store to the memory map to its devices.  Only stores by the MIPS program are passed,
+   // and not those made by a device while it is called.
+       private void writeDevice(int relativeByteAddress, int address, int length, int value) {
+         DeviceRange[] page = devicesByPage[relativeByteAddress >>> WRITE_PAGE_SHIFT];
+         if (page == null || inDevice || !Thread.currentThread().getName().startsWith("MIPS")) {
+            return;
+         }
+         inDevice = true;
+         try {
+            for (int i = 0; i < page.length; i++) {
+               if (address >= page[i].lowAddress && address <= page[i].highAddress) {
+                  page[i].device.write(address, length, value);
+               }
+            }
+         }
+         finally {
+            inDevice = false;
+         }
+      }
+   
+   // Pass a load from the memory map to its devices, which may change the value loaded.
+       private int readDevice(int relativeByteAddress, int address, int length, int value) {
+         DeviceRange[] page = devicesByPage[relativeByteAddress >>> WRITE_PAGE_SHIFT];
+         if (page == null || inDevice || !Thread.currentThread().getName().startsWith("MIPS")) {
+            return value;
+         }
+         inDevice = true;
+         try {
+            for (int i = 0; i < page.length; i++) {
+               if (address >= page[i].lowAddress && address <= page[i].highAddress) {
+                  value = page[i].device.read(address, length, value);
+               }
+            }
+         }
+         finally {
+            inDevice = false;
+         }
+         return value;
+      }
+   
    ////////////////////////////////////////////////////////////////////////////////
    //
    // Helper method to store 1, 2 or 4 byte value in table that represents MIPS
@@ -1440,15 +1809,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          if (block < TEXT_BLOCK_TABLE_LENGTH) {
             if (blockTable[block] == null || blockTable[block][offset] == null) {
                // No instructions are stored in this block or offset.
-               if (notify) notifyAnyObservers(AccessNotice.READ, address, Instruction.INSTRUCTION_LENGTH,0);
+               if (notify) notifyOfFetch(address, 0);
                return null;
             } 
             else {
-               if (notify) notifyAnyObservers(AccessNotice.READ, address, Instruction.INSTRUCTION_LENGTH, blockTable[block][offset].getBinaryStatement());
+               if (notify) notifyOfFetch(address, blockTable[block][offset].getBinaryStatement());
                return blockTable[block][offset];
             }
          }
-         if (notify) notifyAnyObservers(AccessNotice.READ, address, Instruction.INSTRUCTION_LENGTH,0);
+         if (notify) notifyOfFetch(address, 0);
          return null;
       }
    	   	
@@ -0,0 +1,36 @@
+   package mars.mips.hardware;
+
+/**
+ * A device whose registers are in the memory mapped I/O region (memoryMapBaseAddress up to
+ * memoryMapLimitAddress), for example the keyboard and display of the Keyboard and Display
+ * MMIO Simulator.  A device is registered with Memory.addDevice() for an address range and
+ * is then called directly by Memory on each load from or store to the range made by the
+ * MIPS program, found through a table indexed by page, so it needs no Observer.
+ * <p>
+ * The register contents are kept in memory as usual:  write() is called after the value is
+ * stored and read() after it is fetched.  Memory accesses made by the device while it is
+ * being called, for example to set a ready bit, are not passed to any device.
+ *
+ * @version October 2026
+ * @see Memory#addDevice(MemoryMappedDevice, int, int)
+ */
+
+    public interface MemoryMappedDevice {
+    
+      /**
+       * Called when the MIPS program has loaded from the device's address range.
+       * @param address the address loaded from
+       * @param length number of bytes loaded (1, 2 or 4)
+       * @param value the value in memory at that address
+       * @return the value the program is to receive, normally the value given
+       */
+       public int read(int address, int length, int value);
+   
+      /**
+       * Called when the MIPS program has stored to the device's address range.
+       * @param address the address stored to
+       * @param length number of bytes stored (1, 2 or 4)
+       * @param value the value stored
+       */
+       public void write(int address, int length, int value);
+   }
@@ -0,0 +1,92 @@
+    package mars.mips.instructions;
+    import java.util.*;
+    import java.io.*;
+
+/**
+ * A custom language defined by a text file in the customlangs directory rather than by a Java class, so that
+ * it can be written without a Java compiler.  The file uses the same layout as PseudoOps.txt: lines starting
+ * with "#" are comments, and fields are separated by tabs.
+ * <pre>
+ * .name	Example Declarative Language
+ * .description	A language defined without Java
+ * add $t1,$t2,$t3	R	000000 sssss ttttt fffff 00000 100000	r0 = addo(r1, r2)	#Addition with overflow
+ * </pre>
+ * Each instruction line holds the example, the format (R, I, I-branch or J), the operation mask as used by
+ * BasicInstruction, the semantics and an optional description starting with "#".  The semantics are compiled by
+ * DeclarativeSemantics into handler objects when the file is read.
+ * @see DeclarativeSemantics
+ * @see LanguageLoader
+ */
+public class DeclarativeAssembly extends CustomAssembly{
+    private String name;
+    private String description = "";
+    private final ArrayList<BasicInstruction> instructions = new ArrayList<BasicInstruction>();
+
+    /**
+    * Reads and compiles a language definition.
+    * @param file The definition file.
+    * @throws IOException if the file cannot be read.
+    * @throws IllegalArgumentException if the file contains an invalid line.
+    */
+    public DeclarativeAssembly(File file) throws IOException{
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null){
+                lineNumber++;
+                if (line.trim().length() == 0 || line.startsWith("#")){
+                    continue;
+                }
+                try {
+                    parseLine(line);
+                } catch (RuntimeException e){
+                    throw new IllegalArgumentException(file.getName() + " line " + lineNumber + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            in.close();
+        }
+        if (name == null){
+            throw new IllegalArgumentException(file.getName() + ": missing .name line");
+        }
+    }
+
+    private void parseLine(String line){
+        String[] fields = line.split("\t+");
+        if (fields[0].equals(".name")){
+            name = fields[1].trim();
+            return;
+        }
+        if (fields[0].equals(".description")){
+            description = fields[1].trim();
+            return;
+        }
+        if (fields.length < 4){
+            throw new IllegalArgumentException("expected example, format, mask and semantics separated by tabs");
+        }
+        String instrDescription = (fields.length > 4 && fields[4].startsWith("#")) ? fields[4].substring(1).trim() : "";
+        instructions.add(new BasicInstruction(fields[0].trim(), instrDescription, format(fields[1].trim()),
+                fields[2].trim(), DeclarativeSemantics.compile(fields[3])));
+    }
+
+    private static BasicInstructionFormat format(String format){
+        if (format.equalsIgnoreCase("R")) return BasicInstructionFormat.R_FORMAT;
+        if (format.equalsIgnoreCase("I")) return BasicInstructionFormat.I_FORMAT;
+        if (format.equalsIgnoreCase("I-branch")) return BasicInstructionFormat.I_BRANCH_FORMAT;
+        if (format.equalsIgnoreCase("J")) return BasicInstructionFormat.J_FORMAT;
+        throw new IllegalArgumentException("unknown instruction format " + format);
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    public String getDescription(){
+        return description;
+    }
+
+    protected void populate(){
+        instructionList.addAll(instructions);
+    }
+}
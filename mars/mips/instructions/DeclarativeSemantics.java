@@ -0,0 +1,613 @@
+    package mars.mips.instructions;
+    import mars.*;
+    import mars.simulator.*;
+    import mars.mips.hardware.*;
+    import mars.util.*;
+    import mars.mips.instructions.syscalls.RandomStreams;
+    import java.util.*;
+
+/**
+ * Compiles the semantics of a declarative custom language instruction into a SimulationCode handler.
+ * The semantics are a sequence of statements separated by ";" which are parsed once, when the language
+ * is loaded, into a tree of small specialized node objects.  Running an instruction only evaluates that
+ * tree; no text is looked at during simulation.
+ * <p>
+ * Operands: <tt>op0</tt>..<tt>op2</tt> are the raw operand values, <tt>r0</tt>..<tt>r2</tt> are the
+ * registers named by the operands, <tt>$t0</tt>, <tt>$v0</tt>, <tt>$8</tt> etc. are fixed registers,
+ * <tt>pc</tt> is the program counter, and <tt>mem[a]</tt>, <tt>half[a]</tt>, <tt>byte[a]</tt> access memory.
+ * <p>
+ * Statements: <tt>target = expr</tt> where the target is a register or memory reference,
+ * <tt>if (expr) statement</tt>, <tt>print(expr)</tt>, <tt>printc(expr)</tt>, <tt>print("text")</tt>,
+ * <tt>branch(displacement)</tt>, <tt>jump(address)</tt>, <tt>error("message")</tt> and <tt>exit()</tt>.
+ * <p>
+ * Expressions use Java operators and precedence (<tt>* / % + - &lt;&lt; &gt;&gt; &gt;&gt;&gt; &lt; &lt;= &gt; &gt;=
+ * == != &amp; ^ | &amp;&amp; ||</tt>, unary <tt>- ~ !</tt>), with comparisons giving 1 or 0, plus the functions
+ * <tt>addo(a,b)</tt> and <tt>subo(a,b)</tt> (with overflow exception), <tt>sext16(x)</tt>, <tt>zext16(x)</tt>
+ * and <tt>rand(n)</tt>.
+ * @see DeclarativeAssembly
+ */
+public class DeclarativeSemantics{
+    private final String text;
+    private int pos;
+    private boolean operandsAllowed = true;
+
+    private DeclarativeSemantics(String text){
+        this.text = text;
+        this.pos = 0;
+    }
+
+    /**
+    * Compiles instruction semantics.
+    * @param semantics The statements, as described above.
+    * @return A handler which executes the statements.
+    * @throws IllegalArgumentException if the semantics cannot be parsed.
+    */
+    public static SimulationCode compile(String semantics){
+        DeclarativeSemantics parser = new DeclarativeSemantics(semantics);
+        ArrayList<Stmt> statements = new ArrayList<Stmt>();
+        parser.skipSpace();
+        while (!parser.atEnd()){
+            statements.add(parser.statement());
+            parser.skipSpace();
+            if (!parser.atEnd()){
+                parser.expect(";");
+                parser.skipSpace();
+            }
+        }
+        if (statements.size() == 1){
+            return new Handler(statements.get(0));
+        }
+        return new SequenceHandler(statements.toArray(new Stmt[statements.size()]));
+    }
+
+    /**
+    * Compiles an expression that does not refer to instruction operands, such as the condition of a
+    * conditional breakpoint.  A memory reference that cannot be read evaluates to 0.  Memory is read
+    * without notifying observers or memory mapped devices, so evaluation has no effect on the program.
+    * @param expression The expression, as described above.
+    * @return An evaluator for the expression.
+    * @throws IllegalArgumentException if the expression cannot be parsed.
+    */
+    public static Expression compileExpression(String expression){
+        DeclarativeSemantics parser = new DeclarativeSemantics(expression);
+        parser.operandsAllowed = false;
+        final Expr e = parser.expression();
+        parser.skipSpace();
+        if (!parser.atEnd()){
+            throw parser.error("unexpected text");
+        }
+        return new Expression(){
+            public int evaluate() throws ProcessingException{
+                return e.eval(null, null);
+            }
+        };
+    }
+
+    /**
+    * An expression compiled by compileExpression.
+    */
+    public interface Expression{
+        /**
+        * @return The value of the expression.
+        * @throws ArithmeticException on division by zero or arithmetic overflow.
+        */
+        int evaluate() throws ProcessingException;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Parser
+
+    private Stmt statement(){
+        skipSpace();
+        int start = pos;
+        String word = (peek() == '$') ? "" : identifier();
+        if (word.equals("if")){
+            expect("(");
+            Expr condition = expression();
+            expect(")");
+            return new IfStmt(condition, statement());
+        }
+        if (word.equals("print") || word.equals("error")){
+            expect("(");
+            skipSpace();
+            Stmt s;
+            if (peek() == '"'){
+                String message = string();
+                s = word.equals("print") ? (Stmt) new PrintStringStmt(message) : new ErrorStmt(message);
+            } else if (word.equals("print")){
+                s = new PrintIntStmt(expression());
+            } else{
+                throw error("error() requires a string");
+            }
+            expect(")");
+            return s;
+        }
+        if (word.equals("exit")){
+            expect("(");
+            expect(")");
+            return new ExitStmt();
+        }
+        if (word.equals("printc") || word.equals("branch") || word.equals("jump")){
+            expect("(");
+            Expr e = expression();
+            expect(")");
+            if (word.equals("printc")){
+                return new PrintCharStmt(e);
+            }
+            return word.equals("branch") ? (Stmt) new BranchStmt(e) : new JumpStmt(e);
+        }
+        pos = start;
+        Expr target = primary();
+        expect("=");
+        Expr value = expression();
+        if (target instanceof OperandRegister){
+            return new SetOperandRegister(((OperandRegister) target).operand, value);
+        }
+        if (target instanceof FixedRegister){
+            return new SetFixedRegister(((FixedRegister) target).number, value);
+        }
+        if (target instanceof MemoryRead){
+            MemoryRead m = (MemoryRead) target;
+            return new MemoryWrite(m.address, m.length, value);
+        }
+        throw error("cannot assign to this expression");
+    }
+
+    private static final String[][] BINARY_LEVELS = {
+        {"||"}, {"&&"}, {"|"}, {"^"}, {"&"}, {"==", "!="}, {"<=", ">=", "<", ">"},
+        {"<<", ">>>", ">>"}, {"+", "-"}, {"*", "/", "%"}
+    };
+
+    private Expr expression(){
+        return binary(0);
+    }
+
+    private Expr binary(int level){
+        if (level == BINARY_LEVELS.length){
+            return unary();
+        }
+        Expr left = binary(level + 1);
+        while (true){
+            skipSpace();
+            String op = null;
+            for (String candidate : BINARY_LEVELS[level]){
+                // do not mistake "&&", "||", "<<" or ">>" for a one character operator
+                if (text.startsWith(candidate, pos) && !(candidate.length() == 1 && "&|<>".indexOf(candidate.charAt(0)) >= 0
+                         && text.startsWith(candidate + candidate, pos))){
+                    op = candidate;
+                    break;
+                }
+            }
+            if (op == null){
+                return left;
+            }
+            pos += op.length();
+            left = new BinaryOp(op, left, binary(level + 1));
+        }
+    }
+
+    private Expr unary(){
+        skipSpace();
+        char c = peek();
+        if (c == '-' || c == '~' || c == '!'){
+            pos++;
+            return new UnaryOp(c, unary());
+        }
+        return primary();
+    }
+
+    private Expr primary(){
+        skipSpace();
+        char c = peek();
+        if (c == '('){
+            pos++;
+            Expr e = expression();
+            expect(")");
+            return e;
+        }
+        if (Character.isDigit(c)){
+            return new Constant(number());
+        }
+        if (c == '$'){
+            int start = pos++;
+            while (!atEnd() && Character.isLetterOrDigit(peek())){
+                pos++;
+            }
+            Register reg = RegisterFile.getUserRegister(text.substring(start, pos));
+            if (reg == null){
+                throw error("unknown register " + text.substring(start, pos));
+            }
+            return new FixedRegister(reg.getNumber());
+        }
+        String word = identifier();
+        if (!operandsAllowed && (word.matches("op[0-9]") || word.matches("r[0-9]"))){
+            throw error("instruction operands cannot be used here");
+        }
+        if (word.length() == 3 && word.startsWith("op") && Character.isDigit(word.charAt(2))){
+            return new OperandValue(word.charAt(2) - '0');
+        }
+        if (word.length() == 2 && word.charAt(0) == 'r' && Character.isDigit(word.charAt(1))){
+            return new OperandRegister(word.charAt(1) - '0');
+        }
+        if (word.equals("pc")){
+            return new ProgramCounter();
+        }
+        if (word.equals("mem") || word.equals("half") || word.equals("byte")){
+            expect("[");
+            Expr address = expression();
+            expect("]");
+            return new MemoryRead(address, word.equals("mem") ? 4 : word.equals("half") ? 2 : 1, operandsAllowed);
+        }
+        expect("(");
+        ArrayList<Expr> args = new ArrayList<Expr>();
+        skipSpace();
+        if (peek() != ')'){
+            args.add(expression());
+            skipSpace();
+            while (peek() == ','){
+                pos++;
+                args.add(expression());
+                skipSpace();
+            }
+        }
+        expect(")");
+        return function(word, args);
+    }
+
+    private Expr function(String name, ArrayList<Expr> args){
+        int arity = (name.equals("addo") || name.equals("subo")) ? 2 : 1;
+        if (args.size() != arity){
+            throw error(name + " requires " + arity + " argument(s)");
+        }
+        if (name.equals("addo") || name.equals("subo")){
+            return new OverflowOp(name.equals("addo"), args.get(0), args.get(1));
+        }
+        if (name.equals("sext16") || name.equals("zext16") || name.equals("rand")){
+            return new Function(name, args.get(0));
+        }
+        throw error("unknown function " + name);
+    }
+
+    private int number(){
+        int start = pos;
+        while (!atEnd() && Character.isLetterOrDigit(peek())){
+            pos++;
+        }
+        try {
+            return Binary.stringToInt(text.substring(start, pos));
+        } catch (NumberFormatException e){
+            throw error("invalid number " + text.substring(start, pos));
+        }
+    }
+
+    private String string(){
+        expect("\"");
+        StringBuilder sb = new StringBuilder();
+        while (!atEnd() && peek() != '"'){
+            char c = text.charAt(pos++);
+            if (c == '\\' && !atEnd()){
+                c = text.charAt(pos++);
+                c = (c == 'n') ? '\n' : (c == 't') ? '\t' : c;
+            }
+            sb.append(c);
+        }
+        expect("\"");
+        return sb.toString();
+    }
+
+    private String identifier(){
+        skipSpace();
+        int start = pos;
+        while (!atEnd() && Character.isLetterOrDigit(peek())){
+            pos++;
+        }
+        if (start == pos){
+            throw error("expected a name");
+        }
+        return text.substring(start, pos);
+    }
+
+    private void expect(String s){
+        skipSpace();
+        if (!text.startsWith(s, pos)){
+            throw error("expected \"" + s + "\"");
+        }
+        pos += s.length();
+    }
+
+    private void skipSpace(){
+        while (!atEnd() && Character.isWhitespace(peek())){
+            pos++;
+        }
+    }
+
+    private boolean atEnd(){
+        return pos >= text.length();
+    }
+
+    private char peek(){
+        return atEnd() ? '\0' : text.charAt(pos);
+    }
+
+    private IllegalArgumentException error(String message){
+        return new IllegalArgumentException(message + " at position " + (pos + 1) + " of \"" + text + "\"");
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Compiled handlers and node types
+
+    private static final class Handler implements SimulationCode{
+        private final Stmt statement;
+        Handler(Stmt statement){ this.statement = statement; }
+        public void simulate(ProgramStatement ps) throws ProcessingException{
+            statement.execute(ps, ps.getOperands());
+        }
+    }
+
+    private static final class SequenceHandler implements SimulationCode{
+        private final Stmt[] statements;
+        SequenceHandler(Stmt[] statements){ this.statements = statements; }
+        public void simulate(ProgramStatement ps) throws ProcessingException{
+            int[] operands = ps.getOperands();
+            for (int i = 0; i < statements.length; i++){
+                statements[i].execute(ps, operands);
+            }
+        }
+    }
+
+    private static abstract class Expr{
+        abstract int eval(ProgramStatement ps, int[] operands) throws ProcessingException;
+    }
+
+    private static abstract class Stmt{
+        abstract void execute(ProgramStatement ps, int[] operands) throws ProcessingException;
+    }
+
+    private static final class Constant extends Expr{
+        private final int value;
+        Constant(int value){ this.value = value; }
+        int eval(ProgramStatement ps, int[] operands){ return value; }
+    }
+
+    private static final class OperandValue extends Expr{
+        private final int operand;
+        OperandValue(int operand){ this.operand = operand; }
+        int eval(ProgramStatement ps, int[] operands){ return operands[operand]; }
+    }
+
+    private static final class OperandRegister extends Expr{
+        private final int operand;
+        OperandRegister(int operand){ this.operand = operand; }
+        int eval(ProgramStatement ps, int[] operands){ return RegisterFile.getValue(operands[operand]); }
+    }
+
+    private static final class FixedRegister extends Expr{
+        private final int number;
+        FixedRegister(int number){ this.number = number; }
+        int eval(ProgramStatement ps, int[] operands){ return RegisterFile.getValue(number); }
+    }
+
+    private static final class ProgramCounter extends Expr{
+        int eval(ProgramStatement ps, int[] operands){ return RegisterFile.getProgramCounter(); }
+    }
+
+    private static final class MemoryRead extends Expr{
+        private final Expr address;
+        private final int length;
+        private final boolean notify; // false outside instructions, e.g. in breakpoint conditions
+        MemoryRead(Expr address, int length, boolean notify){ this.address = address; this.length = length; this.notify = notify; }
+        int eval(ProgramStatement ps, int[] operands) throws ProcessingException{
+            int a = address.eval(ps, operands);
+            try {
+                if (!notify){
+                    return (length == 4) ? Globals.memory.getWordNoNotify(a)
+                         : (length == 2) ? Globals.memory.getHalfNoNotify(a) << 16 >> 16
+                         : Globals.memory.getByteNoNotify(a) << 24 >> 24;
+                }
+                return (length == 4) ? Globals.memory.getWord(a)
+                     : (length == 2) ? Globals.memory.getHalf(a) << 16 >> 16
+                     : Globals.memory.getByte(a) << 24 >> 24;
+            } catch (AddressErrorException e){
+                if (ps == null){
+                    return 0; // compiled by compileExpression, no instruction to blame
+                }
+                throw new ProcessingException(ps, e);
+            }
+        }
+    }
+
+    // The runtime exception of an instruction, or outside instructions (see compileExpression) an
+    // ArithmeticException, since there is no statement to report it against.
+    private static ProcessingException arithmeticError(ProgramStatement ps, String message){
+        if (ps == null){
+            throw new ArithmeticException(message);
+        }
+        return new ProcessingException(ps, message, Exceptions.ARITHMETIC_OVERFLOW_EXCEPTION);
+    }
+
+    private static final class UnaryOp extends Expr{
+        private final char op;
+        private final Expr operand;
+        UnaryOp(char op, Expr operand){ this.op = op; this.operand = operand; }
+        int eval(ProgramStatement ps, int[] operands) throws ProcessingException{
+            int v = operand.eval(ps, operands);
+            return (op == '-') ? -v : (op == '~') ? ~v : (v == 0 ? 1 : 0);
+        }
+    }
+
+    private static final class BinaryOp extends Expr{
+        private static final String OPERATORS = "|| && | ^ & == != <= >= < > << >>> >> + - * / %";
+        private final int op;
+        private final Expr left;
+        private final Expr right;
+        BinaryOp(String op, Expr left, Expr right){
+            this.op = Arrays.asList(OPERATORS.split(" ")).indexOf(op);
+            this.left = left;
+            this.right = right;
+        }
+        int eval(ProgramStatement ps, int[] operands) throws ProcessingException{
+            int a = left.eval(ps, operands);
+            // && and || do not evaluate their right side unless needed
+            if (op == 0 && a != 0) return 1;
+            if (op == 1 && a == 0) return 0;
+            int b = right.eval(ps, operands);
+            switch (op){
+                case 0: case 1: return (b != 0) ? 1 : 0;
+                case 2: return a | b;
+                case 3: return a ^ b;
+                case 4: return a & b;
+                case 5: return (a == b) ? 1 : 0;
+                case 6: return (a != b) ? 1 : 0;
+                case 7: return (a <= b) ? 1 : 0;
+                case 8: return (a >= b) ? 1 : 0;
+                case 9: return (a < b) ? 1 : 0;
+                case 10: return (a > b) ? 1 : 0;
+                case 11: return a << b;
+                case 12: return a >>> b;
+                case 13: return a >> b;
+                case 14: return a + b;
+                case 15: return a - b;
+                case 16: return a * b;
+                default:
+                    if (b == 0){
+                        throw arithmeticError(ps, "division by zero");
+                    }
+                    return (op == 17) ? a / b : a % b;
+            }
+        }
+    }
+
+    private static final class OverflowOp extends Expr{
+        private final boolean add;
+        private final Expr left;
+        private final Expr right;
+        OverflowOp(boolean add, Expr left, Expr right){ this.add = add; this.left = left; this.right = right; }
+        int eval(ProgramStatement ps, int[] operands) throws ProcessingException{
+            int a = left.eval(ps, operands);
+            int b = right.eval(ps, operands);
+            int result = add ? a + b : a - b;
+            // overflow on A+B detected when A and B have same sign and A+B has other sign (A-B: B's sign flipped).
+            if (add ? ((a ^ result) & (b ^ result)) < 0 : ((a ^ b) & (a ^ result)) < 0){
+                throw arithmeticError(ps, "arithmetic overflow");
+            }
+            return result;
+        }
+    }
+
+    private static final class Function extends Expr{
+        private static final int SEXT16 = 0, ZEXT16 = 1, RAND = 2;
+        private final int function;
+        private final Expr argument;
+        Function(String name, Expr argument){
+            this.function = name.equals("sext16") ? SEXT16 : name.equals("zext16") ? ZEXT16 : RAND;
+            this.argument = argument;
+        }
+        int eval(ProgramStatement ps, int[] operands) throws ProcessingException{
+            int v = argument.eval(ps, operands);
+            switch (function){
+                case SEXT16: return v << 16 >> 16;
+                case ZEXT16: return v & 0xFFFF;
+                default: return (v <= 0) ? 0 : RandomStreams.getStream("DeclarativeSemantics").nextInt(v);
+            }
+        }
+    }
+
+    private static final class SetOperandRegister extends Stmt{
+        private final int operand;
+        private final Expr value;
+        SetOperandRegister(int operand, Expr value){ this.operand = operand; this.value = value; }
+        void execute(ProgramStatement ps, int[] operands) throws ProcessingException{
+            RegisterFile.updateRegister(operands[operand], value.eval(ps, operands));
+        }
+    }
+
+    private static final class SetFixedRegister extends Stmt{
+        private final int number;
+        private final Expr value;
+        SetFixedRegister(int number, Expr value){ this.number = number; this.value = value; }
+        void execute(ProgramStatement ps, int[] operands) throws ProcessingException{
+            RegisterFile.updateRegister(number, value.eval(ps, operands));
+        }
+    }
+
+    private static final class MemoryWrite extends Stmt{
+        private final Expr address;
+        private final int length;
+        private final Expr value;
+        MemoryWrite(Expr address, int length, Expr value){ this.address = address; this.length = length; this.value = value; }
+        void execute(ProgramStatement ps, int[] operands) throws ProcessingException{
+            int a = address.eval(ps, operands);
+            int v = value.eval(ps, operands);
+            try {
+                Globals.memory.set(a, v, length);
+            } catch (AddressErrorException e){
+                throw new ProcessingException(ps, e);
+            }
+        }
+    }
+
+    private static final class IfStmt extends Stmt{
+        private final Expr condition;
+        private final Stmt body;
+        IfStmt(Expr condition, Stmt body){ this.condition = condition; this.body = body; }
+        void execute(ProgramStatement ps, int[] operands) throws ProcessingException{
+            if (condition.eval(ps, operands) != 0){
+                body.execute(ps, operands);
+            }
+        }
+    }
+
+    private static final class PrintIntStmt extends Stmt{
+        private final Expr value;
+        PrintIntStmt(Expr value){ this.value = value; }
+        void execute(ProgramStatement ps, int[] operands) throws ProcessingException{
+            SystemIO.printString(Integer.toString(value.eval(ps, operands)));
+        }
+    }
+
+    private static final class PrintCharStmt extends Stmt{
+        private final Expr value;
+        PrintCharStmt(Expr value){ this.value = value; }
+        void execute(ProgramStatement ps, int[] operands) throws ProcessingException{
+            SystemIO.printString(String.valueOf((char) value.eval(ps, operands)));
+        }
+    }
+
+    private static final class PrintStringStmt extends Stmt{
+        private final String message;
+        PrintStringStmt(String message){ this.message = message; }
+        void execute(ProgramStatement ps, int[] operands){
+            SystemIO.printString(message);
+        }
+    }
+
+    private static final class ErrorStmt extends Stmt{
+        private final String message;
+        ErrorStmt(String message){ this.message = message; }
+        void execute(ProgramStatement ps, int[] operands) throws ProcessingException{
+            throw new ProcessingException(ps, message);
+        }
+    }
+
+    private static final class ExitStmt extends Stmt{
+        void execute(ProgramStatement ps, int[] operands) throws ProcessingException{
+            throw new ProcessingException(); // normal termination, as for syscall 10
+        }
+    }
+
+    private static final class BranchStmt extends Stmt{
+        private final Expr displacement;
+        BranchStmt(Expr displacement){ this.displacement = displacement; }
+        void execute(ProgramStatement ps, int[] operands) throws ProcessingException{
+            Globals.instructionSet.processBranch(displacement.eval(ps, operands));
+        }
+    }
+
+    private static final class JumpStmt extends Stmt{
+        private final Expr address;
+        JumpStmt(Expr address){ this.address = address; }
+        void execute(ProgramStatement ps, int[] operands) throws ProcessingException{
+            Globals.instructionSet.processJump(address.eval(ps, operands));
+        }
+    }
+}
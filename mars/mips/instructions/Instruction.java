@@ -96,10 +96,15 @@ public abstract class Instruction {
      * For example, the instruction with format "sw $1,100($2)" yields token list
      * <operator><register_number><integer><left_paren><register_number><right_parent>
      *
+     * The list is created on first use rather than when the instruction set is built.
+     *
      * @return TokenList object representing correct instruction usage.
      */
 
     public TokenList getTokenList() {
+        if (tokenList == null) {
+            createExampleTokenList();
+        }
         return tokenList;
     }
     
@@ -47,7 +47,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    {
       private ArrayList instructionList;
 	  private ArrayList opcodeMatchMaps;
+      private HashMap operatorMap;
       private SyscallLoader syscallLoader;
+      // Fully built instruction set models, one per combination of enabled languages.
+      // Keyed by the list of enabled CustomAssembly objects (identity equality).
+      private HashMap modelCache = new HashMap();
+      // Parsed PseudoOps.txt entries, each a String[] {pseudoOp, firstTemplate, template, description}.
+      // The file never changes during a run so it is read only once.
+      private static ArrayList pseudoOpSpecs = null;
     /**
      * Creates a new InstructionSet object.
      */
@@ -87,36 +94,69 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       frame.pack();
       */
 
-      // String before = Integer.toString(instructionList.size());
-      instructionList.clear();
-      /* // Yet more debug
-      JLabel debugLabel = new JLabel();
-      debugLabel.setPreferredSize(new Dimension(175, 100));
-      debugLabel.setText("Before: " + before + " | " + "After: " + Integer.toString(instructionList.size()) + " | " + Integer.toString(LanguageLoader.assemblyList.size()));
-      frame.getContentPane().add(debugLabel, BorderLayout.SOUTH);
-      frame.pack();
-      */
-
       // 2025 RESEARCH: INSTRUCTIONS MOVED TO MipsAssembly.java
-      // LanguageLoader now handles instructions, both for MIPS and custom-defined languages
-      LanguageLoader.mergeCustomInstructions(instructionList);
+      // LanguageLoader now handles instructions, both for MIPS and custom-defined languages.
+      // Each combination of enabled languages is built only once; switching back to a
+      // language that was already used simply swaps in its cached model.
+         ArrayList enabled = LanguageLoader.getEnabledAssemblies();
+         InstructionSetModel model = (InstructionSetModel) modelCache.get(enabled);
+         if (model == null) {
+            model = buildModel();
+            modelCache.put(enabled, model);
+         }
+         instructionList = model.instructionList;
+         opcodeMatchMaps = model.opcodeMatchMaps;
+         operatorMap = model.operatorMap;
 
         ////////////// GET AND CREATE LIST OF SYSCALL FUNCTION OBJECTS ////////////////////
-         syscallLoader = new SyscallLoader();
-         syscallLoader.loadSyscalls();
-      	
-        // Initialization step.  Create token list for each instruction example.  This is
-        // used by parser to determine user program correct syntax.
-         for (int i = 0; i < instructionList.size(); i++)
-         {
-            Instruction inst = (Instruction) instructionList.get(i);
-            inst.createExampleTokenList();
+        // Syscalls do not depend on the selected language so they are loaded only once.
+         if (syscallLoader == null) {
+            syscallLoader = new SyscallLoader();
+            syscallLoader.loadSyscalls();
          }
+      }
+
+   /**
+    * Discards the cached instruction set models which include the given language, so that
+    * the next populate() rebuilds them.
+    * @param assembly the language whose instructions have changed.
+    */
+       public void invalidate(CustomAssembly assembly) {
+         Iterator keys = modelCache.keySet().iterator();
+         while (keys.hasNext()) {
+            if (((ArrayList) keys.next()).contains(assembly)) {
+               keys.remove();
+            }
+         }
+      }
+
+    /*
+     * Builds the instruction list, decode table and operator index for the currently
+     * enabled languages.  The new list is installed as the current instruction list while
+     * it is built because the tokenizer consults it when creating example token lists.
+     */
+       private InstructionSetModel buildModel() {
+         InstructionSetModel model = new InstructionSetModel();
+         model.instructionList = new ArrayList();
+         instructionList = model.instructionList;
+         operatorMap = null; // use linear search until the new index exists
+         LanguageLoader.mergeCustomInstructions(instructionList);
+
+        // Example token lists, used by the parser to determine correct user program syntax,
+        // are now created on first use by Instruction.getTokenList().
 
 		 HashMap maskMap = new HashMap();
 		 ArrayList matchMaps = new ArrayList();
+		 HashMap operators = new HashMap();
 		 for (int i = 0; i < instructionList.size(); i++) {
 		 	Object rawInstr = instructionList.get(i);
+			String name = ((Instruction) rawInstr).getName().toLowerCase();
+			ArrayList sameName = (ArrayList) operators.get(name);
+			if (sameName == null) {
+				sameName = new ArrayList();
+				operators.put(name, sameName);
+			}
+			sameName.add(rawInstr);
 			if (rawInstr instanceof BasicInstruction) {
 				BasicInstruction basic = (BasicInstruction) rawInstr;
 				Integer mask = Integer.valueOf(basic.getOpcodeMask());
@@ -131,7 +171,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 			}
 		 }
 		 Collections.sort(matchMaps);
-		 this.opcodeMatchMaps = matchMaps;
+		 model.opcodeMatchMaps = matchMaps;
+		 model.operatorMap = operators;
+         return model;
       }
 
 	public BasicInstruction findByBinaryCode(int binaryInstr) {
@@ -149,12 +191,33 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
        public void addPseudoInstructions()
       {
+         ArrayList specs = getPseudoOpSpecs();
+         for (int i = 0; i < specs.size(); i++) {
+            String[] spec = (String[]) specs.get(i);
+            ExtendedInstruction inst = (spec[1] == null)
+                   ? new ExtendedInstruction(spec[0], spec[2], spec[3])
+               	 : new ExtendedInstruction(spec[0], spec[1], spec[2], spec[3]);
+            instructionList.add(inst);
+         	//if (spec[1] != null) System.out.println("\npseudoOp: "+spec[0]+"\ndefault template:\n"+spec[1]+"\ncompact template:\n"+spec[2]);
+         }
+      }
+
+    /*  Reads and parses PseudoOps.txt the first time it is needed.  Each entry of the
+     *  returned list is a String[] {pseudoOp, firstTemplate, template, description},
+     *  where firstTemplate is null unless a COMPACT template is present.
+     */
+       private static synchronized ArrayList getPseudoOpSpecs()
+      {
+         if (pseudoOpSpecs != null) {
+            return pseudoOpSpecs;
+         }
+         ArrayList specs = new ArrayList();
          InputStream is = null;
          BufferedReader in = null;
          try
          {
             // leading "/" prevents package name being prepended to filepath.
-            is = this.getClass().getResourceAsStream("/PseudoOps.txt");
+            is = InstructionSet.class.getResourceAsStream("/PseudoOps.txt");
             in = new BufferedReader(new InputStreamReader(is));
          } 
              catch (NullPointerException e)
@@ -195,11 +258,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                         template = template + "\n";
                      }
                   }
-                  ExtendedInstruction inst = (firstTemplate == null)
-                         ? new ExtendedInstruction(pseudoOp, template, description)
-                     	 : new ExtendedInstruction(pseudoOp, firstTemplate, template, description);
-                  instructionList.add(inst);
-               	//if (firstTemplate != null) System.out.println("\npseudoOp: "+pseudoOp+"\ndefault template:\n"+firstTemplate+"\ncompact template:\n"+template);
+                  specs.add(new String[] {pseudoOp, firstTemplate, template, description});
                }
             }
             in.close();
@@ -216,19 +275,25 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                     "Error: Invalid MIPS pseudo-instruction specification.");
                System.exit(0);
             }
-      
+         pseudoOpSpecs = specs;
+         return pseudoOpSpecs;
       }
    	
     /**
      *  Given an operator mnemonic, will return the corresponding Instruction object(s)
-     *  from the instruction set.  Uses straight linear search technique.
+     *  from the instruction set.  Uses the operator index built by populate(), or
+     *  straight linear search while the instruction set is still being built.
      *  @param name operator mnemonic (e.g. addi, sw,...)
      *  @return list of corresponding Instruction object(s), or null if not found.
      */
        public ArrayList matchOperator(String name)
       {
+         HashMap operators = operatorMap;
+         if (operators != null) {
+            ArrayList matches = (ArrayList) operators.get(name.toLowerCase());
+            return (matches == null) ? null : new ArrayList(matches);
+         }
          ArrayList matchingInstructions = null;
-        // Linear search for now....
          for (int i = 0; i < instructionList.size(); i++)
          {
             if (((Instruction) instructionList.get(i)).getName().equalsIgnoreCase(name))
@@ -351,6 +416,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             	  Instruction.INSTRUCTION_LENGTH : 0) );	 
       }
 
+	  // Everything populate() derives from one combination of enabled languages.
+	  private static class InstructionSetModel {
+	  	private ArrayList instructionList;
+		private ArrayList opcodeMatchMaps;
+		private HashMap operatorMap;
+	  }
+
 	  private static class MatchMap implements Comparable {
 	  	private int mask;
 		private int maskLength; // number of 1 bits in mask
@@ -0,0 +1,166 @@
+    package mars.mips.instructions;
+    import java.util.*;
+    import java.util.jar.*;
+    import java.io.*;
+    import java.net.URI;
+    import javax.tools.*;
+
+/**
+ * Compiles custom language source files with the JDK compiler running inside the MARS JVM. Class files are kept in
+ * memory and either written to a language JAR or defined directly in a class loader, so no javac or jar process is
+ * started and no temporary directory is needed. Used by BuildCustomLang and by the Language Builder tool.
+ * @see BuildCustomLang
+ * @see LanguageLoader
+ */
+public class LanguageCompiler{
+    private static final String MARS_SOURCE = "Mars.java";
+    private static final String MARS_CLASS = "Mars.class";
+    private static final String MARS_SOURCE_DIRECTORY = "mars";
+    private static final String PACKAGE_PREFIX = "mars.mips.instructions.customlangs.";
+
+    private final JavaCompiler compiler;
+    private final Writer diagnostics;
+
+    /**
+    * @param diagnostics Receives compiler warnings and errors.
+    * @throws IllegalStateException if MARS is running on a JRE that has no Java compiler.
+    */
+    public LanguageCompiler(Writer diagnostics){
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null){
+            throw new IllegalStateException("No Java compiler is available. Run MARS with a JDK to build custom languages.");
+        }
+        this.diagnostics = diagnostics;
+    }
+
+    /**
+    * Compiles Mars.java and the classes it depends on in place, as "javac Mars.java" would, unless Mars.class is
+    * newer than every source file under the mars directory.
+    * @return true if MARS is up to date, false if compilation failed.
+    */
+    public boolean ensureMarsCompiled(){
+        File marsClass = new File(MARS_CLASS);
+        if (marsClass.exists() && newestSource(new File(MARS_SOURCE_DIRECTORY), new File(MARS_SOURCE).lastModified()) <= marsClass.lastModified()){
+            return true;
+        }
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+        try {
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(new File(MARS_SOURCE));
+            return compiler.getTask(diagnostics, fileManager, null, null, null, units).call().booleanValue();
+        } finally {
+            close(fileManager);
+        }
+    }
+
+    /**
+    * Compiles a language source file into memory.
+    * @param source The language's .java file.
+    * @return Class file contents keyed by binary class name, or null if compilation failed.
+    */
+    public Map<String, byte[]> compile(File source){
+        StandardJavaFileManager standard = compiler.getStandardFileManager(null, null, null);
+        MemoryFileManager fileManager = new MemoryFileManager(standard);
+        try {
+            Iterable<? extends JavaFileObject> units = standard.getJavaFileObjects(source);
+            List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"));
+            if (!compiler.getTask(diagnostics, fileManager, null, options, null, units).call().booleanValue()){
+                return null;
+            }
+            return fileManager.getClasses();
+        } finally {
+            close(fileManager);
+        }
+    }
+
+    /**
+    * Compiles a language source file and writes its classes to a JAR whose manifest names the language class.
+    * @param source The language's .java file.
+    * @param jar The JAR file to create or replace.
+    * @return true if the JAR was built, false if compilation failed.
+    * @throws IOException if the JAR cannot be written.
+    */
+    public boolean buildJar(File source, File jar) throws IOException{
+        Map<String, byte[]> classes = compile(source);
+        if (classes == null){
+            return false;
+        }
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue(LanguageDiscovery.MANIFEST_ATTRIBUTE, languageClassName(source));
+        // Write to a temporary file first so a watching LanguageReloader never sees a half-written JAR
+        File temp = new File(jar.getPath() + ".tmp");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(temp), manifest);
+        try {
+            for (Map.Entry<String, byte[]> entry : classes.entrySet()){
+                out.putNextEntry(new JarEntry(entry.getKey().replace('.', '/') + ".class"));
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+        java.nio.file.Files.move(temp.toPath(), jar.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+        return true;
+    }
+
+    /**
+    * @param source A language's .java file in the customlangs directory.
+    * @return The fully qualified name of the class it declares.
+    */
+    public static String languageClassName(File source){
+        String name = source.getName();
+        return PACKAGE_PREFIX + name.substring(0, name.lastIndexOf('.'));
+    }
+
+    private static long newestSource(File dir, long newest){
+        File[] files = dir.listFiles();
+        if (files == null){
+            return newest;
+        }
+        for (File f : files){
+            if (f.isDirectory()){
+                newest = newestSource(f, newest);
+            } else if (f.getName().endsWith(".java")){
+                newest = Math.max(newest, f.lastModified());
+            }
+        }
+        return newest;
+    }
+
+    private static void close(JavaFileManager fileManager){
+        try {
+            fileManager.close();
+        } catch (IOException e){
+            // Nothing was written through the file manager that could be lost.
+        }
+    }
+
+    /*
+     * Keeps compiled class files in memory instead of writing them to the output directory.
+     */
+    private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager>{
+        private final LinkedHashMap<String, ByteArrayOutputStream> classes = new LinkedHashMap<String, ByteArrayOutputStream>();
+
+        MemoryFileManager(StandardJavaFileManager fileManager){
+            super(fileManager);
+        }
+
+        public JavaFileObject getJavaFileForOutput(Location location, final String className, JavaFileObject.Kind kind, FileObject sibling){
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            classes.put(className, bytes);
+            return new SimpleJavaFileObject(URI.create("mem:///" + className.replace('.', '/') + kind.extension), kind){
+                public OutputStream openOutputStream(){
+                    return bytes;
+                }
+            };
+        }
+
+        Map<String, byte[]> getClasses(){
+            LinkedHashMap<String, byte[]> result = new LinkedHashMap<String, byte[]>();
+            for (Map.Entry<String, ByteArrayOutputStream> entry : classes.entrySet()){
+                result.put(entry.getKey(), entry.getValue().toByteArray());
+            }
+            return result;
+        }
+    }
+}
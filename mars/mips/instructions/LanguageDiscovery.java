@@ -0,0 +1,233 @@
+    package mars.mips.instructions;
+    import mars.util.*;
+    import java.util.*;
+    import java.util.concurrent.*;
+    import java.util.jar.JarEntry;
+    import java.util.jar.JarFile;
+    import java.util.jar.Manifest;
+    import java.io.*;
+    import java.net.URLClassLoader;
+    import java.net.URL;
+
+/**
+ * Finds the custom languages contained in language JAR files without instantiating them where possible.
+ * A JAR may list its language classes in a "Custom-Language" manifest attribute; otherwise its top-level classes
+ * are scanned. The classes, names and descriptions found are recorded in a discovery index file keyed by JAR
+ * modification time, so unchanged JARs are not opened again on later startups. JARs are examined in parallel.
+ * <p>
+ * This is kept separate from LanguageLoader because discovery runs while LanguageLoader's static initializer
+ * is still executing, and worker threads may not call into a class that is being initialized.
+ * @see LanguageLoader
+ * @see LazyCustomAssembly
+ */
+class LanguageDiscovery{
+    /** Manifest attribute listing the fully qualified names of the CustomAssembly classes in a language JAR, separated by spaces. */
+    static final String MANIFEST_ATTRIBUTE = "Custom-Language";
+    private static final String INDEX_FILE = "languages.index";
+
+    /*
+     * Finds the languages in every JAR of the custom language directory, consulting and then refreshing the
+     * discovery index. JARs are examined in parallel; the result keeps directory listing order.
+     */
+    static ArrayList<CustomAssembly> discoverLanguages(ClassLoader loader, final String directory, String extension){
+        ArrayList<String> langCandidates = FilenameFinder.getFilenameList(loader, directory, extension);
+        // Ensure duplicates are not loaded
+        LinkedHashSet<String> languages = new LinkedHashSet<String>(langCandidates);
+        final File indexFile = new File(directory, INDEX_FILE);
+        final Properties index = loadIndex(indexFile);
+        final Properties newIndex = new Properties();
+
+        ArrayList<Future<ArrayList<LazyCustomAssembly>>> results = new ArrayList<Future<ArrayList<LazyCustomAssembly>>>();
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(languages.size(), Runtime.getRuntime().availableProcessors())));
+        for (final String file : languages){
+            results.add(pool.submit(new Callable<ArrayList<LazyCustomAssembly>>(){
+                public ArrayList<LazyCustomAssembly> call(){
+                    return discoverJar(new File(directory + "/" + file), index, newIndex);
+                }
+            }));
+        }
+        pool.shutdown();
+
+        ArrayList<CustomAssembly> found = new ArrayList<CustomAssembly>();
+        for (Future<ArrayList<LazyCustomAssembly>> result : results){
+            try {
+                found.addAll(result.get());
+            } catch (Exception e){
+                System.out.println("Error loading custom language: " + e);
+            }
+        }
+        if (!newIndex.equals(index)){
+            saveIndex(indexFile, newIndex);
+        }
+        return found;
+    }
+
+    /*
+     * Reads every declarative language definition file in the custom language directory. These are parsed
+     * directly since, unlike JARs, they contain no classes to load.
+     */
+    static ArrayList<CustomAssembly> discoverDefinitions(ClassLoader loader, String directory, String extension){
+        ArrayList<CustomAssembly> found = new ArrayList<CustomAssembly>();
+        LinkedHashSet<String> definitions = new LinkedHashSet<String>(FilenameFinder.getFilenameList(loader, directory, extension));
+        for (String file : definitions){
+            LazyCustomAssembly c = loadDefinition(new File(directory + "/" + file));
+            if (c != null){
+                found.add(c);
+            }
+        }
+        return found;
+    }
+
+    /**
+    * Reads a declarative language definition file.
+    * @param f The definition file.
+    * @return The language, or null if the file is invalid (the error is reported on standard output).
+    */
+    static LazyCustomAssembly loadDefinition(File f){
+        try {
+            DeclarativeAssembly c = new DeclarativeAssembly(f);
+            return new LazyCustomAssembly(f, DeclarativeAssembly.class.getName(), c.getName(), c.getDescription(), c);
+        } catch (Exception e){
+            System.out.println("Error loading custom language definition " + f.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /*
+     * Determines the languages in one JAR. Uses the index entry if the JAR has not been modified since it was
+     * recorded, otherwise the manifest attribute or a scan of the JAR's top-level classes. The entry for the JAR
+     * is written to newIndex.
+     */
+    private static ArrayList<LazyCustomAssembly> discoverJar(File f, Properties index, Properties newIndex){
+        ArrayList<LazyCustomAssembly> found = new ArrayList<LazyCustomAssembly>();
+        String key = f.getName();
+        String modified = Long.toString(f.lastModified());
+        String classes = index.getProperty(key + ".classes");
+
+        if (classes != null && modified.equals(index.getProperty(key + ".modified"))){
+            for (String className : splitClassNames(classes)){
+                String name = index.getProperty(key + "." + className + ".name");
+                String description = index.getProperty(key + "." + className + ".description", "");
+                if (name != null){
+                    found.add(new LazyCustomAssembly(f, className, name, description, null));
+                }
+            }
+        } else{
+            // Add an instance of the class to assemblyList if it extends CustomAssembly
+            try {
+                found.addAll(loadJar(f, f));
+            } catch(Exception e){
+                System.out.println("Error instantiating CustomAssembly from file " + key + ": " + e);
+                return found;
+            }
+        }
+
+        StringBuilder names = new StringBuilder();
+        synchronized (newIndex){
+            for (LazyCustomAssembly c : found){
+                names.append(c.getClassName()).append(' ');
+                newIndex.setProperty(key + "." + c.getClassName() + ".name", c.getName());
+                newIndex.setProperty(key + "." + c.getClassName() + ".description", c.getDescription());
+            }
+            newIndex.setProperty(key + ".classes", names.toString().trim());
+            newIndex.setProperty(key + ".modified", modified);
+        }
+        return found;
+    }
+
+    /*
+     * Opens a JAR and instantiates each CustomAssembly class it contains. The classes are taken from the manifest
+     * attribute when present. Otherwise every top-level class is tested; nested and anonymous classes (such as the
+     * SimulationCode handlers) are skipped since a language must be a public class with a public constructor.
+     * The classes are read from f; the languages created report origin as their JAR file.
+     */
+    static ArrayList<LazyCustomAssembly> loadJar(File f, File origin) throws Exception{
+        ArrayList<LazyCustomAssembly> found = new ArrayList<LazyCustomAssembly>();
+        ArrayList<String> classNames = new ArrayList<String>();
+        JarFile jarFile = new JarFile(f);
+        try {
+            Manifest manifest = jarFile.getManifest();
+            String declared = (manifest == null) ? null : manifest.getMainAttributes().getValue(MANIFEST_ATTRIBUTE);
+            if (declared != null){
+                classNames.addAll(splitClassNames(declared));
+            } else{
+                Enumeration<JarEntry> e = jarFile.entries();
+                while (e.hasMoreElements()){
+                    JarEntry je = e.nextElement();
+                    if (!je.getName().endsWith(".class") || je.getName().indexOf('$') >= 0){
+                        continue;
+                    }
+                    classNames.add(je.getName().replace(".class", "").replace("/", "."));
+                }
+            }
+        } finally {
+            jarFile.close();
+        }
+
+        // Create a class loader that can load classes from our JAR files
+        ClassLoader cl = newLanguageClassLoader(f);
+        for (String className : classNames){
+            Class langClass = cl.loadClass(className);
+            /* 
+            if (className.endsWith(EXAMPLE_FILE))
+                continue;
+            */
+            // Do nothing if the class doesn't implement CustomAssembly
+            if (!CustomAssembly.class.isAssignableFrom(langClass)){
+                continue;
+            }
+            CustomAssembly c = LazyCustomAssembly.instantiate(cl, className);
+            found.add(new LazyCustomAssembly(origin, className, c.getName(), c.getDescription(), c));
+        }
+        return found;
+    }
+
+    /**
+    * Creates a class loader for the classes in a language JAR file.
+    * @param f The JAR file.
+    * @return A class loader whose parent is the loader of the MARS classes.
+    * @throws IOException if the file cannot be converted to a URL.
+    */
+    static ClassLoader newLanguageClassLoader(File f) throws IOException{
+        URL[] urls = {f.toURI().toURL()};
+        return URLClassLoader.newInstance(urls, LanguageDiscovery.class.getClassLoader());
+    }
+
+    private static ArrayList<String> splitClassNames(String classes){
+        ArrayList<String> names = new ArrayList<String>();
+        StringTokenizer st = new StringTokenizer(classes, " ,");
+        while (st.hasMoreTokens()){
+            names.add(st.nextToken());
+        }
+        return names;
+    }
+
+    private static Properties loadIndex(File indexFile){
+        Properties index = new Properties();
+        try {
+            InputStream in = new FileInputStream(indexFile);
+            try {
+                index.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e){
+            // No index yet, or running from a JAR; every language JAR is examined.
+        }
+        return index;
+    }
+
+    private static void saveIndex(File indexFile, Properties index){
+        try {
+            OutputStream out = new FileOutputStream(indexFile);
+            try {
+                index.store(out, "Custom language discovery index; generated by MARS, safe to delete");
+            } finally {
+                out.close();
+            }
+        } catch (IOException e){
+            // Directory not writable; the JARs will simply be examined again next time.
+        }
+    }
+
+}
@@ -2,76 +2,82 @@
     import mars.*;
     import mars.util.*;
     import java.util.*;
-    import java.util.jar.JarEntry;
-    import java.util.jar.JarFile;
-    import java.io.*;
-    import java.lang.reflect.Constructor;
-    import java.net.URLClassLoader;
-    import java.net.URL;
     
 /**
- * Handles all user-defined instruction sets. Loads JAR files containing classes which extend CustomAssembly from the mars/mips/instructions/customlangs directory
+ * Handles all user-defined instruction sets. Loads JAR files containing classes which extend CustomAssembly, and .lang
+ * declarative language definitions (see DeclarativeAssembly), from the mars/mips/instructions/customlangs directory
  * and adds them to the Language Switcher.
+ * JARs are examined in parallel by LanguageDiscovery, and a language class is only instantiated once the language is enabled.
  * @see CustomAssembly
+ * @see LanguageDiscovery
  * @see assemblyList
  */
 public class LanguageLoader{
     private static final String CUSTOM_LANG_DIRECTORY = "mars/mips/instructions/customlangs";
     private static final String JAR_EXTENSION = "jar";
+    private static final String DEFINITION_EXTENSION = "lang";
     private static final String EXAMPLE_FILE = "ExampleCustomLanguage";
 
     private static ArrayList<BasicInstruction> finalInstructionList = new ArrayList<BasicInstruction>();
     public static ArrayList<CustomAssembly> assemblyList = new ArrayList<CustomAssembly>(){{
         MipsAssembly m = new MipsAssembly();
         add(m);
+        addAll(LanguageDiscovery.discoverLanguages(m.getClass().getClassLoader(), CUSTOM_LANG_DIRECTORY, JAR_EXTENSION));
+        addAll(LanguageDiscovery.discoverDefinitions(m.getClass().getClassLoader(), CUSTOM_LANG_DIRECTORY, DEFINITION_EXTENSION));
+    }};
+    private static ArrayList<Runnable> listListeners = new ArrayList<Runnable>();
 
-        ArrayList<String> langCandidates = FilenameFinder.getFilenameList(m.getClass().getClassLoader(), CUSTOM_LANG_DIRECTORY, JAR_EXTENSION);
-        HashSet<String> languages = new HashSet<String>();
-
-        for (String file : langCandidates){
-            // Ensure duplicates are not loaded
-            if (languages.contains(file)){
-                continue;
-            } else{
-                languages.add(file);
-            }
-            // Add an instance of the class to assemblyList if it extends CustomAssembly
-            try {
-                String jarPath = CUSTOM_LANG_DIRECTORY + "/" + file;
-                File f = new File(jarPath);
+    /**
+    * Registers an action to run on the event thread whenever a language is added to assemblyList while MARS runs,
+    * e.g. so that the Language Switcher can rebuild its menu.
+    * @param listener The action.
+    */
+    public static synchronized void addListListener(Runnable listener){
+        listListeners.add(listener);
+    }
 
-                // Create a class loader that can load classes from our JAR files
-                URL[] urls = {f.toURI().toURL()};
-                URLClassLoader cl = URLClassLoader.newInstance(urls);
+    /**
+    * Removes an action registered with addListListener.
+    * @param listener The action.
+    */
+    public static synchronized void removeListListener(Runnable listener){
+        listListeners.remove(listener);
+    }
 
-                JarFile jarFile = new JarFile(f);
-                Enumeration<JarEntry> e = jarFile.entries();
+    /*
+     * Runs the registered actions. Called on the event thread after assemblyList has grown.
+     */
+    static void fireListChanged(){
+        Runnable[] listeners;
+        synchronized (LanguageLoader.class){
+            listeners = listListeners.toArray(new Runnable[listListeners.size()]);
+        }
+        for (Runnable listener : listeners){
+            listener.run();
+        }
+    }
 
-                while (e.hasMoreElements()){
-                    JarEntry je = e.nextElement();
-                    if (!je.getName().endsWith(".class")){
-                        continue;
-                    }
-                    String className = je.getName().replace(".class", "").replace("/", ".");
-                    Class langClass = cl.loadClass(className);
-                    /* 
-                    if (className.endsWith(EXAMPLE_FILE))
-                        continue;
-                    */
-                    // Do nothing if the class doesn't implement CustomAssembly
-                    if (!CustomAssembly.class.isAssignableFrom(langClass)){
-                        continue;
-                    }
 
-                    Constructor<CustomAssembly> c = langClass.getConstructor();
-                    add(c.newInstance());
-                }
-                jarFile.close();
-            } catch(Exception e){
-                System.out.println("Error instantiating CustomAssembly from file " + file + ": " + e);
+    /**
+    * @return The enabled languages, in assemblyList order. Used by InstructionSet as the key of its cached instruction set models.
+    */
+    public static ArrayList<CustomAssembly> getEnabledAssemblies(){
+        ArrayList<CustomAssembly> enabled = new ArrayList<CustomAssembly>();
+        for (CustomAssembly c : assemblyList){
+            if (c.enabled){
+                enabled.add(c);
             }
         }
-    }};
+        return enabled;
+    }
+
+    /**
+    * @param language A language in assemblyList.
+    * @return The JAR or .lang file the language was loaded from, or null for the built-in MIPS language.
+    */
+    public static java.io.File getLanguageFile(CustomAssembly language){
+        return (language instanceof LazyCustomAssembly) ? ((LazyCustomAssembly) language).getJarFile() : null;
+    }
 
     /**
     * Merges all enabled custom instruction sets into the main instruction set that the simulator reads from.
@@ -0,0 +1,161 @@
+    package mars.mips.instructions;
+    import mars.*;
+    import java.util.*;
+    import java.io.*;
+    import java.nio.file.*;
+    import javax.swing.SwingUtilities;
+
+/**
+ * Watches the custom language directory and reloads a language JAR when it is rebuilt (for example by BuildCustomLang)
+ * while MARS is running, and a declarative .lang definition when it is saved. A JAR is copied and loaded through its
+ * own class loader, so the file can be replaced again and the previous classes are not reused. The new language instance is swapped into the existing assemblyList entry,
+ * and only the cached instruction set models that include that language are discarded.
+ * @see LanguageLoader
+ * @see LazyCustomAssembly
+ */
+public class LanguageReloader implements Runnable{
+    private static final String CUSTOM_LANG_DIRECTORY = "mars/mips/instructions/customlangs";
+    private static final String JAR_EXTENSION = ".jar";
+    private static final String DEFINITION_EXTENSION = ".lang";
+    // A JAR is reloaded once it has not been written to for this long, so a partially written file is never opened.
+    private static final long SETTLE_MILLIS = 500;
+    private static final long POLL_MILLIS = 250;
+    private static LanguageReloader reloader = null;
+
+    private final Path directory;
+    private final WatchService watcher;
+    private final HashMap<String, Long> pending = new HashMap<String, Long>();
+
+    private LanguageReloader(Path directory) throws IOException{
+        this.directory = directory;
+        this.watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+    }
+
+    /**
+    * Starts the reload service on a daemon thread if it is not already running. Does nothing if the custom
+    * language directory does not exist on the file system, e.g. when MARS runs from a JAR.
+    */
+    public static synchronized void start(){
+        if (reloader != null){
+            return;
+        }
+        File dir = new File(CUSTOM_LANG_DIRECTORY);
+        if (!dir.isDirectory()){
+            return;
+        }
+        try {
+            reloader = new LanguageReloader(dir.toPath());
+        } catch (IOException e){
+            System.out.println("Custom language reloading is unavailable: " + e);
+            return;
+        }
+        Thread t = new Thread(reloader, "Custom language reloader");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    public void run(){
+        while (true){
+            WatchKey key;
+            try {
+                key = watcher.poll(POLL_MILLIS, java.util.concurrent.TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e){
+                return;
+            } catch (ClosedWatchServiceException e){
+                return;
+            }
+            if (key != null){
+                for (WatchEvent<?> event : key.pollEvents()){
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW){
+                        continue;
+                    }
+                    String file = event.context().toString();
+                    if (file.toLowerCase().endsWith(JAR_EXTENSION) || file.toLowerCase().endsWith(DEFINITION_EXTENSION)){
+                        pending.put(file, Long.valueOf(System.currentTimeMillis()));
+                    }
+                }
+                key.reset();
+            }
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<String, Long>> entries = pending.entrySet().iterator();
+            while (entries.hasNext()){
+                Map.Entry<String, Long> entry = entries.next();
+                if (now - entry.getValue().longValue() >= SETTLE_MILLIS){
+                    entries.remove();
+                    reload(directory.resolve(entry.getKey()).toFile());
+                }
+            }
+        }
+    }
+
+    /*
+     * Loads the languages in a rebuilt JAR from a private copy and hands them to the event thread to be swapped in.
+     */
+    private void reload(File jar){
+        final ArrayList<LazyCustomAssembly> loaded = new ArrayList<LazyCustomAssembly>();
+        if (jar.getName().toLowerCase().endsWith(DEFINITION_EXTENSION)){
+            LazyCustomAssembly definition = LanguageDiscovery.loadDefinition(jar);
+            if (definition == null){
+                return;
+            }
+            loaded.add(definition);
+        } else try {
+            File copy = File.createTempFile("mars-" + jar.getName().replace(JAR_EXTENSION, ""), JAR_EXTENSION);
+            copy.deleteOnExit();
+            Files.copy(jar.toPath(), copy.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            loaded.addAll(LanguageDiscovery.loadJar(copy, jar));
+        } catch (Exception e){
+            System.out.println("Error reloading CustomAssembly from file " + jar.getName() + ": " + e);
+            return;
+        }
+        SwingUtilities.invokeLater(new Runnable(){
+            public void run(){
+                install(loaded);
+            }
+        });
+    }
+
+    /*
+     * Swaps reloaded languages into assemblyList. A language already present keeps its entry, and the instruction
+     * set is repopulated if that language is currently enabled; a new language is appended, and the language
+     * menus are told so that it can be selected.
+     */
+    private static void install(ArrayList<LazyCustomAssembly> loaded){
+        boolean repopulate = false;
+        boolean added = false;
+        for (LazyCustomAssembly replacement : loaded){
+            LazyCustomAssembly existing = findLanguage(replacement.getJarFile().getName(), replacement.getClassName());
+            if (existing == null){
+                LanguageLoader.assemblyList.add(replacement);
+                added = true;
+                System.out.println("Added custom language " + replacement.getName() + " from " + replacement.getJarFile().getName());
+                continue;
+            }
+            existing.replaceWith(replacement);
+            if (Globals.instructionSet != null){
+                Globals.instructionSet.invalidate(existing);
+            }
+            repopulate = repopulate || existing.enabled;
+            System.out.println("Reloaded custom language " + existing.getName() + " from " + replacement.getJarFile().getName());
+        }
+        if (repopulate && Globals.instructionSet != null){
+            Globals.instructionSet.populate();
+        }
+        if (added){
+            LanguageLoader.fireListChanged(); // so that the new language can be selected
+        }
+    }
+
+    private static LazyCustomAssembly findLanguage(String jarName, String className){
+        for (CustomAssembly c : LanguageLoader.assemblyList){
+            if (c instanceof LazyCustomAssembly){
+                LazyCustomAssembly lazy = (LazyCustomAssembly) c;
+                if (lazy.getJarFile().getName().equals(jarName) && lazy.getClassName().equals(className)){
+                    return lazy;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,109 @@
+   package mars.mips.instructions;
+   import java.util.*;
+   import java.io.*;
+
+/**
+ * Stand-in for a CustomAssembly found in a language JAR.  The name and description are known
+ * from the language discovery index, so the language class itself is only loaded and
+ * instantiated the first time its instructions are needed, i.e. when it is enabled.
+ * @see LanguageLoader
+ */
+class LazyCustomAssembly extends CustomAssembly{
+   private final File jarFile;
+   private final String className;
+   private String name;
+   private String description;
+   private CustomAssembly delegate;
+
+   /**
+    * @param jarFile The JAR file containing the language class.
+    * @param className Fully qualified name of the class extending CustomAssembly.
+    * @param name The language name, as returned by the class's getName().
+    * @param description The language description, as returned by the class's getDescription().
+    * @param delegate An already created instance of the language, or null to create it on first use.
+    */
+   LazyCustomAssembly(File jarFile, String className, String name, String description, CustomAssembly delegate){
+      this.jarFile = jarFile;
+      this.className = className;
+      this.name = name;
+      this.description = description;
+      this.delegate = delegate;
+   }
+
+   public synchronized String getName(){
+      return name;
+   }
+
+   public synchronized String getDescription(){
+      return description;
+   }
+
+   /**
+    * @return The JAR file the language was loaded from.
+    */
+   File getJarFile(){
+      return jarFile;
+   }
+
+   /**
+    * @return Fully qualified name of the language class.
+    */
+   String getClassName(){
+      return className;
+   }
+
+   /**
+    * Instantiates the language if that has not happened yet, then merges its instructions.
+    * @param instrList The larger ArrayList. Should be the finalInstructionList of LanguageLoader.
+    */
+   public void addCustomInstructions(ArrayList<BasicInstruction> instrList){
+      CustomAssembly language;
+      try {
+         language = getDelegate();
+      } catch (Exception e){
+         System.out.println("Error instantiating CustomAssembly " + className + " from file " + jarFile.getName() + ": " + e);
+         return;
+      }
+      language.addCustomInstructions(instrList);
+   }
+
+   protected void populate(){
+      // Instructions are supplied by the delegate; see addCustomInstructions.
+   }
+
+   /**
+    * @return The language instance, loading its class from the JAR first if necessary.
+    */
+   synchronized CustomAssembly getDelegate() throws Exception{
+      if (delegate == null){
+         delegate = instantiate(LanguageDiscovery.newLanguageClassLoader(jarFile), className);
+      }
+      return delegate;
+   }
+
+   /**
+    * Replaces the language instance with one loaded from a rebuilt JAR.  This object keeps its identity,
+    * so menus and the enabled flag that refer to it stay valid.
+    * @param replacement The newly loaded language, as found by LanguageDiscovery.
+    */
+   synchronized void replaceWith(LazyCustomAssembly replacement){
+      name = replacement.name;
+      description = replacement.description;
+      delegate = replacement.delegate;
+   }
+
+   /**
+    * Loads a language class through the given class loader and creates an instance of it.
+    * @param cl Class loader for the language's JAR file.
+    * @param className Fully qualified name of the class.
+    * @return The new instance.
+    * @throws Exception if the class cannot be loaded or does not extend CustomAssembly.
+    */
+   static CustomAssembly instantiate(ClassLoader cl, String className) throws Exception{
+      Class langClass = cl.loadClass(className);
+      if (!CustomAssembly.class.isAssignableFrom(langClass)){
+         throw new ClassCastException(className + " does not extend CustomAssembly");
+      }
+      return (CustomAssembly) langClass.getConstructor().newInstance();
+   }
+}
@@ -4,7 +4,7 @@ import mars.*;
 import mars.simulator.*;
 import mars.mips.hardware.*;
 import mars.util.*;
-import java.util.Random;
+import mars.mips.instructions.syscalls.RandomStreams;
 
 /**
  * Lobotomy Corporation Assembly (LCA)
@@ -13,8 +13,6 @@ import java.util.Random;
 
 public class LobotomyCorpAssembly extends CustomAssembly {
 
-    private Random random = new Random();
-
     @Override
     public String getName() {
         return "Lobotomy Corporation Assembly";
@@ -269,7 +267,7 @@ public class LobotomyCorpAssembly extends CustomAssembly {
                                 int idx = Math.max(0, Math.min(risk, multipliers.length - 1));
                                 float mult = multipliers[idx];
 
-                                int delta = 1 + (int)(mult * (1 + (int)(Math.random() * 10))); // 1..something
+                                int delta = 1 + (int)(mult * (1 + (int)(RandomStreams.getStream(getName()).nextDouble() * 10))); // 1..something
                                 int result = base + delta;
 
                                 RegisterFile.updateRegister(rd, result);
@@ -379,7 +377,7 @@ public class LobotomyCorpAssembly extends CustomAssembly {
                                 int[] operands = statement.getOperands();
                                 int level = operands[0] << 16 >> 16;
 
-                                int r = 8 + (int)(Math.random() * 8);
+                                int r = 8 + (int)(RandomStreams.getStream(getName()).nextDouble() * 8);
                                 int val = RegisterFile.getValue(r);
                                 int[] dmg = {5, 10, 20, 40};
                                 int idx = Math.max(0, Math.min(level, dmg.length - 1));
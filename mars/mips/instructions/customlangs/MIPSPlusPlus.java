@@ -8,6 +8,7 @@
     import java.io.*;
     import mars.mips.instructions.*;
     import java.util.Random;
+    import mars.mips.instructions.syscalls.RandomStreams;
 
 
 public class MIPSPlusPlus extends CustomAssembly{
@@ -129,7 +130,7 @@ public class MIPSPlusPlus extends CustomAssembly{
                      int lower = RegisterFile.getValue(operands[1]);
                      int upper = RegisterFile.getValue(operands[2]);
 
-                     Random random = new Random();
+                     Random random = RandomStreams.getStream(getName());
                      int roll = random.nextInt(upper - (lower + 1)) + lower;
                      RegisterFile.updateRegister(operands[0], result);
 
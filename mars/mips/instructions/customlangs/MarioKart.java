@@ -8,6 +8,7 @@
     import java.io.*;
     import mars.mips.instructions.*;
     import java.util.Random;
+    import mars.mips.instructions.syscalls.RandomStreams;
 
 
 public class MarioKart extends CustomAssembly{
@@ -135,7 +136,7 @@ public class MarioKart extends CustomAssembly{
                      // items: red (0), blue shell (1), green shell (2), banana peel (3), bullet bill (4), mushroom (5)
 
                      // roll for a random number
-                     Random random = new Random();
+                     Random random = RandomStreams.getStream(getName());
                      int roll = random.nextInt(6);
                      item = roll;
                      // SystemIO.printString("Random roll: " + roll + "\n");
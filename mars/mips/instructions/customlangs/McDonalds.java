@@ -8,6 +8,7 @@
     import java.io.*;
     import mars.mips.instructions.*;
     import java.util.Random;
+    import mars.mips.instructions.syscalls.RandomStreams;
 
 
 public class McDonalds extends CustomAssembly{
@@ -64,7 +65,7 @@ public class McDonalds extends CustomAssembly{
                      // $t0 stores price of order
                      int[] operands = statement.getOperands();
 
-                     Random random = new Random();
+                     Random random = RandomStreams.getStream(getName());
                      int tax = random.nextInt(10) + 1;
 
                      RegisterFile.updateRegister(operands[0], tax);
@@ -122,7 +123,7 @@ public class McDonalds extends CustomAssembly{
                   {
 
                      // roll for a random toy
-                     Random random = new Random();
+                     Random random = RandomStreams.getStream(getName());
                      int roll = random.nextInt(6);
                      // SystemIO.printString("Random roll: " + roll + "\n");
 
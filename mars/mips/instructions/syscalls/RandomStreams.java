@@ -1,5 +1,6 @@
    package mars.mips.instructions.syscalls;
 	import java.util.HashMap;
+	import java.util.Random;
 
 /*
 Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
@@ -31,13 +32,108 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 
 /** 
- * This small class serves only to hold a static HashMap for storing
- * random number generators for use by all the random number generator
- * syscalls.
+ * Pseudorandom number streams of the simulated machine.  The random number
+ * syscalls use streams identified by number ($a0); custom languages, tools
+ * and other simulator components use streams identified by name, so they
+ * do not disturb the sequences seen by the MIPS program.
+ * <p>
+ * By default every stream is unseeded.  If a machine seed is set (command
+ * mode option <tt>rs&lt;n&gt;</tt>), each stream is instead seeded from it and
+ * its number or name, so that a run can be reproduced exactly.  Streams are
+ * discarded by reset(), which is done when a program is assembled or reset.
+ *
+ * @version October 2026
  */
  
     public class RandomStreams {
       /** Collection of pseudorandom number streams available for use in Rand-type syscalls.
        * The streams are by default not seeded. */
 		 static final HashMap randomStreams = new HashMap();
-   }
\ No newline at end of file
+      private static final HashMap namedStreams = new HashMap();
+      private static Long seed = null;
+      private static boolean unseededUsed = false;
+   
+      /**
+       * Set the machine seed from which all streams created afterwards are seeded.
+       * @param machineSeed the seed, or null for unseeded streams (the default)
+       */
+       public static synchronized void setSeed(Long machineSeed) {
+         seed = machineSeed;
+         reset();
+      }
+   
+      /**
+       * @return the machine seed, or null if streams are unseeded
+       */
+       public static synchronized Long getSeed() {
+         return seed;
+      }
+   
+      /**
+       * Discard all streams, so that each restarts its sequence when next used.
+       */
+       public static synchronized void reset() {
+         randomStreams.clear();
+         namedStreams.clear();
+         unseededUsed = false;
+      }
+   
+      /**
+       * Determine whether an unseeded stream was used since the last reset, in which case
+       * the run cannot be reproduced.
+       * @return true if any stream used since the last reset was unseeded
+       */
+       public static synchronized boolean unseededStreamsUsed() {
+         return unseededUsed;
+      }
+   
+      /**
+       * Get the stream used by the random number syscalls with the given index.
+       * @param index stream number, from $a0
+       * @return the stream, created if necessary
+       */
+       public static synchronized Random getStream(int index) {
+         Integer key = new Integer(index);
+         Random stream = (Random) randomStreams.get(key);
+         if (stream == null) {
+            stream = newStream(index, null);
+            randomStreams.put(key, stream);
+         }
+         return stream;
+      }
+   
+      /**
+       * Get a named stream, for use by custom languages, tools and the simulator.
+       * @param name name of the stream, e.g. the name of the language using it
+       * @return the stream, created if necessary
+       */
+       public static Random getStream(String name) {
+         return getStream(name, null);
+      }
+   
+      /**
+       * Get a named stream, for use by custom languages, tools and the simulator.
+       * @param name name of the stream, e.g. the name of the tool using it
+       * @param defaultSeed seed to use if no machine seed is set; null for an unseeded stream
+       * @return the stream, created if necessary
+       */
+       public static synchronized Random getStream(String name, Long defaultSeed) {
+         Random stream = (Random) namedStreams.get(name);
+         if (stream == null) {
+            stream = newStream(((long) name.hashCode() << 32) | 0x80000000L, defaultSeed);
+            namedStreams.put(name, stream);
+         }
+         return stream;
+      }
+   
+       private static Random newStream(long key, Long defaultSeed) {
+         if (seed != null) {
+            return new Random(seed.longValue() ^ (key * 0x9E3779B97F4A7C15L));
+         }
+         if (defaultSeed == null) {
+            unseededUsed = true;
+            return new Random();
+         }
+         return new Random(defaultSeed.longValue());
+      }
+   }
@@ -38,6 +38,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
  
     public class SyscallTime extends AbstractSyscall {
+      private static boolean timeRead = false;
+   
    /**
     * Build an instance of the Read Char syscall.  Default service number
     * is 12 and name is "ReadChar".
@@ -52,8 +54,29 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    */
        public void simulate(ProgramStatement statement) throws ProcessingException {
 			long value = new java.util.Date().getTime();
+         setTimeRead();
          RegisterFile.updateRegister(4, Binary.lowOrderLongToInt(value)); // $a0 
 			RegisterFile.updateRegister(5, Binary.highOrderLongToInt(value)); // $a1
       }
    
+       private static synchronized void setTimeRead() {
+         timeRead = true;
+      }
+   
+   /**
+    * Forget any earlier use of this syscall, so that timeWasRead() reports uses from now on.
+    */
+       public static synchronized void resetTimeRead() {
+         timeRead = false;
+      }
+   
+   /**
+    * Determine whether a program read the time of day since the last resetTimeRead(), in
+    * which case its run cannot be reproduced.
+    * @return true if this syscall was performed since the last reset
+    */
+       public static synchronized boolean timeWasRead() {
+         return timeRead;
+      }
+   
    }
\ No newline at end of file
@@ -0,0 +1,241 @@
+   package mars.simulator;
+   import mars.*;
+   import mars.mips.hardware.*;
+   import mars.mips.instructions.*;
+   import java.util.*;
+
+/**
+ * Cache of basic blocks (straight-line runs of statements) in the text segments, used
+ * by the simulator to execute a block of instructions as a unit.  The per-instruction
+ * bookkeeping of the simulation loop (stop, breakpoints, step limit, GUI update, run
+ * speed) is then done once per block.  Each block remembers the blocks it most recently
+ * exited to, so a loop chains from block to block without looking anything up.
+ * <p>
+ * A block is only a prediction of where control flow goes: after every instruction the
+ * program counter is compared with the address of the next statement in the block, and
+ * the block is left as soon as they differ.  This handles any instruction that changes
+ * control flow, including custom language instructions.  The whole cache is discarded
+ * whenever a statement is stored into a text segment (see Memory.getTextGeneration),
+ * which covers self-modifying code and reassembly.  A block never extends past a
+ * breakpoint, so the simulator sees the program counter reach every breakpoint; the cache
+ * is discarded whenever the set of enabled breakpoints changes.
+ * <p>
+ * Blocks are interpreted statement by statement at first.  A block executed
+ * BlockCompiler.COMPILE_THRESHOLD times is compiled to JVM bytecode by BlockCompiler,
+ * and the compiled code is used from then on whenever it can be.
+ *
+ * @version October 2026
+ */
+
+    class BasicBlockCache {
+      /** Maximum number of statements in one block. */
+      static final int MAX_BLOCK_LENGTH = 64;
+      private HashMap blocks = new HashMap();
+      private BreakpointTable breakpoints;
+      private int generation;
+      private int breakpointGeneration;
+      private Block previous;
+      private int lastAddress;
+      private int started;
+      private boolean compilationEnabled;
+      private int[] progress = new int[1];
+   
+      /**
+       * @param breakpoints the simulator's breakpoint table
+       */
+       BasicBlockCache(BreakpointTable breakpoints) {
+         this.breakpoints = breakpoints;
+      }
+
+      /**
+       * Get the block starting at the given address, building it if necessary.
+       * @param address address of the first statement of the block
+       * @return the block, or null if the address is not in a text segment or the
+       * statement there cannot be executed as part of a block.
+       */
+       Block getBlock(int address) {
+         started = 0;
+         int currentGeneration = Globals.memory.getTextGeneration();
+         if (currentGeneration != generation || breakpoints.getGeneration() != breakpointGeneration) {
+            blocks.clear();
+            previous = null;
+            generation = currentGeneration;
+            breakpointGeneration = breakpoints.getGeneration();
+         }
+         Block block = null;
+         if (previous != null) {
+            if (previous.exitAddress[0] == address) {
+               block = previous.exit[0];
+            }
+            else if (previous.exitAddress[1] == address) {
+               block = previous.exit[1];
+            }
+         }
+         if (block == null) {
+            block = (Block) blocks.get(new Integer(address));
+            if (block == null) {
+               block = buildBlock(address);
+               if (block == null) {
+                  previous = null;
+                  return null;
+               }
+               blocks.put(new Integer(address), block);
+            }
+            if (previous != null) {
+               // chain the previous block to this one, replacing the older of its two links
+               int slot = previous.nextSlot;
+               previous.exitAddress[slot] = address;
+               previous.exit[slot] = block;
+               previous.nextSlot = 1 - slot;
+            }
+         }
+         previous = block;
+         return block;
+      }
+
+      /**
+       * Enable or disable the use of compiled blocks.  Compiled code neither notifies register
+       * observers nor records back-steps, so it must be disabled if either is required.
+       * @param enabled true if compiled blocks may be used
+       */
+       void setCompilationEnabled(boolean enabled) {
+         compilationEnabled = enabled;
+      }
+
+      /**
+       * Execute statements of a block in sequence until one of them changes the flow of
+       * control, the text segment is modified, the end of the block is reached or
+       * <tt>limit</tt> statements have been executed.  As in the simulator's single-statement
+       * path, the program counter must already have been incremented past the first
+       * statement of the block.
+       * @param block the block to execute
+       * @param limit maximum number of statements to execute, at least 1
+       * @param backStepping true if a "do nothing" back-step entry is to be recorded per statement
+       * @param notifyFetch true if memory observers must be notified of each instruction fetch
+       * @return number of statements executed
+       * @throws ProcessingException if a statement throws one; getLastAddress() and
+       * getStarted() then describe the statement responsible.
+       */
+       int execute(Block block, int limit, boolean backStepping, boolean notifyFetch) throws ProcessingException {
+         int length = Math.min(block.statements.length, limit);
+         if (compilationEnabled && !backStepping && !notifyFetch && length == block.statements.length) {
+            if (block.compiled == null && !block.uncompilable && ++block.executions >= BlockCompiler.COMPILE_THRESHOLD) {
+               block.compiled = BlockCompiler.compile(block);
+               block.uncompilable = (block.compiled == null);
+            }
+            if (block.compiled != null) {
+               try {
+                  started = block.compiled.run(RegisterFile.getRegisters(), block.statements, block.handlers, progress);
+               }
+                   catch (ProcessingException e) {
+                     started = progress[0] + 1;
+                     lastAddress = block.address + progress[0] * Instruction.INSTRUCTION_LENGTH;
+                     throw e;
+                  }
+               lastAddress = block.address + (started - 1) * Instruction.INSTRUCTION_LENGTH;
+               return started;
+            }
+         }
+         int startGeneration = Globals.memory.getTextGeneration();
+         int address = block.address;
+         started = 0;
+         for (int i = 0; i < length; i++) {
+            lastAddress = address;
+            started = i + 1;
+            if (notifyFetch && i > 0) {
+               try {
+                  Globals.memory.getStatement(address); // only for its notification of observers
+               }
+                  catch (AddressErrorException e) { } // cannot occur, the statement is in a text segment
+            }
+            if (i > 0) {
+               RegisterFile.incrementPC();
+            }
+            block.handlers[i].simulate(block.statements[i]);
+            if (backStepping) {
+               Globals.program.getBackStepper().addDoNothing(address);
+            }
+            address += Instruction.INSTRUCTION_LENGTH;
+            if (RegisterFile.getProgramCounter() != address || Globals.memory.getTextGeneration() != startGeneration) {
+               break;
+            }
+         }
+         return started;
+      }
+
+      /**
+       * @return address of the statement most recently started by execute()
+       */
+       int getLastAddress() {
+         return lastAddress;
+      }
+
+      /**
+       * @return number of statements started by the most recent execute(), including
+       * one that threw an exception.
+       */
+       int getStarted() {
+         return started;
+      }
+
+      // Collect the run of statements beginning at the given address.  A block ends after a
+      // branch or jump, before a missing or undefined instruction, before a breakpoint, or at
+      // MAX_BLOCK_LENGTH.
+       private Block buildBlock(int address) {
+         if (!(Memory.inTextSegment(address) || Memory.inKernelTextSegment(address))) {
+            return null;
+         }
+         ArrayList statements = new ArrayList();
+         int next = address;
+         while (statements.size() < MAX_BLOCK_LENGTH
+                && (Memory.inTextSegment(next) || Memory.inKernelTextSegment(next))
+                && (next == address || !breakpoints.isBreakpoint(next))) {
+            ProgramStatement statement;
+            try {
+               statement = Globals.memory.getStatementNoNotify(next);
+            }
+               catch (AddressErrorException e) {
+                  break;
+               }
+            if (statement == null || !(statement.getInstruction() instanceof BasicInstruction)) {
+               break;
+            }
+            statements.add(statement);
+            BasicInstructionFormat format = ((BasicInstruction) statement.getInstruction()).getInstructionFormat();
+            if (format == BasicInstructionFormat.I_BRANCH_FORMAT || format == BasicInstructionFormat.J_FORMAT) {
+               break;
+            }
+            next += Instruction.INSTRUCTION_LENGTH;
+         }
+         if (statements.size() == 0) {
+            return null;
+         }
+         return new Block(address, statements);
+      }
+
+      /**
+       * A straight-line run of statements, with their simulation code looked up in advance.
+       */
+       static class Block {
+         final int address;
+         final ProgramStatement[] statements;
+         final SimulationCode[] handlers;
+         // The two most recent successors, for chaining.
+         final int[] exitAddress = { -1, -1 };
+         final Block[] exit = new Block[2];
+         int nextSlot = 0;
+         // Tiered compilation.
+         int executions = 0;
+         BlockCompiler.Code compiled;
+         boolean uncompilable = false;
+
+          Block(int address, ArrayList statementList) {
+            this.address = address;
+            this.statements = (ProgramStatement[]) statementList.toArray(new ProgramStatement[statementList.size()]);
+            this.handlers = new SimulationCode[statements.length];
+            for (int i = 0; i < statements.length; i++) {
+               handlers[i] = ((BasicInstruction) statements[i].getInstruction()).getSimulationCode();
+            }
+         }
+      }
+   }
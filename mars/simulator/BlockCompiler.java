@@ -0,0 +1,617 @@
+   package mars.simulator;
+   import mars.*;
+   import mars.mips.hardware.*;
+   import mars.mips.instructions.*;
+   import java.lang.invoke.MethodHandles;
+   import java.util.*;
+
+/**
+ * Second tier of the basic block engine: translates a frequently executed block into
+ * a JVM class (a hidden class, so it is unloaded with its block), which HotSpot then
+ * compiles to native code.
+ * <p>
+ * The general purpose registers used by the block are read into JVM locals on entry and
+ * written back when the block is left.  The integer instructions of the MIPS instruction
+ * set (arithmetic, logical, shifts, set-less-than, loads and stores, branches and jumps)
+ * are translated directly.  Every other statement, including all custom language
+ * instructions, is executed by calling its SimulationCode, with the registers written
+ * back before the call and reloaded after it.  The overflow cases of add, addi and sub
+ * are also handed to SimulationCode, which raises the exception.
+ * <p>
+ * Compiled code does not notify register observers or record back-steps, so it is only
+ * used when neither is needed (see BasicBlockCache.execute).
+ *
+ * @version October 2026
+ */
+
+    class BlockCompiler {
+      /** Number of interpreted executions after which a block is compiled. */
+      static final int COMPILE_THRESHOLD = 50;
+
+      /**
+       * Implemented by each compiled block.
+       */
+       interface Code {
+         /**
+          * Execute the block.  On entry the program counter has been incremented past the first statement.
+          * @param registers RegisterFile.getRegisters()
+          * @param statements the statements of the block
+          * @param handlers their simulation code
+          * @param progress on exception, element 0 receives the index of the statement responsible
+          * @return number of statements executed
+          */
+          int run(Register[] registers, ProgramStatement[] statements, SimulationCode[] handlers,
+                  int[] progress) throws ProcessingException;
+      }
+
+      private static final String SELF = "mars/simulator/BlockCompiler";
+      private static final String REGISTER = "mars/mips/hardware/Register";
+      private static final String REGISTER_FILE = "mars/mips/hardware/RegisterFile";
+      private static final String RUN_DESCRIPTOR = "([Lmars/mips/hardware/Register;[Lmars/ProgramStatement;"
+                                                  + "[Lmars/mips/instructions/SimulationCode;[I)I";
+      // local variable slots of the generated method
+      private static final int REGISTERS = 1, STATEMENTS = 2, HANDLERS = 3, PROGRESS = 4, INDEX = 5,
+                               EXCEPTION = 6, FIRST_REGISTER_LOCAL = 7;
+
+      // Mnemonics translated directly, by the number of the translation.
+      private static final HashMap translated = new HashMap();
+      private static final int NOP = 0, ADDU = 1, SUBU = 2, ADDIU = 3, ADD = 4, SUB = 5, ADDI = 6, AND = 7, OR = 8,
+                               NOR = 9, XOR = 10, ANDI = 11, ORI = 12, XORI = 13, SLL = 14, SRL = 15, SRA = 16,
+                               SLLV = 17, SRLV = 18, SRAV = 19, LUI = 20, SLT = 21, SLTU = 22, SLTI = 23, SLTIU = 24,
+                               LW = 25, LB = 26, LBU = 27, LH = 28, LHU = 29, SW = 30, SB = 31, SH = 32,
+                               BEQ = 33, BNE = 34, BGEZ = 35, BGTZ = 36, BLEZ = 37, BLTZ = 38,
+                               J = 39, JAL = 40, JR = 41, JALR = 42, JALR_RA = 43;
+      // Keyed by the example format of the instruction, which identifies it uniquely.
+      static {
+         translated.put("nop", new Integer(NOP));
+         translated.put("addu $t1,$t2,$t3", new Integer(ADDU));
+         translated.put("subu $t1,$t2,$t3", new Integer(SUBU));
+         translated.put("addiu $t1,$t2,-100", new Integer(ADDIU));
+         translated.put("add $t1,$t2,$t3", new Integer(ADD));
+         translated.put("sub $t1,$t2,$t3", new Integer(SUB));
+         translated.put("addi $t1,$t2,-100", new Integer(ADDI));
+         translated.put("and $t1,$t2,$t3", new Integer(AND));
+         translated.put("or $t1,$t2,$t3", new Integer(OR));
+         translated.put("nor $t1,$t2,$t3", new Integer(NOR));
+         translated.put("xor $t1,$t2,$t3", new Integer(XOR));
+         translated.put("andi $t1,$t2,100", new Integer(ANDI));
+         translated.put("ori $t1,$t2,100", new Integer(ORI));
+         translated.put("xori $t1,$t2,100", new Integer(XORI));
+         translated.put("sll $t1,$t2,10", new Integer(SLL));
+         translated.put("srl $t1,$t2,10", new Integer(SRL));
+         translated.put("sra $t1,$t2,10", new Integer(SRA));
+         translated.put("sllv $t1,$t2,$t3", new Integer(SLLV));
+         translated.put("srlv $t1,$t2,$t3", new Integer(SRLV));
+         translated.put("srav $t1,$t2,$t3", new Integer(SRAV));
+         translated.put("lui $t1,100", new Integer(LUI));
+         translated.put("slt $t1,$t2,$t3", new Integer(SLT));
+         translated.put("sltu $t1,$t2,$t3", new Integer(SLTU));
+         translated.put("slti $t1,$t2,-100", new Integer(SLTI));
+         translated.put("sltiu $t1,$t2,-100", new Integer(SLTIU));
+         translated.put("lw $t1,-100($t2)", new Integer(LW));
+         translated.put("lb $t1,-100($t2)", new Integer(LB));
+         translated.put("lbu $t1,-100($t2)", new Integer(LBU));
+         translated.put("lh $t1,-100($t2)", new Integer(LH));
+         translated.put("lhu $t1,-100($t2)", new Integer(LHU));
+         translated.put("sw $t1,-100($t2)", new Integer(SW));
+         translated.put("sb $t1,-100($t2)", new Integer(SB));
+         translated.put("sh $t1,-100($t2)", new Integer(SH));
+         translated.put("beq $t1,$t2,label", new Integer(BEQ));
+         translated.put("bne $t1,$t2,label", new Integer(BNE));
+         translated.put("bgez $t1,label", new Integer(BGEZ));
+         translated.put("bgtz $t1,label", new Integer(BGTZ));
+         translated.put("blez $t1,label", new Integer(BLEZ));
+         translated.put("bltz $t1,label", new Integer(BLTZ));
+         translated.put("j target", new Integer(J));
+         translated.put("jal target", new Integer(JAL));
+         translated.put("jr $t1", new Integer(JR));
+         translated.put("jalr $t1,$t2", new Integer(JALR));
+         translated.put("jalr $t1", new Integer(JALR_RA));
+      }
+
+      private BytecodeWriter out;
+      private BasicBlockCache.Block block;
+      private int[] local = new int[32]; // JVM local of each register, 0 if unused
+      private boolean[] written = new boolean[32];
+
+       private BlockCompiler(BasicBlockCache.Block block) {
+         this.block = block;
+      }
+
+      /**
+       * Compile a block.
+       * @param block the block
+       * @return compiled code, or null if none of its statements can be translated directly
+       * or it cannot be compiled for any other reason.
+       */
+       static Code compile(BasicBlockCache.Block block) {
+         try {
+            BlockCompiler compiler = new BlockCompiler(block);
+            byte[] classFile = compiler.translate();
+            if (classFile == null) {
+               return null;
+            }
+            Class compiled = MethodHandles.lookup().defineHiddenClass(classFile, true).lookupClass();
+            return (Code) compiled.getDeclaredConstructor().newInstance();
+         }
+             catch (Throwable e) {
+               return null;
+            }
+      }
+
+      /**
+       * Determine whether compiled code may currently be used: no observer is watching the
+       * general purpose registers.
+       */
+       static boolean registersUnobserved() {
+         Register[] registers = RegisterFile.getRegisters();
+         for (int i = 0; i < registers.length; i++) {
+            if (registers[i].countObservers() > 0) {
+               return false;
+            }
+         }
+         return true;
+      }
+
+      // Returns the translation number of a statement, or -1 if it must be executed by its SimulationCode.
+       private static int translation(ProgramStatement statement, SimulationCode handler) {
+         if (handler.getClass().getEnclosingClass() != MipsAssembly.class) {
+            return -1; // custom language instruction, possibly reusing a MIPS mnemonic
+         }
+         Integer number = (Integer) translated.get(statement.getInstruction().getExampleFormat());
+         return (number == null) ? -1 : number.intValue();
+      }
+
+       private byte[] translate() {
+         int statements = block.statements.length;
+         int[] kind = new int[statements];
+         boolean any = false;
+         for (int i = 0; i < statements; i++) {
+            kind[i] = translation(block.statements[i], block.handlers[i]);
+            any = any || kind[i] > NOP;
+            if (kind[i] > NOP) {
+               int[] operands = block.statements[i].getOperands();
+               for (int r = 0; r < 3; r++) {
+                  if (isRegisterOperand(kind[i], r)) {
+                     useRegister(operands[r], r == 0 && writesFirstOperand(kind[i]));
+                  }
+               }
+               if (kind[i] == JAL || kind[i] == JALR_RA) {
+                  useRegister(31, true);
+               }
+            }
+         }
+         if (!any) {
+            return null;
+         }
+         out = new BytecodeWriter("mars/simulator/CompiledBlock", "mars/simulator/BlockCompiler$Code");
+         int slot = FIRST_REGISTER_LOCAL;
+         out.iconst(0);
+         out.local(BytecodeWriter.ISTORE, INDEX);
+         for (int r = 1; r < 32; r++) {
+            if (local[r] != 0) {
+               local[r] = slot++;
+               reload(r);
+            }
+         }
+         int tryStart = out.newLabel();
+         int tryEnd = out.newLabel();
+         int addressHandler = out.newLabel();
+         int processingHandler = out.newLabel();
+         out.mark(tryStart);
+         boolean fallsThrough = true;
+         for (int i = 0; i < statements && fallsThrough; i++) {
+            if (kind[i] < 0) {
+               slowCall(i);
+            }
+            else if (kind[i] > NOP) {
+               fallsThrough = translate(i, kind[i], block.statements[i].getOperands());
+            }
+         }
+         if (fallsThrough) {
+            exit(statements, address(statements - 1) + Instruction.INSTRUCTION_LENGTH);
+         }
+         out.mark(tryEnd);
+
+         // AddressErrorException from a translated load or store: write back, report the statement.
+         out.mark(addressHandler);
+         out.local(BytecodeWriter.ASTORE, EXCEPTION);
+         writeBack();
+         recordProgress();
+         out.iconst(block.address + Instruction.INSTRUCTION_LENGTH);
+         out.local(BytecodeWriter.ILOAD, INDEX);
+         out.iconst(2);
+         out.op(BytecodeWriter.ISHL);
+         out.op(BytecodeWriter.IADD);
+         out.invokestatic(REGISTER_FILE, "initializeProgramCounter", "(I)V");
+         out.local(BytecodeWriter.ALOAD, STATEMENTS);
+         out.local(BytecodeWriter.ILOAD, INDEX);
+         out.op(BytecodeWriter.AALOAD);
+         out.local(BytecodeWriter.ALOAD, EXCEPTION);
+         out.invokestatic(SELF, "addressError",
+            "(Lmars/ProgramStatement;Lmars/mips/hardware/AddressErrorException;)Lmars/ProcessingException;");
+         out.op(BytecodeWriter.ATHROW);
+         // ProcessingException from simulation code: registers were already written back.
+         out.mark(processingHandler);
+         out.local(BytecodeWriter.ASTORE, EXCEPTION);
+         recordProgress();
+         out.local(BytecodeWriter.ALOAD, EXCEPTION);
+         out.op(BytecodeWriter.ATHROW);
+         out.handler(tryStart, tryEnd, addressHandler, "mars/mips/hardware/AddressErrorException");
+         out.handler(tryStart, tryEnd, processingHandler, "mars/ProcessingException");
+         return out.toByteArray("run", RUN_DESCRIPTOR, 6, slot);
+      }
+
+       private static boolean isRegisterOperand(int kind, int operand) {
+         switch (kind) {
+            case ADDIU: case ADDI: case ANDI: case ORI: case XORI: case SLL: case SRL: case SRA:
+            case SLTI: case SLTIU:
+            case BEQ: case BNE:
+               return operand < 2;
+            case LUI: case BGEZ: case BGTZ: case BLEZ: case BLTZ: case JR: case JALR_RA:
+               return operand == 0;
+            case JALR:
+               return operand < 2;
+            case LW: case LB: case LBU: case LH: case LHU: case SW: case SB: case SH:
+               return operand != 1;
+            case J: case JAL: case NOP:
+               return false;
+            default:
+               return true;
+         }
+      }
+
+       private static boolean writesFirstOperand(int kind) {
+         return kind != SW && kind != SB && kind != SH && !(kind >= BEQ && kind <= BLTZ) && kind != JR && kind != JALR_RA;
+      }
+
+       private void useRegister(int register, boolean write) {
+         if (register > 0 && register < 32) {
+            local[register] = 1;
+            written[register] = written[register] || write;
+         }
+      }
+
+       private int address(int index) {
+         return block.address + index * Instruction.INSTRUCTION_LENGTH;
+      }
+
+   ////////////////////////////////  code generation  ////////////////////////////////
+
+       private void load(int register) {
+         if (register == 0) {
+            out.iconst(0);
+         }
+         else {
+            out.local(BytecodeWriter.ILOAD, local[register]);
+         }
+      }
+
+       private void store(int register) {
+         if (register == 0) {
+            out.op(BytecodeWriter.POP);
+         }
+         else {
+            out.local(BytecodeWriter.ISTORE, local[register]);
+         }
+      }
+
+       private void reload(int register) {
+         out.local(BytecodeWriter.ALOAD, REGISTERS);
+         out.iconst(register);
+         out.op(BytecodeWriter.AALOAD);
+         out.invokevirtual(REGISTER, "getValueNoNotify", "()I");
+         out.local(BytecodeWriter.ISTORE, local[register]);
+      }
+
+       private void writeBack() {
+         for (int r = 1; r < 32; r++) {
+            if (written[r]) {
+               out.local(BytecodeWriter.ALOAD, REGISTERS);
+               out.iconst(r);
+               out.op(BytecodeWriter.AALOAD);
+               out.local(BytecodeWriter.ILOAD, local[r]);
+               out.invokevirtual(REGISTER, "setValue", "(I)I");
+               out.op(BytecodeWriter.POP);
+            }
+         }
+      }
+
+       private void setIndex(int index) {
+         out.iconst(index);
+         out.local(BytecodeWriter.ISTORE, INDEX);
+      }
+
+       private void recordProgress() {
+         out.local(BytecodeWriter.ALOAD, PROGRESS);
+         out.iconst(0);
+         out.local(BytecodeWriter.ILOAD, INDEX);
+         out.op(BytecodeWriter.IASTORE);
+      }
+
+      // Leave the block: write back registers, set the program counter and return the statement count.
+       private void exit(int executed, int programCounter) {
+         writeBack();
+         out.iconst(programCounter);
+         exitToTarget(executed);
+      }
+
+      // As exit(), with the new program counter already on the operand stack (registers written back).
+       private void exitToTarget(int executed) {
+         out.invokestatic(REGISTER_FILE, "initializeProgramCounter", "(I)V");
+         out.iconst(executed);
+         out.op(BytecodeWriter.IRETURN);
+      }
+
+      // Execute statement i through its SimulationCode.  If it changed the flow of control or
+      // the text segment, leave the block.
+       private void slowCall(int i) {
+         writeBack();
+         setIndex(i);
+         out.local(BytecodeWriter.ALOAD, HANDLERS);
+         out.iconst(i);
+         out.op(BytecodeWriter.AALOAD);
+         out.local(BytecodeWriter.ALOAD, STATEMENTS);
+         out.iconst(i);
+         out.op(BytecodeWriter.AALOAD);
+         out.iconst(address(i) + Instruction.INSTRUCTION_LENGTH);
+         out.invokestatic(SELF, "call", "(Lmars/mips/instructions/SimulationCode;Lmars/ProgramStatement;I)Z");
+         for (int r = 1; r < 32; r++) {
+            if (local[r] != 0) {
+               reload(r);
+            }
+         }
+         int next = out.newLabel();
+         out.jump(BytecodeWriter.IFNE, next);
+         out.iconst(i + 1);
+         out.op(BytecodeWriter.IRETURN);
+         out.mark(next);
+      }
+
+      // Emit a binary operation on two registers.
+       private void binary(int[] operands, int opcode) {
+         load(operands[1]);
+         load(operands[2]);
+         out.op(opcode);
+         store(operands[0]);
+      }
+
+      // Emit a binary operation on a register and a constant.
+       private void immediate(int[] operands, int value, int opcode) {
+         load(operands[1]);
+         out.iconst(value);
+         out.op(opcode);
+         store(operands[0]);
+      }
+
+      // Emit a call to a runtime helper taking two ints and returning an int, storing the result.
+       private void helper(String name, int destination) {
+         out.invokestatic(SELF, name, "(II)I");
+         store(destination);
+      }
+
+      // Add with overflow check: the overflow case is executed by the SimulationCode, which throws.
+       private void checked(int i, String overflowTest, int opcode, int destination) {
+         int ok = out.newLabel();
+         int done = out.newLabel();
+         out.op(BytecodeWriter.DUP2);
+         out.invokestatic(SELF, overflowTest, "(II)Z");
+         out.jump(BytecodeWriter.IFEQ, ok);
+         out.op(BytecodeWriter.POP2);
+         slowCall(i);
+         out.jump(BytecodeWriter.GOTO, done);
+         out.mark(ok);
+         out.op(opcode);
+         store(destination);
+         out.mark(done);
+      }
+
+      // Address of a load or store: base register plus offset.
+       private void effectiveAddress(int[] operands, int offset) {
+         load(operands[2]);
+         out.iconst(offset);
+         out.op(BytecodeWriter.IADD);
+      }
+
+      // Emit statement i.  Returns false if control never continues past it.
+       private boolean translate(int i, int kind, int[] operands) {
+         int next = address(i) + Instruction.INSTRUCTION_LENGTH;
+         switch (kind) {
+            case NOP:
+               return true;
+            case ADDU:  binary(operands, BytecodeWriter.IADD); return true;
+            case SUBU:  binary(operands, BytecodeWriter.ISUB); return true;
+            case AND:   binary(operands, BytecodeWriter.IAND); return true;
+            case OR:    binary(operands, BytecodeWriter.IOR); return true;
+            case XOR:   binary(operands, BytecodeWriter.IXOR); return true;
+            case NOR:
+               load(operands[1]);
+               load(operands[2]);
+               out.op(BytecodeWriter.IOR);
+               out.iconst(-1);
+               out.op(BytecodeWriter.IXOR);
+               store(operands[0]);
+               return true;
+            case ADDIU: immediate(operands, operands[2] << 16 >> 16, BytecodeWriter.IADD); return true;
+            case ANDI:  immediate(operands, operands[2] & 0x0000FFFF, BytecodeWriter.IAND); return true;
+            case ORI:   immediate(operands, operands[2] & 0x0000FFFF, BytecodeWriter.IOR); return true;
+            case XORI:  immediate(operands, operands[2] & 0x0000FFFF, BytecodeWriter.IXOR); return true;
+            case SLL:   immediate(operands, operands[2], BytecodeWriter.ISHL); return true;
+            case SRL:   immediate(operands, operands[2], BytecodeWriter.IUSHR); return true;
+            case SRA:   immediate(operands, operands[2], BytecodeWriter.ISHR); return true;
+            case SLLV:  binary(operands, BytecodeWriter.ISHL); return true; // JVM shifts also use the low 5 bits
+            case SRLV:  binary(operands, BytecodeWriter.IUSHR); return true;
+            case SRAV:  binary(operands, BytecodeWriter.ISHR); return true;
+            case LUI:
+               out.iconst(operands[1] << 16);
+               store(operands[0]);
+               return true;
+            case ADD:
+               load(operands[1]);
+               load(operands[2]);
+               checked(i, "addOverflows", BytecodeWriter.IADD, operands[0]);
+               return true;
+            case SUB:
+               load(operands[1]);
+               load(operands[2]);
+               checked(i, "subOverflows", BytecodeWriter.ISUB, operands[0]);
+               return true;
+            case ADDI:
+               load(operands[1]);
+               out.iconst(operands[2] << 16 >> 16);
+               checked(i, "addOverflows", BytecodeWriter.IADD, operands[0]);
+               return true;
+            case SLT:
+               load(operands[1]);
+               load(operands[2]);
+               helper("lessThan", operands[0]);
+               return true;
+            case SLTU:
+               load(operands[1]);
+               load(operands[2]);
+               helper("lessThanUnsigned", operands[0]);
+               return true;
+            case SLTI:
+               load(operands[1]);
+               out.iconst(operands[2] << 16 >> 16);
+               helper("lessThan", operands[0]);
+               return true;
+            case SLTIU:
+               load(operands[1]);
+               out.iconst(operands[2] << 16 >> 16);
+               helper("lessThanUnsigned", operands[0]);
+               return true;
+            case LW: case LB: case LBU: case LH: case LHU:
+               setIndex(i);
+               effectiveAddress(operands, (kind == LW) ? operands[1] : operands[1] << 16 >> 16);
+               out.invokestatic(SELF, (kind == LW) ? "loadWord" : (kind == LB) ? "loadByte" : (kind == LBU)
+                  ? "loadByteUnsigned" : (kind == LH) ? "loadHalf" : "loadHalfUnsigned", "(I)I");
+               store(operands[0]);
+               return true;
+            case SW: case SB: case SH:
+               setIndex(i);
+               effectiveAddress(operands, (kind == SW) ? operands[1] : operands[1] << 16 >> 16);
+               load(operands[0]);
+               out.invokestatic(SELF, (kind == SW) ? "storeWord" : (kind == SB) ? "storeByte" : "storeHalf", "(II)Z");
+               int unchanged = out.newLabel();
+               out.jump(BytecodeWriter.IFEQ, unchanged);
+               exit(i + 1, next); // the store modified the text segment
+               out.mark(unchanged);
+               return true;
+            case BEQ: case BNE:
+               branch(i, (kind == BEQ) ? BytecodeWriter.IF_ICMPEQ : BytecodeWriter.IF_ICMPNE, operands, operands[2], true);
+               return true;
+            case BGEZ: branch(i, BytecodeWriter.IFGE, operands, operands[1], false); return true;
+            case BGTZ: branch(i, BytecodeWriter.IFGT, operands, operands[1], false); return true;
+            case BLEZ: branch(i, BytecodeWriter.IFLE, operands, operands[1], false); return true;
+            case BLTZ: branch(i, BytecodeWriter.IFLT, operands, operands[1], false); return true;
+            case J:
+               exit(i + 1, (next & 0xF0000000) | (operands[0] << 2));
+               return false;
+            case JAL:
+               out.iconst(next);
+               store(31);
+               exit(i + 1, (next & 0xF0000000) | (operands[0] << 2));
+               return false;
+            case JR:
+               writeBack();
+               load(operands[0]);
+               exitToTarget(i + 1);
+               return false;
+            case JALR: case JALR_RA:
+               int link = (kind == JALR_RA) ? 31 : operands[0];
+               int target = (kind == JALR_RA) ? operands[0] : operands[1];
+               out.iconst(next);
+               store(link);
+               writeBack();
+               load(target);
+               exitToTarget(i + 1);
+               return false;
+            default:
+               throw new IllegalStateException("no translation " + kind);
+         }
+      }
+
+      // Conditional branch: leave the block at the target if taken, otherwise continue.
+       private void branch(int i, int comparison, int[] operands, int displacement, boolean twoRegisters) {
+         int next = address(i) + Instruction.INSTRUCTION_LENGTH;
+         int notTaken = out.newLabel();
+         load(operands[0]);
+         if (twoRegisters) {
+            load(operands[1]);
+         }
+         out.jump(BytecodeWriter.negate(comparison), notTaken);
+         exit(i + 1, next + (displacement << 2));
+         out.mark(notTaken);
+      }
+
+   ////////////////////////////////  called from compiled code  ////////////////////////////////
+
+       static boolean call(SimulationCode handler, ProgramStatement statement, int next) throws ProcessingException {
+         int generation = Globals.memory.getTextGeneration();
+         RegisterFile.initializeProgramCounter(next);
+         handler.simulate(statement);
+         return RegisterFile.getProgramCounter() == next && Globals.memory.getTextGeneration() == generation;
+      }
+
+       static ProcessingException addressError(ProgramStatement statement, AddressErrorException e) {
+         return new ProcessingException(statement, e);
+      }
+
+       static boolean addOverflows(int a, int b) {
+         int sum = a + b;
+         return (a >= 0 && b >= 0 && sum < 0) || (a < 0 && b < 0 && sum >= 0);
+      }
+
+       static boolean subOverflows(int a, int b) {
+         int dif = a - b;
+         return (a >= 0 && b < 0 && dif < 0) || (a < 0 && b >= 0 && dif >= 0);
+      }
+
+       static int lessThan(int a, int b) {
+         return (a < b) ? 1 : 0;
+      }
+
+       static int lessThanUnsigned(int a, int b) {
+         return ((a ^ 0x80000000) < (b ^ 0x80000000)) ? 1 : 0;
+      }
+
+       static int loadWord(int address) throws AddressErrorException {
+         return Globals.memory.getWord(address);
+      }
+
+       static int loadByte(int address) throws AddressErrorException {
+         return Globals.memory.getByte(address) << 24 >> 24;
+      }
+
+       static int loadByteUnsigned(int address) throws AddressErrorException {
+         return Globals.memory.getByte(address) & 0x000000ff;
+      }
+
+       static int loadHalf(int address) throws AddressErrorException {
+         return Globals.memory.getHalf(address) << 16 >> 16;
+      }
+
+       static int loadHalfUnsigned(int address) throws AddressErrorException {
+         return Globals.memory.getHalf(address) & 0x0000ffff;
+      }
+
+      // Stores return true if they modified the text segment (self-modifying code).
+       static boolean storeWord(int address, int value) throws AddressErrorException {
+         int generation = Globals.memory.getTextGeneration();
+         Globals.memory.setWord(address, value);
+         return Globals.memory.getTextGeneration() != generation;
+      }
+
+       static boolean storeByte(int address, int value) throws AddressErrorException {
+         int generation = Globals.memory.getTextGeneration();
+         Globals.memory.setByte(address, value & 0x000000ff);
+         return Globals.memory.getTextGeneration() != generation;
+      }
+
+       static boolean storeHalf(int address, int value) throws AddressErrorException {
+         int generation = Globals.memory.getTextGeneration();
+         Globals.memory.setHalf(address, value & 0x0000ffff);
+         return Globals.memory.getTextGeneration() != generation;
+      }
+   }
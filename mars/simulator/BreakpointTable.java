@@ -0,0 +1,311 @@
+   package mars.simulator;
+   import mars.*;
+   import mars.mips.hardware.*;
+   import mars.mips.instructions.DeclarativeSemantics;
+   import mars.util.Binary;
+   import java.util.*;
+   import javax.swing.SwingUtilities;
+
+/**
+ * Breakpoints and data watchpoints used by the simulator.
+ * <p>
+ * The breakpoints of a run are kept as one bit per word of the user and kernel text
+ * segments, so testing the program counter after an instruction costs a single array load.
+ * A breakpoint may additionally have a condition and a hit count: the condition is an
+ * expression in the notation of DeclarativeSemantics (e.g. <tt>$t0 == 5 &amp;&amp; mem[$sp] &gt; 0</tt>)
+ * that must be nonzero for the breakpoint to count as hit, and execution stops only once
+ * the breakpoint has been hit at least hit-count times.  Conditions and hit counts are kept
+ * by address and survive between runs; the set of enabled breakpoints is supplied at the
+ * start of each run.
+ * <p>
+ * A watchpoint stops execution after an instruction that reads or writes a given memory
+ * word.  Watchpoints are registered as memory observers for the duration of a run, so only
+ * accesses to the watched words reach them.
+ *
+ * @version October 2026
+ */
+
+    public class BreakpointTable {
+      /** Watchpoint access type: stop when the word is read. */
+      public static final int READ = 1;
+      /** Watchpoint access type: stop when the word is written. */
+      public static final int WRITE = 2;
+
+      private int[] userBits = new int[0];
+      private int[] kernelBits = new int[0];
+      private int[] addresses = new int[0];
+      private int generation = 0;
+      private HashMap conditions = new HashMap();   // address -> Condition
+      private TreeMap watchpoints = new TreeMap();   // word address -> access type
+      private Watcher watcher = new Watcher();
+      private boolean watching = false;
+      private boolean watchpointHit = false;
+
+   ////////////////////////////////  breakpoints  ////////////////////////////////
+
+      /**
+       * Set the breakpoints enabled for the next run.
+       * @param breakPoints addresses of the breakpoints; null if none
+       */
+       public synchronized void setBreakpoints(int[] breakPoints) {
+         int[] sorted = (breakPoints == null) ? new int[0] : (int[]) breakPoints.clone();
+         Arrays.sort(sorted);
+         if (Arrays.equals(sorted, addresses)) {
+            return;
+         }
+         addresses = sorted;
+         userBits = buildBits(sorted, Memory.textBaseAddress);
+         kernelBits = buildBits(sorted, Memory.kernelTextBaseAddress);
+         generation++;
+      }
+
+       private static int[] buildBits(int[] sorted, int base) {
+         int highest = -1;
+         for (int i = 0; i < sorted.length; i++) {
+            int offset = sorted[i] - base;
+            if (offset >= 0 && offset < 0x10000000) {
+               highest = Math.max(highest, offset >>> 2);
+            }
+         }
+         int[] bits = new int[highest / 32 + 1];
+         for (int i = 0; i < sorted.length; i++) {
+            int offset = sorted[i] - base;
+            if (offset >= 0 && offset < 0x10000000) {
+               bits[(offset >>> 2) >>> 5] |= 1 << (offset >>> 2);
+            }
+         }
+         return bits;
+      }
+
+      /**
+       * @return true if any breakpoint is enabled
+       */
+       public boolean hasBreakpoints() {
+         return addresses.length > 0;
+      }
+
+      /**
+       * Determine whether an enabled breakpoint is set at the given address.  Conditions and
+       * hit counts are not considered; see shouldStop().
+       * @param address text segment address
+       * @return true if a breakpoint is set there
+       */
+       public boolean isBreakpoint(int address) {
+         return test(userBits, address - Memory.textBaseAddress)
+             || test(kernelBits, address - Memory.kernelTextBaseAddress);
+      }
+
+       private static boolean test(int[] bits, int offset) {
+         int index = offset >>> 2;
+         return offset >= 0 && (index >>> 5) < bits.length && (bits[index >>> 5] & (1 << index)) != 0;
+      }
+
+      /**
+       * Determine whether execution is to stop at the breakpoint at the given address,
+       * evaluating its condition and counting the hit.
+       * @param address address of an enabled breakpoint
+       * @return true if execution is to stop.  Also true if the condition cannot be evaluated,
+       * which is reported in the MARS messages.
+       */
+       public synchronized boolean shouldStop(int address) {
+         Condition condition = (Condition) conditions.get(new Integer(address));
+         if (condition == null) {
+            return true;
+         }
+         if (condition.expression != null) {
+            try {
+               if (condition.expression.evaluate() == 0) {
+                  return false;
+               }
+            }
+                catch (ArithmeticException e) {
+                  reportConditionError(address, condition.text, e.getMessage());
+                  return true;
+               }
+                catch (ProcessingException e) {
+                  reportConditionError(address, condition.text, "runtime exception");
+                  return true;
+               }
+         }
+         condition.hits++;
+         return condition.hits >= condition.hitCount;
+      }
+
+      // Tell the user that execution stopped because a breakpoint condition could not be evaluated.
+       private static void reportConditionError(int address, String condition, String error) {
+         final String message = "Breakpoint condition \"" + condition + "\" at " + Binary.intToHexString(address)
+            + " cannot be evaluated (" + error + "), so execution stops there.\n";
+         if (Globals.getGui() != null) {
+            SwingUtilities.invokeLater(
+                   new Runnable() {
+                      public void run() {
+                        Globals.getGui().getMessagesPane().postMarsMessage(message);
+                     }
+                  });
+         }
+      }
+
+      /**
+       * Number incremented whenever the set of enabled breakpoints changes.  Used by
+       * BasicBlockCache, whose blocks never extend past a breakpoint.
+       */
+       int getGeneration() {
+         return generation;
+      }
+
+      /**
+       * Set the condition and hit count of the breakpoint at the given address.
+       * @param address text segment address
+       * @param condition expression that must be nonzero for the breakpoint to be hit; null or empty for none
+       * @param hitCount number of hits needed before execution stops; 1 or less to stop at every hit
+       * @throws IllegalArgumentException if the condition cannot be parsed
+       */
+       public synchronized void setCondition(int address, String condition, int hitCount) {
+         Integer key = new Integer(address);
+         if ((condition == null || condition.trim().length() == 0) && hitCount <= 1) {
+            conditions.remove(key);
+            return;
+         }
+         Condition c = new Condition();
+         if (condition != null && condition.trim().length() > 0) {
+            c.expression = DeclarativeSemantics.compileExpression(condition);
+            c.text = condition.trim();
+         }
+         c.hitCount = Math.max(hitCount, 1);
+         conditions.put(key, c);
+      }
+
+      /**
+       * @return the condition of the breakpoint at the given address, or null if none
+       */
+       public synchronized String getCondition(int address) {
+         Condition c = (Condition) conditions.get(new Integer(address));
+         return (c == null) ? null : c.text;
+      }
+
+      /**
+       * @return the hit count of the breakpoint at the given address; 1 if none was set
+       */
+       public synchronized int getHitCount(int address) {
+         Condition c = (Condition) conditions.get(new Integer(address));
+         return (c == null) ? 1 : c.hitCount;
+      }
+
+      /**
+       * @return number of times the breakpoint at the given address has been hit since the
+       * last reset
+       */
+       public synchronized int getHits(int address) {
+         Condition c = (Condition) conditions.get(new Integer(address));
+         return (c == null) ? 0 : c.hits;
+      }
+
+      /**
+       * Reset all hit counters to zero, e.g. when the program is reset.
+       */
+       public synchronized void resetHitCounts() {
+         Iterator it = conditions.values().iterator();
+         while (it.hasNext()) {
+            ((Condition) it.next()).hits = 0;
+         }
+      }
+
+      /**
+       * Remove all breakpoint conditions and watchpoints, e.g. after a new assemble.
+       */
+       public synchronized void clear() {
+         conditions.clear();
+         watchpoints.clear();
+         setBreakpoints(null);
+      }
+
+   ////////////////////////////////  watchpoints  ////////////////////////////////
+
+      /**
+       * Add or change a watchpoint.  It takes effect at the start of the next run.
+       * @param address address of the memory word to watch; rounded down to a word boundary
+       * @param access READ, WRITE or both combined with "|"
+       */
+       public synchronized void setWatchpoint(int address, int access) {
+         Integer key = new Integer(address & ~(Memory.WORD_LENGTH_BYTES - 1));
+         if ((access & (READ | WRITE)) == 0) {
+            watchpoints.remove(key);
+         }
+         else {
+            watchpoints.put(key, new Integer(access & (READ | WRITE)));
+         }
+      }
+
+      /**
+       * @return the access type watched at the word containing the given address, 0 if none
+       */
+       public synchronized int getWatchpoint(int address) {
+         Integer access = (Integer) watchpoints.get(new Integer(address & ~(Memory.WORD_LENGTH_BYTES - 1)));
+         return (access == null) ? 0 : access.intValue();
+      }
+
+      /**
+       * @return true if any watchpoint is set
+       */
+       public synchronized boolean hasWatchpoints() {
+         return !watchpoints.isEmpty();
+      }
+
+      /**
+       * Register the watchpoints with memory at the start of a run.
+       * @return true if any watchpoint is active
+       */
+       synchronized boolean attach() {
+         watchpointHit = false;
+         Iterator it = watchpoints.keySet().iterator();
+         while (it.hasNext()) {
+            try {
+               Globals.memory.addObserver(watcher, ((Integer) it.next()).intValue());
+               watching = true;
+            }
+                catch (AddressErrorException e) { } // addresses are word aligned
+         }
+         return watching;
+      }
+
+      /**
+       * Remove the watchpoints from memory at the end of a run.
+       */
+       synchronized void detach() {
+         if (watching) {
+            Globals.memory.deleteObserver(watcher);
+            watching = false;
+         }
+      }
+
+      /**
+       * Determine whether a watchpoint was triggered since the last call, and clear the indication.
+       */
+       boolean takeWatchpointHit() {
+         boolean hit = watchpointHit;
+         watchpointHit = false;
+         return hit;
+      }
+
+      // Receives notices only for accesses to watched words.
+       private class Watcher implements Observer {
+          public void update(Observable o, Object obj) {
+            if (!(obj instanceof MemoryAccessNotice)) {
+               return;
+            }
+            MemoryAccessNotice notice = (MemoryAccessNotice) obj;
+            int access = getWatchpoint(notice.getAddress());
+            int type = (notice.getAccessType() == AccessNotice.READ) ? READ : WRITE;
+            if ((access & type) != 0) {
+               watchpointHit = true;
+            }
+         }
+      }
+
+       private static class Condition {
+         DeclarativeSemantics.Expression expression;
+         String text;
+         int hitCount = 1;
+         int hits = 0;
+      }
+   }
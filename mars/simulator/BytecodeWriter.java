@@ -0,0 +1,264 @@
+   package mars.simulator;
+   import java.io.*;
+   import java.util.*;
+
+/**
+ * Minimal writer for a JVM class file holding a public no-argument constructor and a
+ * single public method implementing one interface method.  Used by BlockCompiler.
+ * <p>
+ * The class file is written in version 49 format, which the JVM verifies by type
+ * inference, so no stack map frames need to be computed.  Only the instructions the
+ * block compiler needs are provided.  Branch offsets are 16 bits, so a method must be
+ * shorter than 32K bytes.
+ *
+ * @version October 2026
+ */
+
+    class BytecodeWriter {
+      static final int ICONST_0 = 0x03, ILOAD = 0x15, ALOAD = 0x19, IALOAD = 0x2e, AALOAD = 0x32,
+                       ISTORE = 0x36, ASTORE = 0x3a, IASTORE = 0x4f, POP = 0x57, POP2 = 0x58, DUP2 = 0x5c,
+                       IADD = 0x60, ISUB = 0x64, ISHL = 0x78, ISHR = 0x7a, IUSHR = 0x7c,
+                       IAND = 0x7e, IOR = 0x80, IXOR = 0x82,
+                       IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d, IFLE = 0x9e,
+                       IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, GOTO = 0xa7, IRETURN = 0xac, RETURN = 0xb1,
+                       INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, ATHROW = 0xbf;
+      private static final int CLASS_FILE_VERSION = 49;
+      private static final int ACC_PUBLIC = 0x0001, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+      private ByteArrayOutputStream pool = new ByteArrayOutputStream();
+      private DataOutputStream poolOut = new DataOutputStream(pool);
+      private HashMap constants = new HashMap();
+      private int constantCount = 1;
+
+      private ByteArrayOutputStream code = new ByteArrayOutputStream();
+      private ArrayList labelPositions = new ArrayList();
+      private ArrayList fixups = new ArrayList(); // pairs of {instruction position, label}
+      private ArrayList handlers = new ArrayList(); // quadruples of {start, end, handler label, class index}
+
+      private String className, interfaceName;
+
+      /**
+       * @param className internal name of the class to write, e.g. "mars/simulator/CompiledBlock"
+       * @param interfaceName internal name of the interface it implements
+       */
+       BytecodeWriter(String className, String interfaceName) {
+         this.className = className;
+         this.interfaceName = interfaceName;
+      }
+
+   ////////////////////////////////  constant pool  ////////////////////////////////
+
+       private int constant(String key, int tag, byte[] body) {
+         Integer index = (Integer) constants.get(key);
+         if (index == null) {
+            try {
+               poolOut.writeByte(tag);
+               poolOut.write(body);
+            }
+                catch (IOException e) { } // cannot happen writing to a byte array
+            index = new Integer(constantCount++);
+            constants.put(key, index);
+         }
+         return index.intValue();
+      }
+
+       private static byte[] u2(int a) {
+         return new byte[] { (byte) (a >> 8), (byte) a };
+      }
+
+       private static byte[] u2u2(int a, int b) {
+         return new byte[] { (byte) (a >> 8), (byte) a, (byte) (b >> 8), (byte) b };
+      }
+
+       int utf8(String s) {
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         try {
+            new DataOutputStream(bytes).writeUTF(s);
+         }
+             catch (IOException e) { }
+         return constant("U" + s, 1, bytes.toByteArray());
+      }
+
+       int classRef(String internalName) {
+         return constant("C" + internalName, 7, u2(utf8(internalName)));
+      }
+
+       private int nameAndType(String name, String descriptor) {
+         return constant("N" + name + " " + descriptor, 12, u2u2(utf8(name), utf8(descriptor)));
+      }
+
+       private int memberRef(int tag, String owner, String name, String descriptor) {
+         return constant(tag + owner + "." + name + descriptor, tag,
+            u2u2(classRef(owner), nameAndType(name, descriptor)));
+      }
+
+       private int intConstant(int value) {
+         return constant("I" + value, 3, new byte[] {
+            (byte) (value >> 24), (byte) (value >> 16), (byte) (value >> 8), (byte) value });
+      }
+
+   ////////////////////////////////  instructions  ////////////////////////////////
+
+      /** Emit an instruction without operands. */
+       void op(int opcode) {
+         code.write(opcode);
+      }
+
+      /** Emit an instruction with a one-byte local variable operand (iload, istore, aload, astore). */
+       void local(int opcode, int index) {
+         code.write(opcode);
+         code.write(index);
+      }
+
+      /** Push an int constant using the shortest form. */
+       void iconst(int value) {
+         if (value >= -1 && value <= 5) {
+            code.write(ICONST_0 + value);
+         }
+         else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.write(0x10); // bipush
+            code.write(value);
+         }
+         else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.write(0x11); // sipush
+            code.write(value >> 8);
+            code.write(value);
+         }
+         else {
+            int index = intConstant(value);
+            code.write(0x13); // ldc_w
+            code.write(index >> 8);
+            code.write(index);
+         }
+      }
+
+       void invokestatic(String owner, String name, String descriptor) {
+         invoke(INVOKESTATIC, memberRef(10, owner, name, descriptor));
+      }
+
+       void invokevirtual(String owner, String name, String descriptor) {
+         invoke(INVOKEVIRTUAL, memberRef(10, owner, name, descriptor));
+      }
+
+       private void invoke(int opcode, int index) {
+         code.write(opcode);
+         code.write(index >> 8);
+         code.write(index);
+      }
+
+      /** @return a new label, not yet placed */
+       int newLabel() {
+         labelPositions.add(new Integer(-1));
+         return labelPositions.size() - 1;
+      }
+
+      /** @return the conditional branch opcode testing the opposite condition */
+       static int negate(int opcode) {
+         return (opcode % 2 == 1) ? opcode + 1 : opcode - 1; // ifeq/ifne, iflt/ifge, ... come in pairs
+      }
+
+      /** Place a label at the current position. */
+       void mark(int label) {
+         labelPositions.set(label, new Integer(code.size()));
+      }
+
+      /** Emit a conditional or unconditional branch to a label. */
+       void jump(int opcode, int label) {
+         fixups.add(new int[] { code.size(), label });
+         code.write(opcode);
+         code.write(0);
+         code.write(0);
+      }
+
+      /** Add an exception table entry; the range runs from label <tt>start</tt> up to but not including <tt>end</tt>. */
+       void handler(int start, int end, int handlerLabel, String exceptionClass) {
+         handlers.add(new int[] { start, end, handlerLabel, classRef(exceptionClass) });
+      }
+
+   ////////////////////////////////  class file  ////////////////////////////////
+
+      /**
+       * Produce the class file, using the instructions emitted so far as the body of the method.
+       * @param methodName name of the interface method implemented
+       * @param descriptor its descriptor
+       * @param maxStack maximum operand stack depth of the method
+       * @param maxLocals number of local variable slots used by the method, including <tt>this</tt> and the arguments
+       * @return the class file bytes
+       */
+       byte[] toByteArray(String methodName, String descriptor, int maxStack, int maxLocals) {
+         byte[] body = code.toByteArray();
+         for (int i = 0; i < fixups.size(); i++) {
+            int[] fixup = (int[]) fixups.get(i);
+            int offset = position(fixup[1]) - fixup[0];
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+               throw new IllegalStateException("method too large");
+            }
+            body[fixup[0] + 1] = (byte) (offset >> 8);
+            body[fixup[0] + 2] = (byte) offset;
+         }
+         int thisClass = classRef(className);
+         int superClass = classRef("java/lang/Object");
+         int implemented = classRef(interfaceName);
+         int codeName = utf8("Code");
+         int constructorName = utf8("<init>");
+         int constructorDescriptor = utf8("()V");
+         int objectConstructor = memberRef(10, "java/lang/Object", "<init>", "()V");
+         int name = utf8(methodName);
+         int type = utf8(descriptor);
+
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         DataOutputStream out = new DataOutputStream(bytes);
+         try {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(CLASS_FILE_VERSION);
+            out.writeShort(constantCount);
+            out.write(pool.toByteArray());
+            out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(implemented);
+            out.writeShort(0); // fields
+            out.writeShort(2); // methods
+            // constructor: aload_0, invokespecial Object.<init>, return
+            byte[] constructor = { 0x2a, (byte) INVOKESPECIAL, (byte) (objectConstructor >> 8), (byte) objectConstructor, (byte) RETURN };
+            writeMethod(out, constructorName, constructorDescriptor, codeName, constructor, 1, 1, new ArrayList());
+            writeMethod(out, name, type, codeName, body, maxStack, maxLocals, handlers);
+            out.writeShort(0); // class attributes
+         }
+             catch (IOException e) { }
+         return bytes.toByteArray();
+      }
+
+       private void writeMethod(DataOutputStream out, int name, int type, int codeName, byte[] body,
+                                int maxStack, int maxLocals, ArrayList exceptionTable) throws IOException {
+         out.writeShort(ACC_PUBLIC);
+         out.writeShort(name);
+         out.writeShort(type);
+         out.writeShort(1);
+         out.writeShort(codeName);
+         out.writeInt(12 + body.length + 8 * exceptionTable.size());
+         out.writeShort(maxStack);
+         out.writeShort(maxLocals);
+         out.writeInt(body.length);
+         out.write(body);
+         out.writeShort(exceptionTable.size());
+         for (int i = 0; i < exceptionTable.size(); i++) {
+            int[] entry = (int[]) exceptionTable.get(i);
+            out.writeShort(position(entry[0]));
+            out.writeShort(position(entry[1]));
+            out.writeShort(position(entry[2]));
+            out.writeShort(entry[3]);
+         }
+         out.writeShort(0); // code attributes
+      }
+
+       private int position(int label) {
+         int position = ((Integer) labelPositions.get(label)).intValue();
+         if (position < 0) {
+            throw new IllegalStateException("label not placed");
+         }
+         return position;
+      }
+   }
@@ -0,0 +1,150 @@
+   package mars.simulator;
+   import java.util.PriorityQueue;
+
+/**
+ * Schedules device events by simulated time, counted in MIPS instructions executed.  Devices
+ * schedule an action to run after a given number of instructions, for example the
+ * completion of a slow I/O operation or the tick of a timer, and may request an external
+ * interrupt.  The events are kept in a priority queue by time, and the simulator only
+ * compares its instruction count with the time of the earliest event before each
+ * instruction, so pending events cost nothing until they are due.  Due events are run on the
+ * simulator thread, while it holds Globals.memoryAndRegistersLock, just before the next
+ * instruction, and events due at the same time run in the order they were scheduled.
+ * <p>
+ * An interrupt requested with interrupt() is taken before the next instruction is executed,
+ * when the program is running.  As with the hardware it models, a later request replaces one
+ * not yet taken.
+ *
+ * @version October 2026
+ */
+
+    public class EventScheduler {
+      private PriorityQueue events = new PriorityQueue();
+      private long time = 0; // instructions executed, only changed by the simulator thread
+      private volatile long nextEventTime = Long.MAX_VALUE;
+      private long sequence = 0;
+      private int pendingInterrupt = Simulator.NO_DEVICE;
+   
+      /**
+       * Schedule an action to run when the given number of further instructions have been
+       * executed.  The action runs on the simulator thread before the next instruction.
+       * @param action the action to run
+       * @param delay number of instructions from now, at least 0.  With 0 the action runs before
+       * the next instruction.
+       */
+       public synchronized void schedule(Runnable action, int delay) {
+         Event event = new Event(time + Math.max(delay, 0), sequence++, action);
+         events.add(event);
+         if (event.time < nextEventTime) {
+            nextEventTime = event.time;
+         }
+      }
+   
+      /**
+       * Remove an action from the schedule, every time it is scheduled.
+       * @param action the action, as given to schedule()
+       */
+       public synchronized void cancel(Runnable action) {
+         Object[] scheduled = events.toArray();
+         for (int i = 0; i < scheduled.length; i++) {
+            if (((Event) scheduled[i]).action == action) {
+               events.remove(scheduled[i]);
+            }
+         }
+      }
+   
+      /**
+       * Drop every scheduled action and any interrupt not yet taken, so that devices of an
+       * earlier program do not act on the next one.  Done when a program is assembled or reset.
+       */
+       public synchronized void clear() {
+         events.clear();
+         pendingInterrupt = Simulator.NO_DEVICE;
+         nextEventTime = Long.MAX_VALUE;
+      }
+   
+      /**
+       * Request an external interrupt, to be taken before the next instruction.  May be called
+       * from any thread.
+       * @param cause the device's interrupt code, e.g. Exceptions.EXTERNAL_INTERRUPT_KEYBOARD
+       */
+       public synchronized void interrupt(int cause) {
+         pendingInterrupt = cause;
+         nextEventTime = Long.MIN_VALUE;
+      }
+   
+      /**
+       * @return number of MIPS instructions executed since MARS started, the simulated time
+       */
+       public synchronized long getTime() {
+         return time;
+      }
+   
+      /**
+       * @return true if an event is due before the next instruction.  Called by the simulator
+       * before each instruction.
+       */
+       boolean isDue() {
+         return time >= nextEventTime;
+      }
+   
+      /**
+       * @return number of instructions that can be executed before the next event is due,
+       * at least 1 and at most Integer.MAX_VALUE
+       */
+       int getInstructionsToNextEvent() {
+         long instructions = nextEventTime - time;
+         return (instructions < 1) ? 1 : (instructions > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) instructions;
+      }
+   
+      /**
+       * Count instructions executed by the simulator.
+       * @param executed number of instructions just executed
+       */
+       void advance(int executed) {
+         time += executed;
+      }
+   
+      /**
+       * Run the events that are due, in order, then take the pending interrupt.  The actions run
+       * without the scheduler locked, so they may schedule further events.
+       * @return the interrupt code of the pending interrupt, or Simulator.NO_DEVICE if none
+       */
+       int runDueEvents() {
+         while (true) {
+            Event event;
+            synchronized (this) {
+               event = (Event) events.peek();
+               if (event == null || event.time > time) {
+                  nextEventTime = (event == null) ? Long.MAX_VALUE : event.time;
+                  int cause = pendingInterrupt;
+                  pendingInterrupt = Simulator.NO_DEVICE;
+                  return cause;
+               }
+               events.poll();
+            }
+            event.action.run();
+         }
+      }
+   
+       /////////////////////////////////////////////////////////////////////////
+       // An action and the time it is scheduled for.
+       private static class Event implements Comparable {
+         private long time, sequence;
+         private Runnable action;
+      
+          public Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+         }
+      
+          public int compareTo(Object obj) {
+            Event other = (Event) obj;
+            if (time != other.time) {
+               return (time < other.time) ? -1 : 1;
+            }
+            return (sequence < other.sequence) ? -1 : (sequence > other.sequence) ? 1 : 0;
+         }
+      }
+   }
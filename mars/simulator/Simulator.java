@@ -44,13 +44,22 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
     public class Simulator extends Observable {
       private SimThread simulatorThread;
+      private int instructionsExecuted = 0;
       private static Simulator simulator = null;  // Singleton object
-      private static Runnable interactiveGUIUpdater = null;
-      // Others can set this true to indicate external interrupt.  Initially used
-   	// to simulate keyboard and display interrupts.  The device is identified
-   	// by the address of its MMIO control register.  keyboard 0xFFFF0000 and
-   	// display 0xFFFF0008.  DPS 23 July 2008.
+      private static UpdateGUI interactiveGUIUpdater = null;
+      private BreakpointTable breakpoints = new BreakpointTable();
+      private BasicBlockCache blockCache = new BasicBlockCache(breakpoints);
+      private EventScheduler scheduler = new EventScheduler();
+      // Devices request an external interrupt through the event scheduler (see
+   	// getEventScheduler()), giving their interrupt code.  Initially used to simulate
+   	// keyboard and display interrupts.  DPS 23 July 2008.
+      /** Interrupt code meaning no external interrupt is pending. */
       public static final int NO_DEVICE = 0;
+      /**
+       * Set to a device's interrupt code to request an external interrupt, which is passed on
+       * to the event scheduler.
+       * @deprecated use getEventScheduler().interrupt() instead
+       */
       public static volatile int externalInterruptingDevice = NO_DEVICE;
    	/** various reasons for simulate to end... */
       public static final int BREAKPOINT = 1;
@@ -59,6 +68,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       public static final int NORMAL_TERMINATION = 4;
       public static final int CLIFF_TERMINATION = 5; // run off bottom of program
       public static final int PAUSE_OR_STOP = 6;
+      /** Maximum number of GUI refreshes per second while a program runs. */
+      public static final int GUI_FRAME_RATE = 30;
    
       /**
    	 * Returns the Simulator object
@@ -78,13 +89,34 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
        private Simulator() {
          simulatorThread = null;
-         if (Globals.getGui() != null) {
+         if (Globals.hasGui()) {
             interactiveGUIUpdater = new UpdateGUI();
-         } 
+         }
       }
-   
-   
-   
+
+   /**
+    * Get the table of breakpoint conditions, hit counts and watchpoints.  The set of
+    * enabled breakpoints is still passed to simulate() at the start of each run.
+    *
+    * @return the simulator's breakpoint table
+    */
+
+       public BreakpointTable getBreakpoints() {
+         return breakpoints;
+      }
+
+   /**
+    * Get the scheduler on which devices schedule events by instruction count, and request
+    * external interrupts.
+    *
+    * @return the simulator's event scheduler
+    */
+
+       public EventScheduler getEventScheduler() {
+         return scheduler;
+      }
+
+
    /**
     *  Determine whether or not the next instruction to be executed is in a
     *  "delay slot".  This means delayed branching is enabled, the branch
@@ -121,6 +153,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             Object dun = simulatorThread.get(); // this should emulate join()
             ProcessingException pe = simulatorThread.pe;
             boolean done = simulatorThread.done;
+            instructionsExecuted = simulatorThread.steps;
             if (done) SystemIO.resetFiles(); // close any files opened in MIPS progra
             this.simulatorThread = null;
             if (pe != null) {
@@ -130,7 +163,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
          return true;
       }
-   		
+
+   /**
+    * Number of MIPS basic instructions executed by the last simulation started from the command
+    * line, that is by simulate() with no GUI component.  Unlike the instruction counter of the
+    * "ic" command option, this needs no memory observer and so does not slow the simulation.
+    * @return the number of instructions executed
+    **/
+       public int getInstructionsExecuted() {
+         return instructionsExecuted;
+      }
+
    
        /**
    	  *  Set the volatile stop boolean variable checked by the execution
@@ -177,15 +220,23 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        private void notifyObserversOfExecutionStart(int maxSteps, int programCounter) {
          this.setChanged();
          this.notifyObservers(new SimulatorNotice(SimulatorNotice.SIMULATOR_START,
-            maxSteps, RunSpeedPanel.getInstance().getRunSpeed(), programCounter) );
+            maxSteps, getRunSpeed(), programCounter) );
       }
    
        private void notifyObserversOfExecutionStop(int maxSteps, int programCounter) {
+         breakpoints.detach(); // watchpoints observe memory only while running
          this.setChanged();
          this.notifyObservers(new SimulatorNotice(SimulatorNotice.SIMULATOR_STOP,
-            maxSteps, RunSpeedPanel.getInstance().getRunSpeed(), programCounter) );
+            maxSteps, getRunSpeed(), programCounter) );
       }
    	 
+   	 // The run speed panel is a Swing component, so it is consulted only if the GUI or a
+   	 // stand-alone tool created it.  Otherwise a command mode run would load Swing.
+       private static double getRunSpeed() {
+         return (Globals.hasGui() || Globals.runSpeedPanelExists) 
+            ? RunSpeedPanel.getInstance().getRunSpeed()
+            : RunSpeedPanel.UNLIMITED_SPEED;
+      }
    	 
    	/**
    	 * SwingWorker subclass to perform the simulated execution in background thread.
@@ -207,6 +258,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          private volatile AbstractAction stopper;
          private AbstractAction starter;
          private int constructReturnReason;
+         private int steps = 0;
       
       
          /**
@@ -219,7 +271,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       	 *  @param starter the GUI component responsible for this call, usually GO or STEP.  null if none.
       	 */
           SimThread(MIPSprogram p, int pc, int maxSteps, int[] breakPoints, AbstractAction starter) {
-            super(Globals.getGui()!=null);  
+            super(Globals.hasGui());  
             this.p = p;
             this.pc = pc;
             this.maxSteps = maxSteps;
@@ -259,12 +311,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             Thread.currentThread().setPriority(Thread.NORM_PRIORITY-1);
             Thread.yield();  // let the main thread run a bit to finish updating the GUI
          	
-            if (breakPoints == null || breakPoints.length == 0) {
-               breakPoints = null;
-            } 
-            else {
-               Arrays.sort(breakPoints);  // must be pre-sorted for binary search
-            }
+            breakpoints.setBreakpoints(breakPoints);
+            boolean checkBreakpoints = breakpoints.hasBreakpoints();
+            boolean watching = breakpoints.attach();
             
             Simulator.getInstance().notifyObserversOfExecutionStart(maxSteps, pc);
          	
@@ -288,7 +337,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
                   return new Boolean(done);
                }
-            int steps = 0;
+            steps = 0;
          	
          	// *******************  PS addition 26 July 2006  **********************
          	// A couple statements below were added for the purpose of assuring that when
@@ -321,9 +370,24 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          	// *********************************************************************
          	
             int pc = 0;  // added: 7/26/06 (explanation above)
+         	
+         	// Statements are executed a basic block at a time (see BasicBlockCache) when nothing
+         	// needs to be checked between them: no watchpoints, no delayed branching, not stepping
+         	// and not running at a timed speed.  The checks below the synchronized block are then
+         	// made once per block.  Blocks never extend past a breakpoint.
+            boolean blocksAllowed = !watching && maxSteps != 1 &&
+                  !Globals.getSettings().getDelayedBranchingEnabled();
+            boolean backStepping = Globals.getSettings().getBackSteppingEnabled();
+            blockCache.setCompilationEnabled(!backStepping && BlockCompiler.registersUnobserved());
          
             while (statement != null) {
                pc = RegisterFile.getProgramCounter(); // added: 7/26/06 (explanation above)
+               BasicBlockCache.Block block = null;
+               if (blocksAllowed && !((Globals.hasGui() || Globals.runSpeedPanelExists) && 
+                          RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED)) {
+                  block = blockCache.getBlock(pc);
+               }
+               int executed = 1;
                RegisterFile.incrementPC();           	
             	// Perform the MIPS instruction in synchronized block.  If external threads agree
             	// to access MIPS memory and registers only through synchronized blocks on same 
@@ -331,27 +395,47 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             	// registers is assured.  Not as critical for reading from those resources.
                synchronized (Globals.memoryAndRegistersLock) {
                   try {                      
-                     if (Simulator.externalInterruptingDevice != NO_DEVICE) {
-                        int deviceInterruptCode = externalInterruptingDevice;
-                        Simulator.externalInterruptingDevice = NO_DEVICE;
-                        throw new ProcessingException(statement, "External Interrupt", deviceInterruptCode);
+                     if (externalInterruptingDevice != NO_DEVICE) { // request by a tool not using the scheduler
+                        scheduler.interrupt(externalInterruptingDevice);
+                        externalInterruptingDevice = NO_DEVICE;
                      }
-                     BasicInstruction instruction = (BasicInstruction)statement.getInstruction();
-                     if (instruction == null) {
-                        throw new ProcessingException(statement,
-                            "undefined instruction ("+Binary.intToHexString(statement.getBinaryStatement())+")",
-                            Exceptions.RESERVED_INSTRUCTION_EXCEPTION);
+                     if (scheduler.isDue()) {
+                        int deviceInterruptCode = scheduler.runDueEvents();
+                        if (deviceInterruptCode != NO_DEVICE) {
+                           throw new ProcessingException(statement, "External Interrupt", deviceInterruptCode);
+                        }
                      }
-                     // THIS IS WHERE THE INSTRUCTION EXECUTION IS ACTUALLY SIMULATED!
-                     instruction.getSimulationCode().simulate(statement);
+                     if (block != null) {
+                        // a block stops short of the next device event, so that it happens on time
+                        executed = blockCache.execute(block, Math.min((maxSteps > 0) ? maxSteps - steps : Integer.MAX_VALUE,
+                                                                     scheduler.getInstructionsToNextEvent()), 
+                                                      backStepping, Globals.memory.countObservers() > 0
+                                                      || Globals.memory.getTraceWriter() != null);
+                        pc = blockCache.getLastAddress();
+                     } 
+                     else {
+                        BasicInstruction instruction = (BasicInstruction)statement.getInstruction();
+                        if (instruction == null) {
+                           throw new ProcessingException(statement,
+                               "undefined instruction ("+Binary.intToHexString(statement.getBinaryStatement())+")",
+                               Exceptions.RESERVED_INSTRUCTION_EXCEPTION);
+                        }
+                        // THIS IS WHERE THE INSTRUCTION EXECUTION IS ACTUALLY SIMULATED!
+                        instruction.getSimulationCode().simulate(statement);
                   	
-                  	// IF statement added 7/26/06 (explanation above)
-                     if (Globals.getSettings().getBackSteppingEnabled()) {
-                        Globals.program.getBackStepper().addDoNothing(pc);
+                     	// IF statement added 7/26/06 (explanation above)
+                        if (backStepping) {
+                           Globals.program.getBackStepper().addDoNothing(pc);
+                        }
                      }
                   } 
                       catch (ProcessingException pe) {
+                        if (block != null && blockCache.getStarted() > 0) {
+                           pc = blockCache.getLastAddress();
+                           executed = blockCache.getStarted();
+                        }
                         if (pe.errors() == null) {
+                           steps += executed;
                            this.constructReturnReason = NORMAL_TERMINATION;
                            this.done = true;
                            SystemIO.resetFiles(); // close any files opened in MIPS program
@@ -373,6 +457,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                               RegisterFile.setProgramCounter(Memory.exceptionHandlerAddress);
                            } 
                            else {
+                              steps += executed;
                               this.constructReturnReason = EXCEPTION;
                               this.pe = pe;
                               this.done = true;
@@ -383,6 +468,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                         }
                      }
                }// end synchronized block
+               scheduler.advance(executed);
             	
             	///////// DPS 15 June 2007.  Handle delayed branching if it occurs./////
                if (DelayedBranch.isTriggered()) {
@@ -401,34 +487,32 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
                   return new Boolean(done);
                }
-            	//	Return if we've reached a breakpoint.					
-               if((breakPoints != null) && 
-               (Arrays.binarySearch(breakPoints,RegisterFile.getProgramCounter()) >= 0)) {
+            	//	Return if we've reached a breakpoint whose condition holds, or a watched word was accessed.
+               if ((checkBreakpoints && breakpoints.isBreakpoint(RegisterFile.getProgramCounter()) &&
+                    breakpoints.shouldStop(RegisterFile.getProgramCounter())) ||
+                   (watching && breakpoints.takeWatchpointHit())) {
                   this.constructReturnReason = BREAKPOINT;
                   this.done = false;
                   Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
                   return new Boolean(done); // false;
                }
-            	// Check number of MIPS instructions executed.  Return if at limit (-1 is no limit).
-               if (maxSteps > 0) {
-                  steps++;
-                  if (steps >= maxSteps) {
-                     this.constructReturnReason = MAX_STEPS;
-                     this.done = false;
-                     Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-                     return new Boolean(done);// false;
-                  }
+            	// Count MIPS instructions executed.  Return if at limit (-1 is no limit).
+               steps += executed;
+               if (maxSteps > 0 && steps >= maxSteps) {
+                  this.constructReturnReason = MAX_STEPS;
+                  this.done = false;
+                  Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
+                  return new Boolean(done);// false;
                }
             	
             	// schedule GUI update only if: there is in fact a GUI! AND
             	//                              using Run,  not Step (maxSteps > 1) AND
-            	//                              running slowly enough for GUI to keep up
-               //if (Globals.getGui() != null && maxSteps != 1 &&             
-               if (interactiveGUIUpdater != null && maxSteps != 1 && 
-                          RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
-                  SwingUtilities.invokeLater(interactiveGUIUpdater);
+            	//                              a frame is due (see UpdateGUI).
+            	// This is at any run speed, so a run at unlimited speed is visible too.
+               if (interactiveGUIUpdater != null && maxSteps != 1) {
+                  interactiveGUIUpdater.postFrameIfDue();
                }
-               if (Globals.getGui() != null || Globals.runSpeedPanelExists) { // OR added by DPS 24 July 2008 to enable speed control by stand-alone tool
+               if (Globals.hasGui() || Globals.runSpeedPanelExists) { // OR added by DPS 24 July 2008 to enable speed control by stand-alone tool
                   if (maxSteps != 1 && 
                           RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
                      try { Thread.sleep((int)(1000/RunSpeedPanel.getInstance().getRunSpeed())); // make sure it's never zero!
@@ -489,7 +573,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       	 
           public void finished() {
            // If running from the command-line, then there is no GUI to update.
-            if (Globals.getGui() == null) {
+            if (!Globals.hasGui()) {
                return;
             }
             String starterName = (String) starter.getValue(AbstractAction.NAME);
@@ -518,18 +602,57 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          
       }
    	
+      /**
+       * Refreshes the GUI during a run.  The simulator thread calls postFrameIfDue() between
+       * instructions; at most GUI_FRAME_RATE times per second, and only once the previous frame
+       * has been painted, it copies the registers and program counter and hands the copy to
+       * the event dispatch thread.  The copy is consistent because it is taken between
+       * instructions, and the event dispatch thread never waits for the simulator.  Only the
+       * register cells whose value changed since the last frame are repainted.
+       */
        private class UpdateGUI implements Runnable {
+         private final long frameInterval = 1000000000L / GUI_FRAME_RATE;
+         private long nextFrame = 0;
+         private volatile boolean pending = false;
+         private int[] registers = new int[35];   // 0-31, then pc, hi, lo as in RegistersWindow
+         private int[] fpRegisters = new int[32];
+         private int conditionFlags;
+         private int pc;
+      
+          void postFrameIfDue() {
+            if (pending) {
+               return;
+            }
+            long now = System.nanoTime();
+            if (now < nextFrame) {
+               return;
+            }
+            nextFrame = now + frameInterval;
+            for (int i = 0; i < 32; i++) {
+               registers[i] = RegisterFile.getValue(i);
+               fpRegisters[i] = Coprocessor1.getValue(i);
+            }
+            registers[32] = RegisterFile.getProgramCounter();
+            registers[33] = RegisterFile.getValue(33);
+            registers[34] = RegisterFile.getValue(34);
+            conditionFlags = Coprocessor1.getConditionFlags();
+            pc = registers[32];
+            pending = true;
+            SwingUtilities.invokeLater(this);
+         }
+      
           public void run() {
-            if (Globals.getGui().getRegistersPane().getSelectedComponent() == 
-                                                     Globals.getGui().getMainPane().getExecutePane().getRegistersWindow()) {
-               Globals.getGui().getMainPane().getExecutePane().getRegistersWindow().updateRegisters();
+            ExecutePane executePane = Globals.getGui().getMainPane().getExecutePane();
+            if (Globals.getGui().getRegistersPane().getSelectedComponent() == executePane.getRegistersWindow()) {
+               executePane.getRegistersWindow().updateRegisters(registers);
             } 
             else {
-               Globals.getGui().getMainPane().getExecutePane().getCoprocessor1Window().updateRegisters();
+               executePane.getCoprocessor1Window().updateRegisters(fpRegisters, conditionFlags);
             }
-            Globals.getGui().getMainPane().getExecutePane().getDataSegmentWindow().updateValues();
-            Globals.getGui().getMainPane().getExecutePane().getTextSegmentWindow().setCodeHighlighting(true);
-            Globals.getGui().getMainPane().getExecutePane().getTextSegmentWindow().highlightStepAtPC();   
+            executePane.getDataSegmentWindow().updateValues();
+            executePane.getTextSegmentWindow().setCodeHighlighting(true);
+            executePane.getTextSegmentWindow().highlightStepAtAddress(pc);
+            pending = false;
          }
       }
    
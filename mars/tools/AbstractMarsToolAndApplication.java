@@ -50,7 +50,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 	 * include: button that triggers a file open dialog, a text field to display status
 	 * messages, the run-speed slider to control execution rate when running a MIPS program,
 	 * a button that assembles and runs the current MIPS program, a button to interrupt
-	 * the running MIPS program, a reset button, and an exit button.
+	 * the running MIPS program, a reset button, and an exit button.  Both also have a button
+	 * to replay a recorded memory access trace to the tool or app (see TraceReplay).
 	 * Pete Sanderson, 14 November 2006.
 	 */
     public abstract class AbstractMarsToolAndApplication extends JFrame implements MarsTool, Observer {
@@ -84,6 +85,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
       // Structure required for MarsTool use only (not stand-alone use). Want subclasses to have access.
       protected ConnectButton connectButton;      
+      private JButton replayButton;
+      private TraceReplay replay = null; // the trace replay in progress, if any
+      private ArrayList replayRanges = null; // collects the ranges given to addAsObserver() for a replay
+      private ArrayList devices = new ArrayList(); // the MemoryMappedDevices added by addAsDevice()
    
    
       /**
@@ -267,6 +272,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                      else {
                         connectButton.connect();
                      }
+                     replayButton.setEnabled(!connectButton.isConnected()); // live and replayed accesses must not mix
                   }
                });
          connectButton.addKeyListener(new EnterKeyListener(connectButton));
@@ -291,9 +297,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                });
          closeButton.addKeyListener(new EnterKeyListener(closeButton));
       
+         createReplayButton();
+      
       	// Add all the buttons...
          buttonArea.add(connectButton);
          buttonArea.add(Box.createHorizontalGlue());
+         buttonArea.add(replayButton);
+         buttonArea.add(Box.createHorizontalGlue());
          buttonArea.add(resetButton);
          buttonArea.add(Box.createHorizontalGlue());
          JComponent helpComponent = getHelpComponent();
@@ -382,6 +392,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                      assembleRunButton.setEnabled(false);
                      openFileButton.setEnabled(false);
                      stopButton.setEnabled(true);
+                     replayButton.setEnabled(false);
                      new Thread(new CreateAssembleRunMIPSprogram()).start();
                   }
                });
@@ -439,6 +450,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          buttonArea.add(Box.createHorizontalGlue());
          buttonArea.add(stopButton);
          buttonArea.add(Box.createHorizontalGlue());
+         createReplayButton();
+         buttonArea.add(replayButton);
+         buttonArea.add(Box.createHorizontalGlue());
          buttonArea.add(resetButton);
          buttonArea.add(Box.createHorizontalGlue());
          JComponent helpComponent = getHelpComponent();
@@ -518,6 +532,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 */
    	
        protected void addAsObserver(int lowEnd, int highEnd) {
+         if (replayRanges != null) {
+            replayRanges.add(new int[] {lowEnd, highEnd});
+            return;
+         }
          String errorMessage = "Error connecting to MIPS memory";
          try {
             Globals.memory.addObserver(thisMarsApp,lowEnd, highEnd);
@@ -532,11 +550,43 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             }		 
       }
    
+      /**
+   	 *  Register a memory mapped device of this app/tool for the specified subrange of the
+   	 *  memory map (memoryMapBaseAddress and up).  Memory calls the device directly with each
+   	 *  MIPS load from or store to the range, which is much faster than observing it.  Like
+   	 *  the ranges given to addAsObserver(), the device is removed by the default deleteAsObserver().
+   	 *  When a trace is replayed, the accesses to the range are given to processMIPSUpdate() instead,
+   	 *  so that method should handle them too.
+   	 *  @param device the device, often the app/tool itself
+   	 *  @param lowEnd low end of memory address range.
+   	 *  @param highEnd high end of memory address range; must be >= lowEnd
+   	 */
+   	
+       protected void addAsDevice(MemoryMappedDevice device, int lowEnd, int highEnd) {
+         if (replayRanges != null) {
+            replayRanges.add(new int[] {lowEnd, highEnd});
+            return;
+         }
+         String errorMessage = "Error connecting to MIPS memory";
+         try {
+            Globals.memory.addDevice(device, lowEnd, highEnd);
+            devices.add(device);
+         } 
+             catch (AddressErrorException aee) {
+               if (this.isBeingUsedAsAMarsTool) {
+                  headingLabel.setText(errorMessage);
+               } 
+               else {
+                  operationStatusMessages.displayTerminatingMessage(errorMessage);
+               }
+            }		 
+      }
+   
       /**
    	 *  Add this app/tool as an Observer of the specified MIPS register.
    	 */
        protected void addAsObserver(Register reg) {
-         if (reg != null) {
+         if (reg != null && replayRanges == null) { // traces hold no register accesses
             reg.addObserver(thisMarsApp);
          }
       }
@@ -553,6 +603,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 
        protected void deleteAsObserver() {
          Globals.memory.deleteObserver(thisMarsApp);
+         for (int i = 0; i < devices.size(); i++) {
+            Globals.memory.deleteDevice((MemoryMappedDevice) devices.get(i));
+         }
+         devices.clear();
       }
    
       /**
@@ -607,6 +661,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
        // Closing duties for MarsTool only.
        private void performToolClosingDuties() {
+         if (replay != null) {
+            replay.stop();
+         }
          performSpecialClosingDuties();
          if (connectButton.isConnected()) {
             connectButton.disconnect();
@@ -623,6 +680,90 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    
    
+   	// The button that replays a trace, and while one is replaying switches fast-forward on or off.
+       private void createReplayButton() {
+         replayButton = new JButton("Replay Trace...");
+         replayButton.setToolTipText("Feed a memory access trace recorded by the \"trace\" command option to this tool");
+         replayButton.addActionListener(
+                new ActionListener() {
+                   public void actionPerformed(ActionEvent e) {
+                     if (replay != null) {
+                        replay.setFastForward(!replay.isFastForward());
+                        replayButton.setText((replay.isFastForward()) ? "Show Progress" : "Fast Forward");
+                     } 
+                     else {
+                        startReplay();
+                     }
+                  }
+               });
+         replayButton.addKeyListener(new EnterKeyListener(replayButton));
+      }
+   
+   	// Choose a trace file and replay it to the memory ranges this tool observes.  Not while
+   	// the tool observes a running program, since the replay thread would update it concurrently.
+       private void startReplay() {
+         if ((connectButton != null && connectButton.isConnected()) || simulationRunning()) {
+            JOptionPane.showMessageDialog(theWindow, 
+               "A trace cannot be replayed while the tool is connected to MIPS or a MIPS program is running.");
+            return;
+         }
+         JFileChooser fileChooser = new JFileChooser();
+         if (mostRecentlyOpenedFile != null) {
+            fileChooser.setCurrentDirectory(mostRecentlyOpenedFile.getParentFile());
+         }
+         if (fileChooser.showOpenDialog(theWindow) != JFileChooser.APPROVE_OPTION) {
+            return;
+         }
+         replayRanges = new ArrayList();
+         try {
+            addAsObserver();
+            replay = new TraceReplay(this, fileChooser.getSelectedFile(), replayRanges);
+         }
+         finally {
+            replayRanges = null;
+         }
+         replayButton.setText("Fast Forward");
+         if (isBeingUsedAsAMarsTool) {
+            connectButton.setEnabled(false);
+         } 
+         else {
+            assembleRunButton.setEnabled(false);
+            openFileButton.setEnabled(false);
+         }
+         replay.start();
+      }
+   
+      // Whether a MIPS program is being simulated, by MARS or by this stand-alone app.
+       private boolean simulationRunning() {
+         if (isBeingUsedAsAMarsTool) {
+            return mars.venus.FileStatus.get() == mars.venus.FileStatus.RUNNING;
+         }
+         return stopButton.isEnabled();
+      }
+   
+   	/**
+   	 *  Called by a trace replay, on its own thread, when it has ended.
+   	 */
+       void replayEnded(final String message) {
+         SwingUtilities.invokeLater(
+                new Runnable() {
+                   public void run() {
+                     replay = null;
+                     replayButton.setText("Replay Trace...");
+                     if (isBeingUsedAsAMarsTool) {
+                        headingLabel.setText(message);
+                        connectButton.setEnabled(true);
+                     } 
+                     else {
+                        operationStatusMessages.setText(message);
+                        operationStatusMessages.setCaretPosition(0);
+                        assembleRunButton.setEnabled(mostRecentlyOpenedFile != null);
+                        openFileButton.setEnabled(true);
+                     }
+                  }
+               });
+      }
+   
    //////////////////////////////////////////////////////////////////////////////////
    ////////////////////  PRIVATE HELPER CLASSES    //////////////////////////////////
    //  Specialized inner classes.  Either used by stand-alone (JFrame-based) only  //
@@ -803,6 +944,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   assembleRunButton.setEnabled(true);
                   openFileButton.setEnabled(true);
                   stopButton.setEnabled(false);
+                  replayButton.setEnabled(true);
                }
             }
          }   	
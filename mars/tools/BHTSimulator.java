@@ -27,15 +27,24 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 package mars.tools;
 
+import java.awt.Font;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.Observable;
 
+import javax.swing.JButton;
 import javax.swing.JComponent;
+import javax.swing.JOptionPane;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
 
 import mars.ProgramStatement;
 import mars.mips.hardware.AccessNotice;
 import mars.mips.hardware.AddressErrorException;
+import mars.mips.hardware.BranchPredictorSweep;
 import mars.mips.hardware.Memory;
 import mars.mips.hardware.MemoryAccessNotice;
 import mars.mips.hardware.RegisterFile;
@@ -55,6 +64,9 @@ import mars.mips.hardware.RegisterFile;
  * <p>
  * The tool can be used to show how branch prediction works in case of loops and how effective such simple methods are. 
  * In case of nested loops the difference of BHT with 1 or 2 Bit history can be explored and visualized.
+ * <p>
+ * Alongside the BHT, a set of other predictors (see {@link BranchPredictorSweep}) is evaluated over
+ * the same branches, and their accuracy can be compared with the "Compare Predictors" button.
  * 
  * @author ingo.kofler@itec.uni-klu.ac.at
  */
@@ -79,6 +91,9 @@ public class BHTSimulator extends AbstractMarsToolAndApplication implements Acti
 	
 	/** the heading of the tool */
 	public static final String BHT_HEADING = "Branch History Table Simulator";
+	
+	/** the predictors evaluated for comparison, in the format of the "bp" command option */
+	public static final String BHT_COMPARED_PREDICTORS = "1bit=16,2bit=16,1bit=1024,2bit=1024,gshare=1024x10,tournament=1024x10,btb=256";
 		
 	/** the GUI of the BHT simulator */
 	private BHTSimGUI m_gui; 	
@@ -92,6 +107,9 @@ public class BHTSimulator extends AbstractMarsToolAndApplication implements Acti
 	/** state variable that signals if the last branch was taken */
 	private boolean m_lastBranchTaken;
 	
+	/** the predictors evaluated for comparison */
+	private BranchPredictorSweep m_predictorSweep;
+	
 	
 	/**
 	 * Creates a BHT Simulator with given name and heading.
@@ -126,6 +144,10 @@ public class BHTSimulator extends AbstractMarsToolAndApplication implements Acti
 		m_gui.getCbBHThistory().addActionListener(this);		
 		m_gui.getCbBHTinitVal().addActionListener(this);
 		
+		ArrayList predictors = new ArrayList();
+		predictors.add(BHTSimulator.BHT_COMPARED_PREDICTORS);
+		m_predictorSweep = new BranchPredictorSweep(predictors);
+		
 		return m_gui;
 	}
 
@@ -175,6 +197,30 @@ public class BHTSimulator extends AbstractMarsToolAndApplication implements Acti
 		
 		m_pendingBranchInstAddress = 0;
 		m_lastBranchTaken = false;
+		m_predictorSweep.reset();
+	}
+	
+	
+	/**
+	 * Provides the button that shows the accuracy of the compared predictors.
+	 * 
+	 * @return the "Compare Predictors" button
+	 */
+	protected JComponent getHelpComponent() {
+		JButton compare = new JButton("Compare Predictors");
+		compare.setToolTipText("Show how often each of a set of predictors predicted the branches so far");
+		compare.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				ByteArrayOutputStream report = new ByteArrayOutputStream();
+				m_predictorSweep.report(new PrintStream(report, true));
+				JTextArea text = new JTextArea(report.toString());
+				text.setFont(new Font("Monospaced", Font.PLAIN, 12));
+				text.setTabSize(12);
+				text.setEditable(false);
+				JOptionPane.showMessageDialog(theWindow, new JScrollPane(text), "Branch Predictor Comparison", JOptionPane.INFORMATION_MESSAGE);
+			}
+		});
+		return compare;
 	}
 	
 	
@@ -334,6 +380,7 @@ public class BHTSimulator extends AbstractMarsToolAndApplication implements Acti
 			
 			// now it is safe to make a cast of the notice
 			MemoryAccessNotice memAccNotice = (MemoryAccessNotice) notice;
+			m_predictorSweep.fetch(memAccNotice.getAddress(), memAccNotice.getValue());
 			
 			try {				
 				// access the statement in the text segment without notifying other tools etc.
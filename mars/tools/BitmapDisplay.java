@@ -4,6 +4,8 @@
    import javax.swing.event.*;
    import java.awt.*;
    import java.awt.event.*;
+   import java.awt.image.BufferedImage;
+   import java.awt.image.DataBufferInt;
    import java.util.*;
    import mars.tools.*;
    import mars.mips.hardware.*;
@@ -41,11 +43,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 	 * access to the mars package, or through MARS as an item in its Tools menu.  It makes
 	 * maximum use of methods inherited from its abstract superclass AbstractMarsToolAndApplication.
 	 * Pete Sanderson, verison 1.0, 23 December 2010.
+	 * <p>
+	 * The display is an RGB image with one pixel per unit, whose pixels are set directly
+	 * by stores to the display memory.  The area changed since the last repaint is tracked,
+	 * and at most FRAMES_PER_SECOND times a second just that area is redrawn by scaling
+	 * the image up to the unit size.  October 2026.
 	 */
-    public class BitmapDisplay extends AbstractMarsToolAndApplication {
+    public class BitmapDisplay extends AbstractMarsToolAndApplication implements MemoryMappedDevice {
    
       private static String version = "Version 1.0";
       private static String heading =  "Bitmap Display";
+      private static final int FRAMES_PER_SECOND = 60;
    	
    	// Major GUI components
       private JComboBox visualizationUnitPixelWidthSelector, visualizationUnitPixelHeightSelector,
@@ -85,6 +93,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private int baseAddress;
    	
       private Grid theGrid;
+      private volatile boolean repaintScheduled = false;
+      private javax.swing.Timer repaintTimer;
    	         	
    	/**
    	 * Simple constructor, likely used to run a stand-alone bitmap display tool.
@@ -128,7 +138,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  (starting address 0x10010000) only.  This version will register us as observer over the 
    	 *  the memory range as selected by the base address combo box and capacity of the visualization display 
    	 *  (number of visualization elements times the number of memory words each one represents). 
-   	 *  It does so by calling the inherited 2-parameter overload of this method. 
+   	 *  It does so by calling the inherited 2-parameter overload of this method, except that a
+   	 *  display in the memory map is registered as a memory mapped device instead (see write()).
    	 *  If you use the inherited GUI buttons, this 
    	 *  method is invoked when you click "Connect" button on MarsTool or the 
    	 *  "Assemble and Run" button on a Mars-based app.
@@ -142,7 +153,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          if (baseAddress < 0 && highAddress > -4) {
             highAddress = -4;
          }
-         addAsObserver(baseAddress, highAddress);
+         if (baseAddress >= Memory.memoryMapBaseAddress && baseAddress < Memory.memoryMapLimitAddress) {
+            addAsDevice(this, baseAddress, Math.min(highAddress, Memory.memoryMapLimitAddress - Memory.WORD_LENGTH_BYTES));
+         } 
+         else {
+            addAsObserver(baseAddress, highAddress);
+         }
       }
    
       
@@ -173,9 +189,32 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 */
        protected void processMIPSUpdate(Observable memory, AccessNotice accessNotice) {
          if (accessNotice.getAccessType() == AccessNotice.WRITE) {
-            updateColorForAddress((MemoryAccessNotice)accessNotice);
+            MemoryAccessNotice notice = (MemoryAccessNotice)accessNotice;
+            updateColorForAddress(notice.getAddress(), notice.getValue());
          }
       }
+   
+   	/**
+   	 * Called by memory when the MIPS program has stored to a display in the memory map.
+   	 * @param address the address stored to
+   	 * @param length number of bytes stored
+   	 * @param value the value stored
+   	 */
+       public void write(int address, int length, int value) {
+         updateColorForAddress(address, value);
+         updateDisplay();
+      }
+   
+   	/**
+   	 * Called by memory when the MIPS program has loaded from a display in the memory map.
+   	 * @param address the address loaded from
+   	 * @param length number of bytes loaded
+   	 * @param value the value loaded
+   	 * @return the value, unchanged
+   	 */
+       public int read(int address, int length, int value) {
+         return value;
+      }
    	
    
    	/** 
@@ -213,12 +252,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    
    	/**
-   	 *  Updates display immediately after each update (AccessNotice) is processed, after
-   	 *  display configuration changes as needed, and after each execution step when Mars
-   	 *  is running in timed mode.  Overrides inherited method that does nothing.
+   	 *  Called after each update (AccessNotice) is processed, after display configuration
+   	 *  changes as needed, and after each execution step when Mars is running in timed mode.
+   	 *  Schedules a repaint of the area changed since the last one, unless one is already
+   	 *  scheduled, so the display is repainted at most FRAMES_PER_SECOND times a second.
+   	 *  Overrides inherited method that does nothing.
    	 */
        protected void updateDisplay() {
-         canvas.repaint();
+         if (!repaintScheduled) {
+            repaintScheduled = true;
+            repaintTimer.restart();
+         }
       }
    
        
@@ -391,6 +435,19 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          canvas = new GraphicsPanel();
          canvas.setPreferredSize(getDisplayAreaDimension());
          canvas.setToolTipText("Bitmap display area");
+         repaintTimer = new javax.swing.Timer(1000 / FRAMES_PER_SECOND, 
+                new ActionListener() {
+                   public void actionPerformed(ActionEvent e) {
+                     repaintScheduled = false; // before taking the changes, so later ones schedule another
+                     Grid grid = theGrid;
+                     Rectangle changed = grid.takeChangedArea();
+                     if (changed != null) {
+                        canvas.repaint(changed.x * unitPixelWidth, changed.y * unitPixelHeight,
+                                       changed.width * unitPixelWidth, changed.height * unitPixelHeight);
+                     }
+                  }
+               });
+         repaintTimer.setRepeats(false);
          return canvas;
       }
    
@@ -463,9 +520,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    	
    	 // Given memory address, update color for the corresponding grid element.
-       private void updateColorForAddress(MemoryAccessNotice notice) {
-         int address = notice.getAddress();
-         int value   = notice.getValue();
+       private void updateColorForAddress(int address, int value) {
          int offset = (address - baseAddress)/Memory.WORD_LENGTH_BYTES;
          try {
             theGrid.setElement(offset / theGrid.getColumns(), offset % theGrid.getColumns(), value);
@@ -492,32 +547,28 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                paintGrid(g, theGrid);
          }
       
-      	// Paint the color codes.
+      	// Paint the image scaled to the unit size.  Only the clip area, usually the area
+      	// changed since the last repaint, is actually drawn.
           private void paintGrid(Graphics g, Grid grid) {
-            int upperLeftX = 0, upperLeftY = 0;
-            for (int i=0; i<grid.getRows(); i++) {
-               for (int j=0; j<grid.getColumns(); j++) {
-                  g.setColor(grid.getElementFast(i,j));
-                  g.fillRect(upperLeftX, upperLeftY, unitPixelWidth, unitPixelHeight); 
-                  upperLeftX += unitPixelWidth;   // faster than multiplying
-               }
-            	// get ready for next row...
-               upperLeftX = 0;
-               upperLeftY += unitPixelHeight;     // faster than multiplying
-            }
+            g.drawImage(grid.getImage(), 0, 0, grid.getColumns() * unitPixelWidth, grid.getRows() * unitPixelHeight, null);
          }
       }
    
    	
       ////////////////////////////////////////////////////////////////////////
-   	// Represents grid of colors
+   	// Represents grid of colors as an image with one pixel per grid element, whose
+   	// pixels are written directly.  Also keeps the bounds of the elements changed
+   	// since the area was last taken for repainting.
        private class Grid {
       
-         Color[][] grid;
+         BufferedImage image;
+         int[] pixels;
          int rows, columns;
+         int changedTop, changedLeft, changedBottom, changedRight; // changedBottom < changedTop if none
       	 		  
           private Grid(int rows, int columns) {
-            grid = new Color[rows][columns];
+            image = new BufferedImage(Math.max(columns, 1), Math.max(rows, 1), BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
             this.rows = rows;
             this.columns = columns;
             reset();
@@ -531,35 +582,48 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             return columns;
          }
       
-      	// Returns value in given grid element; null if row or column is out of range.			
-          private Color getElement(int row, int column) {
-            return (row>=0 && row<=rows && column>=0 && column<=columns) ? grid[row][column] : null;			
-         }
-      
-      	// Returns value in given grid element without doing any row/column index checking.
-      	// Is faster than getElement but will throw array index out of bounds exception if
-      	// parameter values are outside the bounds of the grid.			
-          private Color getElementFast(int row, int column) {
-            return grid[row][column];			
+          private BufferedImage getImage() {
+            return image;
          }
       	      	
-      	// Set the grid element.
+      	// Set the grid element to a 24-bit RGB color.  Throws IndexOutOfBoundsException if
+      	// the row or column is outside the grid.
           private void setElement(int row, int column, int color) {
-            grid[row][column] = new Color(color);
+            if (column < 0 || column >= columns) {
+               throw new IndexOutOfBoundsException();
+            }
+            pixels[row * columns + column] = color & 0xFFFFFF;
+            synchronized (this) {
+               if (changedBottom < changedTop) {
+                  changedTop = changedBottom = row;
+                  changedLeft = changedRight = column;
+               } 
+               else {
+                  changedTop = Math.min(changedTop, row);
+                  changedBottom = Math.max(changedBottom, row);
+                  changedLeft = Math.min(changedLeft, column);
+                  changedRight = Math.max(changedRight, column);
+               }
+            }
          }
-      	
-      	// Set the grid element.
-          private void setElement(int row, int column, Color color) {
-            grid[row][column] = color;
+      
+      	// Return the rows and columns changed since the last call, null if none.
+          private synchronized Rectangle takeChangedArea() {
+            if (changedBottom < changedTop) {
+               return null;
+            }
+            Rectangle changed = new Rectangle(changedLeft, changedTop, changedRight - changedLeft + 1, changedBottom - changedTop + 1);
+            changedTop = 0;
+            changedBottom = -1;
+            return changed;
          }
       
       	// Just set all grid elements to black.
-          private void reset() {
-            for (int i=0; i<rows; i++) {
-               for (int j=0; j<columns; j++) {
-                  grid[i][j] = Color.BLACK;
-               }
-            }
+          private synchronized void reset() {
+            Arrays.fill(pixels, 0);
+            changedTop = changedLeft = 0;
+            changedBottom = rows - 1;
+            changedRight = columns - 1;
          }
       }  	
    
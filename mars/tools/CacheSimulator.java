@@ -85,12 +85,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private int defaultCacheSetSizeIndex      = 0;
    	
    	// Cache-related data structures
-      private AbstractCache theCache;   			
+      private Cache theCache;   			
       private int memoryAccessCount, cacheHitCount, cacheMissCount;
       private double cacheHitRate;
       
-   	// RNG used for random replacement policy.  For testing, set seed for reproducible stream
-      private Random randu = new Random(0);  
    	
    	/**
    	 * Simple constructor, likely used to run a stand-alone cache simulator.
@@ -196,6 +194,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          cacheReplacementSelector.setEditable(false);
          cacheReplacementSelector.setBackground(backgroundColor);
          cacheReplacementSelector.setSelectedIndex(defaultReplacementPolicyIndex);
+         cacheReplacementSelector.addActionListener(
+                new ActionListener() {
+                   public void actionPerformed(ActionEvent e) {
+                     reset();
+                  }
+               });	
       	      						
          cacheBlockSizeSelector = new JComboBox(cacheBlockSizeChoices);
          cacheBlockSizeSelector.setEditable(false);
@@ -419,14 +423,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        protected void processMIPSUpdate(Observable memory, AccessNotice accessNotice) {
          MemoryAccessNotice notice = (MemoryAccessNotice) accessNotice;
          memoryAccessCount++;
-         CacheAccessResult cacheAccessResult = theCache.isItAHitThenReadOnMiss(notice.getAddress());
-         if (cacheAccessResult.isHit()) {
+         boolean hit = theCache.access(notice.getAddress(), notice.getAccessType() == AccessNotice.WRITE);
+         if (debug)
+            writeLog("("+memoryAccessCount+") address: "+Binary.intToHexString(notice.getAddress())+
+                     ((hit) ? " -- HIT" : " -- MISS")+" block "+theCache.getLastBlock()+"\n");
+         if (hit) {
             cacheHitCount++;
-            animations.showHit(cacheAccessResult.getBlock());
+            animations.showHit(theCache.getLastBlock());
          } 
          else {
             cacheMissCount++;
-            animations.showMiss(cacheAccessResult.getBlock());
+            animations.showMiss(theCache.getLastBlock());
          }
          cacheHitRate = cacheHitCount / (double)memoryAccessCount;
       }
@@ -530,18 +537,22 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    	
    	// create and return a new cache object based on current specs
-       private AbstractCache createNewCache() {
-         AbstractCache theNewCache = null;
+       private Cache createNewCache() {
+         Cache theNewCache = null;
          int setSize = 1;
          try {
             setSize = Integer.parseInt((String)cacheSetSizeSelector.getSelectedItem());
          } 
              catch (NumberFormatException nfe) { // if this happens its my fault!
             }
-         theNewCache = new AnyCache(
+         // The name also selects the random stream for random replacement, seeded with 0
+         // unless a machine seed is set, for reproducible runs.
+         theNewCache = new Cache("CacheSimulator",
                        cacheBlockCountChoicesInt[cacheBlockCountSelector.getSelectedIndex()],
             			  cacheBlockSizeChoicesInt[cacheBlockSizeSelector.getSelectedIndex()],
-            			  setSize);				  
+            			  setSize,
+                       (cacheReplacementSelector.getSelectedIndex() == RANDOM) ? Cache.RANDOM : Cache.LRU,
+                       true, true);				  
          return theNewCache;
       }
    	
@@ -591,254 +602,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
    
       //////////////////////////////////////////////////////////////////////////////////////
-      //  Specialized inner classes for cache modeling and animation.
+      //  Specialized inner class for animation.  Caches are modeled by mars.mips.hardware.Cache.
       //////////////////////////////////////////////////////////////////////////////////////
    	
-    	/////////////////////////////////////////////////////////////////////////
-   	// Represents a block in the cache.  Since we are only simulating
-   	// cache performance, there's no need to actually store memory contents.
-       private class CacheBlock {
-         private boolean valid;
-         private int tag;
-         private int sizeInWords;
-         private int mostRecentAccessTime;
-          public CacheBlock(int sizeInWords) {
-            this.valid = false;
-            this.tag = 0;
-            this.sizeInWords = sizeInWords;
-            this.mostRecentAccessTime = -1;
-         }
-      }
-   
-    	/////////////////////////////////////////////////////////////////////////
-   	// Represents the outcome of a cache access.  There are two parts:
-   	// whether it was a hit or not, and in which block is the value stored.
-   	// In the case of a hit, the block associated with address.  In the case of
-   	// a miss, the block where new association is made.	DPS 23-Dec-2010
-       private class CacheAccessResult {
-         private boolean hitOrMiss;
-         private int blockNumber;
-          public CacheAccessResult(boolean hitOrMiss, int blockNumber) {
-            this.hitOrMiss = hitOrMiss;
-            this.blockNumber = blockNumber;
-         }
-          public boolean isHit() {
-            return hitOrMiss;
-         }
-          public int getBlock() {
-            return blockNumber;
-         }
-      }
-   		
-   	//////////////////////////////////////////////////////////////////////
-   	// Abstract Cache class.  Subclasses will implement specific policies.
-       private abstract class AbstractCache {
-         private int numberOfBlocks, blockSizeInWords, setSizeInBlocks, numberOfSets;
-         protected CacheBlock[] blocks;
-      	
-          protected AbstractCache(int numberOfBlocks, int blockSizeInWords, int setSizeInBlocks) {
-            this.numberOfBlocks = numberOfBlocks;
-            this.blockSizeInWords = blockSizeInWords;
-            this.setSizeInBlocks = setSizeInBlocks;
-            this.numberOfSets = numberOfBlocks/setSizeInBlocks;
-            this.blocks = new CacheBlock[numberOfBlocks];
-            this.reset();
-         }
-      	
-          public int getNumberOfBlocks() {
-            return this.numberOfBlocks;
-         }
-      	
-          public int getNumberOfSets() {
-            return this.numberOfSets;
-         }
-      		
-          public int getSetSizeInBlocks() {
-            return this.setSizeInBlocks;
-         }
-      	
-          public int getBlockSizeInWords() {
-            return this.blockSizeInWords;
-         }
-      		
-          public int getCacheSizeInWords() {
-            return this.numberOfBlocks * this.blockSizeInWords;
-         }
-      		
-          public int getCacheSizeInBytes() {
-            return this.numberOfBlocks * this.blockSizeInWords * Memory.WORD_LENGTH_BYTES;
-         }
-
-      
-        // This will work regardless of placement. 
-        // For direct map, #sets==#blocks
-        // For full assoc, #sets==1 so anything % #sets == 0
-        // For n-way assoc, it extracts the set bits in address.
-          public int getSetNumber(int address) {
-            return address / Memory.WORD_LENGTH_BYTES / this.blockSizeInWords % this.numberOfSets;
-         }
-      	
-      	 // This will work regardless of placement policy (direct map, n-way or full assoc)
-          public int getTag(int address) {
-            return address / Memory.WORD_LENGTH_BYTES / this.blockSizeInWords / this.numberOfSets;
-         }
-      	
-      	 // This will work regardless of placement policy (direct map, n-way or full assoc)
-      	 // Returns absolute block offset into the cache.
-          public int getFirstBlockToSearch(int address) {
-            return this.getSetNumber(address) * this.setSizeInBlocks;
-         }
-      	
-          // This will work regardless of placement policy (direct map, n-way or full assoc)
-      	 // Returns absolute block offset into the cache.
-          public int getLastBlockToSearch(int address) {
-            return this.getFirstBlockToSearch(address) + this.setSizeInBlocks - 1;
-         }	
-      	
-      	/* Reset the cache contents. */
-          public void reset() {
-            for (int i=0; i<numberOfBlocks; i++) {
-               this.blocks[i] = new CacheBlock(blockSizeInWords);
-            }
-            System.gc(); // scoop 'em up now
-         }
-      	
-      	// Subclass must implement this according to its policies
-          public abstract CacheAccessResult isItAHitThenReadOnMiss(int address);
-      }
-   	   	
-   	
-     	//////////////////////////////////////////////////////////////////////////////
-   	// Implements any of the well-known cache organizations.  Physical memory
-   	// address is partitioned depending on organization:
-   	//    Direct Mapping:    [ tag | block | word | byte ]
-   	//    Fully Associative: [ tag | word | byte ]
-   	//    Set Associative:   [ tag | set | word | byte ]
-   	//
-   	// Bit lengths of each part are determined as follows:
-   	// Direct Mapping:
-   	//   byte  = log2 of #bytes in a word (typically 4)
-   	//   word  = log2 of #words in a block
-   	//   block = log2 of #blocks in the cache
-   	//   tag   = #bytes in address - (byte+word+block)
-   	// Fully Associative:
-   	//   byte  = log2 of #bytes in a word (typically 4)
-   	//   word  = log2 of #words in a block
-   	//   tag   = #bytes in address - (byte+word)
-   	// Set Associative:
-   	//   byte  = log2 of #bytes in a word (typically 4)
-   	//   word  = log2 of #words in a block
-   	//   set   = log2 of #sets in the cache
-   	//   tag   = #bytes in address - (byte+word+set)
-   	//
-   	// Direct Mapping (1 way set associative):
-   	// The block value for a given address identifies its block index into the cache.
-   	// That's why its called "direct mapped."  This is the only cache block it can
-   	// occupy.  If that cache block is empty or if it is occupied by a different tag,
-   	// this is a MISS.  If that cache block is occupied by the same tag, this is a HIT.
-   	// There is no replacement policy: upon a cache miss of an occupied block, the old
-   	// block is written out (unless write-through) and the new one read in.
-   	// Those actions are not simulated here.
-   	//
-   	// Fully Associative:
-   	// There is one set, and very tag has to be searched before determining hit or miss.
-   	// If tag is matched, it is a hit.  If tag is not matched and there is at least one
-   	// empty block, it is a miss and the new tag will occupy it.  If tag is not matched
-   	// and every block is occupied, it is a miss and one of the occupied blocks will be
-   	// selected for removal and the new tag will replace it.
-   	//
-   	// n-way Set Associative:
-   	// Each set consists of n blocks, and the number of sets in the cache is total number
-   	// of blocks divided by n.  The set bits in the address will identify which set to
-   	// search, and every tag in that set has to be searched before determining hit or miss.
-   	// If tag is matched, it is a hit.  If tag is not matched and there is at least one
-   	// empty block, it is a miss and the new tag will occupy it.  If tag is not matched
-   	// and every block is occupied, it is a miss and one of the occupied blocks will be
-   	// selected for removal and the new tag will replace it.
-   	//
-       private class AnyCache extends AbstractCache {
-          public AnyCache(int numberOfBlocks, int blockSizeInWords, int setSizeInBlocks) {
-            super(numberOfBlocks, blockSizeInWords, setSizeInBlocks);
-         }
-      	
-         private final int SET_FULL=0, HIT=1, MISS=2;
-      	
-      	// This method works for any of the placement policies: 
-      	// direct mapped, full associative or n-way set associative.
-          public CacheAccessResult isItAHitThenReadOnMiss(int address) {
-            int result = SET_FULL;
-            int firstBlock = getFirstBlockToSearch(address);
-            int lastBlock  = getLastBlockToSearch(address);
-            if (debug) //System.out.print
-               writeLog("("+memoryAccessCount+") address: "+Binary.intToHexString(address)+" (tag "+Binary.intToHexString(getTag(address))+") "+" block range: "+firstBlock+"-"+lastBlock+"\n");
-            CacheBlock block;
-            int blockNumber = 0;
-         	// Will do a sequential instead of associative search!
-            for (blockNumber = firstBlock; blockNumber <= lastBlock; blockNumber++) {
-               block = blocks[blockNumber];
-               if (debug) //System.out.print
-                  writeLog("   trying block "+blockNumber+ ((block.valid)? " tag "+Binary.intToHexString(block.tag) : " empty"));
-               if (block.valid && block.tag==getTag(address)) {//  it's a hit!
-                  if (debug) //System.out.print
-                     writeLog(" -- HIT\n");
-                  result = HIT;
-                  block.mostRecentAccessTime = memoryAccessCount;
-                  break;
-               }
-               if (!block.valid) {// it's a miss but I got it now because it is empty!
-                  if (debug) //System.out.print
-                     writeLog(" -- MISS\n");
-                  result = MISS;
-                  block.valid = true;
-                  block.tag = getTag(address);
-                  block.mostRecentAccessTime = memoryAccessCount;
-                  break;
-               }
-               if (debug) //System.out.print
-                  writeLog(" -- OCCUPIED\n");
-            }
-            if (result == SET_FULL) {
-              //select one to replace and replace it...
-               if (debug) //System.out.print
-                  writeLog("   MISS due to FULL SET");
-               int blockToReplace = selectBlockToReplace(firstBlock,lastBlock);
-               block = blocks[blockToReplace];
-               block.tag = getTag(address);
-               block.mostRecentAccessTime = memoryAccessCount;
-               blockNumber = blockToReplace;
-            }
-            return new CacheAccessResult(result==HIT, blockNumber);
-         }      
-      	
-      	 // call this if all blocks in the set are full.  If the set contains more than one block,
-      	 // It will pick on to replace based on selected replacement policy.
-          private int selectBlockToReplace(int first, int last) {
-            int replaceBlock = first;
-            if (first!=last) { 
-               switch (cacheReplacementSelector.getSelectedIndex()) {
-                  case RANDOM : 
-                     replaceBlock = first + randu.nextInt(last-first+1);
-                     if (debug) //System.out.print
-                        writeLog(" -- Random replace block "+replaceBlock+"\n");
-                     break;
-                  case LRU :
-                  default :
-                     int leastRecentAccessTime = memoryAccessCount; // all of them have to be less than this
-                     for (int block = first; block <= last; block++) {
-                        if (blocks[block].mostRecentAccessTime < leastRecentAccessTime) {
-                           leastRecentAccessTime = blocks[block].mostRecentAccessTime;
-                           replaceBlock = block;
-                        }
-                     }
-                     if (debug) //System.out.print
-                        writeLog(" -- LRU replace block "+replaceBlock+"; unused since ("+leastRecentAccessTime+")\n");
-                     break;
-               }
-            }
-            return replaceBlock;
-         }
-      }
-   	
    	//////////////////////////////////////////////////////////////
    	//  Class to display animated cache
    	//
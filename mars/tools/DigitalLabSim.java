@@ -10,8 +10,9 @@ import mars.Globals;
 import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Coprocessor0;
 import mars.mips.hardware.Memory;
-import mars.mips.hardware.MemoryAccessNotice;
+import mars.mips.hardware.MemoryMappedDevice;
 import mars.simulator.Exceptions;
+import mars.simulator.Simulator;
 @SuppressWarnings("serial")
 /* Add these two lines in exceptions.java file
  * public static final int EXTERNAL_INTERRUPT_TIMER = 0x00000100; //Add for digital Lab Sim
@@ -22,7 +23,7 @@ import mars.simulator.Exceptions;
  * Didier Teifreto LIFC Universit de franche-Comt www.lifc.univ-fcomte.fr/~teifreto
  * didier.teifreto@univ-fcomte.fr
  */
-public class DigitalLabSim extends AbstractMarsToolAndApplication {
+public class DigitalLabSim extends AbstractMarsToolAndApplication implements MemoryMappedDevice {
 	private static String heading =  "Digital Lab Sim";
 	private static String version = " Version 1.0 (Didier Teifreto)";
 	private static final int IN_ADRESS_DISPLAY_1=Memory.memoryMapBaseAddress+0x10;
@@ -44,7 +45,6 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
 	private static boolean KeyboardInterruptOnOff=false;
 	// Counter
 	private static int CounterValueMax=30; 
-	private static int CounterValue=CounterValueMax;
 	private static boolean CounterInterruptOnOff=false;
 	private static OneSecondCounter SecondCounter;
 
@@ -61,13 +61,21 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
 		return "Digital Lab Sim";
 	}
 	protected void addAsObserver(){
-    	addAsObserver(IN_ADRESS_DISPLAY_1, IN_ADRESS_DISPLAY_1);
-    	addAsObserver(Memory.textBaseAddress, Memory.textLimitAddress);
+		// Stores to the command bytes are passed to write() by memory; the counter is an event
+		// on the simulator's event scheduler.
+    	addAsDevice(this, IN_ADRESS_DISPLAY_1, IN_ADRESS_COUNTER);
     }
-	public void update(Observable ressource, Object accessNotice){
-    	MemoryAccessNotice notice = (MemoryAccessNotice) accessNotice;
-    	int address=notice.getAddress();
-    	char value=(char)notice.getValue();
+	// Once disconnected or closed, the counter must not interrupt later programs.
+	protected void deleteAsObserver(){
+		super.deleteAsObserver();
+		if (SecondCounter != null)
+			SecondCounter.resetOneSecondCounter();
+	}
+	public int read(int address, int length, int value){
+		return value;
+	}
+	public void write(int address, int length, int word){
+    	char value=(char)word;
     	if(address == IN_ADRESS_DISPLAY_1)
     			updateSevenSegment(1, value);
     	else
@@ -79,16 +87,6 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
     			else
     				if (address == IN_ADRESS_COUNTER)
     					updateOneSecondCounter(value);
-    	if  (CounterInterruptOnOff)
-    		if (CounterValue >0){
-    			CounterValue--;
-    		}
-    		else{
-    			CounterValue=CounterValueMax;
-    			if((Coprocessor0.getValue(Coprocessor0.STATUS) & 2)==0){
-    				mars.simulator.Simulator.externalInterruptingDevice = /*Exceptions.*/EXTERNAL_INTERRUPT_TIMER;
-    			}
-    		}
 	}
 	protected void reset(){
     	sevenSegPanel.resetSevenSegment();
@@ -327,7 +325,7 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
 					KeyBoardValueButtonClick = buttonValue;
 					button[KeyBoardValueButtonClick].setBackground(Color.GREEN);
 					if( KeyboardInterruptOnOff &&  (Coprocessor0.getValue(Coprocessor0.STATUS) & 2)==0){
-						mars.simulator.Simulator.externalInterruptingDevice = /*Exceptions.*/EXTERNAL_INTERRUPT_HEXA_KEYBOARD;
+						Simulator.getInstance().getEventScheduler().interrupt(/*Exceptions.*/EXTERNAL_INTERRUPT_HEXA_KEYBOARD);
 					}
 				}
 			}
@@ -336,21 +334,31 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
 /* ....................Hexa Keyboard end here................................... */
 /* ....................Timer start here................................... */
     public void updateOneSecondCounter(char value) {
+    	Simulator.getInstance().getEventScheduler().cancel(SecondCounter);
     	if (value !=0){
     		CounterInterruptOnOff=true;
-    		CounterValue=CounterValueMax;
+    		Simulator.getInstance().getEventScheduler().schedule(SecondCounter, CounterValueMax);
     	}
     	else{
     		CounterInterruptOnOff=false;
     	}
     }
-    public class OneSecondCounter{
+    // Scheduled every CounterValueMax instructions while the counter interrupt is enabled.
+    public class OneSecondCounter implements Runnable{
     	public OneSecondCounter(){
     		CounterInterruptOnOff=false;
     	}
  	    public void resetOneSecondCounter(){
 	    	CounterInterruptOnOff=false;
-	    	CounterValue=CounterValueMax;
+	    	Simulator.getInstance().getEventScheduler().cancel(this);
+	    }
+	    public void run(){
+	    	if (CounterInterruptOnOff){
+	    		Simulator.getInstance().getEventScheduler().schedule(this, CounterValueMax);
+	    		if((Coprocessor0.getValue(Coprocessor0.STATUS) & 2)==0){
+	    			Simulator.getInstance().getEventScheduler().interrupt(/*Exceptions.*/EXTERNAL_INTERRUPT_TIMER);
+	    		}
+	    	}
 	    }
     }
 }
\ No newline at end of file
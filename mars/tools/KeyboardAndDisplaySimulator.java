@@ -11,6 +11,7 @@
    import mars.venus.RunSpeedPanel;
    import mars.mips.hardware.*;
    import mars.simulator.Exceptions;
+   import mars.simulator.Simulator;
    import javax.swing.text.DefaultCaret;
 
 
@@ -66,7 +67,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     *    position of a virtual text-based terminal.  X represents column, Y represents row.
 	 */
     
-   public class KeyboardAndDisplaySimulator extends AbstractMarsToolAndApplication {
+   public class KeyboardAndDisplaySimulator extends AbstractMarsToolAndApplication implements MemoryMappedDevice {
    
       private static String version = "Version 1.4";
       private static String heading =  "Keyboard and Display MMIO Simulator";
@@ -88,9 +89,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       public static int TRANSMITTER_CONTROL; // display Ready in low-order bit
       public static int TRANSMITTER_DATA;    // display character in low-order byte
    	// These are used to track instruction counts to simulate driver delay of Transmitter Data
-      private boolean countingInstructions;
-      private int instructionCount;
       private int transmitDelayInstructionCountLimit;
+      private Runnable transmitterReady = new TransmitterReady(); // event scheduled at the end of the transmit delay
       private int currentDelayInstructionLimit;
    
    	// Should the transmitted character be displayed before the transmitter delay period?
@@ -186,16 +186,24 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       protected void addAsObserver() {
        	// Set transmitter Control ready bit to 1, means we're ready to accept display character.
          updateMMIOControl(TRANSMITTER_CONTROL, readyBitSet(TRANSMITTER_CONTROL));
-          // We want to be an observer only of MIPS reads from RECEIVER_DATA and writes to TRANSMITTER_DATA.
-          // Use the Globals.memory.addObserver() methods instead of inherited method to achieve this.
-         addAsObserver(RECEIVER_DATA,RECEIVER_DATA);
-         addAsObserver(TRANSMITTER_DATA, TRANSMITTER_DATA);
-      	// We want to be notified of each instruction execution, because instruction count is the
-      	// basis for delay in re-setting (literally) the TRANSMITTER_CONTROL register.  SPIM does
-      	// this too.  This simulates the time required for the display unit to process the
-      	// TRANSMITTER_DATA.
-         addAsObserver(Memory.textBaseAddress, Memory.textLimitAddress);
-         addAsObserver(Memory.kernelTextBaseAddress, Memory.kernelTextLimitAddress);
+          // We only need MIPS reads from RECEIVER_DATA and writes to TRANSMITTER_DATA.  Register
+          // as the device for those registers, so that memory calls read() and write() directly.
+         addAsDevice(this, RECEIVER_DATA, RECEIVER_DATA);
+         addAsDevice(this, TRANSMITTER_DATA, TRANSMITTER_DATA);
+      	// Instruction count is the basis for delay in re-setting (literally) the TRANSMITTER_CONTROL
+      	// register.  SPIM does this too.  This simulates the time required for the display unit to
+      	// process the TRANSMITTER_DATA.  The delay is an event on the simulator's event scheduler,
+      	// so no instruction needs to be observed.
+      }
+   
+   
+   	/**
+   	 *  Stop being the device for the MMIO registers, and cancel any transmit delay in progress
+   	 *  so that it does not interrupt a program this tool is no longer connected to.
+   	 */
+      protected void deleteAsObserver() {
+         super.deleteAsObserver();
+         Simulator.getInstance().getEventScheduler().cancel(transmitterReady);
       }
    
    
@@ -229,53 +237,83 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       //////////////////////////////////////////////////////////////////////////////////////
    
       /**
-   	 * Update display when connected MIPS program accesses (data) memory.
+   	 * Update display when a replayed trace stores to the Transmitter Data register.  A running
+   	 * MIPS program is connected through read() and write() instead.  The MMIO registers are
+   	 * not changed and, as a trace has no device timing, each character is displayed at once.
    	 * @param memory the attached memory
    	 * @param accessNotice information provided by memory in MemoryAccessNotice object
    	 */
       protected void processMIPSUpdate(Observable memory, AccessNotice accessNotice) {
          MemoryAccessNotice notice = (MemoryAccessNotice) accessNotice;
-      	// If MIPS program has just read (loaded) the receiver (keyboard) data register,
-      	// then clear the Ready bit to indicate there is no longer a keystroke available.
-      	// If Ready bit was initially clear, they'll get the old keystroke -- serves 'em right
-      	// for not checking!
-         if (notice.getAddress()==RECEIVER_DATA && notice.getAccessType()==AccessNotice.READ) {
-            updateMMIOControl(RECEIVER_CONTROL, readyBitCleared(RECEIVER_CONTROL));
-         }
-      	// MIPS program has just written (stored) the transmitter (display) data register.  If transmitter
-      	// Ready bit is clear, device is not ready yet so ignore this event -- serves 'em right for not checking!
-      	// If transmitter Ready bit is set, then clear it to indicate the display device is processing the character.
-      	// Also start an intruction counter that will simulate the delay of the slower
-      	// display device processing the character.
-         if (isReadyBitSet(TRANSMITTER_CONTROL) && notice.getAddress()==TRANSMITTER_DATA && notice.getAccessType()==AccessNotice.WRITE) {
+         if (notice.getAddress()==TRANSMITTER_DATA && notice.getAccessType()==AccessNotice.WRITE) {
+            displayCharacter(notice.getValue());
+         }
+      }
+   
+      /**
+   	 * Called by memory when the MIPS program has loaded from the Receiver Data register.
+   	 * @param address the address loaded from
+   	 * @param length number of bytes loaded
+   	 * @param value the value loaded
+   	 * @return the value, unchanged
+   	 */
+      public int read(int address, int length, int value) {
+         if (address==RECEIVER_DATA) {
+            receiverDataRead();
+         }
+         return value;
+      }
+   
+      /**
+   	 * Called by memory when the MIPS program has stored to the Transmitter Data register.
+   	 * @param address the address stored to
+   	 * @param length number of bytes stored
+   	 * @param value the value stored
+   	 */
+      public void write(int address, int length, int value) {
+         if (address==TRANSMITTER_DATA) {
+            transmitterDataWritten(value);
+         }
+      }
+   
+   	// If MIPS program has just read (loaded) the receiver (keyboard) data register,
+   	// then clear the Ready bit to indicate there is no longer a keystroke available.
+   	// If Ready bit was initially clear, they'll get the old keystroke -- serves 'em right
+   	// for not checking!
+      private void receiverDataRead() {
+         updateMMIOControl(RECEIVER_CONTROL, readyBitCleared(RECEIVER_CONTROL));
+      }
+   
+   	// MIPS program has just written (stored) the transmitter (display) data register.  If transmitter
+   	// Ready bit is clear, device is not ready yet so ignore this event -- serves 'em right for not checking!
+   	// If transmitter Ready bit is set, then clear it to indicate the display device is processing the character.
+   	// Also schedule the end of the delay of the slower display device processing the character,
+   	// the given number of instructions later.
+      private void transmitterDataWritten(int value) {
+         if (isReadyBitSet(TRANSMITTER_CONTROL)) {
             updateMMIOControl(TRANSMITTER_CONTROL, readyBitCleared(TRANSMITTER_CONTROL));
-            intWithCharacterToDisplay = notice.getValue();
+            intWithCharacterToDisplay = value;
             if (!displayAfterDelay) displayCharacter(intWithCharacterToDisplay); 
-            this.countingInstructions = true;
-            this.instructionCount = 0;
             this.transmitDelayInstructionCountLimit = generateDelay();
+            Simulator.getInstance().getEventScheduler().schedule(transmitterReady, this.transmitDelayInstructionCountLimit);
          }
-      	// We have been notified of a MIPS instruction execution.
-      	// If we are in transmit delay period, increment instruction count and if limit
-      	// has been reached, set the transmitter Ready flag to indicate the MIPS program
-      	// can write another character to the transmitter data register.  If the Interrupt-Enabled
-      	// bit had been set by the MIPS program, generate an interrupt!
-         if (   this.countingInstructions &&
-                notice.getAccessType()==AccessNotice.READ &&
-                (Memory.inTextSegment(notice.getAddress()) || Memory.inKernelTextSegment(notice.getAddress()))) {
-            this.instructionCount++;
-            if (this.instructionCount >= this.transmitDelayInstructionCountLimit) {
-               if (displayAfterDelay) displayCharacter(intWithCharacterToDisplay);
-               this.countingInstructions = false;
-               int updatedTransmitterControl =  readyBitSet(TRANSMITTER_CONTROL);
-               updateMMIOControl(TRANSMITTER_CONTROL, updatedTransmitterControl);
-               if (updatedTransmitterControl != 1
-                   && (Coprocessor0.getValue(Coprocessor0.STATUS) & 2)==0  // Added by Carl Hauser Nov 2008
-                   && (Coprocessor0.getValue(Coprocessor0.STATUS) & 1)==1) {
-               // interrupt-enabled bit is set in both Tranmitter Control and in
-               // Coprocessor0 Status register, and Interrupt Level Bit is 0, so trigger external interrupt.
-                  mars.simulator.Simulator.externalInterruptingDevice = Exceptions.EXTERNAL_INTERRUPT_DISPLAY;
-               }
+      }
+   
+   	// The transmit delay is over, just before the instruction it ends at.
+   	// Set the transmitter Ready flag to indicate the MIPS program
+   	// can write another character to the transmitter data register.  If the Interrupt-Enabled
+   	// bit had been set by the MIPS program, generate an interrupt!
+      private class TransmitterReady implements Runnable {
+         public void run() {
+            if (displayAfterDelay) displayCharacter(intWithCharacterToDisplay);
+            int updatedTransmitterControl =  readyBitSet(TRANSMITTER_CONTROL);
+            updateMMIOControl(TRANSMITTER_CONTROL, updatedTransmitterControl);
+            if (updatedTransmitterControl != 1
+                && (Coprocessor0.getValue(Coprocessor0.STATUS) & 2)==0  // Added by Carl Hauser Nov 2008
+                && (Coprocessor0.getValue(Coprocessor0.STATUS) & 1)==1) {
+            // interrupt-enabled bit is set in both Tranmitter Control and in
+            // Coprocessor0 Status register, and Interrupt Level Bit is 0, so trigger external interrupt.
+               Simulator.getInstance().getEventScheduler().interrupt(Exceptions.EXTERNAL_INTERRUPT_DISPLAY);
             }
          }
       }
@@ -770,11 +808,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
    
    	/////////////////////////////////////////////////////////////////////
-   	// Transmit delay is simulated by counting instruction executions.
-   	// Here we simly initialize (or reset) the variables.
+   	// Transmit delay is simulated by an event scheduled some instruction executions later.
+   	// Here we simly initialize (or reset) the variables and cancel any delay in progress.
       private void initializeTransmitDelaySimulator() {
-         this.countingInstructions = false;
-         this.instructionCount = 0;
+         Simulator.getInstance().getEventScheduler().cancel(transmitterReady);
          this.transmitDelayInstructionCountLimit = this.generateDelay();
       }
    
@@ -805,7 +842,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             	 && (Coprocessor0.getValue(Coprocessor0.STATUS) & 1)==1) {
                // interrupt-enabled bit is set in both Receiver Control and in
             	// Coprocessor0 Status register, and Interrupt Level Bit is 0, so trigger external interrupt.
-               mars.simulator.Simulator.externalInterruptingDevice = Exceptions.EXTERNAL_INTERRUPT_KEYBOARD;
+               Simulator.getInstance().getEventScheduler().interrupt(Exceptions.EXTERNAL_INTERRUPT_KEYBOARD);
             }
          }
       
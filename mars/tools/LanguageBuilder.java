@@ -0,0 +1,58 @@
+   package mars.tools;
+   import mars.*;
+   import mars.mips.instructions.*;
+   import java.io.*;
+   import javax.swing.*;
+   import javax.swing.filechooser.FileNameExtensionFilter;
+
+/**
+ * Builds a custom language JAR from its .java source file without leaving MARS. The language is compiled
+ * in-process by LanguageCompiler; the custom language reloader then picks up the new JAR.
+ * @see LanguageCompiler
+ * @see LanguageReloader
+ */
+public class LanguageBuilder implements MarsTool{
+    private static final String FOLDER_PATH = "mars/mips/instructions/customlangs/";
+
+    public String getName(){
+        return "Custom Language Builder";
+    }
+
+    public void action(){
+        JFileChooser chooser = new JFileChooser(new File(FOLDER_PATH));
+        chooser.setDialogTitle("Select custom language source file");
+        chooser.setFileFilter(new FileNameExtensionFilter("Java source files", "java"));
+        if (chooser.showOpenDialog(Globals.getGui()) != JFileChooser.APPROVE_OPTION){
+            return;
+        }
+        final File source = chooser.getSelectedFile();
+        final String name = source.getName().substring(0, source.getName().lastIndexOf('.'));
+        // Compiling takes a while, so it is done off the event thread and the result shown when it is done.
+        new SwingWorker<Object, Object>(){
+            private String message;
+            private int messageType = JOptionPane.ERROR_MESSAGE;
+
+            protected Object doInBackground(){
+                StringWriter diagnostics = new StringWriter();
+                try {
+                    LanguageCompiler compiler = new LanguageCompiler(diagnostics);
+                    if (compiler.buildJar(source, new File(FOLDER_PATH + name + ".jar"))){
+                        message = name + ".jar built successfully.";
+                        messageType = JOptionPane.INFORMATION_MESSAGE;
+                    } else{
+                        message = "Could not compile " + source.getName() + ":\n" + diagnostics;
+                    }
+                } catch (Exception e){
+                    message = "Could not build " + name + ".jar: " + e.getMessage();
+                }
+                return null;
+            }
+
+            protected void done(){
+                JTextArea text = new JTextArea(message, Math.min(20, message.split("\n").length + 1), 80);
+                text.setEditable(false);
+                JOptionPane.showMessageDialog(Globals.getGui(), new JScrollPane(text), getName(), messageType);
+            }
+        }.execute();
+    }
+}
@@ -15,17 +15,20 @@ public class LanguageSwitcher implements MarsTool{
         JFrame frame = new JFrame("Language Switcher");
         JMenu menu = new JMenu("Select Language");
         JMenuBar test = new JMenuBar();
-        for (CustomAssembly c : LanguageLoader.assemblyList){
-              JMenuItem assemblyAction = new JMenuItem(new LanguageAction(c.getName(),
-                                            null,
-               									  c.getDescription(),
-               									  null,null,
-               									  Globals.getGui(), c, LanguageLoader.assemblyList, menu, (EditTabbedPane) Globals.getGui().getMainPane().getEditTabbedPane(), frame));
-            if (c.enabled){
-               assemblyAction.setBackground(new Color(200, 221, 242));
+        addLanguages(menu, frame);
+        // A language added while MARS runs (see LanguageReloader) appears in the menu while it is shown.
+        final Runnable refresh = new Runnable(){
+            public void run(){
+                menu.removeAll();
+                addLanguages(menu, frame);
             }
-            menu.add(assemblyAction);
-         }
+        };
+        LanguageLoader.addListListener(refresh);
+        frame.addComponentListener(new ComponentAdapter(){
+            public void componentHidden(ComponentEvent e){
+                LanguageLoader.removeListListener(refresh);
+            }
+        });
         JPanel buttonPanel = new JPanel();
         JButton clearButton = new JButton("Clear");
         buttonPanel.add(clearButton);
@@ -49,4 +52,18 @@ public class LanguageSwitcher implements MarsTool{
         frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE); // changed 12/12/09 DPS (was EXIT)
         frame.setVisible(true); // show();
     }
+
+    private void addLanguages(JMenu menu, JFrame frame){
+        for (CustomAssembly c : LanguageLoader.assemblyList){
+              JMenuItem assemblyAction = new JMenuItem(new LanguageAction(c.getName(),
+                                            null,
+               									  c.getDescription(),
+               									  null,null,
+               									  Globals.getGui(), c, LanguageLoader.assemblyList, menu, (EditTabbedPane) Globals.getGui().getMainPane().getEditTabbedPane(), frame));
+            if (c.enabled){
+               assemblyAction.setBackground(new Color(200, 221, 242));
+            }
+            menu.add(assemblyAction);
+         }
+    }
 }
\ No newline at end of file
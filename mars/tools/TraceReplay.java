@@ -0,0 +1,123 @@
+   package mars.tools;
+   import mars.*;
+   import mars.mips.hardware.*;
+   import java.io.*;
+   import java.util.*;
+
+/**
+ * Feeds a recorded memory access trace (see AccessTraceWriter and the "trace" command
+ * option) to a tool's processMIPSUpdate() method, as if the tool were connected to the
+ * program that made the trace, but with no program running.  Only the accesses in the
+ * memory ranges the tool observes are fed to it, as addAsObserver() would register them.
+ * <p>
+ * Accesses are read and fed in batches of BATCH_SIZE on a thread of their own, whose name
+ * starts with "MIPS" so that the tool accepts the notices as coming from a MIPS program.
+ * The tool's display is updated after each batch, or in fast-forward mode only at the end.
+ * Tools that look up the statement fetched from an address need the traced program to be
+ * assembled first, but nothing else about the program.
+ *
+ * @version October 2026
+ */
+
+    class TraceReplay implements Runnable {
+      /** Number of accesses fed to the tool between display updates */
+      static final int BATCH_SIZE = 4096;
+
+      private AbstractMarsToolAndApplication tool;
+      private File file;
+      private int[][] ranges; // {low, high} address pairs, as given to addAsObserver
+      private volatile boolean fastForward;
+      private volatile boolean stopped;
+      private long accessCount, fedCount;
+
+      /**
+       * Prepare to replay a trace to a tool.
+       * @param tool the tool fed the trace
+       * @param file the trace file
+       * @param ranges memory ranges observed by the tool, each an array {low, high}
+       */
+       TraceReplay(AbstractMarsToolAndApplication tool, File file, ArrayList ranges) {
+         this.tool = tool;
+         this.file = file;
+         this.ranges = (int[][]) ranges.toArray(new int[ranges.size()][]);
+      }
+
+      /**
+       * Start the replay on its own thread.
+       */
+       void start() {
+         new Thread(this, "MIPS trace replay").start();
+      }
+
+      /**
+       * Skip display updates until the end of the trace, or resume them.
+       * @param fastForward true to skip display updates
+       */
+       void setFastForward(boolean fastForward) {
+         this.fastForward = fastForward;
+      }
+
+      /** @return true if display updates are being skipped */
+       boolean isFastForward() {
+         return fastForward;
+      }
+
+      /**
+       * Stop the replay after the current batch.
+       */
+       void stop() {
+         stopped = true;
+      }
+
+       public void run() {
+         String message;
+         AccessTraceReader trace = null;
+         try {
+            trace = new AccessTraceReader(file);
+            MemoryAccessNotice[] batch = new MemoryAccessNotice[BATCH_SIZE];
+            boolean more = true;
+            while (more && !stopped) {
+               int size = 0;
+               while (size < BATCH_SIZE && (more = trace.next())) {
+                  accessCount++;
+                  if (observed(trace.getAddress())) {
+                     batch[size++] = trace.getNotice();
+                  }
+               }
+               for (int i = 0; i < size; i++) {
+                  tool.processMIPSUpdate(Globals.memory, batch[i]);
+                  batch[i] = null;
+               }
+               fedCount += size;
+               if (!fastForward) {
+                  tool.updateDisplay();
+               }
+            }
+            message = ((stopped) ? "Replay stopped after " : "Replayed ") + accessCount
+               + " accesses, " + fedCount + " of them observed by the tool";
+         }
+             catch (IOException e) {
+               message = "Error replaying " + file.getName() + ": " + e.getMessage();
+            }
+         finally {
+            if (trace != null) {
+               try {
+                  trace.close();
+               }
+                   catch (IOException e) { }
+            }
+         }
+         tool.updateDisplay();
+         tool.replayEnded(message);
+      }
+
+      // Whether the tool observes the address, following Memory's observer ranges.
+       private boolean observed(int address) {
+         for (int i = 0; i < ranges.length; i++) {
+            if (address >= ranges[i][0] && address <= ranges[i][1] - 1 + Memory.WORD_LENGTH_BYTES) {
+               return true;
+            }
+         }
+         return false;
+      }
+   }
@@ -117,9 +117,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   } 
                }
                else {  // have array of File objects; convert to names and add to list
-                  FileFilter filter = getFileFilter(fileExtension, "", NO_DIRECTORIES);
                   for (int i=0; i<files.length; i++) {
-                     if (filter.accept(files[i])) { 
+                     if (accept(files[i], fileExtension)) { 
                         filenameList.add(files[i].getName());
                      }
                   }
@@ -222,9 +221,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          File directory = new File(directoryPath);
          if (directory.isDirectory()) {
             File[] allFiles = directory.listFiles();
-            FileFilter filter = getFileFilter(fileExtension, "", NO_DIRECTORIES);
             for (int i=0; i<allFiles.length; i++) {
-               if (filter.accept(allFiles[i])) {
+               if (accept(allFiles[i], fileExtension)) {
                   filenameList.add(allFiles[i].getAbsolutePath());
                }
             }
@@ -274,10 +272,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static ArrayList getFilenameList(ArrayList nameList, String fileExtension) {
          fileExtension = checkFileExtension(fileExtension);
          ArrayList filenameList = new ArrayList();
-         FileFilter filter = getFileFilter(fileExtension, "", NO_DIRECTORIES);
          for (int i=0; i<nameList.size(); i++) {
             File file = new File((String)nameList.get(i));
-            if (filter.accept(file)) {
+            if (accept(file, fileExtension)) {
                filenameList.add(file.getAbsolutePath());
             }				
          }
@@ -337,7 +334,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 */
    	 
        public static FileFilter getFileFilter(ArrayList extensions, String description, boolean acceptDirectories) {
-         return new MarsFileFilter(extensions, description, acceptDirectories);
+         return MarsFileFilter.create(extensions, description, acceptDirectories);
       }
    	 
    	/**
@@ -363,7 +360,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static FileFilter getFileFilter(String extension, String description, boolean acceptDirectories) {
          ArrayList extensions = new ArrayList();
          extensions.add(extension);
-         return new MarsFileFilter(extensions, description, acceptDirectories);
+         return MarsFileFilter.create(extensions, description, acceptDirectories);
       }
    	 
    	/**
@@ -431,6 +428,31 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return (jarPosition >= 0) ? path.substring(0,jarPosition+JAR_EXTENSION.length()) : path;
       }
    	
+   	// Determine whether the given file has one of the given extensions.  Used in place
+   	// of a FileFilter so that command mode never loads Swing classes.
+       private static boolean accept(File file, ArrayList extensions, boolean acceptDirectories) {
+         if (file.isDirectory()) { 
+            return acceptDirectories; 
+         } 
+         String fileExtension = getExtension(file); 
+         if (fileExtension != null) { 
+            for (int i=0; i<extensions.size(); i++) {
+               String extension = checkFileExtension((String)extensions.get(i));
+               if (extension.equals(MATCH_ALL_EXTENSIONS) || 
+                   fileExtension.equals(extension)) {
+                  return true;
+               }	
+            }
+         }
+         return false;
+      }
+   
+       private static boolean accept(File file, String extension) {
+         ArrayList extensions = new ArrayList();
+         extensions.add(extension);
+         return accept(file, extensions, NO_DIRECTORIES);
+      }
+   	
    	// make sure file extension, if it is real, does not start with '.' -- remove it.
        private static String checkFileExtension(String fileExtension) {
          return (fileExtension==null || fileExtension.length()==0 || !fileExtension.startsWith("."))
@@ -449,6 +471,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          private String fullDescription;
          private boolean acceptDirectories;
         
+         // Declared to return FileFilter so that verifying FilenameFinder does not need to
+         // load this class or its Swing superclass.
+          private static FileFilter create(ArrayList extensions, String description, boolean acceptDirectories) {
+            return new MarsFileFilter(extensions, description, acceptDirectories);
+         }
+      
           private MarsFileFilter(ArrayList extensions, String description, boolean acceptDirectories) {
             this.extensions = extensions;
             this.fullDescription = buildFullDescription(description, extensions);
@@ -483,20 +511,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       	
       	// required by the abstract superclass.
           public boolean accept(File file) {
-            if (file.isDirectory()) { 
-               return acceptDirectories; 
-            } 
-            String fileExtension = getExtension(file); 
-            if (fileExtension != null) { 
-               for (int i=0; i<extensions.size(); i++) {
-                  String extension = checkFileExtension((String)extensions.get(i));
-                  if (extension.equals(MATCH_ALL_EXTENSIONS) || 
-                      fileExtension.equals(extension)) {
-                     return true;
-                  }	
-               }
-            }
-            return false;
+            return FilenameFinder.accept(file, extensions, acceptDirectories);
          }
       	
       } // MarsFileFilter class
@@ -0,0 +1,223 @@
+   package mars.util;
+   import java.io.*;
+
+/**
+ * The input of a MIPS program:  what its read syscalls and reads from standard input (file
+ * descriptor 0) receive.  Input is a queue of bytes, which may be preloaded from a byte
+ * buffer, a file or lines of text, and appended to at any time, for example with the
+ * characters typed ahead in the MARS Run I/O window.  A provider may also have a source
+ * stream, such as System.in, that is read from when the queue runs out.  Without one, the
+ * input simply ends when the queue is empty, so a program given its input in advance runs
+ * with no terminal and no other process.
+ * <p>
+ * Lines end with a newline; a carriage return before it is dropped.  The provider is safe
+ * for use by the simulator thread and the GUI at once.
+ *
+ * @version October 2026
+ * @see SystemIO#setInputProvider(InputProvider)
+ */
+
+    public class InputProvider {
+      private byte[] buffer;
+      private int start, end; // the queued input is buffer[start] to buffer[end-1]
+      private InputStream source;
+   
+      /**
+       * Create a provider with no input yet, to be given with the append methods.
+       */
+       public InputProvider() {
+         this(new byte[0]);
+      }
+   
+      /**
+       * Create a provider whose input is the given bytes, followed by anything appended.
+       * @param input the input
+       */
+       public InputProvider(byte[] input) {
+         buffer = (byte[]) input.clone();
+         end = buffer.length;
+      }
+   
+      /**
+       * Create a provider that reads from the given stream whenever no appended input is left.
+       * @param source the stream, e.g. System.in
+       */
+       public InputProvider(InputStream source) {
+         this();
+         this.source = source;
+      }
+   
+      /**
+       * Add bytes to the end of the input.
+       * @param input array holding the bytes
+       * @param offset index of the first byte to add
+       * @param length number of bytes to add
+       */
+       public synchronized void append(byte[] input, int offset, int length) {
+         makeRoom(length);
+         System.arraycopy(input, offset, buffer, end, length);
+         end += length;
+      }
+   
+      /**
+       * Add text to the end of the input.
+       * @param text the text; give a newline to end a line
+       */
+       public synchronized void append(String text) {
+         byte[] bytes = text.getBytes();
+         append(bytes, 0, bytes.length);
+      }
+   
+      /**
+       * Add the contents of a file to the end of the input.
+       * @param file the file
+       * @throws IOException if the file cannot be read
+       */
+       public void appendFile(File file) throws IOException {
+         InputStream in = new FileInputStream(file);
+         try {
+            byte[] bytes = new byte[8192];
+            int length;
+            while ((length = in.read(bytes)) != -1) {
+               append(bytes, 0, length);
+            }
+         }
+         finally {
+            in.close();
+         }
+      }
+   
+      /**
+       * Remove the last byte of input not yet read, as a backspace typed ahead does.
+       * @return false if there was none
+       */
+       public synchronized boolean deleteLast() {
+         if (end == start) {
+            return false;
+         }
+         end--;
+         return true;
+      }
+   
+      /**
+       * Remove all input not yet read.  A source stream is kept.
+       */
+       public synchronized void clear() {
+         start = end = 0;
+      }
+   
+      /**
+       * @return number of bytes of input that can be read without reading the source stream
+       */
+       public synchronized int available() {
+         return end - start;
+      }
+   
+      /**
+       * @return true if a whole line of input can be read without reading the source stream
+       */
+       public synchronized boolean hasLine() {
+         return indexOfNewline(start) >= 0;
+      }
+   
+      /**
+       * @return a copy of the input not yet read, without reading the source stream
+       */
+       public synchronized byte[] getQueuedInput() {
+         byte[] queued = new byte[end - start];
+         System.arraycopy(buffer, start, queued, 0, queued.length);
+         return queued;
+      }
+   
+      /**
+       * Read the next line of input, reading the source stream for more as needed.
+       * @return the line without its end, the rest of the input if it does not end with a
+       * newline, or null if there is no input left
+       */
+       public synchronized String readLine() {
+         int newline = indexOfNewline(start);
+         while (newline < 0) {
+            int searched = end;
+            if (!fill()) {
+               if (start == end) {
+                  return null;
+               }
+               newline = end;
+               break;
+            }
+            newline = indexOfNewline(searched);
+         }
+         int length = newline - start;
+         if (length > 0 && buffer[newline - 1] == '\r') {
+            length--;
+         }
+         String line = new String(buffer, start, length);
+         start = Math.min(newline + 1, end);
+         return line;
+      }
+   
+      /**
+       * Read bytes of input.  Only if none is queued is the source stream read, which may
+       * block until input is available.
+       * @param bytes array to receive the bytes
+       * @param offset index of the first byte of the array to fill
+       * @param length maximum number of bytes to read
+       * @return number of bytes read, or -1 if there is no input left
+       */
+       public synchronized int read(byte[] bytes, int offset, int length) {
+         if (start == end && !fill()) {
+            return -1;
+         }
+         length = Math.min(length, end - start);
+         System.arraycopy(buffer, start, bytes, offset, length);
+         start += length;
+         return length;
+      }
+   
+      // Index of the first newline in the queue at or after index from, or -1 if there is none.
+       private int indexOfNewline(int from) {
+         for (int i = from; i < end; i++) {
+            if (buffer[i] == '\n') {
+               return i;
+            }
+         }
+         return -1;
+      }
+   
+      // Read more of the source stream into the queue.  Returns false at its end, or if there is
+      // no source.  An error reading it is taken as the end of input.
+       private boolean fill() {
+         if (source == null) {
+            return false;
+         }
+         makeRoom(8192);
+         int length;
+         try {
+            length = source.read(buffer, end, buffer.length - end);
+         }
+             catch (IOException e) {
+               length = -1;
+            }
+         if (length <= 0) {
+            return false;
+         }
+         end += length;
+         return true;
+      }
+   
+      // Make room for at least the given number of bytes after the end of the queue.
+       private void makeRoom(int length) {
+         if (end + length <= buffer.length) {
+            return;
+         }
+         int queued = end - start;
+         byte[] room = buffer;
+         if (queued + length > buffer.length) {
+            room = new byte[Math.max(buffer.length * 2, queued + length)];
+         }
+         System.arraycopy(buffer, start, room, 0, queued);
+         buffer = room;
+         start = 0;
+         end = queued;
+      }
+   }
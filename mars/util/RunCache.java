@@ -0,0 +1,375 @@
+   package mars.util;
+
+   import mars.Globals;
+   import mars.mips.hardware.*;
+   import mars.mips.instructions.syscalls.RandomStreams;
+   import mars.mips.instructions.syscalls.SyscallTime;
+   import java.io.*;
+   import java.security.MessageDigest;
+   import java.security.NoSuchAlgorithmException;
+
+/**
+ * Cache of command mode run results, for batch runs of many identical programs
+ * (see the "rc" command option).  A run is identified by a SHA-256 hash of the assembled
+ * program image -- every written word of memory plus the registers as they stand when
+ * execution begins, which includes the program arguments -- together with a description
+ * of the options that affect the run, the machine random seed and the complete standard
+ * input.  Programs that differ only in comments or formatting therefore share an entry.
+ * <p>
+ * An entry holds everything written to standard output and standard error from the start
+ * of simulation through the end-of-run displays, the MARS exit code and the instruction
+ * count.  Runs that opened files, used unseeded random numbers, read the time of day or
+ * ended with an error report (which names the source file and line, not part of the key)
+ * are not stored, since their results do not follow from the key.  Entries are files in the cache directory,
+ * named by the key and written atomically, so one directory may be shared by concurrent
+ * MARS processes.
+ *
+ * @version October 2026
+ */
+
+    public class RunCache {
+      private static final int MAGIC = 0x4D525243; // "MRRC"
+      private static final String FORMAT = "MARS run cache 1";
+      private static String buildIdentifier = null;
+
+      private File directory;
+      private PrintStream originalOut;
+      private PrintStream originalErr;
+      private ByteArrayOutputStream recordedOut;
+      private ByteArrayOutputStream recordedErr;
+      private int fileOpenCount;
+      private boolean unrepeatable;
+
+      /**
+       * Create a run cache kept in the given directory, which is created if necessary.
+       * @param directory the cache directory
+       */
+       public RunCache(File directory) {
+         this.directory = directory;
+         directory.mkdirs();
+      }
+
+      /**
+       * Read standard input to its end and replace it by a stream over the bytes read, so
+       * that the input can be part of the key and is still available to the MIPS program.
+       * @return the complete standard input
+       */
+       public byte[] captureStandardInput() {
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+         byte[] buffer = new byte[8192];
+         int length;
+         try {
+            while ((length = System.in.read(buffer)) != -1) {
+               bytes.write(buffer, 0, length);
+            }
+         }
+             catch (IOException e) { } // treat as end of input
+         byte[] input = bytes.toByteArray();
+         System.setIn(new ByteArrayInputStream(input));
+         return input;
+      }
+
+      /**
+       * Compute the key of the run about to start, from the current contents of memory and
+       * registers.  Call after the program is assembled and its arguments are stored.
+       * @param options description of the options that affect the run or its output,
+       * e.g. enabled languages, settings, step limit and requested displays
+       * @param input the complete standard input
+       * @return the key, a string of hexadecimal digits
+       */
+       public String computeKey(String options, byte[] input) {
+         MessageDigest digest;
+         try {
+            digest = MessageDigest.getInstance("SHA-256");
+         }
+             catch (NoSuchAlgorithmException e) {
+               throw new IllegalStateException("SHA-256 not available");
+            }
+         DataOutputStream data = new DataOutputStream(new HashingOutputStream(digest));
+         try {
+            data.writeUTF(FORMAT);
+            data.writeUTF(Globals.version);
+            data.writeUTF(options);
+            Long seed = RandomStreams.getSeed();
+            data.writeBoolean(seed != null);
+            data.writeLong((seed == null) ? 0 : seed.longValue());
+            data.writeInt(input.length);
+            data.write(input);
+            for (int i = 0; i < 32; i++) {
+               data.writeInt(RegisterFile.getValue(i));
+            }
+            data.writeInt(RegisterFile.getValue(33)); // hi
+            data.writeInt(RegisterFile.getValue(34)); // lo
+            data.writeInt(RegisterFile.getProgramCounter());
+            for (int i = 0; i < 32; i++) {
+               data.writeInt(Coprocessor1.getValue(i));
+            }
+            int[] pages = Globals.memory.getWrittenPages();
+            for (int i = 0; i < pages.length; i++) {
+               data.writeInt(pages[i]);
+               for (int address = pages[i]; address != pages[i] + 4096; address += Memory.WORD_LENGTH_BYTES) {
+                  Integer word = null;
+                  try {
+                     word = Globals.memory.getRawWordOrNull(address);
+                  }
+                      catch (AddressErrorException e) { }
+                  data.writeBoolean(word != null);
+                  data.writeInt((word == null) ? 0 : word.intValue());
+               }
+            }
+            data.flush();
+         }
+             catch (IOException e) { } // not thrown by HashingOutputStream
+         return toHex(digest.digest());
+      }
+
+      /**
+       * Find the stored result of a run.
+       * @param key the key of the run, from computeKey()
+       * @return the result, or null if none is stored or it cannot be read
+       */
+       public Result lookup(String key) {
+         File file = new File(directory, key);
+         if (!file.exists()) {
+            return null;
+         }
+         DataInputStream in = null;
+         try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC) {
+               return null;
+            }
+            Result result = new Result();
+            result.exitCode = in.readInt();
+            result.instructionCount = in.readInt();
+            result.out = new byte[in.readInt()];
+            in.readFully(result.out);
+            result.err = new byte[in.readInt()];
+            in.readFully(result.err);
+            return result;
+         }
+             catch (IOException e) {
+               return null;
+            }
+         finally {
+            close(in);
+         }
+      }
+
+      /**
+       * Start recording standard output and standard error.  They are still written to
+       * as before, but System.out and System.err are replaced until stopRecording() is called.
+       */
+       public void startRecording() {
+         originalOut = System.out;
+         originalErr = System.err;
+         recordedOut = new ByteArrayOutputStream();
+         recordedErr = new ByteArrayOutputStream();
+         fileOpenCount = SystemIO.getFileOpenCount();
+         unrepeatable = false;
+         RandomStreams.reset();
+         SyscallTime.resetTimeRead();
+         System.setOut(new PrintStream(new TeeOutputStream(originalOut, recordedOut), true));
+         System.setErr(new PrintStream(new TeeOutputStream(originalErr, recordedErr), true));
+         SystemIO.resetFiles(); // so that syscalls writing to file descriptors 1 and 2 are recorded
+      }
+
+      /**
+       * Mark the run being recorded as one whose result does not follow from its key,
+       * so that stopRecording() does not store it.
+       */
+       public void markUnrepeatable() {
+         unrepeatable = true;
+      }
+
+      /**
+       * Stop recording, restore standard output and standard error, and store the result
+       * unless the run cannot be reproduced from its key.
+       * @param key the key of the run, from computeKey()
+       * @param exitCode the MARS exit code of the run
+       * @param instructionCount number of instructions executed, if counted
+       * @return true if the result was stored
+       */
+       public boolean stopRecording(String key, int exitCode, int instructionCount) {
+         System.out.flush();
+         System.err.flush();
+         System.setOut(originalOut);
+         System.setErr(originalErr);
+         SystemIO.resetFiles();
+         if (unrepeatable || SystemIO.getFileOpenCount() != fileOpenCount ||
+             RandomStreams.unseededStreamsUsed() || SyscallTime.timeWasRead()) {
+            return false;
+         }
+         File temp = null;
+         DataOutputStream out = null;
+         try {
+            temp = File.createTempFile("run", ".tmp", directory);
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(exitCode);
+            out.writeInt(instructionCount);
+            out.writeInt(recordedOut.size());
+            recordedOut.writeTo(out);
+            out.writeInt(recordedErr.size());
+            recordedErr.writeTo(out);
+            out.close();
+            out = null;
+            File file = new File(directory, key);
+            if (temp.renameTo(file)) {
+               return true;
+            }
+         }
+             catch (IOException e) { }
+         finally {
+            close(out);
+            if (temp != null) {
+               temp.delete();
+            }
+         }
+         return false;
+      }
+
+      /**
+       * Describe a file by its name, size and modification time, for the options given to
+       * computeKey(), so that a rebuilt file such as a custom language JAR changes the key.
+       * @param file the file
+       * @return the description
+       */
+       public static String describeFile(File file) {
+         return file.getName() + ":" + file.length() + ":" + file.lastModified();
+      }
+
+      /**
+       * Identify the MARS build that is running, by the size and modification time of the JAR
+       * or the class files it was loaded from, so that a locally changed build does not replay
+       * the results of another build of the same version.
+       * @return the identifier
+       */
+       public static synchronized String getBuildIdentifier() {
+         if (buildIdentifier == null) {
+            File location = null;
+            try {
+               location = new File(RunCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            }
+                catch (Exception e) { } // unknown location, identified by version alone
+            if (location == null) {
+               buildIdentifier = "";
+            }
+            else if (location.isDirectory()) {
+               long[] totals = new long[3]; // files, bytes, newest modification time
+               addClassFiles(new File(location, "mars"), totals);
+               buildIdentifier = totals[0] + ":" + totals[1] + ":" + totals[2];
+            }
+            else {
+               buildIdentifier = describeFile(location);
+            }
+         }
+         return buildIdentifier;
+      }
+
+       private static void addClassFiles(File directory, long[] totals) {
+         File[] files = directory.listFiles();
+         if (files == null) {
+            return;
+         }
+         for (int i = 0; i < files.length; i++) {
+            if (files[i].isDirectory()) {
+               addClassFiles(files[i], totals);
+            }
+            else if (files[i].getName().endsWith(".class")) {
+               totals[0]++;
+               totals[1] += files[i].length();
+               totals[2] = Math.max(totals[2], files[i].lastModified());
+            }
+         }
+      }
+
+       private static String toHex(byte[] bytes) {
+         StringBuffer hex = new StringBuffer();
+         for (int i = 0; i < bytes.length; i++) {
+            hex.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+            hex.append(Character.forDigit(bytes[i] & 0xF, 16));
+         }
+         return hex.toString();
+      }
+
+       private static void close(Closeable stream) {
+         if (stream != null) {
+            try {
+               stream.close();
+            }
+                catch (IOException e) { }
+         }
+      }
+
+      /**
+       * Stored result of a run.
+       */
+       public static class Result {
+         private int exitCode;
+         private int instructionCount;
+         private byte[] out;
+         private byte[] err;
+
+         /** @return the MARS exit code of the run */
+          public int getExitCode() {
+            return exitCode;
+         }
+
+         /** @return the number of instructions executed, if they were counted */
+          public int getInstructionCount() {
+            return instructionCount;
+         }
+
+         /**
+          * Write the recorded standard output and standard error of the run.
+          */
+          public void replay() {
+            System.out.write(out, 0, out.length);
+            System.out.flush();
+            System.err.write(err, 0, err.length);
+            System.err.flush();
+         }
+      }
+
+       private static class HashingOutputStream extends OutputStream {
+         private MessageDigest digest;
+
+          HashingOutputStream(MessageDigest digest) {
+            this.digest = digest;
+         }
+
+          public void write(int b) {
+            digest.update((byte) b);
+         }
+
+          public void write(byte[] b, int off, int len) {
+            digest.update(b, off, len);
+         }
+      }
+
+       private static class TeeOutputStream extends OutputStream {
+         private OutputStream first;
+         private OutputStream second;
+
+          TeeOutputStream(OutputStream first, OutputStream second) {
+            this.first = first;
+            this.second = second;
+         }
+
+          public void write(int b) throws IOException {
+            first.write(b);
+            second.write(b);
+         }
+
+          public void write(byte[] b, int off, int len) throws IOException {
+            first.write(b, off, len);
+            second.write(b, off, len);
+         }
+
+          public void flush() throws IOException {
+            first.flush();
+            second.flush();
+         }
+      }
+   }
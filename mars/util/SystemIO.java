@@ -37,7 +37,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  * routines.  These methods will detect whether the simulator is being
  * run from the command line or through the GUI, then do I/O to
  * System.in and System.out in the former situation, and interact with
- * the GUI in the latter.
+ * the GUI in the latter.  Input comes from an InputProvider:  from the
+ * command line it reads System.in unless input was given in advance, and
+ * in the GUI it holds input typed ahead, which is used before the user
+ * is asked.
  *
  * @author Pete Sanderson and Ken Vollmar
  * @version August 2003-2005
@@ -64,9 +67,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private static final int STDOUT = 1;
       private static final int STDERR = 2;
    
-      // Will use one buffered reader for all keyboard/redirected/piped input.
-   	// Added by DPS 28 Feb 2008.  See getInputReader() below.
-      private static BufferedReader inputReader = null;
+      // Will use one input provider for all keyboard/redirected/piped/preloaded input.
+   	// Originally a BufferedReader, added by DPS 28 Feb 2008.  See getInputProvider() below.
+      private static InputProvider inputProvider = null;
+      // Number of files opened by MIPS programs; see getFileOpenCount().
+      private static int fileOpenCount = 0;
    
     /**
      * Implements syscall to read an integer value.  
@@ -78,14 +83,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static int readInteger(int serviceNumber)
       {
          String input = "0";
-         if (Globals.getGui() == null)
+         String typedAhead;
+         if (!Globals.hasGui())
          {
-            try
-            {  
-               input = getInputReader().readLine();
-            } 
-                catch (IOException e)
-               {}
+            input = readInputLine();
+         } 
+         else if ((typedAhead = takeTypedAheadInput(-1)) != null)
+         {
+            input = typedAhead;
          } 
          else
          {
@@ -113,14 +118,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static float readFloat(int serviceNumber)
       {
          String input = "0";
-         if (Globals.getGui() == null)
+         String typedAhead;
+         if (!Globals.hasGui())
          {
-            try
-            {
-               input = getInputReader().readLine();
-            } 
-                catch (IOException e)
-               {}
+            input = readInputLine();
+         } 
+         else if ((typedAhead = takeTypedAheadInput(-1)) != null)
+         {
+            input = typedAhead;
          } 
          else
          {
@@ -147,14 +152,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static double readDouble(int serviceNumber)
       {
          String input = "0";
-         if (Globals.getGui() == null)
+         String typedAhead;
+         if (!Globals.hasGui())
          {
-            try
-            {
-               input = getInputReader().readLine();
-            } 
-                catch (IOException e)
-               {}
+            input = readInputLine();
+         } 
+         else if ((typedAhead = takeTypedAheadInput(-1)) != null)
+         {
+            input = typedAhead;
          } 
          else
          {
@@ -176,7 +181,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      */
        public static void printString(String string)
       {
-         if (Globals.getGui() == null)
+         if (!Globals.hasGui())
          {
             System.out.print(string);
          } 
@@ -197,14 +202,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static String readString(int serviceNumber, int maxLength)
       {
          String input = "";
-         if (Globals.getGui() == null)
+         String typedAhead;
+         if (!Globals.hasGui())
          {
-            try
-            {
-               input = getInputReader().readLine();
-            } 
-                catch (IOException e)
-               {}
+            input = readInputLine();
+         } 
+         else if ((typedAhead = takeTypedAheadInput(maxLength)) != null)
+         {
+            input = typedAhead;
          } 
          else
          {
@@ -239,15 +244,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public static int readChar(int serviceNumber)
       {
          String input = "0";
+         String typedAhead;
          int returnValue = 0;
-         if (Globals.getGui() == null)
+         if (!Globals.hasGui())
          {
-            try
-            {
-               input = getInputReader().readLine();
-            } 
-                catch (IOException e)
-               {}
+            input = readInputLine();
+         } 
+         else if ((typedAhead = takeTypedAheadInput(1)) != null)
+         {
+            input = typedAhead;
          } 
          else
          {
@@ -288,7 +293,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       {
        /////////////// DPS 8-Jan-2013  ////////////////////////////////////////////////////
        /// Write to STDOUT or STDERR file descriptor while using IDE - write to Messages pane. 
-         if ((fd==STDOUT || fd==STDERR) && Globals.getGui() != null) {
+         if ((fd==STDOUT || fd==STDERR) && Globals.hasGui()) {
             String data = new String(myBuffer);
             Globals.getGui().getMessagesPane().postRunMessage(data);
             return data.length();
@@ -354,7 +359,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          int retValue = -1;  
        /////////////// DPS 8-Jan-2013  //////////////////////////////////////////////////
        /// Read from STDIN file descriptor while using IDE - get input from Messages pane. 
-         if (fd==STDIN && Globals.getGui() != null) {
+         if (fd==STDIN && Globals.hasGui()) {
+            if (getInputProvider().available() > 0) { // typed ahead
+               retValue = getInputProvider().read(myBuffer, 0, lengthRequested);
+               Globals.getGui().getMessagesPane().postRunMessage(new String(myBuffer, 0, retValue));
+               return retValue;
+            }
             String input = Globals.getGui().getMessagesPane().getInputString(lengthRequested);
             byte[] bytesRead = input.getBytes();;
             for (int i=0; i < myBuffer.length; i++) {
@@ -371,6 +381,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                     "File descriptor " + fd + " is not open for reading");
             return -1;
          }
+         if (fd==STDIN) // standard input comes from the input provider
+         {
+            retValue = getInputProvider().read(myBuffer, 0, lengthRequested);
+            return (retValue == -1) ? 0 : retValue;
+         }
         // retrieve FileInputStream from storage
          InputStream InputStream = (InputStream) FileIOData.getStreamInUse(fd);
          try
@@ -421,6 +436,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          FileOutputStream outputStream;
          int fdToUse;
       
+         fileOpenCount++;
         // Check internal plausibility of opening this file
          fdToUse = FileIOData.nowOpening(filename, flags);
          retValue = fdToUse; // return value is the fd
@@ -481,6 +497,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          FileIOData.resetFiles();
       }
    
+    /**
+     * Number of file open requests made by MIPS programs so far.  A run that opened
+     * no files had no effect on the file system and read nothing but standard input.
+     *
+     * @return number of calls to openFile()
+     */
+       public static int getFileOpenCount()
+      {
+         return fileOpenCount;
+      }
+   
      /**
       *  Retrieve file operation or error message
    	*
@@ -491,17 +518,66 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return fileErrorString;
       }
    
+    /**
+     * Set where MIPS program input comes from, for example input given in advance for a
+     * run with no terminal.
+     *
+     * @param provider the input provider; null for the default
+     */
+       public static synchronized void setInputProvider(InputProvider provider)
+      {
+         inputProvider = provider;
+      }
+   
+    /**
+     * Get the provider of MIPS program input used for keyboard input, redirected input,
+     * piped input or input given in advance.  These are all equivalent in the eyes of the
+     * program because they are transparent to it.  Unless one has been set, it is created
+     * when first needed:  from the command line it reads System.in, and in the GUI it is
+     * empty and queues the input typed ahead in the Run I/O window.
+     *
+     * @return the input provider
+     */
+       public static synchronized InputProvider getInputProvider()
+      {
+         if (inputProvider == null) {
+            inputProvider = (Globals.hasGui()) ? new InputProvider() : new InputProvider(System.in);
+         }
+         return inputProvider;
+      }
+   
       ///////////////////////////////////////////////////////////////////////
-      // Private method to simply return the BufferedReader used for
-   	// keyboard input, redirected input, or piped input.
-   	// These are all equivalent in the eyes of the program because they are 
-   	// transparent to it.  Lazy instantiation.  DPS.  28 Feb 2008
+      // Read a line of input with no GUI.  At the end of the input there is no line, so
+   	// return an empty one:  the read syscalls then report invalid input as they would for
+   	// an empty line, and read string gets an empty string.
    	
-       private static BufferedReader getInputReader() {
-         if (inputReader == null) {
-            inputReader = new BufferedReader(new InputStreamReader(System.in));  
+       private static String readInputLine() {
+         String line = getInputProvider().readLine();
+         return (line == null) ? "" : line;
+      }
+   
+      ///////////////////////////////////////////////////////////////////////
+      // In the GUI, take input already given to the input provider (typed ahead) instead of
+   	// asking the user:  a whole line, or a single character if only one is wanted.  Returns
+   	// null if there is not enough.  The input is echoed to the Run I/O window as if typed.
+   	
+       private static String takeTypedAheadInput(int maxLength) {
+         InputProvider provider = getInputProvider();
+         String input, echo;
+         if (maxLength == 1 && provider.available() > 0) {
+            byte[] character = new byte[1];
+            provider.read(character, 0, 1);
+            input = echo = new String(character);
+         } 
+         else if (provider.hasLine()) {
+            input = provider.readLine();
+            echo = input + "\n";
+         } 
+         else {
+            return null;
          }
-         return inputReader;
+         Globals.getGui().getMessagesPane().postRunMessage(echo);
+         return input;
       }
    	
    	
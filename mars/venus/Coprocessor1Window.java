@@ -46,6 +46,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     public class Coprocessor1Window extends JPanel implements ActionListener, Observer { 
       private static JTable table;
       private static Register [] registers;
+      private int[] shownValues; // values last shown by updateRegisters(int[], int), null after full update
+      private int shownBase;
       private Object[][] tableData;
       private boolean highlighting;
       private int highlightRow;
@@ -198,6 +200,43 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             }
          }
          updateConditionFlagDisplay();
+         shownValues = null;
+      }
+   
+   	/**
+   	 * Update register display from values the simulator copied between instructions
+   	 * during a run.  Only registers whose value changed since the previous call are
+   	 * redisplayed.
+   	 *
+   	 * @param values values of the 32 floating point registers
+   	 * @param conditionFlags condition flags, one bit per flag
+   	 */
+       public void updateRegisters(int[] values, int conditionFlags) {
+         int base = Globals.getGui().getMainPane().getExecutePane().getValueDisplayBase();
+         boolean all = (shownValues == null || shownBase != base);
+         if (all) {
+            shownValues = new int[values.length];
+            shownBase = base;
+         }
+         for (int i = 0; i < values.length; i += 2) {
+            boolean evenChanged = all || values[i] != shownValues[i];
+            boolean oddChanged = all || values[i+1] != shownValues[i+1];
+            shownValues[i] = values[i];
+            shownValues[i+1] = values[i+1];
+            if (evenChanged) {
+               updateFloatRegisterValue(i, values[i], base);
+            }
+            if (oddChanged) {
+               updateFloatRegisterValue(i+1, values[i+1], base);
+            }
+            if (evenChanged || oddChanged) {
+               ((RegTableModel)table.getModel()).setDisplayAndModelValueAt(
+                  NumberDisplayBaseChooser.formatDoubleNumber(Binary.twoIntsToLong(values[i+1], values[i]), base), i, DOUBLE_COLUMN);
+            }
+         }
+         for (int i=0; i<conditionFlagCheckBox.length; i++) {
+            conditionFlagCheckBox[i].setSelected((conditionFlags & (1 << i)) != 0);
+         }
       }
    	
        private void updateConditionFlagDisplay() {
@@ -77,6 +77,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
       int firstAddress;
       int homeAddress;
+      // What updateModelForMemoryRange last put into the table, so updates can skip unchanged cells.
+      private JTable shownTable;
+      private int shownFirstAddress, shownValueBase, shownAddressBase;
+      private int[] shownGenerations = new int[2]; // write generations of the (at most two) pages shown
+      private int[] shownValues = new int[NUMBER_OF_ROWS * VALUES_PER_ROW];
       boolean userOrKernelMode;
    
    	// The combo box replaced the row of buttons when number of buttons expanded to 7!
@@ -431,6 +436,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       	// Do not allow user to re-order columns; column order corresponds to MIPS memory order
          dataTable.getTableHeader().setReorderingAllowed(false);
          dataTable.setRowSelectionAllowed(false);
+         dataTable.addMouseListener(new WatchpointMouseListener());
       	// Addresses are column 0, render right-justified in mono font
          MonoRightCellRenderer monoRightCellRenderer = new MonoRightCellRenderer(); 
          dataTable.getColumnModel().getColumn(ADDRESS_COLUMN).setPreferredWidth(60);
@@ -446,6 +452,44 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return dataTableScroller;
       }
       
+   	////////////////////////////////////////////////////////////////////////////////
+   	// Right-clicking a value lets the user set or remove a watchpoint on that word
+   	// (see BreakpointTable).  Execution then stops after an instruction accesses it.
+       private class WatchpointMouseListener extends MouseAdapter {
+          public void mousePressed(MouseEvent e) {
+            maybeShowPopup(e);
+         }
+          public void mouseReleased(MouseEvent e) {
+            maybeShowPopup(e);
+         }
+          private void maybeShowPopup(MouseEvent e) {
+            int row = dataTable.rowAtPoint(e.getPoint());
+            int column = dataTable.columnAtPoint(e.getPoint());
+            if (!e.isPopupTrigger() || row < 0 || column <= ADDRESS_COLUMN) {
+               return;
+            }
+            final int address = Binary.stringToInt(dataTable.getValueAt(row, ADDRESS_COLUMN).toString())
+                                + (column - 1) * BYTES_PER_VALUE;
+            final BreakpointTable breakpoints = Simulator.getInstance().getBreakpoints();
+            int current = breakpoints.getWatchpoint(address);
+            JPopupMenu popup = new JPopupMenu("Watch " + Binary.intToHexString(address));
+            String[] labels = { "Stop when written", "Stop when read or written", "Remove watchpoint" };
+            final int[] access = { BreakpointTable.WRITE, BreakpointTable.READ | BreakpointTable.WRITE, 0 };
+            for (int i = 0; i < labels.length; i++) {
+               final int type = access[i];
+               JMenuItem item = new JCheckBoxMenuItem(labels[i], current == type);
+               item.addActionListener(
+                      new ActionListener() {
+                         public void actionPerformed(ActionEvent ae) {
+                           breakpoints.setWatchpoint(address, type);
+                        }
+                     });
+               popup.add(item);
+            }
+            popup.show(e.getComponent(), e.getX(), e.getY());
+         }
+      }
+   
    	// Little helper.  Is called when headers set up and each time number base changes.
       private String getHeaderStringForColumn(int i, int base) {
          return (i==ADDRESS_COLUMN)? "Address" : "Value (+"+Integer.toString((i-1)*BYTES_PER_VALUE, base)+")";
@@ -502,46 +546,62 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             return; // ignore if no content to change
          int valueBase = getValueDisplayFormat();
          int addressBase = Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase();
+         // Only cells whose value differs from the one shown are reformatted, unless the range,
+         // the number bases or the table itself changed.
+         boolean all = (shownTable != dataTable || shownFirstAddress != firstAddr ||
+                        shownValueBase != valueBase || shownAddressBase != addressBase);
+         shownTable = dataTable;
+         shownFirstAddress = firstAddr;
+         shownValueBase = valueBase;
+         shownAddressBase = addressBase;
+         shownGenerations[0] = Globals.memory.getWriteGeneration(firstAddr);
+         shownGenerations[1] = Globals.memory.getWriteGeneration(firstAddr + MEMORY_CHUNK_SIZE - 1);
          int address = firstAddr;
-         TableModel dataModel = dataTable.getModel();
+         DataTableModel dataModel = (DataTableModel) dataTable.getModel();
          for (int row=0; row<NUMBER_OF_ROWS; row++) {
-            ((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatUnsignedInteger(address, addressBase),row,ADDRESS_COLUMN);
+            if (all) {
+               dataModel.setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatUnsignedInteger(address, addressBase),row,ADDRESS_COLUMN);
+            }
             for (int column=1; column<NUMBER_OF_COLUMNS; column++) {
-               try {
-                  ((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(Globals.memory.getWordNoNotify(address), valueBase),row,column);
-               } 
-                  catch (AddressErrorException aee) {
-                     // Bit of a hack here.  Memory will throw an exception if you try to read directly from text segment when the
-                  	// self-modifying code setting is disabled.  This is a good thing if it is the executing MIPS program trying to
-                  	// read.  But not a good thing if it is the DataSegmentDisplay trying to read.  I'll trick Memory by 
-                  	// temporarily enabling the setting as "non persistent" so it won't write through to the registry.
-                     if (Memory.inTextSegment(address)) {
-                        int displayValue = 0;
-                        if (!Globals.getSettings().getBooleanSetting(Settings.SELF_MODIFYING_CODE_ENABLED)) {
-                           Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, true);
-                           try {
-                              displayValue = Globals.memory.getWordNoNotify(address);
-                           } 
-                              catch (AddressErrorException e) { 
-                              // Still got an exception?  Doesn't seem possible but if we drop through it will write default value 0.
-                              }
-                           Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, false);
-                        }
-                        ((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(displayValue, valueBase),row,column);
-                     } 
-							// Bug Fix: the following line of code disappeared during the release 4.4 mods, but is essential to
-							// display values of 0 for valid MIPS addresses that are outside the MARS simulated address space.  Such
-							// addresses cause an AddressErrorException.  Prior to 4.4, they performed this line of code unconditionally.  
-							// With 4.4, I added the above IF statement to work with the text segment but inadvertently removed this line!
-							// Now it becomes the "else" part, executed when not in text segment.  DPS 8-July-2014.
-                     else {
-                        ((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(0, valueBase),row,column);
-                     }
-                  }
+               int value = getDisplayWord(address);
+               int index = row * VALUES_PER_ROW + column - 1;
+               if (all || shownValues[index] != value) {
+                  shownValues[index] = value;
+                  dataModel.setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(value, valueBase),row,column);
+               }
                address += BYTES_PER_VALUE;
             }
          }
       }
+   
+      // Value of the memory word at the given address as it is to be displayed.
+      private int getDisplayWord(int address) {
+         try {
+            return Globals.memory.getWordNoNotify(address);
+         } 
+            catch (AddressErrorException aee) {
+               // Bit of a hack here.  Memory will throw an exception if you try to read directly from text segment when the
+            	// self-modifying code setting is disabled.  This is a good thing if it is the executing MIPS program trying to
+            	// read.  But not a good thing if it is the DataSegmentDisplay trying to read.  I'll trick Memory by 
+            	// temporarily enabling the setting as "non persistent" so it won't write through to the registry.
+               int displayValue = 0;
+               if (Memory.inTextSegment(address)) {
+                  if (!Globals.getSettings().getBooleanSetting(Settings.SELF_MODIFYING_CODE_ENABLED)) {
+                     Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, true);
+                     try {
+                        displayValue = Globals.memory.getWordNoNotify(address);
+                     } 
+                        catch (AddressErrorException e) { 
+                        // Still got an exception?  Doesn't seem possible but if we drop through it will write default value 0.
+                        }
+                     Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, false);
+                  }
+               } 
+               // Bug Fix: valid MIPS addresses that are outside the MARS simulated address space cause an
+               // AddressErrorException and are displayed as 0.  DPS 8-July-2014.
+               return displayValue;
+            }
+      }
    	 
    	/**
    	 * Update data display to show this value (I'm not sure it is being called).
@@ -557,6 +617,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          int valueBase = Globals.getGui().getMainPane().getExecutePane().getValueDisplayBase();
          ((DataTableModel)dataTable.getModel()).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(value, valueBase),
                     row,column);
+         shownValues[row * VALUES_PER_ROW + column - 1] = value;
       }
    	
    	/**
@@ -586,6 +647,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 */
    	 
       public void updateValues(){
+         // Nothing to do if no word in the displayed range was written since it was last shown.
+         if (shownTable == dataTable && shownFirstAddress == this.firstAddress &&
+             shownGenerations[0] == Globals.memory.getWriteGeneration(this.firstAddress) &&
+             shownGenerations[1] == Globals.memory.getWriteGeneration(this.firstAddress + MEMORY_CHUNK_SIZE - 1) &&
+             shownValueBase == getValueDisplayFormat() && 
+             shownAddressBase == Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase()) {
+            return;
+         }
          updateModelForMemoryRange(this.firstAddress);
       }
    
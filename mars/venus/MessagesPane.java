@@ -8,6 +8,7 @@
    import javax.swing.event.DocumentListener;
    import javax.swing.undo.UndoableEdit;
    import mars.simulator.Simulator;
+   import mars.util.SystemIO;
    import javax.swing.event.DocumentEvent;
    import javax.swing.text.Position.Bias;
 
@@ -74,6 +75,26 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          Font monoFont = new Font(Font.MONOSPACED, Font.PLAIN, 12);
          assemble.setFont(monoFont);
          run.setFont(monoFont);      	
+      	// Characters typed in the Run I/O window while the running program is not asking
+      	// for input are queued as its input (type-ahead); see SystemIO.getInputProvider().
+         run.addKeyListener(
+                new KeyAdapter() {
+                   public void keyTyped(KeyEvent e) {
+                     if (run.isEditable() || FileStatus.get() != FileStatus.RUNNING) {
+                        return;
+                     }
+                     char typed = e.getKeyChar();
+                     if (typed == '\b') {
+                        SystemIO.getInputProvider().deleteLast();
+                     } 
+                     else if (typed == '\n' || typed == '\r') {
+                        SystemIO.getInputProvider().append("\n");
+                     } 
+                     else if (typed >= ' ' && typed != KeyEvent.CHAR_UNDEFINED && typed != 127) {
+                        SystemIO.getInputProvider().append(String.valueOf(typed));
+                     }
+                  }
+               });
       	
          JButton assembleTabClearButton = new JButton("Clear");
          assembleTabClearButton.setToolTipText("Clear the Mars Messages area");
@@ -46,6 +46,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     public class RegistersWindow extends JPanel implements Observer { 
       private static JTable table;
       private static Register [] registers;
+      private int[] shownValues; // values last shown by updateRegisters(int[]), null after full update
+      private int shownBase;
       private Object[][] tableData;
       private boolean highlighting;
       private int highlightRow;
@@ -152,6 +154,34 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          updateRegisterUnsignedValue(32, RegisterFile.getProgramCounter(), base);
          updateRegisterValue(33, RegisterFile.getValue(33), base);
          updateRegisterValue(34, RegisterFile.getValue(34), base);
+         shownValues = null;
+      }
+   
+   	/**
+   	 * Update register display from values the simulator copied between instructions
+   	 * during a run.  Only registers whose value changed since the previous call are
+   	 * redisplayed.
+   	 *
+   	 * @param values values of registers 0-31, followed by pc, hi and lo
+   	 */
+       public void updateRegisters(int[] values) {
+         int base = Globals.getGui().getMainPane().getExecutePane().getValueDisplayBase();
+         boolean all = (shownValues == null || shownBase != base);
+         if (all) {
+            shownValues = new int[values.length];
+            shownBase = base;
+         }
+         for (int i = 0; i < values.length; i++) {
+            if (all || values[i] != shownValues[i]) {
+               shownValues[i] = values[i];
+               if (i == 32) {
+                  updateRegisterUnsignedValue(i, values[i], base);
+               } 
+               else {
+                  updateRegisterValue(i, values[i], base);
+               }
+            }
+         }
       }
    	
      /**
@@ -107,6 +107,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                RegisterFile.resetRegisters();
                Coprocessor1.resetRegisters();
                Coprocessor0.resetRegisters();
+               mars.mips.instructions.syscalls.RandomStreams.reset();
+               SystemIO.getInputProvider().clear(); // discard input typed ahead but never read
+               mars.simulator.Simulator.getInstance().getEventScheduler().clear();
                executePane.getTextSegmentWindow().setupTable();
                executePane.getDataSegmentWindow().setupTable();
                executePane.getDataSegmentWindow().highlightCellForAddress(Memory.dataBaseAddress); 
@@ -73,6 +73,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          RegisterFile.resetRegisters();
          Coprocessor1.resetRegisters();
          Coprocessor0.resetRegisters();
+         mars.mips.instructions.syscalls.RandomStreams.reset();
+         SystemIO.getInputProvider().clear(); // discard input typed ahead but never read
+         mars.simulator.Simulator.getInstance().getEventScheduler().clear();
+         mars.simulator.Simulator.getInstance().getBreakpoints().resetHitCounts();
 
 			executePane.getRegistersWindow().clearHighlighting();
          executePane.getRegistersWindow().updateRegisters();
@@ -59,7 +59,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 * consistent once set up, since address column is not editable.
    	 */
       private  int[] intAddresses;      // index is table model row, value is text address
-      private  Hashtable addressRows;   // key is text address, value is table model row
+      private  int[] userRows = new int[0], kernelRows = new int[0]; // index is word offset into (kernel) text segment, value is table model row or -1
       private  Hashtable<Integer, ModifiedCode> executeMods;   // key is table model row, value is original code, basic, source.
       private  Container contentPane;
       private  TextTableModel tableModel;
@@ -108,10 +108,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          int addressBase = Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase();
          codeHighlighting = true;
          breakpointsEnabled = true;
+         Simulator.getInstance().getBreakpoints().clear();
          ArrayList sourceStatementList = Globals.program.getMachineList();
          data = new Object[sourceStatementList.size()][columnNames.length];
          intAddresses = new int[data.length];
-         addressRows = new Hashtable(data.length);
          executeMods = new Hashtable<Integer,ModifiedCode>(data.length);
       	// Get highest source line number to determine #leading spaces so line numbers will vertically align
       	// In multi-file situation, this will not necessarily be the last line b/c sourceStatementList contains
@@ -129,7 +129,6 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          for (int i = 0; i < sourceStatementList.size(); i++) {
             ProgramStatement statement = (ProgramStatement) sourceStatementList.get(i);
             intAddresses[i] = statement.getAddress();
-            addressRows.put(new Integer(intAddresses[i]), new Integer(i));
             data[i][BREAK_COLUMN] = Boolean.FALSE;
             data[i][ADDRESS_COLUMN] = NumberDisplayBaseChooser.formatUnsignedInteger(statement.getAddress(), addressBase);
             data[i][CODE_COLUMN] = NumberDisplayBaseChooser.formatNumber(statement.getBinaryStatement(), 16);
@@ -147,6 +146,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             data[i][SOURCE_COLUMN] = sourceString;
             lastLine=statement.getSourceLine();
          }
+         userRows = buildAddressRows(Memory.textBaseAddress);
+         kernelRows = buildAddressRows(Memory.kernelTextBaseAddress);
          contentPane.removeAll();
          tableModel = new TextTableModel(data);
          if (tableModelListener!=null) {
@@ -157,6 +158,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       
       	// prevents cells in row from being highlighted when user clicks on breakpoint checkbox
          table.setRowSelectionAllowed(false);
+         table.addMouseListener(new BreakpointConditionMouseListener());
       	
          table.getColumnModel().getColumn(BREAK_COLUMN).setMinWidth(40); 
          table.getColumnModel().getColumn(ADDRESS_COLUMN).setMinWidth(80); 
@@ -522,23 +524,21 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 */
    
        public void highlightStepAtAddress(int address, boolean inDelaySlot) {
+         int previousRow = rowForAddress(highlightAddress);
          highlightAddress = address;
+         // Trigger highlighting, which is done by the column's cell renderer.  Only the
+         // previously highlighted row and the new one need to be redrawn.
+         if (previousRow >= 0) {
+            table.tableChanged(new TableModelEvent(tableModel, previousRow, previousRow));
+         }
       	// Scroll if necessary to assure highlighted row is visible.
-         int row = 0;
-         try {
-            row = findRowForAddress(address);
-         } 
-             catch (IllegalArgumentException e) {
-               return;
-            }
+         int row = rowForAddress(address);
+         if (row < 0) {
+            return;
+         }
          table.scrollRectToVisible(table.getCellRect(row, 0, true));
          this.inDelaySlot = inDelaySlot;// Added 25 June 2007
-         // Trigger highlighting, which is done by the column's cell renderer.
-         // IMPLEMENTATION NOTE: Pretty crude implementation; mark all rows 
-         // as changed so assure that the previously highlighted row is 
-         // unhighlighted.  Would be better to keep track of previous row
-         // then fire two events: one for it and one for the new row.
-         table.tableChanged(new TableModelEvent(tableModel));
+         table.tableChanged(new TableModelEvent(tableModel, row, row));
          //this.inDelaySlot = false;// Added 25 June 2007
       }
    
@@ -666,16 +666,48 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  corresponding to this address.
    	 */
        private int findRowForAddress(int address) throws IllegalArgumentException {
-         int addressRow = 0;
-         try {
-            addressRow = ((Integer)addressRows.get(new Integer(address))).intValue();
-         } 
-             catch (NullPointerException e) {
-               throw new IllegalArgumentException(); // address not found in map
-               //return addressRow;// if address not in map, do nothing.
-            }
+         int addressRow = rowForAddress(address);
+         if (addressRow < 0) {
+            throw new IllegalArgumentException(); // address not found in map
+         }
          return addressRow;
       }  
+   
+      // Table row for the given address, or -1 if none.  Constant time, as it is
+      // used for every step highlighted.
+       private int rowForAddress(int address) {
+         int[] rows = userRows;
+         int offset = address - Memory.textBaseAddress;
+         if (offset < 0 || offset >= (rows.length << 2)) {
+            rows = kernelRows;
+            offset = address - Memory.kernelTextBaseAddress;
+            if (offset < 0 || offset >= (rows.length << 2)) {
+               return -1;
+            }
+         }
+         return ((offset & 3) == 0) ? rows[offset >> 2] : -1;
+      }
+   
+      // Build the address to row map for the statements (in intAddresses) at or above the given base 
+      // address, as an array indexed by word offset from the base.
+       private int[] buildAddressRows(int base) {
+         int words = 0;
+         for (int i = 0; i < intAddresses.length; i++) {
+            int offset = intAddresses[i] - base;
+            if (offset >= 0 && offset < 0x10000000) {
+               words = Math.max(words, (offset >> 2) + 1);
+            }
+         }
+         int[] rows = new int[words];
+         Arrays.fill(rows, -1);
+         for (int i = 0; i < intAddresses.length; i++) {
+            int offset = intAddresses[i] - base;
+            if (offset >= 0 && offset < 0x10000000) {
+               rows[offset >> 2] = i;
+            }
+         }
+         return rows;
+      }
      
    
      
@@ -973,6 +1005,63 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
    
    	
+       ///////////////////////////////////////////////////////////////////
+   	 //
+   	 // Right-clicking a row lets the user give the breakpoint at that address a
+   	 // condition and a hit count (see BreakpointTable).  Setting either also sets
+   	 // the breakpoint.
+       private class BreakpointConditionMouseListener extends MouseAdapter {
+          public void mousePressed(MouseEvent e) {
+            maybeShowPopup(e);
+         }
+          public void mouseReleased(MouseEvent e) {
+            maybeShowPopup(e);
+         }
+          private void maybeShowPopup(MouseEvent e) {
+            final int row = table.rowAtPoint(e.getPoint());
+            if (!e.isPopupTrigger() || row < 0) {
+               return;
+            }
+            JPopupMenu popup = new JPopupMenu();
+            JMenuItem item = new JMenuItem("Breakpoint condition...");
+            item.addActionListener(
+                   new ActionListener() {
+                      public void actionPerformed(ActionEvent ae) {
+                        editBreakpointCondition(row);
+                     }
+                  });
+            popup.add(item);
+            popup.show(e.getComponent(), e.getX(), e.getY());
+         }
+      }
+   
+       private void editBreakpointCondition(int row) {
+         BreakpointTable breakpoints = Simulator.getInstance().getBreakpoints();
+         int address = intAddresses[row];
+         String condition = breakpoints.getCondition(address);
+         JTextField conditionField = new JTextField((condition == null) ? "" : condition, 30);
+         JTextField hitCountField = new JTextField("" + breakpoints.getHitCount(address), 6);
+         JPanel panel = new JPanel(new GridLayout(4, 1));
+         panel.add(new JLabel("Stop only if (e.g. $t0 == 5 && mem[$sp] > 0; empty for always):"));
+         panel.add(conditionField);
+         panel.add(new JLabel("Stop when hit at least this many times:"));
+         panel.add(hitCountField);
+         while (JOptionPane.showConfirmDialog(this, panel, "Breakpoint at " + mars.util.Binary.intToHexString(address),
+                   JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) == JOptionPane.OK_OPTION) {
+            try {
+               breakpoints.setCondition(address, conditionField.getText(), Integer.parseInt(hitCountField.getText().trim()));
+               tableModel.setValueAt(Boolean.TRUE, row, BREAK_COLUMN);
+               return;
+            } 
+                catch (NumberFormatException nfe) {
+                  JOptionPane.showMessageDialog(this, "Hit count must be a number.");
+               }
+                catch (IllegalArgumentException iae) {
+                  JOptionPane.showMessageDialog(this, "Invalid condition: " + iae.getMessage());
+               }
+         }
+      }
+   
        ///////////////////////////////////////////////////////////////////
    	 //
    	 // JTable subclass to provide custom tool tips for each of the